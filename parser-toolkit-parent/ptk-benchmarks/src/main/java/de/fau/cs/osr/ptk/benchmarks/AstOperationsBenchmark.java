@@ -0,0 +1,63 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import de.fau.cs.osr.ptk.common.AstPrinter;
+import de.fau.cs.osr.ptk.common.ast.AstNode;
+import de.fau.cs.osr.ptk.common.comparer.AstComparer;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnDocument;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+
+/**
+ * Measures operations that walk the whole tree: comparison, printing and
+ * deep cloning.
+ */
+public class AstOperationsBenchmark
+		extends
+			TreeBenchmarkBase
+{
+	private CtnDocument copy;
+
+	// =========================================================================
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		copy = CtnTrees.build(shape, size);
+	}
+
+	@Benchmark
+	public boolean compare()
+	{
+		return AstComparer.compareNoThrow(tree, copy, true, true);
+	}
+
+	@Benchmark
+	public String print()
+	{
+		return AstPrinter.print((CtnNode) tree);
+	}
+
+	@Benchmark
+	public AstNode<CtnNode> deepClone()
+	{
+		return tree.deepCloneWrapException();
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.benchmarks;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.TearDown;
+
+import de.fau.cs.osr.ptk.common.ast.AstCloner;
+import de.fau.cs.osr.ptk.common.ast.AstNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnDocument;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnEmptyImmutableNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+
+/**
+ * Compares the recursive AstNode.deepClone() with the iterative AstCloner,
+ * sequentially and in parallel.
+ */
+public class CloneBenchmark
+		extends
+			TreeBenchmarkBase
+{
+	private AstCloner cloner;
+
+	private ExecutorService executor;
+
+	// =========================================================================
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		cloner = new AstCloner().withSharedClass(CtnEmptyImmutableNode.class);
+		executor = Executors.newFixedThreadPool(
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		executor.shutdown();
+	}
+
+	@Benchmark
+	public AstNode<CtnNode> recursiveDeepClone()
+	{
+		return tree.deepCloneWrapException();
+	}
+
+	@Benchmark
+	public CtnDocument iterativeClone()
+	{
+		return cloner.deepClone(tree);
+	}
+
+	@Benchmark
+	public CtnDocument parallelClone()
+	{
+		return cloner.deepCloneParallel(tree, executor);
+	}
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.gson.Gson;
+import com.thoughtworks.xstream.XStream;
+
+import de.fau.cs.osr.ptk.common.json.AstJsonLinesWriter;
+import de.fau.cs.osr.ptk.common.serialization.AstStreamWriterBase;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnDocument;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnGenerator;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+import de.fau.cs.osr.ptk.common.xml.AstXmlStreamWriter;
+
+/**
+ * Streams generated documents to the JSON or XML serializer. If an executor
+ * is given, documents are encoded concurrently; at most
+ * {@link AstStreamWriterBase#DEFAULT_MAX_PENDING_DOCUMENTS} documents are
+ * held in memory at a time.
+ */
+public final class CorpusWriter
+{
+	private CorpusWriter()
+	{
+	}
+
+	/**
+	 * Writes one JSON document per line.
+	 * 
+	 * @param executor
+	 *            Encodes the documents or <code>null</code>.
+	 * @return The number of documents written.
+	 */
+	public static long writeJson(
+			Iterable<CtnDocument> documents,
+			Gson gson,
+			Writer out,
+			ExecutorService executor) throws IOException
+	{
+		AstJsonLinesWriter<CtnNode> writer = new AstJsonLinesWriter<CtnNode>(gson, out);
+		writer.setExecutor(executor);
+		for (CtnDocument doc : documents)
+			writer.write(doc);
+		writer.flush();
+		return writer.getDocumentCount();
+	}
+
+	/**
+	 * Writes all documents as children of a single &lt;corpus&gt; element.
+	 * The corpus can be read back with
+	 * {@link XStream#createObjectInputStream(java.io.Reader)}.
+	 * 
+	 * @param executor
+	 *            Encodes the documents or <code>null</code>.
+	 * @return The number of documents written.
+	 */
+	public static long writeXml(
+			Iterable<CtnDocument> documents,
+			XStream xstream,
+			Writer out,
+			ExecutorService executor) throws IOException
+	{
+		AstXmlStreamWriter<CtnNode> writer = new AstXmlStreamWriter<CtnNode>(xstream, out, "corpus");
+		try
+		{
+			writer.setExecutor(executor);
+			for (CtnDocument doc : documents)
+				writer.write(doc);
+		}
+		finally
+		{
+			writer.close();
+		}
+		return writer.getDocumentCount();
+	}
+
+	/**
+	 * Parses sizes like "512", "64k", "10m" or "2g".
+	 */
+	public static long parseSize(String size)
+	{
+		String s = size.trim().toLowerCase();
+		long unit = 1;
+		if (s.endsWith("k"))
+			unit = 1024L;
+		else if (s.endsWith("m"))
+			unit = 1024L * 1024;
+		else if (s.endsWith("g"))
+			unit = 1024L * 1024 * 1024;
+
+		if (unit != 1)
+			s = s.substring(0, s.length() - 1);
+
+		return Long.parseLong(s) * unit;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Usage: CorpusWriter (json|xml) FILE TOTAL_SIZE [SEED [DOCUMENT_SIZE]]
+	 * 
+	 * The output is gzipped if the file name ends with ".gz".
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 3 || args.length > 5)
+		{
+			System.err.println("Usage: CorpusWriter (json|xml) FILE TOTAL_SIZE [SEED [DOCUMENT_SIZE]]");
+			System.exit(1);
+		}
+
+		String format = args[0];
+		String file = args[1];
+		long totalSize = parseSize(args[2]);
+		long seed = (args.length > 3) ? Long.parseLong(args[3]) : 42;
+
+		CtnGenerator generator = new CtnGenerator(seed)
+				.withAttributeDensity(0.1)
+				.withPropertyDensity(0.1)
+				.withRtDataDensity(0.1)
+				.withLocations(true);
+		if (args.length > 4)
+			generator.withDocumentSize(parseSize(args[4]));
+
+		Iterable<CtnDocument> corpus = generator.corpus(totalSize);
+
+		OutputStream os = new FileOutputStream(file);
+		if (file.endsWith(".gz"))
+			os = new GZIPOutputStream(os);
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = (threads > 1) ? Executors.newFixedThreadPool(threads) : null;
+
+		long count;
+		Writer out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+		try
+		{
+			if ("json".equals(format))
+				count = writeJson(corpus, CtnSerializers.gson(), out, executor);
+			else if ("xml".equals(format))
+				count = writeXml(corpus, CtnSerializers.xstream(), out, executor);
+			else
+				throw new IllegalArgumentException("Unknown format: " + format);
+		}
+		finally
+		{
+			out.close();
+			if (executor != null)
+				executor.shutdownNow();
+		}
+
+		System.out.println("Wrote " + count + " documents to " + file);
+	}
+}
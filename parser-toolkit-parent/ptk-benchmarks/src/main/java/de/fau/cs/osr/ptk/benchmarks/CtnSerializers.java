@@ -0,0 +1,125 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.xml.DomDriver;
+import com.thoughtworks.xstream.security.AnyTypePermission;
+
+import de.fau.cs.osr.ptk.common.ast.AstNode;
+import de.fau.cs.osr.ptk.common.ast.RtData;
+import de.fau.cs.osr.ptk.common.json.AstNodeJsonTypeAdapter;
+import de.fau.cs.osr.ptk.common.json.AstRtDataJsonTypeAdapter;
+import de.fau.cs.osr.ptk.common.serialization.AstNodeConverterBase;
+import de.fau.cs.osr.ptk.common.serialization.SimpleTypeNameMapper;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnBody;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnDocument;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnFactory;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnIdNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNodeList;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNodeWithObjProp;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNodeWithPropAndContent;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnSection;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnText;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnTitle;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnUrl;
+import de.fau.cs.osr.ptk.common.xml.AstNodeXmlConverter;
+
+/**
+ * JSON and XML serializers for the common test nodes, configured like the
+ * converter tests do.
+ */
+public final class CtnSerializers
+{
+	private CtnSerializers()
+	{
+	}
+
+	/**
+	 * Creates a compact (not pretty printing) Gson instance.
+	 */
+	public static Gson gson()
+	{
+		return gson(jsonAdapter());
+	}
+
+	/**
+	 * Creates a compact Gson instance which uses the given adapter.
+	 */
+	public static Gson gson(AstNodeJsonTypeAdapter<CtnNode> converter)
+	{
+		GsonBuilder builder = new GsonBuilder();
+		builder.registerTypeHierarchyAdapter(AstNode.class, converter);
+		builder.registerTypeAdapter(RtData.class, new AstRtDataJsonTypeAdapter<RtData>(RtData.class));
+		builder.serializeNulls();
+		return builder.create();
+	}
+
+	public static AstNodeJsonTypeAdapter<CtnNode> jsonAdapter()
+	{
+		AstNodeJsonTypeAdapter<CtnNode> converter =
+				AstNodeJsonTypeAdapter.forNodeType(CtnNode.class);
+		setUpConverter(converter);
+		return converter;
+	}
+
+	public static XStream xstream()
+	{
+		AstNodeXmlConverter<CtnNode> converter =
+				AstNodeXmlConverter.forNodeType(CtnNode.class);
+		setUpConverter(converter);
+
+		XStream xstream = new XStream(new DomDriver());
+		xstream.registerConverter(converter);
+		xstream.setMode(XStream.NO_REFERENCES);
+		xstream.addPermission(AnyTypePermission.ANY);
+		return xstream;
+	}
+
+	// =========================================================================
+
+	private static void setUpConverter(AstNodeConverterBase<CtnNode> converter)
+	{
+		converter.setStringNodeType(CtnText.class);
+		converter.setNodeFactory(CtnFactory.get());
+
+		SimpleTypeNameMapper typeNameMapper = new SimpleTypeNameMapper();
+		typeNameMapper.add(CtnText.class, "text");
+		typeNameMapper.add(CtnNodeList.class, "list");
+		typeNameMapper.add(CtnSection.class, "section");
+		typeNameMapper.add(CtnTitle.class, "title");
+		typeNameMapper.add(CtnBody.class, "body");
+		typeNameMapper.add(CtnDocument.class, "document");
+		typeNameMapper.add(CtnIdNode.class, "id");
+		typeNameMapper.add(CtnUrl.class, "url");
+		typeNameMapper.add(CtnNodeWithObjProp.class, "nwop");
+		typeNameMapper.add(CtnNodeWithPropAndContent.class, "nwpac");
+		converter.setTypeNameMapper(typeNameMapper);
+
+		converter.suppressNode(CtnBody.CtnNoBody.class);
+		converter.suppressNode(CtnTitle.CtnNoTitle.class);
+
+		converter.suppressTypeInfo(CtnBody.CtnEmptyBody.class);
+		converter.suppressTypeInfo(CtnBody.CtnBodyImpl.class);
+		converter.suppressTypeInfo(CtnTitle.CtnEmptyTitle.class);
+		converter.suppressTypeInfo(CtnTitle.CtnTitleImpl.class);
+	}
+}
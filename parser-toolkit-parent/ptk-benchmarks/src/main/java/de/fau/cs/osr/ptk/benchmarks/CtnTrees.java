@@ -0,0 +1,165 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.benchmarks;
+
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnDoc;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnList;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnSection;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnText;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnUrl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.fau.cs.osr.ptk.common.test.nodes.CtnDocument;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnSection;
+
+/**
+ * Builds deterministic test trees of a given shape and size from the common
+ * test nodes.
+ */
+public final class CtnTrees
+{
+	public enum Shape
+	{
+		/**
+		 * All sections are direct children of the document.
+		 */
+		WIDE,
+
+		/**
+		 * Sections are nested in chains of at most {@link #MAX_DEPTH}
+		 * sections. The chains are children of the document.
+		 */
+		DEEP,
+
+		/**
+		 * Every section contains (up to) two sub sections.
+		 */
+		BALANCED,
+	}
+
+	/**
+	 * Keeps deep trees within the reach of the recursive visitors and
+	 * serializers.
+	 */
+	public static final int MAX_DEPTH = 64;
+
+	// =========================================================================
+
+	private CtnTrees()
+	{
+	}
+
+	/**
+	 * Builds a document containing the given number of sections. Each section
+	 * contains a title, some text, a URL and a nested list.
+	 */
+	public static CtnDocument build(Shape shape, int sections)
+	{
+		if (sections < 0)
+			throw new IllegalArgumentException("sections must not be negative");
+
+		CtnDocument doc = ctnDoc();
+		switch (shape)
+		{
+			case WIDE:
+				for (int i = 0; i < sections; ++i)
+					doc.add(section(1, i));
+				break;
+
+			case DEEP:
+				for (int i = 0; i < sections; i += MAX_DEPTH)
+					doc.add(chain(i, Math.min(MAX_DEPTH, sections - i)));
+				break;
+
+			case BALANCED:
+				if (sections > 0)
+					doc.add(balanced(1, 0, sections));
+				break;
+
+			default:
+				throw new IllegalArgumentException(String.valueOf(shape));
+		}
+		return doc;
+	}
+
+	/**
+	 * Collects all nodes of the given tree in document order.
+	 */
+	public static List<CtnNode> flatten(CtnNode root)
+	{
+		List<CtnNode> nodes = new ArrayList<CtnNode>();
+		flatten(root, nodes);
+		return nodes;
+	}
+
+	private static void flatten(CtnNode node, List<CtnNode> nodes)
+	{
+		nodes.add(node);
+		for (CtnNode n : node)
+			flatten(n, nodes);
+	}
+
+	// =========================================================================
+
+	private static CtnSection chain(int first, int length)
+	{
+		CtnSection inner = null;
+		for (int level = length; level >= 1; --level)
+		{
+			int id = first + level - 1;
+			if (inner == null)
+				inner = section(level, id);
+			else
+				inner = section(level, id, inner);
+		}
+		return inner;
+	}
+
+	private static CtnSection balanced(int level, int first, int count)
+	{
+		int remaining = count - 1;
+		int left = (remaining + 1) / 2;
+		int right = remaining - left;
+
+		List<CtnNode> children = new ArrayList<CtnNode>(2);
+		if (left > 0)
+			children.add(balanced(level + 1, first + 1, left));
+		if (right > 0)
+			children.add(balanced(level + 1, first + 1 + left, right));
+
+		return section(level, first, children.toArray(new CtnNode[children.size()]));
+	}
+
+	private static CtnSection section(int level, int id, CtnNode... subSections)
+	{
+		CtnNode[] body = new CtnNode[3 + subSections.length];
+		body[0] = ctnText("Text of section " + id + " with <markup> & \"quotes\"");
+		body[1] = ctnUrl().withPath("example.org/section/" + id).build();
+		body[2] = ctnList(ctnText("first item"), ctnText("second item"));
+		System.arraycopy(subSections, 0, body, 3, subSections.length);
+
+		return ctnSection()
+				.withLevel(level)
+				.withTitle(ctnText("Section " + id))
+				.withBody(body)
+				.build();
+	}
+}
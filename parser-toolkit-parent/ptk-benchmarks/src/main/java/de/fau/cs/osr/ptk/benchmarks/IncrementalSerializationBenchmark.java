@@ -0,0 +1,73 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import com.google.gson.Gson;
+
+import de.fau.cs.osr.ptk.common.json.AstNodeJsonTypeAdapter;
+import de.fau.cs.osr.ptk.common.json.IncrementalAstJsonSerializer;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+
+/**
+ * Modifies a single node of the test tree and serializes the whole tree to
+ * JSON again, once from scratch and once with the
+ * {@link IncrementalAstJsonSerializer}.
+ */
+public class IncrementalSerializationBenchmark
+		extends
+			TreeBenchmarkBase
+{
+	private Gson gson;
+
+	private IncrementalAstJsonSerializer<CtnNode> serializer;
+
+	private CtnNode leaf;
+
+	private int edits;
+
+	// =========================================================================
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		AstNodeJsonTypeAdapter<CtnNode> adapter = CtnSerializers.jsonAdapter();
+		gson = CtnSerializers.gson(adapter);
+		serializer = new IncrementalAstJsonSerializer<CtnNode>(gson, adapter);
+		serializer.toJson(tree);
+
+		leaf = tree;
+		while (!leaf.isEmpty())
+			leaf = leaf.get(leaf.size() - 1);
+	}
+
+	@Benchmark
+	public String editAndSerialize()
+	{
+		leaf.setAttribute("edits", ++edits);
+		return gson.toJson(tree);
+	}
+
+	@Benchmark
+	public String editAndSerializeIncrementally()
+	{
+		leaf.setAttribute("edits", ++edits);
+		return serializer.toJson(tree);
+	}
+}
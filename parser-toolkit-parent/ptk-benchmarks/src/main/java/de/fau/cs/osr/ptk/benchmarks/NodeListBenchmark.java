@@ -0,0 +1,126 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.benchmarks;
+
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnId;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnList;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnText;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.fau.cs.osr.ptk.common.ast.AstNodeListImpl;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNodeList;
+
+/**
+ * Measures the mutation operations of {@link AstNodeListImpl}. Adding a list
+ * to a list splices the children of the added list into the target list and
+ * adjacent text nodes are merged on insertion.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeListBenchmark
+{
+	@Param({ "16", "256", "4096" })
+	private int size;
+
+	private CtnNode[] children;
+
+	private CtnNodeList template;
+
+	// =========================================================================
+
+	@Setup
+	public void setUp()
+	{
+		children = new CtnNode[size];
+		for (int i = 0; i < size; ++i)
+			children[i] = ctnId(i);
+
+		template = ctnList(children);
+	}
+
+	@Benchmark
+	public CtnNodeList append()
+	{
+		CtnNodeList list = ctnList();
+		for (CtnNode n : children)
+			list.add(n);
+		return list;
+	}
+
+	@Benchmark
+	public CtnNodeList prepend()
+	{
+		CtnNodeList list = ctnList();
+		for (CtnNode n : children)
+			list.add(0, n);
+		return list;
+	}
+
+	@Benchmark
+	public CtnNodeList appendMergingText()
+	{
+		CtnNodeList list = ctnList();
+		for (int i = 0; i < size; ++i)
+			list.add(ctnText("item "));
+		return list;
+	}
+
+	@Benchmark
+	public CtnNodeList appendList()
+	{
+		CtnNodeList list = ctnList(ctnText("head"));
+		list.add(template);
+		return list;
+	}
+
+	@Benchmark
+	public CtnNodeList setAll()
+	{
+		CtnNodeList list = ctnList(children);
+		for (int i = 0; i < size; ++i)
+			list.set(i, children[size - i - 1]);
+		return list;
+	}
+
+	@Benchmark
+	public CtnNodeList removeFromMiddle()
+	{
+		CtnNodeList list = ctnList(children);
+		while (!list.isEmpty())
+			list.remove(list.size() / 2);
+		return list;
+	}
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of this module. Accepts the usual JMH command line
+ * options. Unless specified otherwise the results are written as JSON to
+ * {@value #DEFAULT_RESULT_FILE}.
+ */
+public class PtkBenchmarks
+{
+	public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+	// =========================================================================
+
+	public static void main(String[] args) throws Exception
+	{
+		CommandLineOptions cmdLine = new CommandLineOptions(args);
+
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(cmdLine);
+
+		if (!cmdLine.getResultFormat().hasValue())
+			options.resultFormat(ResultFormatType.JSON);
+
+		if (!cmdLine.getResult().hasValue())
+			options.result(DEFAULT_RESULT_FILE);
+
+		if (cmdLine.getIncludes().isEmpty())
+			options.include(PtkBenchmarks.class.getPackage().getName() + ".");
+
+		new Runner(options.build()).run();
+	}
+}
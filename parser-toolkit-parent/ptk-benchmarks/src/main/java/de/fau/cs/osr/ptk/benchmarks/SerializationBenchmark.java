@@ -0,0 +1,92 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import com.google.gson.Gson;
+import com.thoughtworks.xstream.XStream;
+
+import de.fau.cs.osr.ptk.common.json.AstNodeJsonTypeAdapter;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnDocument;
+import de.fau.cs.osr.ptk.common.xml.AstNodeXmlConverter;
+
+/**
+ * Serializes the test tree to JSON with the {@link AstNodeJsonTypeAdapter}
+ * and to XML with the {@link AstNodeXmlConverter} and restores it again.
+ */
+public class SerializationBenchmark
+		extends
+			TreeBenchmarkBase
+{
+	private Gson gson;
+
+	private XStream xstream;
+
+	private String json;
+
+	private String xml;
+
+	// =========================================================================
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		gson = CtnSerializers.gson();
+		xstream = CtnSerializers.xstream();
+
+		json = gson.toJson(tree);
+		xml = xstream.toXML(tree);
+	}
+
+	@Benchmark
+	public String toJson()
+	{
+		return gson.toJson(tree);
+	}
+
+	@Benchmark
+	public CtnDocument fromJson()
+	{
+		return gson.fromJson(json, CtnDocument.class);
+	}
+
+	@Benchmark
+	public CtnDocument jsonRoundtrip()
+	{
+		return gson.fromJson(gson.toJson(tree), CtnDocument.class);
+	}
+
+	@Benchmark
+	public String toXml()
+	{
+		return xstream.toXML(tree);
+	}
+
+	@Benchmark
+	public Object fromXml()
+	{
+		return xstream.fromXML(xml);
+	}
+
+	@Benchmark
+	public Object xmlRoundtrip()
+	{
+		return xstream.fromXML(xstream.toXML(tree));
+	}
+}
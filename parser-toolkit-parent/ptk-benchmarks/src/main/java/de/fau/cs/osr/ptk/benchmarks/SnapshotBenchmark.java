@@ -0,0 +1,68 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import de.fau.cs.osr.ptk.common.ast.PersistentAst;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+
+/**
+ * Compares the two ways of keeping a snapshot of a tree before modifying a
+ * single node: a deep clone followed by an in-place modification, and a
+ * persistent modification which only copies the path to the node.
+ */
+public class SnapshotBenchmark
+		extends
+			TreeBenchmarkBase
+{
+	private int[] path;
+
+	// =========================================================================
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		// The path to the right-most leaf
+		int depth = 0;
+		for (CtnNode n = tree; !n.isEmpty(); n = n.get(n.size() - 1))
+			++depth;
+
+		path = new int[depth];
+		CtnNode n = tree;
+		for (int i = 0; i < depth; ++i)
+		{
+			path[i] = n.size() - 1;
+			n = n.get(path[i]);
+		}
+	}
+
+	@Benchmark
+	public CtnNode deepCloneAndSet()
+	{
+		CtnNode copy = (CtnNode) tree.deepCloneWrapException();
+		PersistentAst.get(copy, path).setAttribute("mark", Boolean.TRUE);
+		return copy;
+	}
+
+	@Benchmark
+	public CtnNode persistentSet()
+	{
+		return PersistentAst.setAttribute((CtnNode) tree, path, "mark", Boolean.TRUE);
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.fau.cs.osr.utils.StringTools;
+
+/**
+ * Measures the escaping functions of {@link StringTools} which are used by
+ * the printers and serializers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringToolsBenchmark
+{
+	@Param({ "plain", "markup" })
+	private String input;
+
+	private String text;
+
+	// =========================================================================
+
+	@Setup
+	public void setUp()
+	{
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < 32; ++i)
+		{
+			if ("plain".equals(input))
+				b.append("Some plain text without special characters ");
+			else
+				b.append("<a href=\"x\">Tom & Jerry's</a>\t\"quoted\"\n");
+		}
+		text = b.toString();
+	}
+
+	@Benchmark
+	public String escHtml()
+	{
+		return StringTools.escHtml(text);
+	}
+
+	@Benchmark
+	public String escHtmlAttribute()
+	{
+		return StringTools.escHtml(text, true);
+	}
+
+	@Benchmark
+	public String escJava()
+	{
+		return StringTools.escJava(text);
+	}
+}
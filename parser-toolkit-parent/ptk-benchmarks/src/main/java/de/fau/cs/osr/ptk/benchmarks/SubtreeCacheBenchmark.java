@@ -0,0 +1,129 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+
+import de.fau.cs.osr.ptk.common.json.AstNodeJsonTypeAdapter;
+import de.fau.cs.osr.ptk.common.json.IncrementalAstJsonSerializer;
+import de.fau.cs.osr.ptk.common.serialization.SubtreeCache;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnDocument;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnText;
+
+/**
+ * Serializes a rotating set of documents which share most of their subtrees
+ * to JSON: without a {@link SubtreeCache}, with the type adapter caching
+ * JsonElements and with the {@link IncrementalAstJsonSerializer} caching the
+ * output of sub-trees. The incremental serializer forgets the previous
+ * document each time. Every <code>uniqueText</code>-th text node is given new
+ * content before each serialization, everything else recurs in all
+ * documents.
+ */
+public class SubtreeCacheBenchmark
+		extends
+			TreeBenchmarkBase
+{
+	private static final int DOCUMENTS = 8;
+
+	@Param({ "4", "64" })
+	private int uniqueText;
+
+	private CtnDocument[] documents;
+
+	private List<List<CtnText>> uniqueTexts;
+
+	private Gson gson;
+
+	private Gson cachingGson;
+
+	private IncrementalAstJsonSerializer<CtnNode> splicingSerializer;
+
+	private int next;
+
+	private int serial;
+
+	// =========================================================================
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		documents = new CtnDocument[DOCUMENTS];
+		uniqueTexts = new ArrayList<List<CtnText>>(DOCUMENTS);
+		for (int i = 0; i < DOCUMENTS; ++i)
+		{
+			documents[i] = CtnTrees.build(shape, size);
+
+			List<CtnText> unique = new ArrayList<CtnText>();
+			int texts = 0;
+			for (CtnNode n : CtnTrees.flatten(documents[i]))
+			{
+				if (n instanceof CtnText && (texts++ % uniqueText) == 0)
+					unique.add((CtnText) n);
+			}
+			uniqueTexts.add(unique);
+		}
+
+		AstNodeJsonTypeAdapter<CtnNode> plainAdapter = CtnSerializers.jsonAdapter();
+		gson = CtnSerializers.gson(plainAdapter);
+
+		splicingSerializer = new IncrementalAstJsonSerializer<CtnNode>(gson, plainAdapter);
+		splicingSerializer.setSubtreeCache(new SubtreeCache<String>(1 << 24).withAdmissionFilter(1 << 16));
+
+		AstNodeJsonTypeAdapter<CtnNode> adapter = CtnSerializers.jsonAdapter();
+		adapter.setSubtreeCache(new SubtreeCache<JsonElement>(1 << 24).withAdmissionFilter(1 << 16));
+		cachingGson = CtnSerializers.gson(adapter);
+	}
+
+	@Benchmark
+	public String serialize()
+	{
+		return gson.toJson(nextDocument());
+	}
+
+	@Benchmark
+	public String serializeWithSubtreeCache()
+	{
+		return cachingGson.toJson(nextDocument());
+	}
+
+	@Benchmark
+	public String serializeWithSplicedSubtrees()
+	{
+		splicingSerializer.clear();
+		return splicingSerializer.toJson(nextDocument());
+	}
+
+	private CtnDocument nextDocument()
+	{
+		next = (next + 1) % DOCUMENTS;
+
+		String content = "Text of document " + (++serial);
+		for (CtnText text : uniqueTexts.get(next))
+			text.setContent(content);
+
+		return documents[next];
+	}
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.fau.cs.osr.ptk.benchmarks.CtnTrees.Shape;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnDocument;
+
+/**
+ * Common parameters of all benchmarks that operate on a test tree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class TreeBenchmarkBase
+{
+	@Param({ "WIDE", "DEEP", "BALANCED" })
+	protected Shape shape;
+
+	/**
+	 * Number of sections in the tree. Each section amounts to nine nodes.
+	 */
+	@Param({ "16", "256", "4096" })
+	protected int size;
+
+	protected CtnDocument tree;
+
+	// =========================================================================
+
+	@Setup
+	public void setUpTree() throws Exception
+	{
+		tree = CtnTrees.build(shape, size);
+		setUp();
+	}
+
+	/**
+	 * Called after the tree has been built.
+	 */
+	protected void setUp() throws Exception
+	{
+	}
+}
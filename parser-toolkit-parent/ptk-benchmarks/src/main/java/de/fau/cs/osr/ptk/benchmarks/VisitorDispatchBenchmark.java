@@ -0,0 +1,122 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import de.fau.cs.osr.ptk.common.AstVisitor;
+import de.fau.cs.osr.ptk.common.NodeTypeAstVisitor;
+import de.fau.cs.osr.ptk.common.ast.AstNode;
+import de.fau.cs.osr.ptk.common.ast.AstNodeList;
+import de.fau.cs.osr.ptk.common.ast.AstText;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+
+/**
+ * Compares the reflective dispatch of {@link AstVisitor} (resolved and
+ * cached by the VisitorLogic) with the switch based dispatch of
+ * {@link NodeTypeAstVisitor}. Both visitors count the nodes of the tree.
+ */
+public class VisitorDispatchBenchmark
+		extends
+			TreeBenchmarkBase
+{
+	private CountingAstVisitor astVisitor;
+
+	private CountingNodeTypeVisitor nodeTypeVisitor;
+
+	// =========================================================================
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		astVisitor = new CountingAstVisitor();
+		nodeTypeVisitor = new CountingNodeTypeVisitor();
+	}
+
+	@Benchmark
+	public int astVisitor()
+	{
+		astVisitor.count = 0;
+		astVisitor.go(tree);
+		return astVisitor.count;
+	}
+
+	@Benchmark
+	public int nodeTypeAstVisitor()
+	{
+		nodeTypeVisitor.count = 0;
+		nodeTypeVisitor.go(tree);
+		return nodeTypeVisitor.count;
+	}
+
+	// =========================================================================
+
+	public static final class CountingAstVisitor
+			extends
+				AstVisitor<CtnNode>
+	{
+		private int count;
+
+		public void visit(AstNode<CtnNode> n)
+		{
+			++count;
+			iterate((CtnNode) n);
+		}
+
+		public void visit(AstNodeList<CtnNode> n)
+		{
+			++count;
+			iterate((CtnNode) n);
+		}
+
+		public void visit(AstText<CtnNode> n)
+		{
+			++count;
+		}
+	}
+
+	public static final class CountingNodeTypeVisitor
+			extends
+				NodeTypeAstVisitor<CtnNode>
+	{
+		private int count;
+
+		@Override
+		protected Object visitUnspecific(AstNode<CtnNode> n)
+		{
+			++count;
+			iterate((CtnNode) n);
+			return n;
+		}
+
+		@Override
+		protected Object visit(AstNodeList<CtnNode> n)
+		{
+			++count;
+			iterate((CtnNode) n);
+			return n;
+		}
+
+		@Override
+		protected Object visit(AstText<CtnNode> n)
+		{
+			++count;
+			return n;
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import de.fau.cs.osr.ptk.common.ast.AstNode;
+import de.fau.cs.osr.ptk.common.ast.AstText;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+import de.fau.cs.osr.utils.visitor.Baton;
+import de.fau.cs.osr.utils.visitor.IncompatibleVisitorStackDefinition;
+import de.fau.cs.osr.utils.visitor.StackedVisitorInterface;
+import de.fau.cs.osr.utils.visitor.VisitorStackController;
+
+/**
+ * Measures the visit chains of a {@link VisitorStackController} with a
+ * growing number of stacked visitors. Every node of the tree is passed to the
+ * controller separately and every visitor of the stack passes it on.
+ */
+public class VisitorStackBenchmark
+		extends
+			TreeBenchmarkBase
+{
+	/**
+	 * Number of visitors on the stack of the VisitorStackController.
+	 */
+	@Param({ "1", "4" })
+	private int stackDepth;
+
+	private StackController stackController;
+
+	private List<CtnNode> nodes;
+
+	// =========================================================================
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		List<StackedVisitor> stack = new ArrayList<StackedVisitor>();
+		for (int i = 0; i < stackDepth; ++i)
+			stack.add(new StackedVisitor());
+		stackController = new StackController(stackDepth, stack);
+
+		nodes = CtnTrees.flatten(tree);
+	}
+
+	@Benchmark
+	public int visitorStackController()
+	{
+		int count = 0;
+		for (CtnNode n : nodes)
+		{
+			if (stackController.go(n) != null)
+				++count;
+		}
+		return count;
+	}
+
+	// =========================================================================
+	public static final class StackedVisitor
+			extends
+				StackedVisitorInterface<CtnNode>
+	{
+		public Object visit(Baton baton, AstNode<CtnNode> n)
+		{
+			return baton.continueIfSameRef(n);
+		}
+
+		public Object visit(Baton baton, AstText<CtnNode> n)
+		{
+			return baton.continueIfSameRef(n);
+		}
+	}
+
+	public static final class StackController
+			extends
+				VisitorStackController<CtnNode>
+	{
+		public StackController(int depth, List<StackedVisitor> stack) throws IncompatibleVisitorStackDefinition
+		{
+			super("VisitorDispatchBenchmark-" + depth, stack);
+		}
+
+		@Override
+		protected Object visitNotFound(CtnNode node)
+		{
+			return node;
+		}
+	}
+}
@@ -17,24 +17,33 @@
 
 package de.fau.cs.osr.ptk.common;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import de.fau.cs.osr.ptk.common.ast.AstLeafNode;
 import de.fau.cs.osr.ptk.common.ast.AstNode;
 import de.fau.cs.osr.ptk.common.ast.AstNodeList;
 import de.fau.cs.osr.ptk.common.ast.AstNodePropertyIterator;
+import de.fau.cs.osr.ptk.common.ast.AstPropertyTable;
 import de.fau.cs.osr.ptk.common.ast.AstStringNode;
 import de.fau.cs.osr.ptk.common.ast.AstText;
 import de.fau.cs.osr.utils.PrinterBase;
 import de.fau.cs.osr.utils.PrinterBase.Memoize;
 import de.fau.cs.osr.utils.PrinterBase.OutputBuffer;
 import de.fau.cs.osr.utils.StringTools;
+import de.fau.cs.osr.utils.WrappedException;
 
 public class AstPrinter<T extends AstNode<T>>
 		extends
@@ -123,18 +132,34 @@ public class AstPrinter<T extends AstNode<T>>
 				boolean singleLine = false;
 				if (isCompact() && n.size() <= 1)
 				{
-					OutputBuffer b = p.outputBufferStart();
-					printListOfNodes(n);
-					b.stop();
-
-					String output = b.getBuffer().trim();
-					if (isSingleLine(output))
+					if (isStreaming())
 					{
-						p.indent(name);
-						p.print("[ ");
-						p.print(output);
-						p.println(" ]");
-						singleLine = true;
+						if (isSingleLineNode(n.get(0)))
+						{
+							p.indent(name);
+							p.print("[ ");
+							p.eatNewlinesAndIndents(1);
+							printListOfNodes(n);
+							p.ignoreNewlines();
+							p.println(" ]");
+							singleLine = true;
+						}
+					}
+					else
+					{
+						OutputBuffer b = p.outputBufferStart();
+						printListOfNodes(n);
+						b.stop();
+
+						String output = b.getBuffer().trim();
+						if (isSingleLine(output))
+						{
+							p.indent(name);
+							p.print("[ ");
+							p.print(output);
+							p.println(" ]");
+							singleLine = true;
+						}
 					}
 				}
 
@@ -171,15 +196,16 @@ public class AstPrinter<T extends AstNode<T>>
 			if (count == 0)
 				return false;
 
-			AstNodePropertyIterator i = n.propertyIterator();
-			while (i.next())
+			AstPropertyTable table = AstPropertyTable.of(n);
+			for (int i = 0; i < count; ++i)
 			{
-				if (i.getName().equals("rtd"))
+				String name = table.getName(i);
+				if (name.equals("rtd"))
 				{
-					if (i.getValue() != null)
+					if (n.getProperty(i) != null)
 						return true;
 				}
-				else if (!i.getName().equals("content") || !(n instanceof AstStringNode))
+				else if (!name.equals("content") || !(n instanceof AstStringNode))
 				{
 					return true;
 				}
@@ -211,6 +237,12 @@ public class AstPrinter<T extends AstNode<T>>
 
 	protected void printProperties(AstNode<T> n)
 	{
+		if (isStreaming())
+		{
+			printPropertiesStreaming(n);
+			return;
+		}
+
 		Map<String, Object> props = new TreeMap<String, Object>();
 
 		for (Entry<String, Object> entry : n.getAttributes().entrySet())
@@ -233,6 +265,52 @@ public class AstPrinter<T extends AstNode<T>>
 		}
 	}
 
+	/**
+	 * Prints the same as the TreeMap based implementation above but takes the
+	 * order of the properties from a per-class table instead of sorting them
+	 * for every node. Attributes sort before properties since "{A}" &lt; "{P}".
+	 */
+	private void printPropertiesStreaming(AstNode<T> n)
+	{
+		Map<String, Object> attrs = n.getAttributes();
+		if (!attrs.isEmpty())
+		{
+			String[] names = attrs.keySet().toArray(new String[attrs.size()]);
+			Arrays.sort(names);
+			for (String name : names)
+				printProperty("{A} ", name, attrs.get(name));
+		}
+
+		int count = n.getPropertyCount();
+		if (count > 0)
+		{
+			PropertyOrder order = PropertyOrder.get(n);
+
+			Object[] values = new Object[order.names.length];
+			int i = 0;
+			AstNodePropertyIterator j = n.propertyIterator();
+			while (j.next())
+				values[i++] = j.getValue();
+
+			for (int k : order.sorted)
+			{
+				String name = order.names[k];
+				if (values[k] != null || !name.equals("rtd"))
+					printProperty("{P} ", name, values[k]);
+			}
+		}
+	}
+
+	private void printProperty(String kind, String name, Object value)
+	{
+		p.indent(kind);
+		p.print(name);
+		p.print(" = ");
+		p.eatNewlinesAndIndents(1);
+		printPropertyValue(value);
+		p.clearEatNewlinesAndIndents();
+	}
+
 	protected void printPropertyValue(Object value)
 	{
 		if (value == null)
@@ -311,17 +389,33 @@ public class AstPrinter<T extends AstNode<T>>
 			boolean singleLine = false;
 			if (isCompact() && c.size() == 1)
 			{
-				OutputBuffer b = p.outputBufferStart();
-				printPropertyValue(c.toArray()[0]);
-				b.stop();
-
-				String output = b.getBuffer().trim();
-				if (isSingleLine(output))
+				Object value = c.iterator().next();
+				if (isStreaming())
+				{
+					if (isSingleLineValue(value))
+					{
+						p.indent("C[ ");
+						p.eatNewlinesAndIndents(1);
+						printPropertyValue(value);
+						p.ignoreNewlines();
+						p.println(" ]");
+						singleLine = true;
+					}
+				}
+				else
 				{
-					p.indent("C[ ");
-					p.print(output);
-					p.println(" ]");
-					singleLine = true;
+					OutputBuffer b = p.outputBufferStart();
+					printPropertyValue(value);
+					b.stop();
+
+					String output = b.getBuffer().trim();
+					if (isSingleLine(output))
+					{
+						p.indent("C[ ");
+						p.print(output);
+						p.println(" ]");
+						singleLine = true;
+					}
 				}
 			}
 
@@ -375,6 +469,63 @@ public class AstPrinter<T extends AstNode<T>>
 		return (text.indexOf('\n') == -1) && (text.indexOf('\r') == -1);
 	}
 
+	/**
+	 * Determines whether the given node would be rendered on a single line.
+	 * Used in streaming mode instead of rendering the node into a buffer and
+	 * inspecting the result. Printers that add or override visit() methods
+	 * must override this method accordingly if they use streaming mode.
+	 */
+	protected boolean isSingleLineNode(T n)
+	{
+		if (hasVisibleProperties(n))
+		{
+			return false;
+		}
+		else if (n instanceof AstStringNode)
+		{
+			return true;
+		}
+		else if (n instanceof AstNodeList)
+		{
+			return n.isEmpty() || (isCompact() && n.size() == 1 && isSingleLineNode(n.get(0)));
+		}
+		else
+		{
+			return n.isEmpty();
+		}
+	}
+
+	/**
+	 * Determines whether the given property value would be rendered on a
+	 * single line by printPropertyValue().
+	 */
+	protected boolean isSingleLineValue(Object value)
+	{
+		if (value == null || value instanceof String)
+		{
+			return true;
+		}
+		else if (value instanceof AstNode)
+		{
+			@SuppressWarnings("unchecked")
+			T node = (T) value;
+			return isSingleLineNode(node);
+		}
+		else if (value instanceof AstEntityMap)
+		{
+			return ((AstEntityMap<?>) value).getMap().isEmpty();
+		}
+		else if (value instanceof Collection)
+		{
+			Collection<?> c = (Collection<?>) value;
+			return c.isEmpty() || (isCompact() && c.size() == 1 && isSingleLineValue(c.iterator().next()));
+		}
+		else
+		{
+			return isSingleLine(value.toString().trim());
+		}
+	}
+
 	// =========================================================================
 
 	public static <T extends AstNode<T>> String print(T node)
@@ -388,24 +539,97 @@ public class AstPrinter<T extends AstNode<T>>
 		return writer;
 	}
 
+	/**
+	 * Same as print(Writer, T) but uses streaming mode (see
+	 * {@link #AstPrinter(Writer, boolean)}). The output is identical.
+	 */
+	public static <T extends AstNode<T>> Writer printStreaming(
+			Writer writer,
+			T node)
+	{
+		new AstPrinter<T>(writer, true).go(node);
+		return writer;
+	}
+
 	// =========================================================================
 
+	private static final int STREAMING_BUFFER_SIZE = 64 * 1024;
+
 	protected final PrinterBase p;
 
+	private final boolean streaming;
+
+	private final Writer buffer;
+
 	public AstPrinter(Writer writer)
 	{
-		this.p = new PrinterBase(writer);
-		this.p.setMemoize(true);
+		this(writer, false);
+	}
+
+	/**
+	 * @param streaming
+	 *            In streaming mode the printer writes directly to a buffered
+	 *            version of the given writer. Memoization is turned off and the
+	 *            layout of compact lists is decided up front (see
+	 *            {@link #isSingleLineNode(AstNode)}) instead of rendering
+	 *            list items into temporary buffers.
+	 */
+	public AstPrinter(Writer writer, boolean streaming)
+	{
+		this.streaming = streaming;
+		if (streaming)
+		{
+			this.buffer = (writer instanceof StringWriter || writer instanceof BufferedWriter) ?
+					null :
+					new BufferedWriter(writer, STREAMING_BUFFER_SIZE);
+			this.p = new PrinterBase((buffer != null) ? buffer : writer);
+			this.p.setMemoize(false);
+		}
+		else
+		{
+			this.buffer = null;
+			this.p = new PrinterBase(writer);
+			this.p.setMemoize(true);
+		}
 		this.setCompact(true);
 	}
 
+	/**
+	 * Supplies output rendered ahead of time when printing in parallel.
+	 */
+	ParallelAstPrinter.ChunkSource<T> chunks;
+
+	@Override
+	protected Object dispatch(T node)
+	{
+		if (chunks != null && chunks.replay(node, p))
+			return null;
+		return super.dispatch(node);
+	}
+
 	@Override
 	protected Object after(T node, Object result)
 	{
 		p.flush();
+		if (buffer != null)
+		{
+			try
+			{
+				buffer.flush();
+			}
+			catch (IOException e)
+			{
+				throw new WrappedException(e);
+			}
+		}
 		return result;
 	}
 
+	public boolean isStreaming()
+	{
+		return streaming;
+	}
+
 	// =========================================================================
 
 	private boolean compact = true;
@@ -419,4 +643,60 @@ public class AstPrinter<T extends AstNode<T>>
 	{
 		return compact;
 	}
+
+	// =========================================================================
+
+	/**
+	 * The names of the properties of a node class and their indices in
+	 * alphabetical order of the names.
+	 */
+	private static final class PropertyOrder
+	{
+		private static final ConcurrentHashMap<Class<?>, PropertyOrder> CACHE =
+				new ConcurrentHashMap<Class<?>, PropertyOrder>();
+
+		private final String[] names;
+
+		private final int[] sorted;
+
+		private PropertyOrder(AstNode<?> n)
+		{
+			List<String> list = new ArrayList<String>(n.getPropertyCount());
+			AstNodePropertyIterator i = n.propertyIterator();
+			while (i.next())
+				list.add(i.getName());
+
+			names = list.toArray(new String[list.size()]);
+
+			Integer[] order = new Integer[names.length];
+			for (int j = 0; j < order.length; ++j)
+				order[j] = j;
+
+			Arrays.sort(order, new Comparator<Integer>()
+			{
+				@Override
+				public int compare(Integer a, Integer b)
+				{
+					return names[a].compareTo(names[b]);
+				}
+			});
+
+			sorted = new int[order.length];
+			for (int j = 0; j < order.length; ++j)
+				sorted[j] = order[j];
+		}
+
+		public static PropertyOrder get(AstNode<?> n)
+		{
+			PropertyOrder order = CACHE.get(n.getClass());
+			if (order == null)
+			{
+				order = new PropertyOrder(n);
+				PropertyOrder cached = CACHE.putIfAbsent(n.getClass(), order);
+				if (cached != null)
+					order = cached;
+			}
+			return order;
+		}
+	}
 }
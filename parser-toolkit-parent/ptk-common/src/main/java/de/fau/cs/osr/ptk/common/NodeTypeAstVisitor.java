@@ -145,6 +145,92 @@ public class NodeTypeAstVisitor<T extends AstNode<T>>
 		}
 	}
 
+	/**
+	 * Like mapInPlace() but leaves the given node untouched. As soon as the
+	 * visitation of a child yields a different node, a shallow copy of the
+	 * given node is made and the results are stored in the copy, which is then
+	 * returned. If all children map to themselves, the given node is returned.
+	 * 
+	 * A pass whose visit() methods only use this method and return either
+	 * their node or a copy does not modify its input and shares all unchanged
+	 * sub-trees with its result. Keeping the input as a snapshot then costs
+	 * O(changes) instead of a deepClone() of the whole tree.
+	 */
+	protected final T mapCopyOnWrite(T node)
+	{
+		if (node == null)
+			throw new NullPointerException();
+
+		if (node.isList())
+		{
+			Object[] results = null;
+			for (int i = 0; i < node.size(); ++i)
+			{
+				T current = node.get(i);
+				Object result = dispatch(current);
+				if (result == null)
+					throw new NullPointerException();
+
+				if (results == null)
+				{
+					if (result == current)
+						continue;
+
+					results = new Object[node.size()];
+					for (int j = 0; j < i; ++j)
+						results[j] = node.get(j);
+				}
+
+				results[i] = result;
+			}
+
+			if (results == null)
+				return node;
+
+			@SuppressWarnings("unchecked")
+			T copy = (T) node.cloneWrapException();
+
+			// Re-adding splices node lists and merges text nodes just like
+			// mapInPlace() does.
+			copy.clear();
+			for (Object result : results)
+			{
+				if (result != REMOVE)
+				{
+					@SuppressWarnings("unchecked")
+					T resultNode = (T) result;
+					copy.add(resultNode);
+				}
+			}
+
+			return copy;
+		}
+		else
+		{
+			T copy = null;
+			for (int i = 0; i < node.size(); ++i)
+			{
+				T current = node.get(i);
+
+				@SuppressWarnings("unchecked")
+				T result = (T) dispatch(current);
+
+				if (result != current)
+				{
+					if (copy == null)
+					{
+						@SuppressWarnings("unchecked")
+						T tmp = (T) node.cloneWrapException();
+						copy = tmp;
+					}
+					copy.set(i, result);
+				}
+			}
+
+			return (copy != null) ? copy : node;
+		}
+	}
+
 	// =========================================================================
 
 	protected Object resolveAndVisit(T node, int type) throws Exception
@@ -0,0 +1,299 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import de.fau.cs.osr.ptk.common.ast.AstNode;
+import de.fau.cs.osr.utils.PrinterBase;
+import de.fau.cs.osr.utils.PrinterBase.State;
+import de.fau.cs.osr.utils.WrappedException;
+
+/**
+ * Renders the children of the root node concurrently and writes the results
+ * in order to the target writer. The output is identical to the output of a
+ * single {@link AstPrinter} created by the same factory.
+ *
+ * <p>
+ * Each child is rendered by its own printer which is seeded with the state
+ * the sequential printer is in when it dispatches to a child of the root.
+ * While the root is printed, the rendered output of a child is only used if
+ * the printer actually is in the seeded state. Otherwise the child is rendered
+ * in place, as it would have been without this class. Printers which render
+ * the children of the root differently than
+ * {@link AstPrinter#printListOfNodes(AstNode)} therefore still produce the
+ * right output, they just don't benefit from parallelism.
+ *
+ * <p>
+ * Printers created by the factory must not depend on the order in which
+ * nodes are visited. The before() and after() methods are not called for the
+ * printers that render the children.
+ */
+public class ParallelAstPrinter<T extends AstNode<T>>
+{
+	public static final int DEFAULT_MAX_PENDING_CHUNKS = 64;
+
+	/**
+	 * The state in which AstPrinter.printListOfNodes() dispatches to the
+	 * children of the root node: Indented once, the name of the child was
+	 * printed and the next indentation will be eaten.
+	 */
+	private static final State CHILD_OF_ROOT_STATE = new State(1, 0, 0, 1);
+
+	// =========================================================================
+
+	public interface PrinterFactory<T extends AstNode<T>>
+	{
+		public AstPrinter<T> create(Writer writer);
+	}
+
+	// =========================================================================
+
+	private final PrinterFactory<T> factory;
+
+	private final ExecutorService executor;
+
+	private int maxPendingChunks = DEFAULT_MAX_PENDING_CHUNKS;
+
+	// =========================================================================
+
+	public ParallelAstPrinter(ExecutorService executor)
+	{
+		this(new PrinterFactory<T>()
+		{
+			@Override
+			public AstPrinter<T> create(Writer writer)
+			{
+				return new AstPrinter<T>(writer, true);
+			}
+		}, executor);
+	}
+
+	public ParallelAstPrinter(PrinterFactory<T> factory, ExecutorService executor)
+	{
+		this.factory = factory;
+		this.executor = executor;
+	}
+
+	// =========================================================================
+
+	/**
+	 * The maximum number of children that are rendered ahead of the output.
+	 * Limits the amount of rendered output held in memory.
+	 */
+	public void setMaxPendingChunks(int maxPendingChunks)
+	{
+		if (maxPendingChunks < 1)
+			throw new IllegalArgumentException("maxPendingChunks must be positive");
+		this.maxPendingChunks = maxPendingChunks;
+	}
+
+	public int getMaxPendingChunks()
+	{
+		return maxPendingChunks;
+	}
+
+	// =========================================================================
+
+	public static <T extends AstNode<T>> Writer print(
+			Writer writer,
+			T node,
+			ExecutorService executor)
+	{
+		return new ParallelAstPrinter<T>(executor).print(writer, node);
+	}
+
+	public Writer print(Writer writer, T node)
+	{
+		AstPrinter<T> printer = factory.create(writer);
+		if (node.size() < 2)
+		{
+			printer.go(node);
+		}
+		else
+		{
+			Chunks chunks = new Chunks(node);
+			printer.chunks = chunks;
+			try
+			{
+				printer.go(node);
+			}
+			finally
+			{
+				printer.chunks = null;
+				chunks.cancel();
+			}
+		}
+		return writer;
+	}
+
+	// =========================================================================
+
+	/**
+	 * The rendered output of a child of the root and the state the printer was
+	 * in after rendering the child.
+	 */
+	private static final class Chunk
+	{
+		private final String output;
+
+		private final State stateOnStop;
+
+		public Chunk(String output, State stateOnStop)
+		{
+			this.output = output;
+			this.stateOnStop = stateOnStop;
+		}
+	}
+
+	interface ChunkSource<T>
+	{
+		/**
+		 * @return Whether the rendered output for the given node was written
+		 *         to the printer.
+		 */
+		public boolean replay(T node, PrinterBase p);
+	}
+
+	private final class Chunks
+			implements
+				ChunkSource<T>
+	{
+		private final List<T> children;
+
+		private final IdentityHashMap<T, Integer> indices;
+
+		private final List<Future<Chunk>> futures;
+
+		private int submitted = 0;
+
+		public Chunks(T root)
+		{
+			this.children = new ArrayList<T>(root);
+			this.indices = new IdentityHashMap<T, Integer>(children.size());
+			this.futures = new ArrayList<Future<Chunk>>(children.size());
+
+			for (int i = 0; i < children.size(); ++i)
+			{
+				T child = children.get(i);
+				// Shared nodes are rendered in place
+				if (child != null && !indices.containsKey(child))
+					indices.put(child, i);
+				futures.add(null);
+			}
+
+			submitUpTo(maxPendingChunks);
+		}
+
+		@Override
+		public boolean replay(T node, PrinterBase p)
+		{
+			Integer index = indices.get(node);
+			if (index == null)
+				return false;
+
+			submitUpTo(index + 1 + maxPendingChunks);
+			indices.remove(node);
+
+			Future<Chunk> future = futures.set(index, null);
+			if (future == null)
+				return false;
+
+			if (!p.getState().equals(CHILD_OF_ROOT_STATE))
+			{
+				future.cancel(false);
+				return false;
+			}
+
+			Chunk chunk = get(future);
+			p.replay(chunk.output, chunk.stateOnStop);
+			return true;
+		}
+
+		private void submitUpTo(int end)
+		{
+			end = Math.min(end, children.size());
+			for (; submitted < end; ++submitted)
+			{
+				final T child = children.get(submitted);
+				Integer first = (child != null) ? indices.get(child) : null;
+				if (first == null || first != submitted)
+					continue;
+
+				futures.set(submitted, executor.submit(new Callable<Chunk>()
+				{
+					@Override
+					public Chunk call() throws Exception
+					{
+						return render(child);
+					}
+				}));
+			}
+		}
+
+		public void cancel()
+		{
+			for (Future<Chunk> future : futures)
+			{
+				if (future != null)
+					future.cancel(false);
+			}
+		}
+	}
+
+	// =========================================================================
+
+	private Chunk render(T child)
+	{
+		StringWriter w = new StringWriter();
+		AstPrinter<T> printer = factory.create(w);
+		printer.p.setStateNotOut(CHILD_OF_ROOT_STATE);
+		printer.dispatch(child);
+		return new Chunk(w.toString(), printer.p.getState());
+	}
+
+	private static Chunk get(Future<Chunk> future)
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new WrappedException(e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new WrappedException(cause);
+		}
+	}
+}
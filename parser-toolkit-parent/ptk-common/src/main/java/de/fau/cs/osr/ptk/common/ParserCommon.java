@@ -17,11 +17,13 @@
 
 package de.fau.cs.osr.ptk.common;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 
 import de.fau.cs.osr.ptk.common.ast.AstNode;
+import de.fau.cs.osr.utils.visitor.VisitorMetricsSink;
 
 public abstract class ParserCommon<T extends AstNode<T>>
 		implements
@@ -29,6 +31,12 @@ public abstract class ParserCommon<T extends AstNode<T>>
 {
 	private final List<AstVisitor<T>> visitors = new LinkedList<AstVisitor<T>>();
 
+	private VisitorMetricsSink metricsSink;
+
+	private boolean keepSnapshots;
+
+	private List<T> snapshots;
+
 	// =========================================================================
 
 	@Override
@@ -53,16 +61,86 @@ public abstract class ParserCommon<T extends AstNode<T>>
 
 	public abstract Object getConfig();
 
+	/**
+	 * Sets the sink which receives the metrics of each visitor pass run by
+	 * process(). The sink overrides the visitors' own sinks for the duration
+	 * of the pass. Pass <code>null</code> to leave the visitors' sinks alone.
+	 */
+	public void setMetricsSink(VisitorMetricsSink metricsSink)
+	{
+		this.metricsSink = metricsSink;
+	}
+
+	public VisitorMetricsSink getMetricsSink()
+	{
+		return metricsSink;
+	}
+
+	/**
+	 * If enabled, process() records the tree it is given and the result of
+	 * each visitor pass. The passes have to leave their input untouched (see
+	 * AstVisitor.mapCopyOnWrite()) for the snapshots to remain valid. Since
+	 * copy-on-write passes share all unchanged sub-trees, keeping a snapshot
+	 * costs only the nodes a pass actually changed.
+	 */
+	public void setKeepSnapshots(boolean keepSnapshots)
+	{
+		this.keepSnapshots = keepSnapshots;
+		this.snapshots = null;
+	}
+
+	public boolean isKeepSnapshots()
+	{
+		return keepSnapshots;
+	}
+
+	/**
+	 * Returns the snapshots recorded by the last call to process(): the input
+	 * tree followed by the result of each visitor pass. Returns
+	 * <code>null</code> if snapshots are not kept or process() has not been
+	 * called yet.
+	 */
+	public List<T> getSnapshots()
+	{
+		return snapshots;
+	}
+
 	@SuppressWarnings("unchecked")
 	protected T process(T n)
 	{
+		List<T> snapshots = null;
+		if (keepSnapshots)
+		{
+			snapshots = new ArrayList<T>(getVisitors().size() + 1);
+			snapshots.add(n);
+		}
+
 		T result = n;
 		for (AstVisitor<T> v : getVisitors())
 		{
-			Object o = v.go(result);
+			Object o = (metricsSink != null) ? goInstrumented(v, result) : v.go(result);
 			if (o instanceof AstNode)
 				result = (T) o;
+
+			if (snapshots != null)
+				snapshots.add(result);
 		}
+
+		this.snapshots = snapshots;
 		return result;
 	}
+
+	private Object goInstrumented(AstVisitor<T> v, T n)
+	{
+		VisitorMetricsSink previous = v.getMetricsSink();
+		v.setMetricsSink(metricsSink);
+		try
+		{
+			return v.go(n);
+		}
+		finally
+		{
+			v.setMetricsSink(previous);
+		}
+	}
 }
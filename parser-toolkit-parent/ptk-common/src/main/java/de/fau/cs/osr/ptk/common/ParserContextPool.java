@@ -0,0 +1,261 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import de.fau.cs.osr.utils.ArrayStack;
+import de.fau.cs.osr.utils.FmtRuntimeException;
+
+/**
+ * A pool of parser contexts which can be shared by many {@link ParserState}
+ * instances and threads.
+ * 
+ * Released contexts are first kept in a stack owned by the releasing thread.
+ * Contexts that don't fit into the thread's stack go to a global bounded
+ * queue. A context is taken from the thread's stack, then from the global
+ * queue and is only created if both are empty. Contexts that don't fit into
+ * the global queue either are dropped.
+ */
+public class ParserContextPool<C extends ParserContext>
+{
+	public static final int DEFAULT_LOCAL_CAPACITY = 64;
+
+	public static final int DEFAULT_GLOBAL_CAPACITY = 1024;
+
+	// =========================================================================
+
+	private final Supplier<C> factory;
+
+	private final int localCapacity;
+
+	private final ThreadLocal<ArrayStack<C>> local;
+
+	/**
+	 * <code>null</code> if the global capacity is 0.
+	 */
+	private final ArrayBlockingQueue<C> global;
+
+	private final LongAdder created = new LongAdder();
+
+	private final LongAdder localHits = new LongAdder();
+
+	private final LongAdder globalHits = new LongAdder();
+
+	private final LongAdder dropped = new LongAdder();
+
+	// =========================================================================
+
+	public ParserContextPool(Class<C> contextClass)
+	{
+		this(factoryFor(contextClass));
+	}
+
+	public ParserContextPool(Supplier<C> factory)
+	{
+		this(factory, DEFAULT_LOCAL_CAPACITY, DEFAULT_GLOBAL_CAPACITY);
+	}
+
+	/**
+	 * @param localCapacity
+	 *            The maximum number of contexts kept for each thread. May be
+	 *            0.
+	 * @param globalCapacity
+	 *            The maximum number of contexts kept for all threads in
+	 *            addition to the contexts kept for each thread. May be 0.
+	 */
+	public ParserContextPool(
+			Supplier<C> factory,
+			int localCapacity,
+			int globalCapacity)
+	{
+		if (factory == null)
+			throw new NullPointerException();
+		if (localCapacity < 0 || globalCapacity < 0)
+			throw new IllegalArgumentException("Capacities must not be negative");
+
+		this.factory = factory;
+		this.localCapacity = localCapacity;
+		this.local = new ThreadLocal<ArrayStack<C>>()
+		{
+			@Override
+			protected ArrayStack<C> initialValue()
+			{
+				return new ArrayStack<C>(16, 16);
+			}
+		};
+		this.global = (globalCapacity > 0) ? new ArrayBlockingQueue<C>(globalCapacity) : null;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Creates a factory which calls the public nullary constructor of the
+	 * given class through a method handle.
+	 */
+	public static <C> Supplier<C> factoryFor(final Class<C> contextClass)
+	{
+		final MethodHandle constructor;
+		try
+		{
+			constructor = MethodHandles.publicLookup()
+					.findConstructor(contextClass, MethodType.methodType(void.class))
+					.asType(MethodType.methodType(Object.class));
+		}
+		catch (NoSuchMethodException e)
+		{
+			throw new FmtRuntimeException(
+					e,
+					"The given class `%s' has no nullary constructor.",
+					contextClass.getName());
+		}
+		catch (IllegalAccessException e)
+		{
+			throw new FmtRuntimeException(
+					e,
+					"The specified class `%s' is not accessible or its " +
+							"nullary constructor is not accessible.",
+					contextClass.getName());
+		}
+
+		return new Supplier<C>()
+		{
+			@Override
+			public C get()
+			{
+				try
+				{
+					return contextClass.cast(constructor.invokeExact());
+				}
+				catch (RuntimeException | Error e)
+				{
+					throw e;
+				}
+				catch (Throwable e)
+				{
+					throw new FmtRuntimeException(
+							e,
+							"Failed to instantiate class `%s'.",
+							contextClass.getName());
+				}
+			}
+		};
+	}
+
+	// =========================================================================
+
+	public C acquire()
+	{
+		ArrayStack<C> stack = local.get();
+		if (!stack.isEmpty())
+		{
+			localHits.increment();
+			return stack.pop();
+		}
+
+		C context = (global != null) ? global.poll() : null;
+		if (context != null)
+		{
+			globalHits.increment();
+			return context;
+		}
+
+		created.increment();
+		return factory.get();
+	}
+
+	public void release(C context)
+	{
+		ArrayStack<C> stack = local.get();
+		if (stack.size() < localCapacity)
+		{
+			stack.push(context);
+		}
+		else if (global == null || !global.offer(context))
+		{
+			dropped.increment();
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * The number of contexts kept for the calling thread.
+	 */
+	public int getLocalSize()
+	{
+		return local.get().size();
+	}
+
+	/**
+	 * The number of contexts kept in the global queue.
+	 */
+	public int getGlobalSize()
+	{
+		return (global != null) ? global.size() : 0;
+	}
+
+	/**
+	 * The number of contexts created because the pool was empty.
+	 */
+	public long getCreatedCount()
+	{
+		return created.sum();
+	}
+
+	/**
+	 * The number of contexts taken from the stack of the acquiring thread.
+	 */
+	public long getLocalHitCount()
+	{
+		return localHits.sum();
+	}
+
+	/**
+	 * The number of contexts taken from the global queue.
+	 */
+	public long getGlobalHitCount()
+	{
+		return globalHits.sum();
+	}
+
+	/**
+	 * The number of released contexts dropped because the pool was full.
+	 */
+	public long getDroppedCount()
+	{
+		return dropped.sum();
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format(
+				"ParserContextPool(created=%d, localHits=%d, globalHits=%d, dropped=%d, globalSize=%d)",
+				getCreatedCount(),
+				getLocalHitCount(),
+				getGlobalHitCount(),
+				getDroppedCount(),
+				getGlobalSize());
+	}
+}
@@ -17,33 +17,61 @@
 
 package de.fau.cs.osr.ptk.common;
 
+import java.util.function.Supplier;
+
 import de.fau.cs.osr.utils.ArrayStack;
-import de.fau.cs.osr.utils.Utils;
 import xtc.util.State;
 
 public class ParserState<C extends ParserContext>
 		implements
 			State
 {
-	private final Class<C> contextClass;
-
 	private final ArrayStack<C> stack = new ArrayStack<C>(16, 16);
 
+	private final Supplier<C> factory;
+
 	private final ArrayStack<C> pool;
 
+	private final ParserContextPool<C> sharedPool;
+
 	// =========================================================================
 
 	public ParserState()
 	{
-		this.contextClass = null;
+		this.factory = null;
 		this.pool = null;
+		this.sharedPool = null;
 		start();
 	}
 
 	public ParserState(Class<C> contextClass)
 	{
-		this.contextClass = contextClass;
+		this(ParserContextPool.factoryFor(contextClass));
+	}
+
+	/**
+	 * Creates a state with its own pool of contexts. New contexts are
+	 * created by the given factory.
+	 */
+	public ParserState(Supplier<C> factory)
+	{
+		this.factory = factory;
 		this.pool = new ArrayStack<C>(16, 16);
+		this.sharedPool = null;
+		start();
+	}
+
+	/**
+	 * Creates a state that takes its contexts from the given pool. The pool
+	 * can be shared by many parsers. Call {@link #releaseContexts()} when the
+	 * parser is no longer needed to return the remaining contexts to the
+	 * pool.
+	 */
+	public ParserState(ParserContextPool<C> sharedPool)
+	{
+		this.factory = null;
+		this.pool = null;
+		this.sharedPool = sharedPool;
 		start();
 	}
 
@@ -56,7 +84,17 @@ public class ParserState<C extends ParserContext>
 
 	public final void reset(String file)
 	{
-		stack.clear();
+		releaseContexts();
+	}
+
+	/**
+	 * Returns all contexts on the stack to the pool and leaves the stack
+	 * empty.
+	 */
+	public final void releaseContexts()
+	{
+		while (!stack.isEmpty())
+			pop();
 	}
 
 	public final void start()
@@ -88,7 +126,9 @@ public class ParserState<C extends ParserContext>
 
 	protected C instantiateContext()
 	{
-		return pool.isEmpty() ? Utils.getInstance(contextClass) : pool.pop();
+		if (sharedPool != null)
+			return sharedPool.acquire();
+		return pool.isEmpty() ? factory.get() : pool.pop();
 	}
 
 	private final void push()
@@ -98,7 +138,11 @@ public class ParserState<C extends ParserContext>
 
 	private final void pop()
 	{
-		if (pool != null)
+		if (sharedPool != null)
+		{
+			sharedPool.release(stack.pop());
+		}
+		else if (pool != null)
 		{
 			pool.push(stack.pop());
 		}
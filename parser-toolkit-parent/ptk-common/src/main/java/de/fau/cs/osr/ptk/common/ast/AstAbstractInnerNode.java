@@ -127,6 +127,8 @@ public abstract class AstAbstractInnerNode<T extends AstNode<T>>
 		@Override
 		public T set(int index, T n)
 		{
+			markModified();
+
 			if (n == null)
 				throw new NullPointerException("node may not be null");
 
@@ -214,6 +216,8 @@ public abstract class AstAbstractInnerNode<T extends AstNode<T>>
 		@Override
 		public T set(int index, T n)
 		{
+			markModified();
+
 			if (n == null)
 				throw new NullPointerException("node may not be null");
 
@@ -315,6 +319,8 @@ public abstract class AstAbstractInnerNode<T extends AstNode<T>>
 		@Override
 		public T set(int index, T n)
 		{
+			markModified();
+
 			if (n == null)
 				throw new NullPointerException("node may not be null");
 
@@ -428,6 +434,8 @@ public abstract class AstAbstractInnerNode<T extends AstNode<T>>
 		@Override
 		public T set(int index, T n)
 		{
+			markModified();
+
 			if (n == null)
 				throw new NullPointerException("node may not be null");
 
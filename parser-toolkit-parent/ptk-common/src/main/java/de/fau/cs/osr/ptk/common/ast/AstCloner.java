@@ -0,0 +1,309 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.ast;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import de.fau.cs.osr.utils.WrappedException;
+
+/**
+ * Creates deep copies of ASTs.
+ * 
+ * Unlike {@link AstNode#deepClone()} the cloner only recurses to a bounded
+ * depth. Deeper nodes whose children still have to be copied are kept on an
+ * explicit work stack, trees of arbitrary depth can therefore be copied.
+ * 
+ * Nodes which are immutable (e.g. shared singletons like an empty body) are
+ * not copied but shared by reference between the original and the copy.
+ * Which nodes are immutable is decided by the registered classes (see
+ * {@link #withSharedClass(Class)}) and an optional {@link SharingPolicy}.
+ * 
+ * Like {@link AstNode#deepClone()}, the cloner copies each node with
+ * {@link AstNode#clone()}: attribute maps are copied, property values
+ * (strings, locations, ...) are shared by reference. Node lists are copied
+ * verbatim, adjacent text nodes are not merged.
+ * 
+ * For very wide trees {@link #deepCloneParallel(AstNode, ExecutorService)}
+ * copies the sub-trees below the top levels concurrently.
+ */
+public final class AstCloner
+{
+	public static final int DEFAULT_PARALLEL_CHUNKS = 64;
+
+	private static final int MAX_RECURSION_DEPTH = 64;
+
+	// =========================================================================
+
+	public interface SharingPolicy
+	{
+		/**
+		 * Returns <code>true</code> if the given node is immutable and shall
+		 * be shared by reference instead of being copied.
+		 */
+		public boolean isShared(AstNode<?> node);
+	}
+
+	// =========================================================================
+
+	private final List<Class<?>> sharedClasses = new ArrayList<Class<?>>();
+
+	private ClassValue<Boolean> sharedCache = newSharedCache();
+
+	private SharingPolicy sharingPolicy;
+
+	private int parallelChunks = DEFAULT_PARALLEL_CHUNKS;
+
+	// =========================================================================
+
+	/**
+	 * Instances of the given class and its sub-classes are shared by
+	 * reference.
+	 */
+	public AstCloner withSharedClass(Class<?> clazz)
+	{
+		if (clazz == null)
+			throw new NullPointerException();
+		sharedClasses.add(clazz);
+		sharedCache = newSharedCache();
+		return this;
+	}
+
+	/**
+	 * Nodes for which the given policy returns <code>true</code> are shared
+	 * by reference in addition to the instances of the registered classes.
+	 */
+	public AstCloner withSharingPolicy(SharingPolicy sharingPolicy)
+	{
+		this.sharingPolicy = sharingPolicy;
+		return this;
+	}
+
+	/**
+	 * The number of tasks deepCloneParallel() splits the work into.
+	 */
+	public AstCloner withParallelChunks(int parallelChunks)
+	{
+		if (parallelChunks < 1)
+			throw new IllegalArgumentException("parallelChunks must be positive");
+		this.parallelChunks = parallelChunks;
+		return this;
+	}
+
+	public int getParallelChunks()
+	{
+		return parallelChunks;
+	}
+
+	// =========================================================================
+
+	public boolean isShared(AstNode<?> node)
+	{
+		if (sharedCache.get(node.getClass()))
+			return true;
+
+		return (sharingPolicy != null) && sharingPolicy.isShared(node);
+	}
+
+	// =========================================================================
+
+	public <N extends AstNode<?>> N deepClone(N root)
+	{
+		if (isShared(root))
+			return root;
+
+		N copy = shallowCopy(root);
+
+		ArrayDeque<AstNode<?>> stack = new ArrayDeque<AstNode<?>>();
+		stack.add(copy);
+		cloneSubtrees(stack);
+
+		return copy;
+	}
+
+	/**
+	 * Copies the top levels of the tree in the calling thread until there are
+	 * enough sub-trees left to copy to keep the executor busy. The remaining
+	 * sub-trees are then copied in parallel. Trees which are neither wide nor
+	 * bushy are copied entirely by the calling thread.
+	 */
+	public <N extends AstNode<?>> N deepCloneParallel(
+			N root,
+			ExecutorService executor)
+	{
+		if (isShared(root))
+			return root;
+
+		N copy = shallowCopy(root);
+
+		ArrayList<AstNode<?>> frontier = new ArrayList<AstNode<?>>();
+		frontier.add(copy);
+		while (!frontier.isEmpty() && frontier.size() < parallelChunks)
+		{
+			ArrayList<AstNode<?>> next = new ArrayList<AstNode<?>>();
+			for (AstNode<?> n : frontier)
+				cloneChildren(n, MAX_RECURSION_DEPTH, next);
+			frontier = next;
+		}
+
+		if (frontier.isEmpty())
+			return copy;
+
+		List<Future<?>> futures = new ArrayList<Future<?>>(parallelChunks);
+
+		int size = frontier.size();
+		for (int i = 0; i < parallelChunks; ++i)
+		{
+			final List<AstNode<?>> chunk = frontier.subList(
+					(int) ((long) size * i / parallelChunks),
+					(int) ((long) size * (i + 1) / parallelChunks));
+
+			if (chunk.isEmpty())
+				continue;
+
+			futures.add(executor.submit(new Callable<Void>()
+			{
+				@Override
+				public Void call() throws Exception
+				{
+					cloneSubtrees(new ArrayDeque<AstNode<?>>(chunk));
+					return null;
+				}
+			}));
+		}
+
+		for (Future<?> future : futures)
+			await(future);
+
+		return copy;
+	}
+
+	// =========================================================================
+
+	private ClassValue<Boolean> newSharedCache()
+	{
+		final Class<?>[] classes = sharedClasses.toArray(new Class<?>[sharedClasses.size()]);
+		return new ClassValue<Boolean>()
+		{
+			@Override
+			protected Boolean computeValue(Class<?> type)
+			{
+				for (Class<?> c : classes)
+				{
+					if (c.isAssignableFrom(type))
+						return Boolean.TRUE;
+				}
+				return Boolean.FALSE;
+			}
+		};
+	}
+
+	/**
+	 * Copies the sub-trees below each copy on the stack until the stack is
+	 * empty.
+	 */
+	private void cloneSubtrees(ArrayDeque<AstNode<?>> stack)
+	{
+		AstNode<?> n;
+		while ((n = stack.pollLast()) != null)
+			cloneChildren(n, 0, stack);
+	}
+
+	/**
+	 * The children of a shallow copy are still the children of the original.
+	 * Replaces them with shallow copies and continues with the children of
+	 * the copies. Up to MAX_RECURSION_DEPTH levels this happens recursively,
+	 * which is considerably faster than going through the work stack for
+	 * every node. Copies below that depth are collected in
+	 * <code>pending</code>.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void cloneChildren(
+			AstNode copy,
+			int depth,
+			Collection<AstNode<?>> pending)
+	{
+		int size = copy.size();
+		if (size == 0)
+			return;
+
+		// Bypass the text merging of AstNodeListImpl.set()
+		ArrayList children = (copy instanceof AstNodeListImpl) ?
+				((AstNodeListImpl) copy).getChildList() :
+				null;
+
+		for (int i = 0; i < size; ++i)
+		{
+			AstNode child = (AstNode) copy.get(i);
+			if (child == null || isShared(child))
+				continue;
+
+			AstNode childCopy = shallowCopy(child);
+			if (children != null)
+				children.set(i, childCopy);
+			else
+				copy.set(i, childCopy);
+
+			if (depth < MAX_RECURSION_DEPTH)
+				cloneChildren(childCopy, depth + 1, pending);
+			else
+				pending.add(childCopy);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <N extends AstNode<?>> N shallowCopy(N node)
+	{
+		try
+		{
+			return (N) node.clone();
+		}
+		catch (CloneNotSupportedException e)
+		{
+			throw new WrappedException(e);
+		}
+	}
+
+	private static void await(Future<?> future)
+	{
+		try
+		{
+			future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new WrappedException(e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new WrappedException(cause);
+		}
+	}
+}
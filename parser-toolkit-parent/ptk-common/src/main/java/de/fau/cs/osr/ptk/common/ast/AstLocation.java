@@ -36,6 +36,8 @@ public class AstLocation
 
 	private final int column;
 
+	private transient xtc.tree.Location xtcLocation;
+
 	// =========================================================================
 
 	public AstLocation()
@@ -64,6 +66,29 @@ public class AstLocation
 		this.file = location.file;
 		this.line = location.line;
 		this.column = location.column;
+		this.xtcLocation = location;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Packs a line and a column into a single long. Nodes store their location
+	 * in this form together with a reference to the file name and only create
+	 * an AstLocation object on request.
+	 */
+	public static long pack(int line, int column)
+	{
+		return ((long) line << 32) | (column & 0xFFFFFFFFL);
+	}
+
+	public static int unpackLine(long packed)
+	{
+		return (int) (packed >> 32);
+	}
+
+	public static int unpackColumn(long packed)
+	{
+		return (int) packed;
 	}
 
 	// =========================================================================
@@ -106,13 +131,76 @@ public class AstLocation
 	@Override
 	public String toString()
 	{
-		String file = getFile();
+		return toString(file, line, column);
+	}
+
+	public static String toString(String file, int line, int column)
+	{
 		if (file == null)
-			return getLine() + ":" + getColumn();
+			return line + ":" + column;
+
+		return encodeFile(file) + ":" + line + ":" + column;
+	}
+
+	public static AstLocation valueOf(String s)
+	{
+		int i = s.indexOf(':');
+		if (i == -1)
+			return null;
+
+		int j = s.indexOf(':', i + 1);
+		if (j == -1)
+		{
+			return new AstLocation(
+					null,
+					parseInt(s, 0, i),
+					parseInt(s, i + 1, s.length()));
+		}
+		else
+		{
+			return new AstLocation(
+					decodeFile(s, i),
+					parseInt(s, i + 1, j),
+					parseInt(s, j + 1, s.length()));
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * Nodes of one document usually all refer to the same file. Remember the
+	 * last file name that was encoded or decoded to neither re-encode nor
+	 * re-decode it for every node and to share the decoded string between
+	 * all nodes of a document.
+	 */
+	private static final class FileName
+	{
+		private final String encoded;
+
+		private final String decoded;
+
+		public FileName(String encoded, String decoded)
+		{
+			this.encoded = encoded;
+			this.decoded = decoded;
+		}
+	}
+
+	private static volatile FileName lastEncoded = new FileName("", "");
+
+	private static volatile FileName lastDecoded = new FileName("", "");
+
+	private static String encodeFile(String file)
+	{
+		FileName last = lastEncoded;
+		if (last.decoded.equals(file))
+			return last.encoded;
 
 		try
 		{
-			return URLEncoder.encode(file, "UTF-8") + ":" + getLine() + ":" + getColumn();
+			String encoded = URLEncoder.encode(file, "UTF-8");
+			lastEncoded = new FileName(encoded, file);
+			return encoded;
 		}
 		catch (UnsupportedEncodingException e)
 		{
@@ -120,37 +208,59 @@ public class AstLocation
 		}
 	}
 
-	public static AstLocation valueOf(String s)
+	private static String decodeFile(String s, int end)
 	{
-		int line;
-		int column;
-		String file = null;
+		FileName last = lastDecoded;
+		if (last.encoded.length() == end && s.startsWith(last.encoded))
+			return last.decoded;
 
-		int i = s.indexOf(':');
-		if (i == -1)
-			return null;
+		try
+		{
+			String encoded = s.substring(0, end);
+			String decoded = URLDecoder.decode(encoded, "UTF-8");
+			lastDecoded = new FileName(encoded, decoded);
+			return decoded;
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new WrappedException(e);
+		}
+	}
 
-		int j = s.indexOf(':', i + 1);
-		if (j == -1)
+	/**
+	 * Parses a decimal integer from a region of a string without creating a
+	 * substring first.
+	 */
+	private static int parseInt(String s, int from, int to)
+	{
+		if (from >= to)
+			throw new NumberFormatException("For input string: \"\"");
+
+		boolean negative = false;
+		int i = from;
+		char ch = s.charAt(i);
+		if (ch == '-' || ch == '+')
 		{
-			line = Integer.parseInt(s.substring(0, i));
-			column = Integer.parseInt(s.substring(i + 1));
+			negative = (ch == '-');
+			if (++i == to)
+				throw new NumberFormatException("For input string: \"" + s.substring(from, to) + "\"");
 		}
-		else
+
+		// Accumulate negatively to be able to represent Integer.MIN_VALUE
+		int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+		int result = 0;
+		for (; i < to; ++i)
 		{
-			try
-			{
-				file = URLDecoder.decode(s.substring(0, i), "UTF-8");
-			}
-			catch (UnsupportedEncodingException e)
-			{
-				throw new WrappedException(e);
-			}
-			line = Integer.parseInt(s.substring(i + 1, j));
-			column = Integer.parseInt(s.substring(j + 1));
+			int digit = s.charAt(i) - '0';
+			if (digit < 0 || digit > 9 || result < limit / 10)
+				throw new NumberFormatException("For input string: \"" + s.substring(from, to) + "\"");
+			result *= 10;
+			if (result < limit + digit)
+				throw new NumberFormatException("For input string: \"" + s.substring(from, to) + "\"");
+			result -= digit;
 		}
 
-		return new AstLocation(file, line, column);
+		return negative ? result : -result;
 	}
 
 	// =========================================================================
@@ -175,8 +285,19 @@ public class AstLocation
 		return column;
 	}
 
+	public long getPackedLineAndColumn()
+	{
+		return pack(line, column);
+	}
+
+	/**
+	 * The xtc location is immutable and therefore created only once.
+	 */
 	public xtc.tree.Location toXtcLocation()
 	{
-		return new xtc.tree.Location(file, line, column);
+		xtc.tree.Location l = xtcLocation;
+		if (l == null)
+			xtcLocation = l = new xtc.tree.Location(file, line, column);
+		return l;
 	}
 }
@@ -0,0 +1,748 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.ast;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Walks an AST and estimates the memory retained by each node class, broken
+ * down into the components a node consists of.
+ * 
+ * Object sizes are computed from a {@link MemoryLayout} model of the JVM's
+ * object layout or, if an {@link Instrumentation} instance is available
+ * (e.g. from a Java agent), measured with
+ * {@link Instrumentation#getObjectSize(Object)}. Internals of JDK classes
+ * which cannot be inspected (the table of a HashMap, the backing array of a
+ * String and, unless java.util is open for reflection, the capacity of an
+ * ArrayList) are always estimated with the layout model.
+ * 
+ * Objects which are referenced more than once (shared strings, boxed
+ * integers, ...) are counted only once and attributed to the node which is
+ * encountered first.
+ */
+public final class AstMemoryAnalyzer
+{
+	public enum Component
+	{
+		/**
+		 * The node object itself, including its fixed child and property
+		 * fields.
+		 */
+		NODE,
+
+		/**
+		 * The ArrayList of a node list and the used part of its backing
+		 * array.
+		 */
+		CHILDREN,
+
+		/**
+		 * The unused part of the backing array of a node list.
+		 */
+		LIST_SLACK,
+
+		/**
+		 * The content of string nodes.
+		 */
+		CONTENT,
+
+		/**
+		 * Values of properties that are not nodes themselves.
+		 */
+		PROPERTIES,
+
+		/**
+		 * The attribute map, its entries, keys and values.
+		 */
+		ATTRIBUTES,
+
+		/**
+		 * The file names of locations.
+		 */
+		LOCATION,
+
+		/**
+		 * RtData objects found in attributes or properties.
+		 */
+		RT_DATA,
+	}
+
+	private static final Component[] COMPONENTS = Component.values();
+
+	private static final Field ARRAY_LIST_ELEMENT_DATA = arrayListElementData();
+
+	private static final Class<?> HASH_MAP_NODE = hashMapNode();
+
+	// =========================================================================
+
+	private final MemoryLayout layout;
+
+	private Instrumentation instrumentation;
+
+	// =========================================================================
+
+	public AstMemoryAnalyzer()
+	{
+		this(MemoryLayout.detect());
+	}
+
+	public AstMemoryAnalyzer(MemoryLayout layout)
+	{
+		if (layout == null)
+			throw new NullPointerException();
+		this.layout = layout;
+	}
+
+	/**
+	 * Measure objects with the given instrumentation instead of the layout
+	 * model. Pass <code>null</code> to go back to the model.
+	 */
+	public void setInstrumentation(Instrumentation instrumentation)
+	{
+		this.instrumentation = instrumentation;
+	}
+
+	public MemoryLayout getLayout()
+	{
+		return layout;
+	}
+
+	// =========================================================================
+
+	public Report analyze(AstNode<?> root)
+	{
+		return new Walk().run(root);
+	}
+
+	// =========================================================================
+
+	private long sizeOf(Object o)
+	{
+		if (instrumentation != null)
+			return instrumentation.getObjectSize(o);
+		return layout.sizeOf(o);
+	}
+
+	private static Field arrayListElementData()
+	{
+		try
+		{
+			Field f = ArrayList.class.getDeclaredField("elementData");
+			f.setAccessible(true);
+			return f;
+		}
+		catch (Exception e)
+		{
+			// Not accessible (java.util is not open), fall back to the model
+			return null;
+		}
+	}
+
+	private static Class<?> hashMapNode()
+	{
+		try
+		{
+			return Class.forName("java.util.HashMap$Node");
+		}
+		catch (ClassNotFoundException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * The capacity an ArrayList reaches if the given number of elements is
+	 * added one by one.
+	 */
+	static int arrayListCapacity(int size)
+	{
+		if (size == 0)
+			return 0;
+		int capacity = 10;
+		while (capacity < size)
+			capacity += capacity >> 1;
+		return capacity;
+	}
+
+	/**
+	 * The table size a HashMap reaches if the given number of entries is put
+	 * into a map created with the default capacity and load factor.
+	 */
+	static int hashMapCapacity(int size)
+	{
+		int capacity = 16;
+		while (size > capacity * 3 / 4)
+			capacity <<= 1;
+		return capacity;
+	}
+
+	// =========================================================================
+
+	private final class Walk
+	{
+		private final Map<Class<?>, Entry> entries = new HashMap<Class<?>, Entry>();
+
+		private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+		private final ArrayDeque<AstNode<?>> stack = new ArrayDeque<AstNode<?>>();
+
+		public Report run(AstNode<?> root)
+		{
+			push(root);
+			while (!stack.isEmpty())
+				analyzeNode(stack.pop());
+			return new Report(layout, entries.values());
+		}
+
+		private void push(AstNode<?> node)
+		{
+			if (visited.add(node))
+				stack.push(node);
+		}
+
+		private void analyzeNode(AstNode<?> node)
+		{
+			Entry e = entries.get(node.getClass());
+			if (e == null)
+			{
+				e = new Entry(node.getClass());
+				entries.put(node.getClass(), e);
+			}
+
+			++e.count;
+			e.add(Component.NODE, sizeOf(node));
+
+			if (node instanceof AstNodeListImpl)
+				analyzeChildList(e, ((AstNodeListImpl<?>) node).getChildList());
+
+			if (node instanceof AstStringNode)
+				e.add(Component.CONTENT, valueSize(((AstStringNode<?>) node).getContent()));
+
+			AstNodePropertyIterator i = node.propertyIterator();
+			while (i.next())
+				e.add(componentOf(i.getValue(), Component.PROPERTIES), valueSize(i.getValue()));
+
+			if (node.hasAttributes())
+				analyzeAttributes(e, node.getAttributes());
+
+			if (node instanceof AstNodeImpl)
+			{
+				AstNodeImpl<?> impl = (AstNodeImpl<?>) node;
+				if (impl.hasLocation())
+				{
+					e.add(Component.LOCATION, valueSize(impl.getLocationFile()));
+					e.add(Component.LOCATION, valueSize(impl.getLocationView()));
+				}
+			}
+			else
+			{
+				AstLocation location = node.getNativeLocation();
+				if (location != null)
+					e.add(Component.LOCATION, valueSize(location.getFile()));
+			}
+
+			for (AstNode<?> child : node)
+				push(child);
+		}
+
+		private void analyzeChildList(Entry e, ArrayList<?> list)
+		{
+			e.add(Component.CHILDREN, sizeOf(list));
+
+			int size = list.size();
+			int capacity = capacityOf(list);
+			if (capacity == 0)
+				return;
+
+			long used = layout.arraySize(Object.class, size);
+			long all = layout.arraySize(Object.class, capacity);
+			e.add(Component.CHILDREN, used);
+			e.add(Component.LIST_SLACK, all - used);
+		}
+
+		private int capacityOf(ArrayList<?> list)
+		{
+			if (ARRAY_LIST_ELEMENT_DATA != null)
+			{
+				try
+				{
+					return ((Object[]) ARRAY_LIST_ELEMENT_DATA.get(list)).length;
+				}
+				catch (IllegalAccessException e)
+				{
+					// Fall back to the model
+				}
+			}
+			return arrayListCapacity(list.size());
+		}
+
+		private void analyzeAttributes(Entry e, Map<String, Object> attributes)
+		{
+			// getAttributes() only returns an unmodifiable view of the map
+			long map = layout.instanceSize(HashMap.class);
+			map += layout.arraySize(Object.class, hashMapCapacity(attributes.size()));
+			if (HASH_MAP_NODE != null)
+				map += attributes.size() * layout.instanceSize(HASH_MAP_NODE);
+			e.add(Component.ATTRIBUTES, map);
+
+			for (Map.Entry<String, Object> attr : attributes.entrySet())
+			{
+				e.add(Component.ATTRIBUTES, valueSize(attr.getKey()));
+				e.add(componentOf(attr.getValue(), Component.ATTRIBUTES), valueSize(attr.getValue()));
+			}
+		}
+
+		private Component componentOf(Object value, Component otherwise)
+		{
+			return (value instanceof RtData) ? Component.RT_DATA : otherwise;
+		}
+
+		/**
+		 * Size of a value that has not been counted yet. Nodes are scheduled
+		 * for analysis and don't count towards the value.
+		 */
+		private long valueSize(Object value)
+		{
+			if (value == null)
+				return 0;
+
+			if (value instanceof AstNode)
+			{
+				push((AstNode<?>) value);
+				return 0;
+			}
+
+			if (!visited.add(value))
+				return 0;
+
+			long size = sizeOf(value);
+			if (value instanceof String)
+			{
+				size += layout.stringValueSize((String) value);
+			}
+			else if (value instanceof RtData)
+			{
+				size += valueSize(((RtData) value).getFields());
+			}
+			else if (value instanceof Object[])
+			{
+				for (Object o : (Object[]) value)
+					size += valueSize(o);
+			}
+			return size;
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * The memory retained by all nodes of one class.
+	 */
+	public static final class Entry
+	{
+		private final Class<?> nodeClass;
+
+		private final long[] bytes = new long[COMPONENTS.length];
+
+		private long count;
+
+		private Entry(Class<?> nodeClass)
+		{
+			this.nodeClass = nodeClass;
+		}
+
+		private void add(Component component, long size)
+		{
+			bytes[component.ordinal()] += size;
+		}
+
+		public Class<?> getNodeClass()
+		{
+			return nodeClass;
+		}
+
+		public long getCount()
+		{
+			return count;
+		}
+
+		public long getBytes(Component component)
+		{
+			return bytes[component.ordinal()];
+		}
+
+		public long getTotal()
+		{
+			long total = 0;
+			for (long b : bytes)
+				total += b;
+			return total;
+		}
+
+		@Override
+		public String toString()
+		{
+			return nodeClass.getSimpleName() + ": count=" + count + ", bytes=" + getTotal();
+		}
+	}
+
+	// =========================================================================
+
+	public static final class Report
+	{
+		private final MemoryLayout layout;
+
+		private final List<Entry> entries;
+
+		private Report(MemoryLayout layout, Iterable<Entry> entries)
+		{
+			this.layout = layout;
+			this.entries = new ArrayList<Entry>();
+			for (Entry e : entries)
+				this.entries.add(e);
+
+			Collections.sort(this.entries, new Comparator<Entry>()
+			{
+				@Override
+				public int compare(Entry a, Entry b)
+				{
+					int cmp = Long.compare(b.getTotal(), a.getTotal());
+					if (cmp != 0)
+						return cmp;
+					return a.getNodeClass().getName().compareTo(b.getNodeClass().getName());
+				}
+			});
+		}
+
+		/**
+		 * @return The entries sorted by retained bytes, largest first.
+		 */
+		public List<Entry> getEntries()
+		{
+			return Collections.unmodifiableList(entries);
+		}
+
+		public Entry getEntry(Class<?> nodeClass)
+		{
+			for (Entry e : entries)
+			{
+				if (e.getNodeClass() == nodeClass)
+					return e;
+			}
+			return null;
+		}
+
+		public long getNodeCount()
+		{
+			long count = 0;
+			for (Entry e : entries)
+				count += e.getCount();
+			return count;
+		}
+
+		public long getBytes(Component component)
+		{
+			long total = 0;
+			for (Entry e : entries)
+				total += e.getBytes(component);
+			return total;
+		}
+
+		public long getTotal()
+		{
+			long total = 0;
+			for (Entry e : entries)
+				total += e.getTotal();
+			return total;
+		}
+
+		public String toTable()
+		{
+			String[] headers = new String[3 + COMPONENTS.length];
+			headers[0] = "Node";
+			headers[1] = "Count";
+			headers[2] = "Total";
+			for (Component c : COMPONENTS)
+				headers[3 + c.ordinal()] = c.name();
+
+			String[][] rows = new String[entries.size() + 1][];
+			for (int i = 0; i < entries.size(); ++i)
+			{
+				Entry e = entries.get(i);
+				String[] row = rows[i] = new String[headers.length];
+				row[0] = e.getNodeClass().getSimpleName();
+				row[1] = String.valueOf(e.getCount());
+				row[2] = String.valueOf(e.getTotal());
+				for (Component c : COMPONENTS)
+					row[3 + c.ordinal()] = String.valueOf(e.getBytes(c));
+			}
+
+			String[] sum = rows[entries.size()] = new String[headers.length];
+			sum[0] = "(all)";
+			sum[1] = String.valueOf(getNodeCount());
+			sum[2] = String.valueOf(getTotal());
+			for (Component c : COMPONENTS)
+				sum[3 + c.ordinal()] = String.valueOf(getBytes(c));
+
+			int[] widths = new int[headers.length];
+			for (int j = 0; j < headers.length; ++j)
+			{
+				widths[j] = headers[j].length();
+				for (String[] row : rows)
+					widths[j] = Math.max(widths[j], row[j].length());
+			}
+
+			StringBuilder b = new StringBuilder();
+			b.append("Layout: ").append(layout).append('\n');
+			appendRow(b, headers, widths);
+			for (String[] row : rows)
+				appendRow(b, row, widths);
+			return b.toString();
+		}
+
+		public String toJson()
+		{
+			StringBuilder b = new StringBuilder();
+			b.append("{\"layout\": \"").append(layout).append("\"");
+			b.append(", \"nodes\": ").append(getNodeCount());
+			b.append(", \"total\": ").append(getTotal());
+			b.append(", \"classes\": [");
+			boolean first = true;
+			for (Entry e : entries)
+			{
+				if (!first)
+					b.append(',');
+				first = false;
+
+				// Class names don't need escaping
+				b.append("\n  {\"node\": \"").append(e.getNodeClass().getName());
+				b.append("\", \"count\": ").append(e.getCount());
+				b.append(", \"total\": ").append(e.getTotal());
+				for (Component c : COMPONENTS)
+				{
+					b.append(", \"").append(c.name()).append("\": ");
+					b.append(e.getBytes(c));
+				}
+				b.append('}');
+			}
+			if (!first)
+				b.append('\n');
+			b.append("]}");
+			return b.toString();
+		}
+
+		@Override
+		public String toString()
+		{
+			return toTable();
+		}
+
+		private static void appendRow(StringBuilder b, String[] row, int[] widths)
+		{
+			for (int j = 0; j < row.length; ++j)
+			{
+				if (j > 0)
+					b.append("  ");
+				String cell = row[j];
+				if (j == 0)
+				{
+					b.append(cell);
+					for (int k = cell.length(); k < widths[j]; ++k)
+						b.append(' ');
+				}
+				else
+				{
+					for (int k = cell.length(); k < widths[j]; ++k)
+						b.append(' ');
+					b.append(cell);
+				}
+			}
+			b.append('\n');
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * A model of the object layout of a JVM in the style of JOL: Objects
+	 * consist of a header followed by their fields, arrays of a header
+	 * followed by their elements. Both are padded to the object alignment.
+	 */
+	public static final class MemoryLayout
+	{
+		/**
+		 * 64 bit JVM with compressed references (heaps below 32 GB).
+		 */
+		public static final MemoryLayout COMPRESSED_OOPS = new MemoryLayout(12, 16, 4, 8);
+
+		/**
+		 * 64 bit JVM without compressed references.
+		 */
+		public static final MemoryLayout UNCOMPRESSED_OOPS = new MemoryLayout(16, 20, 8, 8);
+
+		/**
+		 * 32 bit JVM.
+		 */
+		public static final MemoryLayout JVM_32_BIT = new MemoryLayout(8, 12, 4, 8);
+
+		private static final boolean COMPACT_STRINGS =
+				!System.getProperty("java.specification.version", "1.8").startsWith("1.");
+
+		// =====================================================================
+
+		private final int objectHeader;
+
+		private final int arrayHeader;
+
+		private final int referenceSize;
+
+		private final int alignment;
+
+		private final ConcurrentHashMap<Class<?>, Long> instanceSizes =
+				new ConcurrentHashMap<Class<?>, Long>();
+
+		// =====================================================================
+
+		public MemoryLayout(
+				int objectHeader,
+				int arrayHeader,
+				int referenceSize,
+				int alignment)
+		{
+			this.objectHeader = objectHeader;
+			this.arrayHeader = arrayHeader;
+			this.referenceSize = referenceSize;
+			this.alignment = alignment;
+		}
+
+		/**
+		 * Guesses the layout of the running JVM. Compressed references are
+		 * assumed for 64 bit JVMs with a maximum heap size below 32 GB.
+		 */
+		public static MemoryLayout detect()
+		{
+			if ("32".equals(System.getProperty("sun.arch.data.model")))
+				return JVM_32_BIT;
+			if (Runtime.getRuntime().maxMemory() < (32L << 30))
+				return COMPRESSED_OOPS;
+			return UNCOMPRESSED_OOPS;
+		}
+
+		// =====================================================================
+
+		public long sizeOf(Object o)
+		{
+			Class<?> clazz = o.getClass();
+			if (clazz.isArray())
+				return arraySize(clazz.getComponentType(), Array.getLength(o));
+			return instanceSize(clazz);
+		}
+
+		/**
+		 * The size of an instance of the given class without the objects it
+		 * references.
+		 */
+		public long instanceSize(Class<?> clazz)
+		{
+			Long size = instanceSizes.get(clazz);
+			if (size == null)
+			{
+				long fields = 0;
+				for (Class<?> c = clazz; c != null; c = c.getSuperclass())
+				{
+					for (Field f : c.getDeclaredFields())
+					{
+						if (!Modifier.isStatic(f.getModifiers()))
+							fields += fieldSize(f.getType());
+					}
+				}
+				size = align(objectHeader + fields);
+
+				Long cached = instanceSizes.putIfAbsent(clazz, size);
+				if (cached != null)
+					size = cached;
+			}
+			return size;
+		}
+
+		public long arraySize(Class<?> componentType, int length)
+		{
+			int elementSize = fieldSize(componentType);
+			long base = arrayHeader;
+			if (elementSize == 8)
+				base = (base + 7) & ~7L;
+			return align(base + (long) elementSize * length);
+		}
+
+		/**
+		 * The size of the array holding the characters of a string.
+		 */
+		public long stringValueSize(String s)
+		{
+			if (!COMPACT_STRINGS)
+				return arraySize(char.class, s.length());
+
+			for (int i = 0; i < s.length(); ++i)
+			{
+				if (s.charAt(i) > 0xFF)
+					return arraySize(byte.class, 2 * s.length());
+			}
+			return arraySize(byte.class, s.length());
+		}
+
+		private int fieldSize(Class<?> type)
+		{
+			if (!type.isPrimitive())
+				return referenceSize;
+			if (type == long.class || type == double.class)
+				return 8;
+			if (type == int.class || type == float.class)
+				return 4;
+			if (type == short.class || type == char.class)
+				return 2;
+			return 1;
+		}
+
+		private long align(long size)
+		{
+			return (size + alignment - 1) / alignment * alignment;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "header=" + objectHeader
+					+ ", arrayHeader=" + arrayHeader
+					+ ", reference=" + referenceSize
+					+ ", alignment=" + alignment;
+		}
+	}
+}
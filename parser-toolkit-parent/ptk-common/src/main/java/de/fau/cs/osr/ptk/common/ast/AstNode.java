@@ -137,4 +137,19 @@ public interface AstNode<T extends AstNode<T>>
 
 	public AstNode<T> deepCloneWrapException();
 
+	// =========================================================================
+
+	/**
+	 * Returns <code>true</code> if this node and its sub-tree cannot be
+	 * modified. Clones of frozen nodes are not frozen. Node classes which are
+	 * immutable by themselves should override this method and return
+	 * <code>true</code>.
+	 * 
+	 * @see FrozenAst
+	 */
+	public default boolean isFrozen()
+	{
+		return false;
+	}
+
 }
@@ -18,6 +18,9 @@
 package de.fau.cs.osr.ptk.common.ast;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.util.AbstractList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -43,11 +46,53 @@ public abstract class AstNodeImpl<T extends AstNode<T>>
 {
 	private static final long serialVersionUID = 3333532331617925714L;
 
+	/**
+	 * The serialized form is still the one with an AstLocation object. See
+	 * writeObject() and readObject().
+	 */
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("attributes", HashMap.class),
+			new ObjectStreamField("location", AstLocation.class) };
+
+	/**
+	 * Marks a node without location. This value can only be confused with a
+	 * location without file name at line Integer.MIN_VALUE and column 0.
+	 */
+	private static final long NO_LOCATION = Long.MIN_VALUE;
+
+	private static final int FROZEN = Integer.MIN_VALUE;
+
+	private static final int MOD_COUNT_MASK = Integer.MAX_VALUE;
+
 	// =========================================================================
 
 	private HashMap<String, Object> attributes;
 
-	private AstLocation location;
+	/**
+	 * The location is not stored as AstLocation object but as file name and
+	 * line and column packed into one long. AstLocation objects are only
+	 * created on request. A node without location pays for the long, but the
+	 * usual node of a parsed document has a location and saves the
+	 * AstLocation object.
+	 */
+	private transient String locationFile;
+
+	private transient long locationLineAndColumn = NO_LOCATION;
+
+	/**
+	 * The AstLocation view of the location, created on first request and
+	 * dropped when the location changes. The view caches the xtc location.
+	 * AstLocation is immutable, racing threads at worst create two equal
+	 * views.
+	 */
+	private transient AstLocation locationView;
+
+	/**
+	 * Counts modifications of this node (but not of its children) in the lower
+	 * 31 bits. The sign bit is set by {@link FrozenAst#freeze(AstNode)}. Not
+	 * serialized, deserialized nodes are mutable.
+	 */
+	private transient int modState;
 
 	// =========================================================================
 
@@ -127,12 +172,16 @@ public abstract class AstNodeImpl<T extends AstNode<T>>
 	@Override
 	public void setAttributes(Map<String, Object> attrs)
 	{
+		markModified();
+
 		this.attributes = new HashMap<String, Object>(attrs);
 	}
 
 	@Override
 	public void clearAttributes()
 	{
+		markModified();
+
 		this.attributes = null;
 	}
 
@@ -157,6 +206,8 @@ public abstract class AstNodeImpl<T extends AstNode<T>>
 	@Override
 	public Object setAttribute(String name, Object value)
 	{
+		markModified();
+
 		if (attributes == null)
 			attributes = new HashMap<String, Object>();
 
@@ -166,6 +217,8 @@ public abstract class AstNodeImpl<T extends AstNode<T>>
 	@Override
 	public Object removeAttribute(String name)
 	{
+		markModified();
+
 		if (attributes == null)
 			return null;
 
@@ -188,6 +241,8 @@ public abstract class AstNodeImpl<T extends AstNode<T>>
 	@Override
 	public Integer setIntAttribute(String name, Integer value)
 	{
+		markModified();
+
 		if (attributes == null)
 			attributes = new HashMap<String, Object>();
 
@@ -211,6 +266,8 @@ public abstract class AstNodeImpl<T extends AstNode<T>>
 	@Override
 	public boolean setBooleanAttribute(String name, boolean value)
 	{
+		markModified();
+
 		if (attributes == null)
 			attributes = new HashMap<String, Object>();
 
@@ -234,6 +291,8 @@ public abstract class AstNodeImpl<T extends AstNode<T>>
 	@Override
 	public String setStringAttribute(String name, String value)
 	{
+		markModified();
+
 		if (attributes == null)
 			attributes = new HashMap<String, Object>();
 
@@ -258,53 +317,64 @@ public abstract class AstNodeImpl<T extends AstNode<T>>
 	@Override
 	public Object getProperty(String name)
 	{
-		AstNodePropertyIterator i = propertyIterator();
-		while (i.next())
-		{
-			if (i.getName().equals(name))
-				return i.getValue();
-		}
-		throw new NoSuchPropertyException();
+		int index = indexOfProperty(name);
+		if (index == -1)
+			throw new NoSuchPropertyException();
+		return getProperty(index);
 	}
 
 	@Override
 	public Object getProperty(String name, Object default_)
 	{
-		AstNodePropertyIterator i = propertyIterator();
-		while (i.next())
-		{
-			if (i.getName().equals(name))
-				return i.getValue();
-		}
-		return default_;
+		int index = indexOfProperty(name);
+		return (index != -1) ? getProperty(index) : default_;
 	}
 
 	@Override
 	public boolean hasProperty(String name)
 	{
-		AstNodePropertyIterator i = propertyIterator();
-		while (i.next())
-		{
-			if (i.getName().equals(name))
-				return true;
-		}
-		return false;
+		return indexOfProperty(name) != -1;
 	}
 
 	@Override
 	public Object setProperty(String name, Object value)
 	{
+		int index = indexOfProperty(name);
+		if (index == -1)
+			throw new NoSuchPropertyException();
+		return setProperty(index, value);
+	}
+
+	/**
+	 * Node classes can override this method to access the property directly
+	 * instead of through a property iterator.
+	 */
+	@Override
+	public Object setProperty(int index, Object value)
+	{
+		// The setter behind the iterator may not check for itself
+		if (isFrozen())
+			markModified();
+
+		if (index < 0 || index >= getPropertyCount())
+			throw new IndexOutOfBoundsException();
+
+		int modifications = modState;
 		AstNodePropertyIterator i = propertyIterator();
-		while (i.next())
-		{
-			if (i.getName().equals(name))
-			{
-				Object old = i.getValue();
-				i.setValue(value);
-				return old;
-			}
-		}
-		throw new NoSuchPropertyException();
+		Object old = i.getValue(index);
+		i.setValue(index, value);
+
+		// Count the modification once, whether the setter counted it or not
+		if (modState == modifications)
+			markModified();
+		return old;
+	}
+
+	private int indexOfProperty(String name)
+	{
+		if (getPropertyCount() == 0)
+			return -1;
+		return AstPropertyTable.of(this).indexOf(name);
 	}
 
 	@Override
@@ -344,21 +414,20 @@ public abstract class AstNodeImpl<T extends AstNode<T>>
 	@Override
 	public final boolean hasLocation()
 	{
-		return location != null;
+		return locationLineAndColumn != NO_LOCATION || locationFile != null;
 	}
 
 	@Override
 	public final Location getLocation()
 	{
-		if (location == null)
-			return null;
-		return location.toXtcLocation();
+		AstLocation location = getNativeLocation();
+		return (location != null) ? location.toXtcLocation() : null;
 	}
 
 	@Override
 	public void setLocation(Location location)
 	{
-		setNativeLocation(new AstLocation(location));
+		setLocation(location.file, location.line, location.column);
 	}
 
 	@Override
@@ -373,13 +442,126 @@ public abstract class AstNodeImpl<T extends AstNode<T>>
 	@Override
 	public final AstLocation getNativeLocation()
 	{
-		return location;
+		if (!hasLocation())
+			return null;
+
+		AstLocation view = locationView;
+		if (view == null)
+		{
+			view = new AstLocation(
+					locationFile,
+					AstLocation.unpackLine(locationLineAndColumn),
+					AstLocation.unpackColumn(locationLineAndColumn));
+			locationView = view;
+		}
+		return view;
 	}
 
 	@Override
 	public void setNativeLocation(AstLocation location)
 	{
-		this.location = location;
+		markModified();
+
+		if (location == null)
+		{
+			this.locationFile = null;
+			this.locationLineAndColumn = NO_LOCATION;
+			this.locationView = null;
+		}
+		else
+		{
+			setLocation(location.getFile(), location.getLine(), location.getColumn());
+			this.locationView = location;
+		}
+	}
+
+	public void setLocation(String file, int line, int column)
+	{
+		markModified();
+
+		this.locationFile = file;
+		this.locationLineAndColumn = AstLocation.pack(line, column);
+		this.locationView = null;
+	}
+
+	/**
+	 * Returns the file name of this node's location without creating an
+	 * AstLocation object.
+	 */
+	public final String getLocationFile()
+	{
+		return locationFile;
+	}
+
+	/**
+	 * Returns the line and column of this node's location packed into one
+	 * long. Use AstLocation.unpackLine() and AstLocation.unpackColumn() to
+	 * unpack the value.
+	 */
+	public final long getLocationLineAndColumn()
+	{
+		return locationLineAndColumn;
+	}
+
+	/**
+	 * For {@link AstMemoryAnalyzer}.
+	 */
+	AstLocation getLocationView()
+	{
+		return locationView;
+	}
+
+	/**
+	 * Returns this node's location in its string form without creating an
+	 * AstLocation object or null if the node has no location.
+	 */
+	public final String getLocationString()
+	{
+		if (!hasLocation())
+			return null;
+		return AstLocation.toString(
+				locationFile,
+				AstLocation.unpackLine(locationLineAndColumn),
+				AstLocation.unpackColumn(locationLineAndColumn));
+	}
+
+	/**
+	 * Compares the locations of two nodes. The packed locations of
+	 * AstNodeImpl nodes are compared directly, without creating AstLocation
+	 * objects.
+	 */
+	public static boolean locationEquals(AstNode<?> a, AstNode<?> b)
+	{
+		if (a instanceof AstNodeImpl && b instanceof AstNodeImpl)
+		{
+			AstNodeImpl<?> x = (AstNodeImpl<?>) a;
+			AstNodeImpl<?> y = (AstNodeImpl<?>) b;
+			if (x.locationLineAndColumn != y.locationLineAndColumn)
+				return false;
+			if (x.locationFile == null)
+				return y.locationFile == null;
+			return x.locationFile.equals(y.locationFile);
+		}
+
+		AstLocation la = a.getNativeLocation();
+		AstLocation lb = b.getNativeLocation();
+		if (la == null)
+			return lb == null;
+		return la.equals(lb);
+	}
+
+	/**
+	 * Returns the location of the given node in its string form or null if
+	 * the node has no location. No AstLocation object is created for
+	 * AstNodeImpl nodes.
+	 */
+	public static String locationStringOf(AstNode<?> n)
+	{
+		if (n instanceof AstNodeImpl)
+			return ((AstNodeImpl<?>) n).getLocationString();
+
+		AstLocation location = n.getNativeLocation();
+		return (location != null) ? location.toString() : null;
 	}
 
 	// =========================================================================
@@ -492,7 +674,7 @@ public abstract class AstNodeImpl<T extends AstNode<T>>
 		@SuppressWarnings("unchecked")
 		AstNodeImpl<T> n = (AstNodeImpl<T>) super.clone();
 
-		// we don't clone the location since a location is immutable
+		n.modState = 0;
 
 		if (n.attributes != null)
 			n.attributes = new HashMap<String, Object>(n.attributes);
@@ -561,6 +743,77 @@ public abstract class AstNodeImpl<T extends AstNode<T>>
 
 	// =========================================================================
 
+	@Override
+	public final boolean isFrozen()
+	{
+		return modState < 0;
+	}
+
+	final void freeze()
+	{
+		modState |= FROZEN;
+	}
+
+	/**
+	 * Returns the number of modifications of this node's attributes,
+	 * properties, location or children since it was created or cloned. The
+	 * count does not include modifications of the children themselves and
+	 * wraps around after 2^31 modifications. Serializers use it to detect
+	 * nodes that changed since they were last serialized.
+	 */
+	public final int getModificationCount()
+	{
+		return modState & MOD_COUNT_MASK;
+	}
+
+	/**
+	 * Throws an UnsupportedOperationException if this node is frozen and
+	 * increments the modification count otherwise. Node classes have to call
+	 * this method before they modify their fields.
+	 */
+	protected final void markModified()
+	{
+		if (modState < 0)
+		{
+			throw new UnsupportedOperationException(
+					"You are operating on a frozen " + getNodeName() + " object!");
+		}
+		modState = (modState + 1) & MOD_COUNT_MASK;
+	}
+
+	// =========================================================================
+
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("attributes", attributes);
+		fields.put("location", getNativeLocation());
+		out.writeFields();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		ObjectInputStream.GetField fields = in.readFields();
+		attributes = (HashMap<String, Object>) fields.get("attributes", null);
+
+		// Field initializers are not run for deserialized objects
+		AstLocation location = (AstLocation) fields.get("location", null);
+		if (location == null)
+		{
+			locationFile = null;
+			locationLineAndColumn = NO_LOCATION;
+		}
+		else
+		{
+			locationFile = location.getFile();
+			locationLineAndColumn = AstLocation.pack(location.getLine(), location.getColumn());
+		}
+		locationView = location;
+	}
+
+	// =========================================================================
+
 	/* hashCode is omitted intentionally. It's hard to implement a meaningful
 	 * hashCode method that does NOT recurse into the subtree. But recursing the
 	 * whole subtree defeats the purpose of a hash function, which should be
@@ -588,12 +841,7 @@ public abstract class AstNodeImpl<T extends AstNode<T>>
 			AstNode<S> b)
 	{
 		// Check location
-		if (a.getNativeLocation() == null)
-		{
-			if (b.getNativeLocation() != null)
-				return false;
-		}
-		else if (!a.getNativeLocation().equals(b.getNativeLocation()))
+		if (!locationEquals(a, b))
 			return false;
 
 		// Check attributes
@@ -18,6 +18,7 @@
 package de.fau.cs.osr.ptk.common.ast;
 
 import java.io.IOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
@@ -136,7 +137,7 @@ public class AstNodeListImpl<T extends AstNode<T>>
 	@Override
 	public Iterator<T> iterator()
 	{
-		return children.iterator();
+		return new ChildIterator();
 	}
 
 	@Override
@@ -156,12 +157,16 @@ public class AstNodeListImpl<T extends AstNode<T>>
 	@Override
 	public boolean add(T e)
 	{
+		markModified();
+
 		return addIntern(children, e);
 	}
 
 	@Override
 	public boolean remove(Object o)
 	{
+		markModified();
+
 		return children.remove(o);
 	}
 
@@ -176,30 +181,40 @@ public class AstNodeListImpl<T extends AstNode<T>>
 	@Override
 	public boolean addAll(Collection<? extends T> c)
 	{
+		markModified();
+
 		return addAllIntern(children, c);
 	}
 
 	@Override
 	public boolean addAll(int index, Collection<? extends T> c)
 	{
+		markModified();
+
 		return addAllIntern(children, index, c);
 	}
 
 	@Override
 	public boolean removeAll(Collection<?> c)
 	{
+		markModified();
+
 		return children.removeAll(c);
 	}
 
 	@Override
 	public boolean retainAll(Collection<?> c)
 	{
+		markModified();
+
 		return children.retainAll(c);
 	}
 
 	@Override
 	public void clear()
 	{
+		markModified();
+
 		children.clear();
 	}
 
@@ -214,6 +229,8 @@ public class AstNodeListImpl<T extends AstNode<T>>
 	@Override
 	public T set(int index, T value)
 	{
+		markModified();
+
 		if (value == null)
 		{
 			throw new NullPointerException(
@@ -271,6 +288,8 @@ public class AstNodeListImpl<T extends AstNode<T>>
 	@Override
 	public void add(int index, T element)
 	{
+		markModified();
+
 		addIntern(children, index, element);
 	}
 
@@ -379,6 +398,8 @@ public class AstNodeListImpl<T extends AstNode<T>>
 	@Override
 	public T remove(int index)
 	{
+		markModified();
+
 		return children.remove(index);
 	}
 
@@ -415,7 +436,7 @@ public class AstNodeListImpl<T extends AstNode<T>>
 	@Override
 	public List<T> subList(int fromIndex, int toIndex)
 	{
-		return children.subList(fromIndex, toIndex);
+		return new ChildSubList(children.subList(fromIndex, toIndex));
 	}
 
 	// =========================================================================
@@ -424,6 +445,8 @@ public class AstNodeListImpl<T extends AstNode<T>>
 	@Override
 	public boolean addAll(Pair<? extends T> p)
 	{
+		markModified();
+
 		boolean changed = false;
 		while (!p.isEmpty())
 		{
@@ -478,9 +501,13 @@ public class AstNodeListImpl<T extends AstNode<T>>
 	@Override
 	public void exchange(AstNodeList<T> other)
 	{
+		markModified();
+
 		if (other instanceof AstNodeListImpl)
 		{
 			AstNodeListImpl<T> other2 = (AstNodeListImpl<T>) other;
+			other2.markModified();
+
 			ArrayList<T> tmp = this.children;
 			this.children = other2.children;
 			other2.children = tmp;
@@ -503,6 +530,100 @@ public class AstNodeListImpl<T extends AstNode<T>>
 		return clone;
 	}
 
+	/**
+	 * For {@link AstMemoryAnalyzer}.
+	 */
+	ArrayList<T> getChildList()
+	{
+		return children;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Counts removals as modifications of the list.
+	 */
+	private final class ChildIterator
+			implements
+				Iterator<T>
+	{
+		private final Iterator<T> i = children.iterator();
+
+		@Override
+		public boolean hasNext()
+		{
+			return i.hasNext();
+		}
+
+		@Override
+		public T next()
+		{
+			return i.next();
+		}
+
+		@Override
+		public void remove()
+		{
+			markModified();
+
+			i.remove();
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * Counts all modifications through the view as modifications of the
+	 * list.
+	 */
+	private final class ChildSubList
+			extends
+				AbstractList<T>
+	{
+		private final List<T> view;
+
+		public ChildSubList(List<T> view)
+		{
+			this.view = view;
+		}
+
+		@Override
+		public T get(int index)
+		{
+			return view.get(index);
+		}
+
+		@Override
+		public int size()
+		{
+			return view.size();
+		}
+
+		@Override
+		public T set(int index, T element)
+		{
+			markModified();
+
+			return view.set(index, element);
+		}
+
+		@Override
+		public void add(int index, T element)
+		{
+			markModified();
+
+			view.add(index, element);
+		}
+
+		@Override
+		public T remove(int index)
+		{
+			markModified();
+
+			return view.remove(index);
+		}
+	}
+
 	// =========================================================================
 
 	private final class ChildListIterator
@@ -568,6 +689,8 @@ public class AstNodeListImpl<T extends AstNode<T>>
 		@Override
 		public void remove()
 		{
+			markModified();
+
 			i.remove();
 			current = null;
 		}
@@ -575,6 +698,8 @@ public class AstNodeListImpl<T extends AstNode<T>>
 		@Override
 		public void set(T e)
 		{
+			markModified();
+
 			if (e == null)
 			{
 				throw new NullPointerException(
@@ -655,6 +780,8 @@ public class AstNodeListImpl<T extends AstNode<T>>
 		@Override
 		public void add(T e)
 		{
+			markModified();
+
 			if (e != null)
 			{
 				current = null;
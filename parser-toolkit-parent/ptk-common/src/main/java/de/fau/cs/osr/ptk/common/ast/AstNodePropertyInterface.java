@@ -31,6 +31,44 @@ public interface AstNodePropertyInterface
 
 	public Object setProperty(String name, Object value);
 
+	/**
+	 * Returns the value of the property with the given index. The index is
+	 * the position of the property in the iteration order of
+	 * {@link #propertyIterator()}. Use {@link AstPropertyTable} or
+	 * {@link PropertyKey} to resolve names to indices. The default
+	 * implementation goes through {@link #propertyIterator()}. Node classes
+	 * can override this method to access their properties directly.
+	 * 
+	 * @throws IndexOutOfBoundsException
+	 *             If the index is negative or not smaller than
+	 *             {@link #getPropertyCount()}.
+	 */
+	public default Object getProperty(int index)
+	{
+		if (index < 0 || index >= getPropertyCount())
+			throw new IndexOutOfBoundsException();
+		return propertyIterator().getValue(index);
+	}
+
+	/**
+	 * Sets the value of the property with the given index. The default
+	 * implementation goes through {@link #propertyIterator()}.
+	 * 
+	 * @return The previous value of the property.
+	 * @throws IndexOutOfBoundsException
+	 *             If the index is negative or not smaller than
+	 *             {@link #getPropertyCount()}.
+	 */
+	public default Object setProperty(int index, Object value)
+	{
+		if (index < 0 || index >= getPropertyCount())
+			throw new IndexOutOfBoundsException();
+		AstNodePropertyIterator i = propertyIterator();
+		Object old = i.getValue(index);
+		i.setValue(index, value);
+		return old;
+	}
+
 	/**
 	 * Return an iterator which iterates over this node's properties. Though
 	 * order is not important for properties, this method <b>must always</b>
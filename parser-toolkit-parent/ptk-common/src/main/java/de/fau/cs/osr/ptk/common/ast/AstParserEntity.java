@@ -45,6 +45,8 @@ public class AstParserEntity<T extends AstNode<T>>
 
 	public int setId(int id)
 	{
+		markModified();
+
 		int old = this.id;
 		this.id = id;
 		return old;
@@ -56,6 +58,22 @@ public class AstParserEntity<T extends AstNode<T>>
 		return 1;
 	}
 
+	@Override
+	public Object getProperty(int index)
+	{
+		if (index == 0)
+			return getId();
+		return super.getProperty(index);
+	}
+
+	@Override
+	public Object setProperty(int index, Object value)
+	{
+		if (index == 0)
+			return setId((Integer) value);
+		return super.setProperty(index, value);
+	}
+
 	@Override
 	public AstNodePropertyIterator propertyIterator()
 	{
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.ast;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The names of the properties of a node class and their indices. All nodes of
+ * the same class have the same properties in the same order (see
+ * {@link AstNodePropertyInterface#propertyIterator()}), therefore the table
+ * is only built once per class.
+ */
+public final class AstPropertyTable
+{
+	private static final ConcurrentHashMap<Class<?>, AstPropertyTable> TABLES =
+			new ConcurrentHashMap<Class<?>, AstPropertyTable>();
+
+	private static final AstPropertyTable EMPTY = new AstPropertyTable(new String[0]);
+
+	// =========================================================================
+
+	private final String[] names;
+
+	private final HashMap<String, Integer> indices;
+
+	// =========================================================================
+
+	private AstPropertyTable(String[] names)
+	{
+		this.names = names;
+		this.indices = new HashMap<String, Integer>(names.length * 2);
+		for (int i = 0; i < names.length; ++i)
+			indices.put(names[i], i);
+	}
+
+	/**
+	 * Returns the property table of the given node's class.
+	 */
+	public static AstPropertyTable of(AstNodePropertyInterface node)
+	{
+		if (node.getPropertyCount() == 0)
+			return EMPTY;
+
+		Class<?> clazz = node.getClass();
+		AstPropertyTable table = TABLES.get(clazz);
+		if (table == null)
+		{
+			String[] names = new String[node.getPropertyCount()];
+
+			int i = 0;
+			AstNodePropertyIterator j = node.propertyIterator();
+			while (j.next())
+				names[i++] = j.getName();
+
+			table = new AstPropertyTable(names);
+			AstPropertyTable cached = TABLES.putIfAbsent(clazz, table);
+			if (cached != null)
+				table = cached;
+		}
+		return table;
+	}
+
+	// =========================================================================
+
+	public int size()
+	{
+		return names.length;
+	}
+
+	public String getName(int index)
+	{
+		return names[index];
+	}
+
+	/**
+	 * @return The index of the property with the given name or -1 if the
+	 *         class has no such property.
+	 */
+	public int indexOf(String name)
+	{
+		Integer index = indices.get(name);
+		return (index != null) ? index : -1;
+	}
+
+	public boolean contains(String name)
+	{
+		return indices.containsKey(name);
+	}
+
+	/**
+	 * @return A copy of the property names in iteration order.
+	 */
+	public String[] getNames()
+	{
+		return names.clone();
+	}
+}
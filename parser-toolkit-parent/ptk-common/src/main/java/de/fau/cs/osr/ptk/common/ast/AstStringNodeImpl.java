@@ -51,6 +51,8 @@ public abstract class AstStringNodeImpl<T extends AstNode<T>>
 	@Override
 	public void setContent(String content)
 	{
+		markModified();
+
 		if (content == null)
 			throw new NullPointerException();
 		this.content = content;
@@ -62,6 +64,29 @@ public abstract class AstStringNodeImpl<T extends AstNode<T>>
 		return 1;
 	}
 
+	/**
+	 * The content is the first property, properties of subclasses follow.
+	 */
+	@Override
+	public Object getProperty(int index)
+	{
+		if (index == 0)
+			return getContent();
+		return super.getProperty(index);
+	}
+
+	@Override
+	public Object setProperty(int index, Object value)
+	{
+		if (index == 0)
+		{
+			String old = getContent();
+			setContent((String) value);
+			return old;
+		}
+		return super.setProperty(index, value);
+	}
+
 	@Override
 	public AstNodePropertyIterator propertyIterator()
 	{
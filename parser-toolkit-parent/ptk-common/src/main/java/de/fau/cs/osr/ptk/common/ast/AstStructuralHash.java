@@ -0,0 +1,126 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.ast;
+
+import java.util.Arrays;
+
+/**
+ * Computes a hash code over the structure and content of an AST: the node
+ * classes, the property values and the children. Attributes and locations
+ * are not included. Trees which are considered equal by the
+ * {@link de.fau.cs.osr.ptk.common.comparer.AstComparer} therefore have equal
+ * hashes, regardless of whether the comparison includes attributes and
+ * locations, as long as their property values implement hashCode()
+ * consistently with the comparison.
+ * 
+ * Property values contribute their own hashCode(), property values which are
+ * AST nodes contribute only their class. The hash is therefore only as
+ * stable as the hash codes of the property values; for strings and numbers
+ * it does not change between JVM runs.
+ * 
+ * The tree is walked iteratively, trees of arbitrary depth can be hashed.
+ */
+public final class AstStructuralHash
+{
+	private static final int INITIAL_DEPTH = 32;
+
+	// =========================================================================
+
+	private AstStructuralHash()
+	{
+	}
+
+	// =========================================================================
+
+	public static int hash(AstNode<?> root)
+	{
+		if (root == null)
+			throw new NullPointerException();
+
+		AstNode<?>[] nodes = new AstNode<?>[INITIAL_DEPTH];
+		int[] next = new int[INITIAL_DEPTH];
+		int[] hashes = new int[INITIAL_DEPTH];
+
+		int top = 0;
+		nodes[0] = root;
+		hashes[0] = nodeHash(root);
+
+		while (true)
+		{
+			AstNode<?> n = nodes[top];
+			int i = next[top];
+			if (i < n.size())
+			{
+				next[top] = i + 1;
+
+				AstNode<?> child = n.get(i);
+				if (child == null)
+				{
+					hashes[top] = 31 * hashes[top];
+					continue;
+				}
+
+				if (++top == nodes.length)
+				{
+					nodes = Arrays.copyOf(nodes, top * 2);
+					next = Arrays.copyOf(next, top * 2);
+					hashes = Arrays.copyOf(hashes, top * 2);
+				}
+
+				nodes[top] = child;
+				next[top] = 0;
+				hashes[top] = nodeHash(child);
+			}
+			else
+			{
+				int h = hashes[top];
+				nodes[top] = null;
+				if (top-- == 0)
+					return h;
+				hashes[top] = 31 * hashes[top] + h;
+			}
+		}
+	}
+
+	/**
+	 * The hash of a node without its children.
+	 */
+	static int nodeHash(AstNode<?> n)
+	{
+		int h = n.getClass().getName().hashCode();
+
+		int count = n.getPropertyCount();
+		if (count > 0)
+		{
+			AstNodePropertyIterator i = n.propertyIterator();
+			while (i.next())
+				h = 31 * h + valueHash(i.getValue());
+		}
+
+		return h;
+	}
+
+	private static int valueHash(Object value)
+	{
+		if (value == null)
+			return 0;
+		if (value instanceof AstNode)
+			return value.getClass().getName().hashCode();
+		return value.hashCode();
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.ast;
+
+import java.util.ArrayDeque;
+
+/**
+ * An AST that cannot be modified and can be shared between threads without
+ * copying or locking.
+ * 
+ * {@link #freeze(AstNode)} marks every node of the tree as frozen. From then
+ * on all operations that would modify a node (set(), add(), setAttribute(),
+ * setProperty(), setLocation(), ...) throw an
+ * {@link UnsupportedOperationException}. Clones of frozen nodes are not
+ * frozen; {@link PersistentAst} and {@link AstCloner} can therefore be used to
+ * derive modified trees which share all unchanged sub-trees with the frozen
+ * tree.
+ * 
+ * The root is held in a final field. Under the Java memory model every thread
+ * that sees a FrozenAst instance also sees the tree in the state it was in
+ * when it was frozen, even if the instance was published without
+ * synchronization (e.g. through a plain field of a cache).
+ * 
+ * Since the tree cannot change, derived data (node count, structural hash)
+ * is computed once on first request and cached.
+ */
+public final class FrozenAst<N extends AstNode<?>>
+{
+	private final N root;
+
+	/**
+	 * The cached values are racy but idempotent: a thread that sees zero
+	 * computes the value itself. A tree whose hash is zero is hashed on each
+	 * request, like String.hashCode() does.
+	 */
+	private int nodeCount;
+
+	private int structuralHash;
+
+	// =========================================================================
+
+	private FrozenAst(N root)
+	{
+		this.root = root;
+	}
+
+	/**
+	 * Freezes the given tree. Sub-trees which are already frozen are not
+	 * visited again, freezing a tree derived from a frozen tree with
+	 * {@link PersistentAst} only costs the nodes that were copied.
+	 * 
+	 * Sub-trees shared with other trees are frozen in those trees too.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             If the tree contains a node which neither extends
+	 *             {@link AstNodeImpl} nor returns <code>true</code> from
+	 *             {@link AstNode#isFrozen()}. Node classes which are immutable
+	 *             by themselves have to override isFrozen() accordingly.
+	 */
+	public static <N extends AstNode<?>> FrozenAst<N> freeze(N root)
+	{
+		if (root == null)
+			throw new NullPointerException();
+
+		ArrayDeque<AstNode<?>> stack = new ArrayDeque<AstNode<?>>();
+		stack.push(root);
+		while (!stack.isEmpty())
+		{
+			AstNode<?> n = stack.pop();
+			if (n.isFrozen())
+				continue;
+
+			if (!(n instanceof AstNodeImpl))
+			{
+				throw new UnsupportedOperationException(
+						"Cannot freeze node of type " + n.getNodeTypeName());
+			}
+
+			((AstNodeImpl<?>) n).freeze();
+
+			for (AstNode<?> child : n)
+			{
+				if (child != null)
+					stack.push(child);
+			}
+		}
+
+		return new FrozenAst<N>(root);
+	}
+
+	// =========================================================================
+
+	public N getRoot()
+	{
+		return root;
+	}
+
+	public int getNodeCount()
+	{
+		int count = nodeCount;
+		if (count == 0)
+		{
+			ArrayDeque<AstNode<?>> stack = new ArrayDeque<AstNode<?>>();
+			stack.push(root);
+			while (!stack.isEmpty())
+			{
+				AstNode<?> n = stack.pop();
+				++count;
+				for (AstNode<?> child : n)
+				{
+					if (child != null)
+						stack.push(child);
+				}
+			}
+			nodeCount = count;
+		}
+		return count;
+	}
+
+	/**
+	 * @see AstStructuralHash
+	 */
+	public int getStructuralHash()
+	{
+		int hash = structuralHash;
+		if (hash == 0)
+		{
+			hash = AstStructuralHash.hash(root);
+			structuralHash = hash;
+		}
+		return hash;
+	}
+}
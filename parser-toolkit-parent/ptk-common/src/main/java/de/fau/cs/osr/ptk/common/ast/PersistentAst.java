@@ -0,0 +1,238 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.ast;
+
+/**
+ * Persistent (copy-on-write) operations on ASTs.
+ * 
+ * None of the operations modifies the tree it is given. Instead, the nodes on
+ * the path from the root to the modified node are shallow copied (see
+ * {@link AstNode#clone()}) and the new root is returned. All sub-trees which
+ * are not on the path are shared between the old and the new tree. An
+ * operation therefore costs O(depth) node copies (plus the length of a child
+ * list for every list node on the path) instead of the O(tree) of a
+ * {@link AstNode#deepClone()}, and the old root remains a valid snapshot of
+ * the tree before the modification.
+ * 
+ * Nodes are addressed by a path of child indices starting at the root. The
+ * empty path denotes the root itself.
+ * 
+ * A tree that is modified persistently must not be modified in place at the
+ * same time, since shared sub-trees would change in all snapshots.
+ */
+public final class PersistentAst
+{
+	private static final int[] ROOT = new int[0];
+
+	// =========================================================================
+
+	/**
+	 * Receives the copy of the node that is to be modified.
+	 */
+	public interface Update<T extends AstNode<T>>
+	{
+		public void apply(T copy);
+	}
+
+	// =========================================================================
+
+	private PersistentAst()
+	{
+	}
+
+	// =========================================================================
+
+	public static <T extends AstNode<T>> T get(T root, int... path)
+	{
+		T n = root;
+		for (int index : path)
+			n = n.get(index);
+		return n;
+	}
+
+	/**
+	 * Replaces the node at the given path. The root can be replaced too, in
+	 * which case the given node is returned.
+	 */
+	public static <T extends AstNode<T>> T set(
+			T root,
+			int[] path,
+			final T node)
+	{
+		if (path.length == 0)
+			return node;
+
+		final int index = path[path.length - 1];
+		return update(root, parentPath(path), new Update<T>()
+		{
+			@Override
+			public void apply(T copy)
+			{
+				copy.set(index, node);
+			}
+		});
+	}
+
+	/**
+	 * Inserts a node into a node list. The last element of the path is the
+	 * insertion index, the elements before it address the list.
+	 */
+	public static <T extends AstNode<T>> T add(
+			T root,
+			int[] path,
+			final T node)
+	{
+		if (path.length == 0)
+			throw new IllegalArgumentException("Cannot insert a root node");
+
+		final int index = path[path.length - 1];
+		return update(root, parentPath(path), new Update<T>()
+		{
+			@Override
+			public void apply(T copy)
+			{
+				copy.add(index, node);
+			}
+		});
+	}
+
+	/**
+	 * Removes the node at the given path from its node list.
+	 */
+	public static <T extends AstNode<T>> T remove(T root, int[] path)
+	{
+		if (path.length == 0)
+			throw new IllegalArgumentException("Cannot remove the root node");
+
+		final int index = path[path.length - 1];
+		return update(root, parentPath(path), new Update<T>()
+		{
+			@Override
+			public void apply(T copy)
+			{
+				copy.remove(index);
+			}
+		});
+	}
+
+	public static <T extends AstNode<T>> T setProperty(
+			T root,
+			int[] path,
+			final String name,
+			final Object value)
+	{
+		return update(root, path, new Update<T>()
+		{
+			@Override
+			public void apply(T copy)
+			{
+				copy.setProperty(name, value);
+			}
+		});
+	}
+
+	public static <T extends AstNode<T>> T setAttribute(
+			T root,
+			int[] path,
+			final String name,
+			final Object value)
+	{
+		return update(root, path, new Update<T>()
+		{
+			@Override
+			public void apply(T copy)
+			{
+				copy.setAttribute(name, value);
+			}
+		});
+	}
+
+	public static <T extends AstNode<T>> T removeAttribute(
+			T root,
+			int[] path,
+			final String name)
+	{
+		return update(root, path, new Update<T>()
+		{
+			@Override
+			public void apply(T copy)
+			{
+				copy.removeAttribute(name);
+			}
+		});
+	}
+
+	/**
+	 * Applies an arbitrary modification to a copy of the node at the given
+	 * path. The update must only modify the copy it is given, not the
+	 * children of the copy, since those are shared with the original tree.
+	 */
+	public static <T extends AstNode<T>> T update(
+			T root,
+			int[] path,
+			Update<T> update)
+	{
+		if (root == null)
+			throw new NullPointerException();
+
+		// Collect the nodes on the path, the root is ancestors[0]
+		@SuppressWarnings("unchecked")
+		T[] ancestors = (T[]) new AstNode[path.length];
+		T n = root;
+		for (int i = 0; i < path.length; ++i)
+		{
+			ancestors[i] = n;
+			n = n.get(path[i]);
+		}
+
+		T copy = shallowCopy(n);
+		update.apply(copy);
+
+		for (int i = path.length - 1; i >= 0; --i)
+		{
+			T parent = shallowCopy(ancestors[i]);
+			parent.set(path[i], copy);
+			copy = parent;
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Returns the root path, for readability at call sites.
+	 */
+	public static int[] root()
+	{
+		return ROOT;
+	}
+
+	// =========================================================================
+
+	@SuppressWarnings("unchecked")
+	private static <T extends AstNode<T>> T shallowCopy(T node)
+	{
+		return (T) node.cloneWrapException();
+	}
+
+	private static int[] parentPath(int[] path)
+	{
+		int[] parent = new int[path.length - 1];
+		System.arraycopy(path, 0, parent, 0, parent.length);
+		return parent;
+	}
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.ast;
+
+/**
+ * A handle for a property that can be accessed on nodes of different
+ * classes. The index of the property is resolved once per node class and
+ * cached for the class that was accessed last. Accessing the property on
+ * nodes of the same class therefore doesn't look up the name again.
+ * 
+ * <pre>
+ * static final PropertyKey CONTENT = new PropertyKey("content");
+ * ...
+ * String content = (String) CONTENT.get(node);
+ * </pre>
+ */
+public final class PropertyKey
+{
+	private final String name;
+
+	private volatile Resolved resolved;
+
+	// =========================================================================
+
+	public PropertyKey(String name)
+	{
+		if (name == null)
+			throw new NullPointerException();
+		this.name = name;
+		this.resolved = new Resolved(null, -1);
+	}
+
+	// =========================================================================
+
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * @return The index of the property in the given node or -1 if the node
+	 *         doesn't have this property.
+	 */
+	public int indexIn(AstNodePropertyInterface node)
+	{
+		Class<?> clazz = node.getClass();
+		Resolved r = resolved;
+		if (r.clazz != clazz)
+		{
+			r = new Resolved(clazz, AstPropertyTable.of(node).indexOf(name));
+			resolved = r;
+		}
+		return r.index;
+	}
+
+	public boolean isPresentIn(AstNodePropertyInterface node)
+	{
+		return indexIn(node) != -1;
+	}
+
+	/**
+	 * @throws NoSuchPropertyException
+	 *             If the node doesn't have this property.
+	 */
+	public Object get(AstNodePropertyInterface node)
+	{
+		int index = indexIn(node);
+		if (index == -1)
+			throw new NoSuchPropertyException();
+		return node.getProperty(index);
+	}
+
+	public Object get(AstNodePropertyInterface node, Object default_)
+	{
+		int index = indexIn(node);
+		return (index != -1) ? node.getProperty(index) : default_;
+	}
+
+	/**
+	 * @return The previous value of the property.
+	 * @throws NoSuchPropertyException
+	 *             If the node doesn't have this property.
+	 */
+	public Object set(AstNodePropertyInterface node, Object value)
+	{
+		int index = indexIn(node);
+		if (index == -1)
+			throw new NoSuchPropertyException();
+		return node.setProperty(index, value);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "PropertyKey(" + name + ")";
+	}
+
+	// =========================================================================
+
+	private static final class Resolved
+	{
+		final Class<?> clazz;
+
+		final int index;
+
+		public Resolved(Class<?> clazz, int index)
+		{
+			this.clazz = clazz;
+			this.index = index;
+		}
+	}
+}
@@ -22,6 +22,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import de.fau.cs.osr.ptk.common.ast.AstNode;
+import de.fau.cs.osr.ptk.common.ast.AstNodeImpl;
 import de.fau.cs.osr.ptk.common.ast.AstNodePropertyIterator;
 import de.fau.cs.osr.utils.ComparisonException;
 import de.fau.cs.osr.utils.DeepComparer;
@@ -72,16 +73,8 @@ public class AstNodeComparerDelegate
 		if (a.getClass() != b.getClass())
 			throw new AstComparisonException(a, b, AstDifference.NODE_TYPES_DIFFER);
 
-		if (compareLocation)
-		{
-			if (a.getNativeLocation() == null)
-			{
-				if (b.getNativeLocation() != null)
-					throw new AstComparisonException(a, b, AstDifference.LOCATION_DIFFERS);
-			}
-			else if (!a.getNativeLocation().equals(b.getNativeLocation()))
-				throw new AstComparisonException(a, b, AstDifference.LOCATION_DIFFERS);
-		}
+		if (compareLocation && !AstNodeImpl.locationEquals(a, b))
+			throw new AstComparisonException(a, b, AstDifference.LOCATION_DIFFERS);
 
 		// Compare attributes
 		if (compareAttributes)
@@ -16,15 +16,43 @@
  */
 package de.fau.cs.osr.ptk.common.serialization;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class AstConverterBase
 {
+	private static final AtomicLong SETTINGS_STAMPS = new AtomicLong();
+
+	// =========================================================================
+
 	private TypeNameMapper typeNameMapper = new SimpleTypeNameMapper();
 
+	private volatile long settingsStamp = SETTINGS_STAMPS.incrementAndGet();
+
 	// =========================================================================
 
 	public void setTypeNameMapper(TypeNameMapper typeNameMapper)
 	{
 		this.typeNameMapper = typeNameMapper;
+		settingsChanged();
+	}
+
+	/**
+	 * Returns a value which identifies the current settings of this converter.
+	 * No two converters share a stamp and every change of the settings draws
+	 * a new one. Caches of serialized output use it as part of their keys.
+	 */
+	public long getSettingsStamp()
+	{
+		return settingsStamp;
+	}
+
+	/**
+	 * Subclasses call this method whenever a setting changes which affects
+	 * the serialized output.
+	 */
+	protected void settingsChanged()
+	{
+		settingsStamp = SETTINGS_STAMPS.incrementAndGet();
 	}
 
 	// =========================================================================
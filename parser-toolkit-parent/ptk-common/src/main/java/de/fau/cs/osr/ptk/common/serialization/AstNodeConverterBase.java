@@ -93,6 +93,7 @@ public class AstNodeConverterBase<T extends AstNode<T>>
 	public void setAlwaysStoreType(boolean alwaysStoreType)
 	{
 		this.alwaysStoreType = alwaysStoreType;
+		settingsChanged();
 	}
 
 	public void suppressTypeInfo(Class<?> type)
@@ -100,16 +101,19 @@ public class AstNodeConverterBase<T extends AstNode<T>>
 		if (this.suppressTypeInfo == null)
 			this.suppressTypeInfo = new HashSet<Class<?>>();
 		this.suppressTypeInfo.add(type);
+		settingsChanged();
 	}
 
 	public void setStoreLocation(boolean storeLocation)
 	{
 		this.storeLocation = storeLocation;
+		settingsChanged();
 	}
 
 	public void setStoreAttributes(boolean storeAttributes)
 	{
 		this.storeAttributes = storeAttributes;
+		settingsChanged();
 	}
 
 	public void suppressAttribute(String name)
@@ -117,12 +121,14 @@ public class AstNodeConverterBase<T extends AstNode<T>>
 		if (this.suppressAttributes == null)
 			this.suppressAttributes = new HashSet<String>();
 		this.suppressAttributes.add(name);
+		settingsChanged();
 	}
 
 	public void setSuppressEmptyStringProperties(
 			boolean suppressEmptyStringProperties)
 	{
 		this.suppressEmptyStringProperties = suppressEmptyStringProperties;
+		settingsChanged();
 	}
 
 	public void suppressProperty(String name)
@@ -130,6 +136,7 @@ public class AstNodeConverterBase<T extends AstNode<T>>
 		if (this.suppressProperties == null)
 			this.suppressProperties = new HashSet<String>();
 		this.suppressProperties.add(name);
+		settingsChanged();
 	}
 
 	public void suppressNode(Class<? extends T> nodeType)
@@ -137,17 +144,20 @@ public class AstNodeConverterBase<T extends AstNode<T>>
 		if (this.suppressNodes == null)
 			this.suppressNodes = new HashSet<Class<? extends T>>();
 		this.suppressNodes.add(nodeType);
+		settingsChanged();
 	}
 
 	public void setStringNodeType(
 			Class<? extends AstStringNode<T>> stringNodeType)
 	{
 		this.stringNodeType = stringNodeType;
+		settingsChanged();
 	}
 
 	public void setSuppressEmptyStringNodes(boolean suppressEmptyStringNodes)
 	{
 		this.suppressEmptyStringNodes = suppressEmptyStringNodes;
+		settingsChanged();
 	}
 
 	// =========================================================================
@@ -0,0 +1,262 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.serialization;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import de.fau.cs.osr.ptk.common.ast.AstNode;
+import de.fau.cs.osr.utils.WrappedException;
+
+/**
+ * Writes a sequence of ASTs to one output stream. All documents are encoded
+ * by the same, once configured converter; subclasses decide about the
+ * encoding and the framing of the documents.
+ * 
+ * If an executor is set, documents are encoded concurrently. The encoded
+ * documents are still written in the order in which they were passed to
+ * {@link #write(AstNode)}. At most {@link #getMaxPendingDocuments()}
+ * documents are encoded ahead of the output. Documents must not be modified
+ * until they were written, {@link #flush()} waits for all pending documents.
+ * 
+ * Instances are not thread-safe, only the encoding happens concurrently. If
+ * the encoding of a document fails, the exception is thrown by the call that
+ * would have written the document and the output is incomplete.
+ */
+public abstract class AstStreamWriterBase<T extends AstNode<T>>
+		implements
+			Closeable,
+			Flushable
+{
+	public static final int DEFAULT_MAX_PENDING_DOCUMENTS = 64;
+
+	// =========================================================================
+
+	private final Writer out;
+
+	private final ArrayDeque<Future<String>> pending =
+			new ArrayDeque<Future<String>>();
+
+	private ExecutorService executor;
+
+	private int maxPendingDocuments = DEFAULT_MAX_PENDING_DOCUMENTS;
+
+	private long documentCount = 0;
+
+	private boolean started = false;
+
+	private boolean closed = false;
+
+	// =========================================================================
+
+	protected AstStreamWriterBase(Writer out)
+	{
+		this.out = out;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Sets the executor that encodes the documents. Pass <code>null</code> to
+	 * encode documents on the calling thread.
+	 */
+	public void setExecutor(ExecutorService executor) throws IOException
+	{
+		drain(0);
+		this.executor = executor;
+	}
+
+	public ExecutorService getExecutor()
+	{
+		return executor;
+	}
+
+	/**
+	 * The maximum number of documents that are encoded ahead of the output.
+	 * Limits the amount of encoded output held in memory.
+	 */
+	public void setMaxPendingDocuments(int maxPendingDocuments)
+	{
+		if (maxPendingDocuments < 1)
+			throw new IllegalArgumentException("maxPendingDocuments must be positive");
+		this.maxPendingDocuments = maxPendingDocuments;
+	}
+
+	public int getMaxPendingDocuments()
+	{
+		return maxPendingDocuments;
+	}
+
+	/**
+	 * The number of documents passed to {@link #write(AstNode)} so far,
+	 * including those that are still being encoded.
+	 */
+	public long getDocumentCount()
+	{
+		return documentCount;
+	}
+
+	// =========================================================================
+
+	public void write(final T root) throws IOException
+	{
+		if (root == null)
+			throw new IllegalArgumentException("root must not be null");
+		if (closed)
+			throw new IOException("Stream closed");
+
+		if (!started)
+		{
+			writeHeader(out);
+			started = true;
+		}
+
+		++documentCount;
+		if (executor == null)
+		{
+			encode(root, out);
+			writeSeparator(out);
+			return;
+		}
+
+		pending.add(executor.submit(new Callable<String>()
+		{
+			@Override
+			public String call() throws Exception
+			{
+				StringWriter w = new StringWriter();
+				encode(root, w);
+				return w.toString();
+			}
+		}));
+
+		drain(maxPendingDocuments);
+	}
+
+	/**
+	 * Waits for all pending documents, writes them and flushes the output.
+	 */
+	@Override
+	public void flush() throws IOException
+	{
+		drain(0);
+		out.flush();
+	}
+
+	/**
+	 * Writes all pending documents and the footer and closes the output.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (closed)
+			return;
+		closed = true;
+
+		try
+		{
+			drain(0);
+			if (!started)
+				writeHeader(out);
+			writeFooter(out);
+		}
+		finally
+		{
+			for (Future<String> future : pending)
+				future.cancel(false);
+			pending.clear();
+			out.close();
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * Encodes a single document. Called concurrently if an executor is set.
+	 */
+	protected abstract void encode(T root, Writer w) throws IOException;
+
+	/**
+	 * Called before the first document is written.
+	 */
+	protected void writeHeader(Writer w) throws IOException
+	{
+	}
+
+	/**
+	 * Called after each document.
+	 */
+	protected void writeSeparator(Writer w) throws IOException
+	{
+	}
+
+	/**
+	 * Called when the stream is closed.
+	 */
+	protected void writeFooter(Writer w) throws IOException
+	{
+	}
+
+	// =========================================================================
+
+	/**
+	 * Writes finished documents in order. Blocks until at most
+	 * <code>maxPending</code> documents remain pending.
+	 */
+	private void drain(int maxPending) throws IOException
+	{
+		while (!pending.isEmpty()
+				&& (pending.size() > maxPending || pending.peek().isDone()))
+		{
+			out.write(get(pending.poll()));
+			writeSeparator(out);
+		}
+	}
+
+	private static String get(Future<String> future) throws IOException
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new WrappedException(e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new WrappedException(cause);
+		}
+	}
+}
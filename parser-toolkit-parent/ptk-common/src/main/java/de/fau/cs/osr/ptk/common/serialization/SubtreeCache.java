@@ -0,0 +1,397 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.serialization;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A bounded cache of serialized sub-trees shared by all documents a
+ * converter serializes. Entries are keyed by a {@link SubtreeHashes
+ * structural hash} of the sub-tree and the settings of the converter. Every
+ * entry has a weight, the estimated size of its encoding in characters. When
+ * the number of entries or the total weight exceed the configured limits the
+ * least recently used entries are evicted.
+ * 
+ * Only sub-trees with at least {@link #getMinNodes()} and at most
+ * {@link #getMaxNodes()} nodes are looked up and stored. Smaller sub-trees
+ * are cheaper to serialize than to look up, larger sub-trees rarely recur.
+ * 
+ * Converters ask {@link #admit(Key)} before they store a fragment. With an
+ * admission filter (see {@link #withAdmissionFilter(int)}) a fragment is only
+ * admitted the second time it is offered. Sub-trees which occur only once
+ * then neither cost the copying of their encoding nor push recurring
+ * sub-trees out of the cache.
+ * 
+ * The cache is thread-safe. A cache can be shared by converters; converters
+ * with different settings never see each other's entries.
+ * 
+ * @param <V>
+ *            The type of the encoded fragments.
+ */
+public class SubtreeCache<V>
+{
+	public static final int DEFAULT_MIN_NODES = 4;
+
+	public static final int DEFAULT_MAX_NODES = 4096;
+
+	// =========================================================================
+
+	/**
+	 * Entries in least recently used order.
+	 */
+	private final LinkedHashMap<Key, Entry<V>> cache =
+			new LinkedHashMap<Key, Entry<V>>(16, .75f, true);
+
+	private final long maxWeight;
+
+	private int maxEntries = Integer.MAX_VALUE;
+
+	private int minNodes = DEFAULT_MIN_NODES;
+
+	private int maxNodes = DEFAULT_MAX_NODES;
+
+	/**
+	 * Fingerprints of recently offered keys, indexed by the fingerprint.
+	 * <code>null</code> if every key is admitted.
+	 */
+	private long[] offered;
+
+	private long weight = 0;
+
+	private long hits = 0;
+
+	private long misses = 0;
+
+	private long evictions = 0;
+
+	private long rejections = 0;
+
+	private long savedWeight = 0;
+
+	// =========================================================================
+
+	/**
+	 * @param maxWeight
+	 *            The total estimated size in characters of all fragments the
+	 *            cache may hold.
+	 */
+	public SubtreeCache(long maxWeight)
+	{
+		if (maxWeight < 0)
+			throw new IllegalArgumentException("maxWeight must not be negative");
+		this.maxWeight = maxWeight;
+	}
+
+	public synchronized SubtreeCache<V> withMaxEntries(int maxEntries)
+	{
+		if (maxEntries < 0)
+			throw new IllegalArgumentException("maxEntries must not be negative");
+		this.maxEntries = maxEntries;
+		evict();
+		return this;
+	}
+
+	public synchronized SubtreeCache<V> withNodeRange(int minNodes, int maxNodes)
+	{
+		if (minNodes < 1 || maxNodes < minNodes)
+			throw new IllegalArgumentException("Illegal node range: " + minNodes + " - " + maxNodes);
+		this.minNodes = minNodes;
+		this.maxNodes = maxNodes;
+		return this;
+	}
+
+	/**
+	 * Only admits fragments which were offered before. The filter remembers
+	 * the given number of offered keys (rounded up to a power of two); pass
+	 * <code>0</code> to admit every fragment.
+	 */
+	public synchronized SubtreeCache<V> withAdmissionFilter(int slots)
+	{
+		if (slots < 0 || slots > (1 << 30))
+			throw new IllegalArgumentException("Illegal number of slots: " + slots);
+		this.offered = (slots == 0) ? null : new long[Integer.highestOneBit(slots * 2 - 1)];
+		return this;
+	}
+
+	public long getMaxWeight()
+	{
+		return maxWeight;
+	}
+
+	public synchronized int getMaxEntries()
+	{
+		return maxEntries;
+	}
+
+	public synchronized int getMinNodes()
+	{
+		return minNodes;
+	}
+
+	public synchronized int getMaxNodes()
+	{
+		return maxNodes;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Returns the cached fragment or <code>null</code> if there is none.
+	 */
+	public synchronized V get(Key key)
+	{
+		Entry<V> entry = cache.get(key);
+		if (entry == null)
+		{
+			++misses;
+			return null;
+		}
+		++hits;
+		savedWeight += entry.weight;
+		return entry.value;
+	}
+
+	/**
+	 * Decides whether the fragment of the given key should be stored. Returns
+	 * <code>false</code> if it is heavier than the maximum weight of the cache
+	 * or if the admission filter has not seen the key before.
+	 */
+	public synchronized boolean admit(Key key)
+	{
+		if (key.weight > maxWeight)
+			return false;
+
+		if (offered != null)
+		{
+			long fingerprint = key.fingerprint();
+			int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & (offered.length - 1);
+			if (offered[slot] != fingerprint)
+			{
+				offered[slot] = fingerprint;
+				++rejections;
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Stores a fragment. Fragments heavier than the maximum weight of the
+	 * cache are not stored. The admission filter is not consulted.
+	 */
+	public synchronized void put(Key key, V value)
+	{
+		int weight = key.weight;
+		if (weight > maxWeight)
+			return;
+
+		Entry<V> old = cache.put(key, new Entry<V>(value, weight));
+		if (old != null)
+			this.weight -= old.weight;
+		this.weight += weight;
+		evict();
+	}
+
+	private void evict()
+	{
+		Iterator<Entry<V>> i = cache.values().iterator();
+		while (i.hasNext() && (cache.size() > maxEntries || weight > maxWeight))
+		{
+			Entry<V> eldest = i.next();
+			i.remove();
+			weight -= eldest.weight;
+			++evictions;
+		}
+	}
+
+	public synchronized void clear()
+	{
+		cache.clear();
+		weight = 0;
+	}
+
+	// =========================================================================
+
+	public synchronized int size()
+	{
+		return cache.size();
+	}
+
+	/**
+	 * The estimated size in characters of all cached fragments.
+	 */
+	public synchronized long getWeight()
+	{
+		return weight;
+	}
+
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	/**
+	 * The number of fragments the admission filter did not admit.
+	 */
+	public synchronized long getRejections()
+	{
+		return rejections;
+	}
+
+	/**
+	 * The ratio of look-ups that found a fragment or <code>0</code> if no
+	 * look-ups took place yet.
+	 */
+	public synchronized double getHitRatio()
+	{
+		long total = hits + misses;
+		return (total == 0) ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * The estimated number of characters that were spliced into the output
+	 * instead of being serialized again.
+	 */
+	public synchronized long getSavedWeight()
+	{
+		return savedWeight;
+	}
+
+	public synchronized void resetStatistics()
+	{
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+		rejections = 0;
+		savedWeight = 0;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return String.format(
+				"SubtreeCache [cached=%d, weight=%d, hits=%d, misses=%d, evictions=%d, rejections=%d, saved=%d]",
+				cache.size(),
+				weight,
+				hits,
+				misses,
+				evictions,
+				rejections,
+				savedWeight);
+	}
+
+	// =========================================================================
+
+	private static final class Entry<V>
+	{
+		private final V value;
+
+		private final int weight;
+
+		public Entry(V value, int weight)
+		{
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * The structural hash of a sub-tree combined with the settings of the
+	 * converter and the context the sub-tree is serialized in. The weight of
+	 * the sub-tree is not part of the key's identity.
+	 */
+	public static final class Key
+	{
+		private final long hash1;
+
+		private final long hash2;
+
+		private final long context;
+
+		private final int weight;
+
+		public Key(long hash1, long hash2, long context, int weight)
+		{
+			this.hash1 = hash1;
+			this.hash2 = hash2;
+			this.context = context;
+			this.weight = weight;
+		}
+
+		public int getWeight()
+		{
+			return weight;
+		}
+
+		/**
+		 * Returns a key for a different encoding of the same sub-tree, e.g.
+		 * with or without type information.
+		 */
+		public Key withVariant(int variant)
+		{
+			return new Key(hash1, hash2, context * 31 + variant, weight);
+		}
+
+		private long fingerprint()
+		{
+			return hash1 ^ Long.rotateLeft(hash2, 29) ^ (context * 0x9E3779B97F4A7C15L);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			long h = hash1 ^ (context * 0x9E3779B97F4A7C15L);
+			return (int) (h ^ (h >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			Key other = (Key) obj;
+			return hash1 == other.hash1
+					&& hash2 == other.hash2
+					&& context == other.context;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("Key [%016x%016x, context=%d]", hash1, hash2, context);
+		}
+	}
+}
@@ -0,0 +1,430 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.serialization;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import de.fau.cs.osr.ptk.common.ast.AstNode;
+import de.fau.cs.osr.ptk.common.ast.AstNodeImpl;
+import de.fau.cs.osr.ptk.common.ast.AstNodePropertyIterator;
+import de.fau.cs.osr.ptk.common.ast.RtData;
+
+/**
+ * Computes 128 bit hashes of the sub-trees of an AST in a single pass. Unlike
+ * {@link de.fau.cs.osr.ptk.common.ast.AstStructuralHash} the hash covers
+ * everything a converter may write: node classes, locations, attributes in
+ * iteration order, property values and children. Two sub-trees with equal
+ * hashes are therefore serialized identically, the chance of two different
+ * sub-trees colliding is negligible (the hash is not meant to withstand
+ * crafted input, though).
+ * 
+ * Attribute and property values are hashed by content. Supported are
+ * strings, boxed primitives, enums, AST nodes, RtData and arrays thereof.
+ * Sub-trees containing other values cannot be hashed and are never cached.
+ * 
+ * Along with the hash the size of the encoding of each sub-tree is
+ * estimated from the length of its strings.
+ */
+public final class SubtreeHashes
+{
+	private static final int INITIAL_DEPTH = 32;
+
+	/**
+	 * Added to the weight of every node for the type, the field names and the
+	 * punctuation.
+	 */
+	private static final int NODE_WEIGHT = 16;
+
+	private static final ClassValue<Long> CLASS_HASHES = new ClassValue<Long>()
+	{
+		@Override
+		protected Long computeValue(Class<?> type)
+		{
+			Hasher h = new Hasher();
+			h.addString(type.getName());
+			return h.hash1;
+		}
+	};
+
+	// =========================================================================
+
+	private final IdentityHashMap<AstNode<?>, SubtreeCache.Key> keys =
+			new IdentityHashMap<AstNode<?>, SubtreeCache.Key>();
+
+	// =========================================================================
+
+	private SubtreeHashes()
+	{
+	}
+
+	/**
+	 * Hashes all sub-trees of the given tree and remembers the hashes of those
+	 * with at least <code>minNodes</code> and at most <code>maxNodes</code>
+	 * nodes.
+	 * 
+	 * @param context
+	 *            Becomes part of the keys. Converters pass a value identifying
+	 *            their settings.
+	 */
+	public static SubtreeHashes compute(
+			AstNode<?> root,
+			int minNodes,
+			int maxNodes,
+			long context)
+	{
+		SubtreeHashes hashes = new SubtreeHashes();
+		new Walker(hashes.keys, minNodes, maxNodes, context).walk(root);
+		return hashes;
+	}
+
+	/**
+	 * Returns the cache key of the given sub-tree or <code>null</code> if it
+	 * cannot be cached or its size is outside the range of nodes.
+	 */
+	public SubtreeCache.Key getKey(AstNode<?> n)
+	{
+		return keys.get(n);
+	}
+
+	/**
+	 * The number of sub-trees that can be cached.
+	 */
+	public int size()
+	{
+		return keys.size();
+	}
+
+	// =========================================================================
+
+	private static final class Walker
+	{
+		private final Map<AstNode<?>, SubtreeCache.Key> keys;
+
+		private final int minNodes;
+
+		private final int maxNodes;
+
+		private final long context;
+
+		private final Hasher hasher = new Hasher();
+
+		private AstNode<?>[] nodes = new AstNode<?>[INITIAL_DEPTH];
+
+		private int[] next = new int[INITIAL_DEPTH];
+
+		private long[] hash1 = new long[INITIAL_DEPTH];
+
+		private long[] hash2 = new long[INITIAL_DEPTH];
+
+		private int[] count = new int[INITIAL_DEPTH];
+
+		private long[] weight = new long[INITIAL_DEPTH];
+
+		private boolean[] hashable = new boolean[INITIAL_DEPTH];
+
+		public Walker(
+				Map<AstNode<?>, SubtreeCache.Key> keys,
+				int minNodes,
+				int maxNodes,
+				long context)
+		{
+			this.keys = keys;
+			this.minNodes = minNodes;
+			this.maxNodes = maxNodes;
+			this.context = context;
+		}
+
+		/**
+		 * Returns <code>false</code> if the tree contains values which cannot
+		 * be hashed. The hash of the root is left in hash1[0] and hash2[0].
+		 */
+		public boolean walk(AstNode<?> root)
+		{
+			int top = 0;
+			start(top, root);
+
+			while (true)
+			{
+				AstNode<?> n = nodes[top];
+				int i = next[top];
+				if (i < n.size())
+				{
+					next[top] = i + 1;
+
+					AstNode<?> child = n.get(i);
+					if (child == null)
+					{
+						hash1[top] = Hasher.step1(hash1[top], 0);
+						hash2[top] = Hasher.step2(hash2[top], 0);
+						continue;
+					}
+
+					if (++top == nodes.length)
+						grow();
+
+					start(top, child);
+				}
+				else
+				{
+					nodes[top] = null;
+
+					int c = count[top];
+					if (keys != null && hashable[top] && c >= minNodes && c <= maxNodes)
+					{
+						int w = (int) Math.min(weight[top], Integer.MAX_VALUE);
+						keys.put(n, new SubtreeCache.Key(hash1[top], hash2[top], context, w));
+					}
+
+					if (top == 0)
+						return hashable[0];
+
+					--top;
+					hash1[top] = Hasher.step1(hash1[top], hash1[top + 1]);
+					hash2[top] = Hasher.step2(hash2[top], hash1[top + 1]);
+					hash1[top] = Hasher.step1(hash1[top], hash2[top + 1]);
+					hash2[top] = Hasher.step2(hash2[top], hash2[top + 1]);
+					count[top] += c;
+					weight[top] += weight[top + 1];
+					hashable[top] &= hashable[top + 1];
+				}
+			}
+		}
+
+		private void start(int top, AstNode<?> n)
+		{
+			Hasher h = hasher;
+			h.reset();
+
+			boolean ok = h.addNode(n);
+
+			nodes[top] = n;
+			next[top] = 0;
+			hash1[top] = h.hash1;
+			hash2[top] = h.hash2;
+			count[top] = 1;
+			weight[top] = h.weight;
+			hashable[top] = ok;
+		}
+
+		private void grow()
+		{
+			int length = nodes.length * 2;
+			nodes = Arrays.copyOf(nodes, length);
+			next = Arrays.copyOf(next, length);
+			hash1 = Arrays.copyOf(hash1, length);
+			hash2 = Arrays.copyOf(hash2, length);
+			count = Arrays.copyOf(count, length);
+			weight = Arrays.copyOf(weight, length);
+			hashable = Arrays.copyOf(hashable, length);
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * Two independently mixed 64 bit lanes.
+	 */
+	private static final class Hasher
+	{
+		private long hash1;
+
+		private long hash2;
+
+		private long weight;
+
+		public void reset()
+		{
+			hash1 = 0;
+			hash2 = 0;
+			weight = NODE_WEIGHT;
+		}
+
+		public void add(long x)
+		{
+			hash1 = step1(hash1, x);
+			hash2 = step2(hash2, x);
+		}
+
+		public void addString(String s)
+		{
+			int length = s.length();
+			add(length);
+
+			int i = 0;
+			for (; i + 4 <= length; i += 4)
+			{
+				add(((long) s.charAt(i) << 48)
+						| ((long) s.charAt(i + 1) << 32)
+						| ((long) s.charAt(i + 2) << 16)
+						| s.charAt(i + 3));
+			}
+
+			long rest = 0;
+			for (; i < length; ++i)
+				rest = (rest << 16) | s.charAt(i);
+			add(rest);
+
+			weight += length;
+		}
+
+		public void addClass(Class<?> type)
+		{
+			add(CLASS_HASHES.get(type));
+		}
+
+		/**
+		 * Adds a node without its children.
+		 */
+		public boolean addNode(AstNode<?> n)
+		{
+			boolean ok = true;
+
+			addClass(n.getClass());
+			add(n.size());
+
+			String location = AstNodeImpl.locationStringOf(n);
+			if (location != null)
+				addString(location);
+			else
+				add(0);
+
+			if (n.hasAttributes())
+			{
+				Map<String, Object> attrs = n.getAttributes();
+				add(attrs.size());
+				for (Entry<String, Object> e : attrs.entrySet())
+				{
+					addString(e.getKey());
+					ok &= addValue(e.getValue());
+				}
+			}
+			else
+			{
+				add(0);
+			}
+
+			if (n.getPropertyCount() > 0)
+			{
+				for (AstNodePropertyIterator i = n.propertyIterator(); i.next();)
+					ok &= addValue(i.getValue());
+			}
+
+			return ok;
+		}
+
+		public boolean addValue(Object value)
+		{
+			if (value == null)
+			{
+				add(0);
+				return true;
+			}
+
+			addClass(value.getClass());
+			if (value instanceof String)
+			{
+				addString((String) value);
+			}
+			else if (value instanceof Integer
+					|| value instanceof Long
+					|| value instanceof Short
+					|| value instanceof Byte)
+			{
+				add(((Number) value).longValue());
+			}
+			else if (value instanceof Double)
+			{
+				add(Double.doubleToLongBits((Double) value));
+			}
+			else if (value instanceof Float)
+			{
+				add(Float.floatToIntBits((Float) value));
+			}
+			else if (value instanceof Boolean)
+			{
+				add(((Boolean) value) ? 1 : 2);
+			}
+			else if (value instanceof Character)
+			{
+				add((Character) value);
+			}
+			else if (value instanceof Enum)
+			{
+				addString(((Enum<?>) value).name());
+			}
+			else if (value instanceof AstNode)
+			{
+				Walker walker = new Walker(null, 0, 0, 0);
+				if (!walker.walk((AstNode<?>) value))
+					return false;
+				add(walker.hash1[0]);
+				add(walker.hash2[0]);
+				weight += walker.weight[0];
+			}
+			else if (value instanceof RtData)
+			{
+				Object[][] fields = ((RtData) value).getFields();
+				add(fields.length);
+				for (Object[] field : fields)
+				{
+					if (!addValue(field))
+						return false;
+				}
+			}
+			else if (value instanceof Object[])
+			{
+				Object[] array = (Object[]) value;
+				add(array.length);
+				for (Object item : array)
+				{
+					if (!addValue(item))
+						return false;
+				}
+			}
+			else
+			{
+				return false;
+			}
+
+			return true;
+		}
+
+		public static long step1(long h, long x)
+		{
+			return mix(h ^ x) + 0x9E3779B97F4A7C15L;
+		}
+
+		public static long step2(long h, long x)
+		{
+			return mix((h + x) * 0xC2B2AE3D27D4EB4FL) ^ 0x165667B19E3779F9L;
+		}
+
+		/**
+		 * The finalizer of SplitMix64.
+		 */
+		private static long mix(long z)
+		{
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+			return z ^ (z >>> 31);
+		}
+	}
+}
@@ -193,6 +193,18 @@ public abstract class CtnEmptyImmutableNode
 		throw new UnsupportedOperationException(genMsg());
 	}
 
+	@Override
+	public Object getProperty(int index)
+	{
+		throw new IndexOutOfBoundsException();
+	}
+
+	@Override
+	public Object setProperty(int index, Object value)
+	{
+		throw new IndexOutOfBoundsException();
+	}
+
 	@Override
 	public AstNodePropertyIterator propertyIterator()
 	{
@@ -306,6 +318,12 @@ public abstract class CtnEmptyImmutableNode
 		throw new UnsupportedOperationException(genMsg());
 	}
 
+	@Override
+	public boolean isFrozen()
+	{
+		return true;
+	}
+
 	// =========================================================================
 
 	@Override
@@ -0,0 +1,484 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.test.nodes;
+
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnDoc;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnList;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnObjProp;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnPropContent;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnSection;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnText;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnUrl;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+import de.fau.cs.osr.ptk.common.ast.AstLocation;
+import de.fau.cs.osr.ptk.common.ast.AstStringNode;
+import de.fau.cs.osr.ptk.common.ast.RtData;
+
+/**
+ * Generates synthetic documents made of common test nodes.
+ * 
+ * The generator is deterministic: The n-th document of a generator only
+ * depends on the seed, the configuration and n. Documents are generated on
+ * demand, so a corpus of any size can be streamed to a serializer without
+ * holding more than one document in memory.
+ * 
+ * The size of a document is estimated by {@link #estimateSize(CtnNode)}.
+ * Top-level sections are added to a document until the configured document
+ * size is reached.
+ */
+public class CtnGenerator
+{
+	/**
+	 * Estimated number of characters a node contributes to a serialized
+	 * document in addition to its text.
+	 */
+	public static final int NODE_OVERHEAD = 32;
+
+	public enum Distribution
+	{
+		/**
+		 * All values between minimum and maximum are equally likely.
+		 */
+		UNIFORM,
+
+		/**
+		 * Small values are likely, values close to the maximum are rare.
+		 */
+		EXPONENTIAL,
+	}
+
+	private static final String[] WORDS = {
+			"the", "parser", "toolkit", "node", "tree", "visitor", "of", "and",
+			"a", "section", "text", "with", "in", "list", "title", "body",
+			"serializer", "Grüße", "&", "<tag>", "\"quoted\"", "naïve", "to",
+			"is", "for", "document", "abstract", "syntax", "element", "value" };
+
+	/**
+	 * Probability that a child of a section body is a nested section (if the
+	 * maximum depth has not been reached yet).
+	 */
+	private static final double SECTION_PROBABILITY = 0.25;
+
+	// =========================================================================
+
+	private final long seed;
+
+	private int maxDepth = 4;
+
+	private int minFanOut = 1;
+
+	private int maxFanOut = 8;
+
+	private Distribution fanOutDistribution = Distribution.UNIFORM;
+
+	private int minTextLength = 8;
+
+	private int maxTextLength = 256;
+
+	private Distribution textLengthDistribution = Distribution.EXPONENTIAL;
+
+	private double attributeDensity = 0.1;
+
+	private double propertyDensity = 0.1;
+
+	private double rtDataDensity = 0.0;
+
+	private boolean locations = false;
+
+	private long documentSize = 64 * 1024;
+
+	// =========================================================================
+
+	public CtnGenerator(long seed)
+	{
+		this.seed = seed;
+	}
+
+	/**
+	 * @param maxDepth
+	 *            Maximum nesting depth of sections. Must be at least 1.
+	 */
+	public CtnGenerator withMaxDepth(int maxDepth)
+	{
+		if (maxDepth < 1)
+			throw new IllegalArgumentException("maxDepth must be at least 1");
+		this.maxDepth = maxDepth;
+		return this;
+	}
+
+	/**
+	 * Sets the number of children of a section body.
+	 */
+	public CtnGenerator withFanOut(int min, int max, Distribution distribution)
+	{
+		checkRange(min, max);
+		this.minFanOut = min;
+		this.maxFanOut = max;
+		this.fanOutDistribution = distribution;
+		return this;
+	}
+
+	/**
+	 * Sets the length of the text of text nodes and titles.
+	 */
+	public CtnGenerator withTextLength(int min, int max, Distribution distribution)
+	{
+		checkRange(min, max);
+		this.minTextLength = min;
+		this.maxTextLength = max;
+		this.textLengthDistribution = distribution;
+		return this;
+	}
+
+	/**
+	 * @param density
+	 *            Probability that a node carries attributes.
+	 */
+	public CtnGenerator withAttributeDensity(double density)
+	{
+		this.attributeDensity = checkProbability(density);
+		return this;
+	}
+
+	/**
+	 * @param density
+	 *            Probability that a leaf is a node with an object property
+	 *            instead of a text, URL or list.
+	 */
+	public CtnGenerator withPropertyDensity(double density)
+	{
+		this.propertyDensity = checkProbability(density);
+		return this;
+	}
+
+	/**
+	 * @param density
+	 *            Probability that an inner node carries an RtData object in
+	 *            its "RTD" attribute.
+	 */
+	public CtnGenerator withRtDataDensity(double density)
+	{
+		this.rtDataDensity = checkProbability(density);
+		return this;
+	}
+
+	/**
+	 * Whether all nodes get a location. The file name of the location is
+	 * "doc-&lt;index&gt;" and the lines are numbered in document order.
+	 */
+	public CtnGenerator withLocations(boolean locations)
+	{
+		this.locations = locations;
+		return this;
+	}
+
+	/**
+	 * @param documentSize
+	 *            Estimated size of a single document in characters.
+	 */
+	public CtnGenerator withDocumentSize(long documentSize)
+	{
+		if (documentSize < 0)
+			throw new IllegalArgumentException("documentSize must not be negative");
+		this.documentSize = documentSize;
+		return this;
+	}
+
+	public long getSeed()
+	{
+		return seed;
+	}
+
+	public long getDocumentSize()
+	{
+		return documentSize;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Generates the document with the given index.
+	 */
+	public CtnDocument generate(long index)
+	{
+		Context ctx = new Context(new SplittableRandom(mix(seed, index)), index);
+
+		CtnDocument doc = ctnDoc();
+		long size = NODE_OVERHEAD;
+		do
+		{
+			CtnSection section = section(ctx, 1);
+			size += estimateSize(section);
+			doc.add(section);
+		} while (size < documentSize);
+
+		decorate(ctx, doc);
+		return doc;
+	}
+
+	/**
+	 * Lazily generates the documents with the indices 0 to count - 1.
+	 */
+	public Iterable<CtnDocument> documents(final long count)
+	{
+		if (count < 0)
+			throw new IllegalArgumentException("count must not be negative");
+
+		return new Iterable<CtnDocument>()
+		{
+			@Override
+			public Iterator<CtnDocument> iterator()
+			{
+				return new Iterator<CtnDocument>()
+				{
+					private long next = 0;
+
+					@Override
+					public boolean hasNext()
+					{
+						return next < count;
+					}
+
+					@Override
+					public CtnDocument next()
+					{
+						if (!hasNext())
+							throw new NoSuchElementException();
+						return generate(next++);
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Lazily generates as many documents as are needed to reach the given
+	 * estimated total size.
+	 */
+	public Iterable<CtnDocument> corpus(long totalSize)
+	{
+		if (totalSize < 0)
+			throw new IllegalArgumentException("totalSize must not be negative");
+
+		long perDocument = Math.max(documentSize, 1);
+		return documents((totalSize + perDocument - 1) / perDocument);
+	}
+
+	/**
+	 * Estimates the size of a serialized tree as the number of characters of
+	 * its string nodes plus {@link #NODE_OVERHEAD} characters per node.
+	 */
+	public static long estimateSize(CtnNode node)
+	{
+		long size = NODE_OVERHEAD;
+		if (node instanceof AstStringNode)
+			size += ((AstStringNode<?>) node).getContent().length();
+		for (CtnNode n : node)
+			size += estimateSize(n);
+		return size;
+	}
+
+	// =========================================================================
+
+	private CtnSection section(Context ctx, int depth)
+	{
+		CtnText title = text(ctx);
+
+		int count = ctx.sample(minFanOut, maxFanOut, fanOutDistribution);
+		CtnNode[] body = new CtnNode[count];
+		for (int i = 0; i < count; ++i)
+		{
+			if (depth < maxDepth && ctx.random.nextDouble() < SECTION_PROBABILITY)
+			{
+				body[i] = section(ctx, depth + 1);
+			}
+			else
+			{
+				body[i] = leaf(ctx);
+			}
+		}
+
+		return ctnSection()
+				.withLevel(depth)
+				.withTitle(title)
+				.withBody(body)
+				.build();
+	}
+
+	private CtnNode leaf(Context ctx)
+	{
+		if (ctx.random.nextDouble() < propertyDensity)
+		{
+			switch (ctx.random.nextInt(3))
+			{
+				case 0:
+					return ctnObjProp(ctx.random.nextInt(1000));
+				case 1:
+					return ctnObjProp(words(ctx, ctx.sample(1, 32, Distribution.UNIFORM)));
+				default:
+					return ctnPropContent(
+							ctx.random.nextInt(1000),
+							words(ctx, textLength(ctx)));
+			}
+		}
+
+		int kind = ctx.random.nextInt(5);
+		if (kind < 3)
+		{
+			return text(ctx);
+		}
+		else if (kind == 3)
+		{
+			return ctnUrl()
+					.withProtocol(ctx.random.nextBoolean() ? "http" : "https")
+					.withPath("example.org/" + ctx.random.nextInt(100000))
+					.build();
+		}
+		else
+		{
+			int count = ctx.sample(1, 3, Distribution.UNIFORM);
+			CtnNode[] items = new CtnNode[count];
+			for (int i = 0; i < count; ++i)
+				items[i] = (i % 2 == 0) ? text(ctx) : ctnUrl().build();
+			return ctnList(items);
+		}
+	}
+
+	private CtnText text(Context ctx)
+	{
+		return ctnText(words(ctx, textLength(ctx)));
+	}
+
+	private int textLength(Context ctx)
+	{
+		return ctx.sample(minTextLength, maxTextLength, textLengthDistribution);
+	}
+
+	private static String words(Context ctx, int length)
+	{
+		StringBuilder b = new StringBuilder(length + 16);
+		while (b.length() < length)
+		{
+			if (b.length() > 0)
+				b.append(' ');
+			b.append(WORDS[ctx.random.nextInt(WORDS.length)]);
+		}
+		b.setLength(length);
+		return b.toString();
+	}
+
+	/**
+	 * Adds locations, attributes and RtData in document order.
+	 */
+	private void decorate(Context ctx, CtnNode node)
+	{
+		if (locations)
+			node.setNativeLocation(new AstLocation(ctx.file, ctx.line++, 1 + ctx.random.nextInt(80)));
+
+		if (ctx.random.nextDouble() < attributeDensity)
+		{
+			node.setAttribute("id", ctx.random.nextInt(1000000));
+			if (ctx.random.nextBoolean())
+				node.setAttribute("class", WORDS[ctx.random.nextInt(WORDS.length)]);
+		}
+
+		if (!node.isEmpty())
+		{
+			if (ctx.random.nextDouble() < rtDataDensity)
+			{
+				Object[] glue = new Object[2 * node.size() + 1];
+				for (int i = 0; i < glue.length; ++i)
+					glue[i] = (i % 2 == 0) ? WORDS[ctx.random.nextInt(WORDS.length)] : RtData.SEP;
+				node.setAttribute("RTD", new RtData(node, glue));
+			}
+
+			for (CtnNode child : node)
+				decorate(ctx, child);
+		}
+	}
+
+	// =========================================================================
+
+	private static void checkRange(int min, int max)
+	{
+		if (min < 0 || max < min)
+			throw new IllegalArgumentException("Invalid range: " + min + ".." + max);
+	}
+
+	private static double checkProbability(double p)
+	{
+		if (!(p >= 0. && p <= 1.))
+			throw new IllegalArgumentException("Probability must be between 0 and 1: " + p);
+		return p;
+	}
+
+	/**
+	 * Derives the seed of a document from the seed of the generator and the
+	 * index of the document (finalizer of SplitMix64).
+	 */
+	private static long mix(long seed, long index)
+	{
+		long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	// =========================================================================
+
+	private static final class Context
+	{
+		private final SplittableRandom random;
+
+		private final String file;
+
+		private int line = 1;
+
+		public Context(SplittableRandom random, long index)
+		{
+			this.random = random;
+			this.file = "doc-" + index;
+		}
+
+		public int sample(int min, int max, Distribution distribution)
+		{
+			if (min == max)
+				return min;
+
+			switch (distribution)
+			{
+				case UNIFORM:
+					return min + random.nextInt(max - min + 1);
+
+				case EXPONENTIAL:
+				{
+					double mean = (max - min) / 4.;
+					double value = -Math.log(1. - random.nextDouble()) * mean;
+					return (int) Math.min(max, min + (long) value);
+				}
+
+				default:
+					throw new IllegalArgumentException(String.valueOf(distribution));
+			}
+		}
+	}
+}
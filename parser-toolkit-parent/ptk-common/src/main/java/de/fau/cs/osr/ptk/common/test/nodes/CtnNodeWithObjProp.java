@@ -65,6 +65,7 @@ public final class CtnNodeWithObjProp
 
 	public final void setProp(Object prop)
 	{
+		markModified();
 		this.prop = prop;
 	}
 
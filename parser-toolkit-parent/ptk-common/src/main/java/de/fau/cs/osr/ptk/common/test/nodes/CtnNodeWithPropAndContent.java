@@ -67,6 +67,7 @@ public final class CtnNodeWithPropAndContent
 
 	public final void setProp(Object prop)
 	{
+		markModified();
 		this.prop = prop;
 	}
 
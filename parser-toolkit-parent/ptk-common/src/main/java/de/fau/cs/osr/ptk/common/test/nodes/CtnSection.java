@@ -67,6 +67,7 @@ public final class CtnSection
 
 	public final void setLevel(int level)
 	{
+		markModified();
 		this.level = level;
 	}
 
@@ -67,6 +67,7 @@ public final class CtnUrl
 
 	public final void setProtocol(String protocol)
 	{
+		markModified();
 		if (protocol == null)
 			throw new NullPointerException();
 		this.protocol = protocol;
@@ -81,6 +82,7 @@ public final class CtnUrl
 
 	public final void setPath(String path)
 	{
+		markModified();
 		if (path == null)
 			throw new NullPointerException();
 		this.path = path;
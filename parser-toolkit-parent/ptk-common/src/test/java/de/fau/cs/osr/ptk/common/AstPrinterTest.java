@@ -0,0 +1,140 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common;
+
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnBody;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnDoc;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnId;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnList;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnObjProp;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnPropContent;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnSection;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnText;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnTitle;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnUrl;
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.fau.cs.osr.ptk.common.ast.AstLocation;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnBody;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnSection;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnText;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnTitle;
+
+public class AstPrinterTest
+{
+	static List<CtnNode> buildTrees()
+	{
+		List<CtnNode> trees = new ArrayList<CtnNode>();
+
+		trees.add(ctnText("Hello \"World\"\n"));
+		trees.add(ctnId(42));
+		trees.add(ctnList());
+		trees.add(ctnList(ctnText("single")));
+		trees.add(ctnList(ctnList(ctnList(ctnText("nested")))));
+		trees.add(ctnList(ctnSection().build()));
+
+		trees.add(ctnSection()
+				.withLevel(0)
+				.withTitle(ctnText("1st"))
+				.withBody(
+						ctnText("2nd"),
+						ctnId(3),
+						ctnSection()
+								.withLevel(1)
+								.withTitle(CtnTitle.NO_TITLE)
+								.withBody(CtnBody.EMPTY)
+								.build())
+				.build());
+
+		CtnText withAttrs = ctnText("attributed");
+		withAttrs.setAttribute("b", 2);
+		withAttrs.setAttribute("a", "one");
+
+		CtnSection located = ctnSection().withLevel(7).build();
+		located.setNativeLocation(new AstLocation("file.txt", 3, 4));
+		located.setAttribute("z", null);
+
+		List<Object> collection = new ArrayList<Object>();
+		collection.add("first");
+		collection.add(ctnText("second"));
+
+		trees.add(ctnDoc(
+				withAttrs,
+				located,
+				ctnObjProp(null),
+				ctnObjProp("string"),
+				ctnObjProp(ctnText("node as property")),
+				ctnObjProp(ctnSection().build()),
+				ctnObjProp(Collections.emptyList()),
+				ctnObjProp(Collections.singletonList("only")),
+				ctnObjProp(Collections.singletonList(ctnSection().build())),
+				ctnObjProp(Collections.singletonList(Arrays.asList("a", "b"))),
+				ctnObjProp(collection),
+				ctnObjProp(new StringBuilder("multi\nline")),
+				ctnPropContent(5, "content"),
+				ctnUrl().withProtocol("https").withPath("example.org/x").build(),
+				ctnTitle(ctnText("t1"), ctnText("t2")),
+				ctnBody(ctnList(ctnId(1), ctnId(2)))));
+
+		CtnNode shared = ctnSection().withLevel(2).build();
+		trees.add(ctnDoc(shared, ctnText("between"), shared));
+
+		return trees;
+	}
+
+	// =========================================================================
+
+	@Test
+	public void testStreamingPrinterProducesSameOutput() throws Exception
+	{
+		for (CtnNode tree : buildTrees())
+		{
+			String expected = AstPrinter.print(tree);
+			String actual = AstPrinter.printStreaming(new StringWriter(), tree).toString();
+			assertEquals(expected, actual);
+		}
+	}
+
+	@Test
+	public void testStreamingPrinterProducesSameOutputWhenNotCompact() throws Exception
+	{
+		for (CtnNode tree : buildTrees())
+		{
+			StringWriter expected = new StringWriter();
+			AstPrinter<CtnNode> p1 = new AstPrinter<CtnNode>(expected);
+			p1.setCompact(false);
+			p1.go(tree);
+
+			StringWriter actual = new StringWriter();
+			AstPrinter<CtnNode> p2 = new AstPrinter<CtnNode>(actual, true);
+			p2.setCompact(false);
+			p2.go(tree);
+
+			assertEquals(expected.toString(), actual.toString());
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common;
+
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnDoc;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnId;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnList;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnSection;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnText;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import de.fau.cs.osr.ptk.common.comparer.AstComparer;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnIdNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnText;
+
+public class CopyOnWriteVisitorTest
+{
+	/**
+	 * Replaces id nodes with the given value, removes id nodes with value 0
+	 * and expands id nodes with value -1 into two text nodes.
+	 */
+	public static final class IdRewriter
+			extends
+				AstVisitor<CtnNode>
+	{
+		private final int from;
+
+		private final int to;
+
+		public IdRewriter(int from, int to)
+		{
+			this.from = from;
+			this.to = to;
+		}
+
+		public CtnNode visit(CtnNode n)
+		{
+			return mapCopyOnWrite(n);
+		}
+
+		public Object visit(CtnIdNode n)
+		{
+			if (n.id == 0)
+				return REMOVE;
+			if (n.id == -1)
+				return ctnList(ctnText("x"), ctnText("y"));
+			return (n.id == from) ? ctnId(to) : n;
+		}
+
+		public CtnNode visit(CtnText n)
+		{
+			return n;
+		}
+	}
+
+	private static final class TestParser
+			extends
+				ParserCommon<CtnNode>
+	{
+		@Override
+		public Object parseArticle(String src, String title)
+		{
+			return process(buildDoc());
+		}
+
+		@Override
+		public Object getConfig()
+		{
+			return null;
+		}
+	}
+
+	// =========================================================================
+
+	private static CtnNode buildDoc()
+	{
+		return ctnDoc(
+				ctnSection()
+						.withTitle(ctnText("First"))
+						.withBody(ctnText("one"), ctnId(1))
+						.build(),
+				ctnSection()
+						.withTitle(ctnText("Second"))
+						.withBody(ctnId(2), ctnText("two"))
+						.build());
+	}
+
+	@Test
+	public void testUnchangedTreeIsReturnedAsIs() throws Exception
+	{
+		CtnNode doc = buildDoc();
+		assertSame(doc, new IdRewriter(7, 8).go(doc));
+	}
+
+	@Test
+	public void testOnlyChangedPathIsCopied() throws Exception
+	{
+		CtnNode before = buildDoc();
+		CtnNode expected = (CtnNode) before.deepClone();
+
+		CtnNode after = (CtnNode) new IdRewriter(2, 20).go(before);
+
+		AstComparer.compareAndThrow(expected, before, true, true);
+
+		assertNotSame(before, after);
+		assertSame(before.get(0), after.get(0));
+		assertNotSame(before.get(1), after.get(1));
+		assertSame(before.get(1).get(0), after.get(1).get(0));
+		assertNotSame(before.get(1).get(1), after.get(1).get(1));
+		assertEquals(20, ((CtnIdNode) after.get(1).get(1).get(0)).id);
+		assertSame(before.get(1).get(1).get(1), after.get(1).get(1).get(1));
+	}
+
+	@Test
+	public void testListSemanticsMatchMapInPlace() throws Exception
+	{
+		CtnNode before = ctnDoc(ctnText("a"), ctnId(0), ctnText("b"), ctnId(-1), ctnId(3));
+		CtnNode expected = (CtnNode) before.deepClone();
+
+		CtnNode after = (CtnNode) new IdRewriter(3, 4).go(before);
+
+		AstComparer.compareAndThrow(expected, before, true, true);
+		assertEquals(2, after.size());
+		assertEquals("abxy", ((CtnText) after.get(0)).getContent());
+		assertEquals(4, ((CtnIdNode) after.get(1)).id);
+	}
+
+	@Test
+	public void testParserKeepsSnapshotsOfEachPass() throws Exception
+	{
+		TestParser parser = new TestParser();
+		parser.addVisitor(new IdRewriter(1, 10));
+		parser.addVisitor(new IdRewriter(2, 20));
+
+		parser.parseArticle("", "");
+		assertNull(parser.getSnapshots());
+
+		parser.setKeepSnapshots(true);
+		CtnNode result = (CtnNode) parser.parseArticle("", "");
+
+		List<CtnNode> snapshots = parser.getSnapshots();
+		assertEquals(3, snapshots.size());
+		assertSame(result, snapshots.get(2));
+
+		AstComparer.compareAndThrow(buildDoc(), snapshots.get(0), true, true);
+		assertEquals(1, ((CtnIdNode) snapshots.get(0).get(0).get(1).get(1)).id);
+		assertEquals(10, ((CtnIdNode) snapshots.get(1).get(0).get(1).get(1)).id);
+		assertEquals(2, ((CtnIdNode) snapshots.get(1).get(1).get(1).get(0)).id);
+		assertEquals(20, ((CtnIdNode) snapshots.get(2).get(1).get(1).get(0)).id);
+
+		// Passes share what they did not change
+		assertSame(snapshots.get(0).get(1), snapshots.get(1).get(1));
+		assertSame(snapshots.get(1).get(0), snapshots.get(2).get(0));
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common;
+
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnDoc;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnId;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnList;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnSection;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnText;
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.fau.cs.osr.ptk.common.ParallelAstPrinter.PrinterFactory;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnSection;
+
+public class ParallelAstPrinterTest
+{
+	private static ExecutorService executor;
+
+	@BeforeClass
+	public static void setUp()
+	{
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterClass
+	public static void tearDown()
+	{
+		executor.shutdown();
+	}
+
+	// =========================================================================
+
+	private static CtnNode buildWideTree(int width)
+	{
+		CtnNode doc = ctnDoc();
+		for (int i = 0; i < width; ++i)
+		{
+			CtnSection section = ctnSection()
+					.withLevel(i % 5)
+					.withTitle(ctnText("Section " + i))
+					.withBody(
+							ctnText("Text " + i),
+							ctnId(i),
+							ctnList(ctnText("single " + i)),
+							ctnSection().withLevel(i).build())
+					.build();
+			if (i % 3 == 0)
+				section.setAttribute("odd", i);
+			doc.add(section);
+		}
+		return doc;
+	}
+
+	// =========================================================================
+
+	@Test
+	public void testParallelPrinterProducesSameOutput() throws Exception
+	{
+		List<CtnNode> trees = AstPrinterTest.buildTrees();
+		trees.add(buildWideTree(500));
+		trees.add(ctnSection().withLevel(3).build());
+
+		for (CtnNode tree : trees)
+		{
+			String expected = AstPrinter.print(tree);
+			String actual = ParallelAstPrinter.print(new StringWriter(), tree, executor).toString();
+			assertEquals(expected, actual);
+		}
+	}
+
+	@Test
+	public void testParallelPrinterWithSmallWindowAndMemoization() throws Exception
+	{
+		ParallelAstPrinter<CtnNode> printer = new ParallelAstPrinter<CtnNode>(
+				new PrinterFactory<CtnNode>()
+				{
+					@Override
+					public AstPrinter<CtnNode> create(Writer writer)
+					{
+						return new AstPrinter<CtnNode>(writer);
+					}
+				},
+				executor);
+		printer.setMaxPendingChunks(2);
+
+		CtnNode tree = buildWideTree(100);
+		String expected = AstPrinter.print(tree);
+		String actual = printer.print(new StringWriter(), tree).toString();
+		assertEquals(expected, actual);
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.fau.cs.osr.utils.FmtRuntimeException;
+
+public class ParserContextPoolTest
+{
+	public static final class TestContext
+			extends
+				ParserContext
+	{
+		public int depth;
+
+		@Override
+		public void clear()
+		{
+			depth = 0;
+		}
+
+		@Override
+		public void init(ParserContext parent)
+		{
+			depth = ((TestContext) parent).depth + 1;
+		}
+	}
+
+	private static final class HiddenContext
+			extends
+				ParserContext
+	{
+		@Override
+		public void clear()
+		{
+		}
+	}
+
+	// =========================================================================
+
+	@Test
+	public void testStateWithOwnPoolReusesContexts() throws Exception
+	{
+		ParserState<TestContext> state = new ParserState<TestContext>(TestContext.class);
+		TestContext root = state.getTop();
+
+		state.start();
+		TestContext child = state.getTop();
+		assertEquals(1, child.depth);
+		state.commit();
+
+		state.start();
+		assertSame(child, state.getTop());
+		state.abort();
+		assertSame(root, state.getTop());
+	}
+
+	@Test
+	public void testSharedPoolHandsContextsToNextState() throws Exception
+	{
+		ParserContextPool<TestContext> pool = new ParserContextPool<TestContext>(TestContext.class);
+
+		ParserState<TestContext> first = new ParserState<TestContext>(pool);
+		first.start();
+		first.start();
+		assertEquals(2, first.getTop().depth);
+		first.commit();
+		first.commit();
+		first.releaseContexts();
+		assertEquals(3, pool.getCreatedCount());
+		assertEquals(3, pool.getLocalSize());
+
+		ParserState<TestContext> second = new ParserState<TestContext>(pool);
+		second.start();
+		second.start();
+		assertEquals(2, second.getTop().depth);
+		assertEquals(3, pool.getCreatedCount());
+		assertEquals(3, pool.getLocalHitCount());
+
+		second.reset("file");
+		assertEquals(3, pool.getLocalSize());
+	}
+
+	@Test
+	public void testOverflowGoesToGlobalQueue() throws Exception
+	{
+		final ParserContextPool<TestContext> pool = new ParserContextPool<TestContext>(
+				ParserContextPool.factoryFor(TestContext.class), 2, 3);
+
+		List<TestContext> contexts = new ArrayList<TestContext>();
+		for (int i = 0; i < 6; ++i)
+			contexts.add(pool.acquire());
+		for (TestContext c : contexts)
+			pool.release(c);
+
+		assertEquals(2, pool.getLocalSize());
+		assertEquals(3, pool.getGlobalSize());
+		assertEquals(1, pool.getDroppedCount());
+
+		// Another thread has an empty stack and takes from the global queue
+		final List<TestContext> taken = new ArrayList<TestContext>();
+		Thread t = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				for (int i = 0; i < 4; ++i)
+					taken.add(pool.acquire());
+			}
+		};
+		t.start();
+		t.join();
+
+		assertEquals(4, taken.size());
+		assertEquals(3, pool.getGlobalHitCount());
+		assertEquals(7, pool.getCreatedCount());
+		assertEquals(0, pool.getGlobalSize());
+		assertNotSame(taken.get(0), taken.get(3));
+	}
+
+	@Test(expected = FmtRuntimeException.class)
+	public void testFactoryRejectsInaccessibleClass() throws Exception
+	{
+		ParserContextPool.factoryFor(HiddenContext.class);
+	}
+}
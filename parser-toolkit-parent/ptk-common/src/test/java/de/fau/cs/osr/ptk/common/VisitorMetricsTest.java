@@ -0,0 +1,174 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fau.cs.osr.ptk.common;
+
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnDoc;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnId;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnText;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.fau.cs.osr.ptk.common.test.nodes.CtnDocument;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnText;
+import de.fau.cs.osr.utils.ThreadAllocationCounter;
+import de.fau.cs.osr.utils.visitor.VisitorMetrics;
+import de.fau.cs.osr.utils.visitor.VisitorMetricsSink;
+
+public class VisitorMetricsTest
+{
+	public static final class TextCounter
+			extends
+				AstVisitor<CtnNode>
+	{
+		private int texts = 0;
+
+		public void visit(CtnDocument n)
+		{
+			iterate(n);
+		}
+
+		public void visit(CtnText n)
+		{
+			++texts;
+		}
+
+		@Override
+		protected Object visitNotFound(CtnNode node)
+		{
+			return null;
+		}
+	}
+
+	private static final class CollectingSink
+			implements
+				VisitorMetricsSink
+	{
+		private final List<VisitorMetrics> metrics = new ArrayList<VisitorMetrics>();
+
+		@Override
+		public void record(VisitorMetrics m)
+		{
+			metrics.add(m);
+		}
+	}
+
+	private static final class TestParser
+			extends
+				ParserCommon<CtnNode>
+	{
+		@Override
+		public Object parseArticle(String src, String title)
+		{
+			return process(ctnDoc(ctnText(src), ctnId(1)));
+		}
+
+		@Override
+		public Object getConfig()
+		{
+			return null;
+		}
+	}
+
+	// =========================================================================
+
+	private static CtnNode buildDoc()
+	{
+		return ctnDoc(ctnText("a"), ctnId(1), ctnText("b"), ctnId(2), ctnId(3));
+	}
+
+	@Test
+	public void testVisitorRecordsMetrics() throws Exception
+	{
+		CollectingSink sink = new CollectingSink();
+		TextCounter v = new TextCounter();
+		v.setMetricsSink(sink);
+		v.go(buildDoc());
+
+		assertEquals(2, v.texts);
+		assertEquals(1, sink.metrics.size());
+
+		VisitorMetrics m = sink.metrics.get(0);
+		assertSame(v, m.getVisitor());
+		assertEquals(6, m.getNodesDispatched());
+		assertEquals(3, m.getVisitNotFoundCount());
+		assertTrue(m.getWallTimeNanos() >= 0);
+		assertTrue(m.isCompleted());
+		if (ThreadAllocationCounter.isSupported())
+			assertTrue(m.getAllocatedBytes() >= 0);
+		else
+			assertEquals(-1, m.getAllocatedBytes());
+	}
+
+	@Test
+	public void testNoOpSinkRecordsNothing() throws Exception
+	{
+		TextCounter v = new TextCounter();
+		assertNull(v.getMetricsSink());
+		v.go(buildDoc());
+		assertEquals(2, v.texts);
+	}
+
+	@Test
+	public void testParserRecordsMetricsOfEachPass() throws Exception
+	{
+		CollectingSink sink = new CollectingSink();
+		TestParser parser = new TestParser();
+		TextCounter v1 = new TextCounter();
+		TextCounter v2 = new TextCounter();
+		parser.addVisitor(v1).addVisitor(v2);
+		parser.setMetricsSink(sink);
+		parser.parseArticle("text", "title");
+
+		assertEquals(2, sink.metrics.size());
+		assertSame(v1, sink.metrics.get(0).getVisitor());
+		assertSame(v2, sink.metrics.get(1).getVisitor());
+		assertEquals(3, sink.metrics.get(1).getNodesDispatched());
+		assertEquals(1, sink.metrics.get(1).getVisitNotFoundCount());
+
+		// The parser's sink is only used while the parser runs the visitor
+		assertNull(v1.getMetricsSink());
+	}
+
+	@Test
+	public void testFailedVisitationIsRecorded() throws Exception
+	{
+		CollectingSink sink = new CollectingSink();
+		AstVisitor<CtnNode> v = new AstVisitor<CtnNode>();
+		v.setMetricsSink(sink);
+		try
+		{
+			v.go(buildDoc());
+		}
+		catch (RuntimeException e)
+		{
+			// No visit() methods at all
+		}
+
+		assertEquals(1, sink.metrics.size());
+		assertFalse(sink.metrics.get(0).isCompleted());
+		assertEquals(1, sink.metrics.get(0).getVisitNotFoundCount());
+	}
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.ast;
+
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnDoc;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnId;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnSection;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnText;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import de.fau.cs.osr.ptk.common.ast.AstCloner.SharingPolicy;
+import de.fau.cs.osr.ptk.common.comparer.AstComparer;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnBody;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnDocument;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnEmptyImmutableNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnGenerator;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnIdNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnSection;
+
+public class AstClonerTest
+{
+	private static CtnDocument buildDoc()
+	{
+		CtnDocument doc = ctnDoc(
+				ctnSection()
+						.withTitle(ctnText("First"))
+						.withBody(ctnText("one"), ctnId(1))
+						.build(),
+				ctnSection()
+						.withTitle(ctnText("Second"))
+						.withBody(CtnBody.NO_BODY)
+						.build());
+		doc.get(0).setAttribute("key", "value");
+		return doc;
+	}
+
+	/**
+	 * Asserts that the two trees share exactly the nodes that are shared
+	 * according to the given cloner.
+	 */
+	private static void assertSharing(AstCloner cloner, AstNode<?> a, AstNode<?> b)
+	{
+		IdentityHashMap<Object, Object> nodesOfA = new IdentityHashMap<Object, Object>();
+		ArrayDeque<AstNode<?>> stack = new ArrayDeque<AstNode<?>>();
+		stack.push(a);
+		while (!stack.isEmpty())
+		{
+			AstNode<?> n = stack.pop();
+			nodesOfA.put(n, n);
+			for (AstNode<?> c : n)
+				stack.push(c);
+		}
+
+		stack.push(b);
+		while (!stack.isEmpty())
+		{
+			AstNode<?> n = stack.pop();
+			assertEquals(n.toString(), cloner.isShared(n), nodesOfA.containsKey(n));
+			for (AstNode<?> c : n)
+				stack.push(c);
+		}
+	}
+
+	@Test
+	public void testImmutableNodesAreShared() throws Exception
+	{
+		AstCloner cloner = new AstCloner()
+				.withSharedClass(CtnEmptyImmutableNode.class);
+
+		CtnDocument doc = buildDoc();
+		CtnDocument copy = cloner.deepClone(doc);
+
+		AstComparer.compareAndThrow(doc, copy, true, true);
+		assertSharing(cloner, doc, copy);
+		assertSame(CtnBody.NO_BODY, ((CtnSection) copy.get(1)).getBody());
+
+		// Attributes are copied, not shared
+		copy.get(0).setAttribute("key", "changed");
+		assertEquals("value", doc.get(0).getAttribute("key"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testImmutableNodesCannotBeCopied() throws Exception
+	{
+		new AstCloner().deepClone(buildDoc());
+	}
+
+	@Test
+	public void testSharingPolicy() throws Exception
+	{
+		AstCloner cloner = new AstCloner()
+				.withSharedClass(CtnEmptyImmutableNode.class)
+				.withSharingPolicy(new SharingPolicy()
+				{
+					@Override
+					public boolean isShared(AstNode<?> node)
+					{
+						return node instanceof CtnIdNode;
+					}
+				});
+
+		CtnDocument doc = buildDoc();
+		CtnDocument copy = cloner.deepClone(doc);
+
+		AstComparer.compareAndThrow(doc, copy, true, true);
+		assertSharing(cloner, doc, copy);
+		assertSame(doc.get(0).get(1).get(1), copy.get(0).get(1).get(1));
+	}
+
+	@Test
+	public void testDeepTreeDoesNotOverflowStack() throws Exception
+	{
+		CtnNode n = ctnText("leaf");
+		for (int i = 0; i < 100000; ++i)
+			n = ctnSection().withBody(n).build();
+
+		CtnNode copy = new AstCloner().deepClone(n);
+
+		int depth = 0;
+		CtnNode a = n;
+		CtnNode b = copy;
+		while (a.size() > 0)
+		{
+			assertNotSame(a, b);
+			a = a.get(1).get(0);
+			b = b.get(1).get(0);
+			++depth;
+		}
+		assertEquals(100000, depth);
+		assertEquals(0, b.size());
+	}
+
+	@Test
+	public void testParallelCloneEqualsSequentialClone() throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			AstCloner cloner = new AstCloner()
+					.withSharedClass(CtnEmptyImmutableNode.class)
+					.withParallelChunks(8);
+
+			CtnGenerator gen = new CtnGenerator(42)
+					.withMaxDepth(6)
+					.withAttributeDensity(0.2);
+
+			for (int i = 0; i < 10; ++i)
+			{
+				CtnNode doc = gen.generate(i);
+				CtnNode copy = cloner.deepCloneParallel(doc, executor);
+
+				AstComparer.compareAndThrow(doc, copy, true, true);
+				AstComparer.compareAndThrow(cloner.deepClone(doc), copy, true, true);
+				assertSharing(cloner, doc, copy);
+			}
+
+			// Smaller than the number of chunks
+			CtnNode small = ctnDoc(ctnText("a"));
+			CtnNode copy = cloner.deepCloneParallel(small, executor);
+			AstComparer.compareAndThrow(small, copy, true, true);
+			assertNotSame(small.get(0), copy.get(0));
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+}
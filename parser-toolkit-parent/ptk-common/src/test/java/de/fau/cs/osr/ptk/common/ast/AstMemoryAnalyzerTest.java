@@ -0,0 +1,173 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.ast;
+
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnDoc;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnList;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnSection;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnText;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnUrl;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.fau.cs.osr.ptk.common.ast.AstMemoryAnalyzer.Component;
+import de.fau.cs.osr.ptk.common.ast.AstMemoryAnalyzer.MemoryLayout;
+import de.fau.cs.osr.ptk.common.ast.AstMemoryAnalyzer.Report;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnDocument;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNodeList;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnSection;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnText;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnUrl;
+
+public class AstMemoryAnalyzerTest
+{
+	private static final MemoryLayout LAYOUT = MemoryLayout.COMPRESSED_OOPS;
+
+	@SuppressWarnings("unused")
+	private static final class IntAndLong
+	{
+		private int i;
+
+		private long l;
+	}
+
+	@Test
+	public void testLayoutModel() throws Exception
+	{
+		assertEquals(16, LAYOUT.instanceSize(Object.class));
+		assertEquals(24, LAYOUT.instanceSize(IntAndLong.class));
+
+		assertEquals(16, LAYOUT.arraySize(byte.class, 0));
+		assertEquals(56, LAYOUT.arraySize(Object.class, 10));
+		assertEquals(24, LAYOUT.arraySize(long.class, 1));
+		assertEquals(32, MemoryLayout.UNCOMPRESSED_OOPS.arraySize(long.class, 1));
+		assertEquals(24, MemoryLayout.UNCOMPRESSED_OOPS.arraySize(byte.class, 1));
+	}
+
+	@Test
+	public void testCollectionCapacityModels() throws Exception
+	{
+		assertEquals(0, AstMemoryAnalyzer.arrayListCapacity(0));
+		assertEquals(10, AstMemoryAnalyzer.arrayListCapacity(1));
+		assertEquals(15, AstMemoryAnalyzer.arrayListCapacity(11));
+		assertEquals(22, AstMemoryAnalyzer.arrayListCapacity(16));
+
+		assertEquals(16, AstMemoryAnalyzer.hashMapCapacity(1));
+		assertEquals(16, AstMemoryAnalyzer.hashMapCapacity(12));
+		assertEquals(32, AstMemoryAnalyzer.hashMapCapacity(13));
+	}
+
+	@Test
+	public void testNodesAreCountedPerClass() throws Exception
+	{
+		CtnDocument doc = ctnDoc(
+				ctnSection().withTitle(ctnText("a")).withBody(ctnUrl().build()).build(),
+				ctnSection().withTitle(ctnText("b")).withBody(ctnUrl().build()).build());
+
+		Report report = new AstMemoryAnalyzer(LAYOUT).analyze(doc);
+
+		assertEquals(1, report.getEntry(CtnDocument.class).getCount());
+		assertEquals(2, report.getEntry(CtnSection.class).getCount());
+		assertEquals(2, report.getEntry(CtnText.class).getCount());
+		assertEquals(2, report.getEntry(CtnUrl.class).getCount());
+		// document + 2 * (section, title, body, text, url)
+		assertEquals(11, report.getNodeCount());
+
+		long sum = 0;
+		for (Component c : Component.values())
+			sum += report.getBytes(c);
+		assertEquals(report.getTotal(), sum);
+
+		assertEquals(
+				2 * LAYOUT.instanceSize(CtnSection.class),
+				report.getEntry(CtnSection.class).getBytes(Component.NODE));
+	}
+
+	@Test
+	public void testListSlackIsReported() throws Exception
+	{
+		CtnNodeList list = ctnList(ctnUrl().build());
+
+		Report report = new AstMemoryAnalyzer(LAYOUT).analyze(list);
+
+		// One element, the default capacity of an ArrayList is ten
+		long slack = report.getEntry(CtnNodeList.class).getBytes(Component.LIST_SLACK);
+		assertEquals(LAYOUT.arraySize(Object.class, 10) - LAYOUT.arraySize(Object.class, 1), slack);
+	}
+
+	@Test
+	public void testSharedObjectsAreCountedOnce() throws Exception
+	{
+		String content = "shared content";
+		CtnText a = ctnText(content);
+		CtnText b = ctnText(content);
+		CtnNodeList list = ctnList(a, ctnUrl().build(), b);
+
+		long expected = LAYOUT.instanceSize(String.class) + LAYOUT.stringValueSize(content);
+		Report report = new AstMemoryAnalyzer(LAYOUT).analyze(list);
+		assertEquals(expected, report.getBytes(Component.CONTENT));
+
+		String file = "file.txt";
+		a.setLocation(file, 1, 1);
+		b.setLocation(file, 2, 1);
+		report = new AstMemoryAnalyzer(LAYOUT).analyze(list);
+		long fileSize = LAYOUT.instanceSize(String.class) + LAYOUT.stringValueSize(file);
+		assertEquals(fileSize, report.getBytes(Component.LOCATION));
+
+		// The cached AstLocation view is counted as well
+		a.getNativeLocation();
+		report = new AstMemoryAnalyzer(LAYOUT).analyze(list);
+		assertEquals(
+				fileSize + LAYOUT.instanceSize(AstLocation.class),
+				report.getBytes(Component.LOCATION));
+	}
+
+	@Test
+	public void testAttributesAndRtData() throws Exception
+	{
+		CtnNodeList list = ctnList(ctnUrl().build(), ctnUrl().build());
+
+		Report report = new AstMemoryAnalyzer(LAYOUT).analyze(list);
+		assertEquals(0, report.getBytes(Component.ATTRIBUTES));
+		assertEquals(0, report.getBytes(Component.RT_DATA));
+
+		list.setAttribute("answer", 4242);
+		list.setAttribute("RTD", new RtData(list, "<", RtData.SEP, "|", RtData.SEP, ">"));
+
+		report = new AstMemoryAnalyzer(LAYOUT).analyze(list);
+		assertTrue(report.getBytes(Component.ATTRIBUTES) > LAYOUT.arraySize(Object.class, 16));
+		assertTrue(report.getBytes(Component.RT_DATA) > LAYOUT.instanceSize(RtData.class));
+	}
+
+	@Test
+	public void testReportFormats() throws Exception
+	{
+		Report report = new AstMemoryAnalyzer(LAYOUT).analyze(ctnDoc(ctnText("x")));
+
+		String table = report.toTable();
+		assertTrue(table.contains("CtnDocument"));
+		assertTrue(table.contains("LIST_SLACK"));
+		assertTrue(table.contains("(all)"));
+
+		String json = report.toJson();
+		assertTrue(json.contains("\"node\": \"" + CtnText.class.getName() + "\", \"count\": 1"));
+		assertTrue(json.contains("\"total\": " + report.getTotal() + ","));
+	}
+}
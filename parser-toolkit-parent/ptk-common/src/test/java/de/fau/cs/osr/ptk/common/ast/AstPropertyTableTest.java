@@ -0,0 +1,228 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.ast;
+
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnDoc;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnPropContent;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnText;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnUrl;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNodeWithPropAndContent;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnText;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnUrl;
+
+public class AstPropertyTableTest
+{
+	@Test
+	public void testTableIsBuiltOncePerClass() throws Exception
+	{
+		AstPropertyTable table = AstPropertyTable.of(ctnUrl().build());
+		assertSame(table, AstPropertyTable.of(ctnUrl().withPath("other").build()));
+
+		assertArrayEquals(new String[] { "protocol", "path" }, table.getNames());
+		assertEquals(1, table.indexOf("path"));
+		assertEquals(-1, table.indexOf("content"));
+		assertFalse(table.contains(null));
+
+		assertEquals(0, AstPropertyTable.of(ctnDoc()).size());
+	}
+
+	@Test
+	public void testIndexedAccessFollowsIterationOrder() throws Exception
+	{
+		CtnNodeWithPropAndContent n = ctnPropContent("value", "text");
+		AstPropertyTable table = AstPropertyTable.of(n);
+
+		AstNodePropertyIterator i = n.propertyIterator();
+		for (int k = 0; i.next(); ++k)
+		{
+			assertEquals(i.getName(), table.getName(k));
+			assertEquals(i.getValue(), n.getProperty(k));
+		}
+
+		assertEquals("text", n.setProperty(table.indexOf("content"), "new text"));
+		assertEquals("value", n.setProperty(table.indexOf("prop"), 42));
+		assertEquals("new text", n.getContent());
+		assertEquals(42, n.getProp());
+	}
+
+	@Test
+	public void testNameBasedAccess() throws Exception
+	{
+		CtnUrl url = ctnUrl().withProtocol("http").withPath("//x").build();
+		assertTrue(url.hasProperty("path"));
+		assertFalse(url.hasProperty("content"));
+		assertEquals("http", url.getProperty("protocol"));
+		assertEquals("none", url.getProperty("content", "none"));
+		assertEquals("//x", url.setProperty("path", "//y"));
+		assertEquals("//y", url.getPath());
+	}
+
+	@Test(expected = NoSuchPropertyException.class)
+	public void testGetUnknownPropertyThrows() throws Exception
+	{
+		ctnText().getProperty("path");
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetPropertyWithInvalidIndexThrows() throws Exception
+	{
+		ctnUrl().build().getProperty(2);
+	}
+
+	@Test
+	public void testPropertyKeyOnDifferentClasses() throws Exception
+	{
+		PropertyKey content = new PropertyKey("content");
+
+		CtnText text = ctnText("a");
+		CtnNodeWithPropAndContent n = ctnPropContent(null, "b");
+		CtnUrl url = ctnUrl().build();
+
+		assertEquals("a", content.get(text));
+		assertEquals("b", content.get(n));
+		assertEquals("a", content.set(text, "c"));
+		assertEquals("c", text.getContent());
+
+		assertFalse(content.isPresentIn(url));
+		assertEquals(-1, content.indexIn(url));
+		assertEquals("none", content.get(url, "none"));
+		assertEquals("c", content.get(text, "none"));
+	}
+
+	@Test(expected = NoSuchPropertyException.class)
+	public void testPropertyKeySetOnMissingPropertyThrows() throws Exception
+	{
+		new PropertyKey("content").set(ctnUrl().build(), "x");
+	}
+
+	@Test
+	public void testIndexedAccessUsesPropertyIterator() throws Exception
+	{
+		CountingNode n = new CountingNode(1, 2);
+		assertEquals(1, n.getProperty(0));
+		assertEquals(2, n.getProperty(1));
+		assertEquals(2, n.getIteratorCount());
+
+		// The setter of "value" counts the modification itself
+		assertEquals(1, n.setProperty(0, 3));
+		assertEquals(3, n.getValue());
+		assertEquals(1, n.getModificationCount());
+
+		assertEquals(2, n.setProperty(1, 4));
+		assertEquals(4, n.getOther());
+		assertEquals(2, n.getModificationCount());
+		assertEquals(4, n.getIteratorCount());
+	}
+
+	// =========================================================================
+
+	public static final class CountingNode
+			extends
+				AstLeafNodeImpl<CountingNode>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private int iterators;
+
+		private int value;
+
+		private int other;
+
+		public CountingNode(int value, int other)
+		{
+			this.value = value;
+			this.other = other;
+		}
+
+		public int getIteratorCount()
+		{
+			return iterators;
+		}
+
+		public int getValue()
+		{
+			return value;
+		}
+
+		public void setValue(int value)
+		{
+			markModified();
+			this.value = value;
+		}
+
+		/**
+		 * Returns the property "other". Has no setter, the iterator assigns
+		 * the field without counting the modification.
+		 */
+		public int getOther()
+		{
+			return other;
+		}
+
+		@Override
+		public int getPropertyCount()
+		{
+			return 2;
+		}
+
+		@Override
+		public AstNodePropertyIterator propertyIterator()
+		{
+			++iterators;
+			return new AstNodePropertyIterator()
+			{
+				@Override
+				protected int getPropertyCount()
+				{
+					return 2;
+				}
+
+				@Override
+				protected String getName(int index)
+				{
+					return (index == 0) ? "value" : "other";
+				}
+
+				@Override
+				protected Object getValue(int index)
+				{
+					return (index == 0) ? value : other;
+				}
+
+				@Override
+				protected Object setValue(int index, Object v)
+				{
+					Object old = getValue(index);
+					if (index == 0)
+						CountingNode.this.setValue((Integer) v);
+					else
+						other = (Integer) v;
+					return old;
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,315 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.ast;
+
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnBody;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnDoc;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnId;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnSection;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnText;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnUrl;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import de.fau.cs.osr.ptk.common.comparer.AstComparer;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnBody;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnDocument;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnGenerator;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnSection;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnText;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnUrl;
+
+public class FrozenAstTest
+{
+	private static CtnDocument buildDoc()
+	{
+		CtnDocument doc = ctnDoc(
+				ctnSection()
+						.withTitle(ctnText("First"))
+						.withBody(ctnText("one"), ctnUrl().build())
+						.build(),
+				ctnSection()
+						.withTitle(ctnText("Second"))
+						.withBody(CtnBody.NO_BODY)
+						.build());
+		doc.get(0).setAttribute("key", "value");
+		return doc;
+	}
+
+	private static void assertRejected(Runnable r)
+	{
+		try
+		{
+			r.run();
+			fail("Modification of a frozen node was not rejected");
+		}
+		catch (UnsupportedOperationException e)
+		{
+		}
+	}
+
+	@Test
+	public void testModificationsAreRejected() throws Exception
+	{
+		final CtnDocument doc = FrozenAst.freeze(buildDoc()).getRoot();
+		final CtnSection section = (CtnSection) doc.get(0);
+		final CtnNode body = section.getBody();
+		final CtnText text = (CtnText) body.get(0);
+		final CtnUrl url = (CtnUrl) body.get(1);
+
+		assertTrue(doc.isFrozen());
+		assertTrue(text.isFrozen());
+
+		assertRejected(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				doc.add(ctnId(1));
+			}
+		});
+		assertRejected(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				doc.remove(0);
+			}
+		});
+		assertRejected(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				doc.clear();
+			}
+		});
+		assertRejected(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				Iterator<CtnNode> i = doc.iterator();
+				i.next();
+				i.remove();
+			}
+		});
+		assertRejected(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				doc.listIterator().add(ctnId(1));
+			}
+		});
+		assertRejected(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				doc.subList(0, 1).clear();
+			}
+		});
+		assertRejected(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				section.setBody(ctnBody());
+			}
+		});
+		assertRejected(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				section.setLevel(2);
+			}
+		});
+		assertRejected(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				section.setProperty("level", 2);
+			}
+		});
+		assertRejected(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				section.setAttribute("key", "changed");
+			}
+		});
+		assertRejected(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				section.removeAttribute("key");
+			}
+		});
+		assertRejected(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				section.setNativeLocation(new AstLocation("file", 1, 2));
+			}
+		});
+		assertRejected(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				text.setContent("changed");
+			}
+		});
+		assertRejected(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				url.setPath("changed");
+			}
+		});
+
+		AstComparer.compareAndThrow(buildDoc(), doc, true, true);
+	}
+
+	@Test
+	public void testClonesAreMutable() throws Exception
+	{
+		CtnDocument doc = FrozenAst.freeze(buildDoc()).getRoot();
+
+		CtnNode copy = (CtnNode) doc.get(0).clone();
+		assertFalse(copy.isFrozen());
+		copy.setAttribute("key", "changed");
+		assertTrue(copy.get(1).isFrozen());
+
+		CtnNode deepCopy = (CtnNode) doc.get(0).deepClone();
+		assertFalse(deepCopy.get(1).get(0).isFrozen());
+		((CtnText) deepCopy.get(1).get(0)).setContent("changed");
+
+		assertEquals("value", doc.get(0).getAttribute("key"));
+		assertEquals("one", ((CtnText) doc.get(0).get(1).get(0)).getContent());
+	}
+
+	@Test
+	public void testPersistentModificationOfFrozenTree() throws Exception
+	{
+		CtnDocument doc = FrozenAst.freeze(buildDoc()).getRoot();
+
+		CtnNode changed = PersistentAst.set((CtnNode) doc, new int[] { 0, 1, 0 }, (CtnNode) ctnText("two"));
+		assertFalse(changed.isFrozen());
+		assertFalse(changed.get(0).get(1).isFrozen());
+		assertSame(doc.get(1), changed.get(1));
+
+		CtnNode frozen = FrozenAst.freeze(changed).getRoot();
+		assertSame(changed, frozen);
+		assertTrue(frozen.get(0).get(1).get(0).isFrozen());
+
+		assertEquals("one", ((CtnText) doc.get(0).get(1).get(0)).getContent());
+		assertEquals("two", ((CtnText) frozen.get(0).get(1).get(0)).getContent());
+	}
+
+	@Test
+	public void testDerivedData() throws Exception
+	{
+		FrozenAst<CtnNode> frozen = FrozenAst.freeze((CtnNode) buildDoc());
+
+		// doc, 2 sections, 2 titles, 2 title texts, body, text, url, NO_BODY
+		assertEquals(11, frozen.getNodeCount());
+		assertEquals(11, frozen.getNodeCount());
+
+		CtnNode other = buildDoc();
+		other.get(0).setAttribute("key", "other");
+		assertEquals(AstStructuralHash.hash(other), frozen.getStructuralHash());
+
+		((CtnSection) other.get(0)).setLevel(3);
+		assertNotEquals(AstStructuralHash.hash(other), frozen.getStructuralHash());
+	}
+
+	@Test
+	public void testStructuralHashOfDeepTree() throws Exception
+	{
+		CtnNode a = ctnText("leaf");
+		CtnNode b = ctnText("leaf");
+		for (int i = 0; i < 100000; ++i)
+		{
+			a = ctnSection().withBody(a).build();
+			b = ctnSection().withBody(b).build();
+		}
+		assertEquals(AstStructuralHash.hash(a), AstStructuralHash.hash(b));
+		assertEquals(400001, FrozenAst.freeze(a).getNodeCount());
+	}
+
+	@Test
+	public void testConcurrentReaders() throws Exception
+	{
+		final FrozenAst<CtnNode> frozen = FrozenAst.freeze(
+				(CtnNode) new CtnGenerator(42).withAttributeDensity(0.2).generate(0));
+
+		final int expected = AstStructuralHash.hash(frozen.getRoot());
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+			for (int i = 0; i < 16; ++i)
+			{
+				futures.add(executor.submit(new Callable<Integer>()
+				{
+					@Override
+					public Integer call() throws Exception
+					{
+						AstComparer.compareAndThrow(
+								frozen.getRoot(),
+								frozen.getRoot().deepClone(),
+								true,
+								true);
+						return frozen.getStructuralHash();
+					}
+				}));
+			}
+
+			for (Future<Integer> f : futures)
+				assertEquals(expected, (int) f.get());
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+}
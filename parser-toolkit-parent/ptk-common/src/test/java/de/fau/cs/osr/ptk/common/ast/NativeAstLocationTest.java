@@ -17,10 +17,26 @@
 
 package de.fau.cs.osr.ptk.common.ast;
 
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnText;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 
 import org.junit.Test;
 
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNodeList;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnSection;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnText;
+
 public class NativeAstLocationTest
 {
 	@Test
@@ -31,4 +47,139 @@ public class NativeAstLocationTest
 		assertEquals(expected, loc.toString());
 		assertEquals(loc, AstLocation.valueOf(expected));
 	}
+
+	@Test
+	public void testValueOfWithoutFileAndNegativeValues() throws Exception
+	{
+		assertEquals(new AstLocation(null, -1, -1), AstLocation.valueOf("-1:-1"));
+		assertEquals(
+				new AstLocation("f", Integer.MIN_VALUE, Integer.MAX_VALUE),
+				AstLocation.valueOf("f:" + Integer.MIN_VALUE + ":" + Integer.MAX_VALUE));
+		assertNull(AstLocation.valueOf("42"));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testValueOfRejectsOverflow() throws Exception
+	{
+		AstLocation.valueOf("f:2147483648:0");
+	}
+
+	@Test
+	public void testDecodedFileNamesAreShared() throws Exception
+	{
+		AstLocation a = AstLocation.valueOf("some%20file:1:2");
+		AstLocation b = AstLocation.valueOf("some%20file:3:4");
+		assertEquals("some file", a.getFile());
+		assertSame(a.getFile(), b.getFile());
+	}
+
+	@Test
+	public void testPackedLineAndColumn() throws Exception
+	{
+		int[] values = { -1, 0, 1, 42, Integer.MIN_VALUE, Integer.MAX_VALUE };
+		for (int line : values)
+		{
+			for (int column : values)
+			{
+				long packed = AstLocation.pack(line, column);
+				assertEquals(line, AstLocation.unpackLine(packed));
+				assertEquals(column, AstLocation.unpackColumn(packed));
+			}
+		}
+	}
+
+	@Test
+	public void testNodeStoresPackedLocation() throws Exception
+	{
+		CtnText n = ctnText("text");
+		assertFalse(n.hasLocation());
+		assertNull(n.getNativeLocation());
+		assertNull(n.getLocation());
+		assertNull(n.getLocationString());
+
+		AstLocation loc = new AstLocation("tes\\t:", 42, 43);
+		n.setNativeLocation(loc);
+		assertTrue(n.hasLocation());
+		assertEquals(loc, n.getNativeLocation());
+		assertEquals(loc.toString(), n.getLocationString());
+		assertEquals(loc.toXtcLocation(), n.getLocation());
+		assertEquals(43, AstLocation.unpackColumn(n.getLocationLineAndColumn()));
+
+		n.setNativeLocation(new AstLocation(null, 0, 0));
+		assertTrue(n.hasLocation());
+		assertNull(n.getLocationFile());
+
+		n.setNativeLocation(null);
+		assertFalse(n.hasLocation());
+	}
+
+	@Test
+	public void testLocationViewsAreCachedUntilLocationChanges() throws Exception
+	{
+		CtnText n = ctnText("text");
+		n.setLocation("file", 1, 2);
+		AstLocation view = n.getNativeLocation();
+		assertSame(view, n.getNativeLocation());
+		assertSame(n.getLocation(), n.getLocation());
+
+		n.setLocation("file", 3, 4);
+		assertEquals(new AstLocation("file", 3, 4), n.getNativeLocation());
+		assertEquals(3, n.getLocation().line);
+
+		AstLocation loc = new AstLocation("other", 5, 6);
+		n.setNativeLocation(loc);
+		assertSame(loc, n.getNativeLocation());
+	}
+
+	@Test
+	public void testXtcLocationIsCreatedOnce() throws Exception
+	{
+		AstLocation loc = new AstLocation("file", 1, 2);
+		assertSame(loc.toXtcLocation(), loc.toXtcLocation());
+	}
+
+	/**
+	 * The resource was written by the AstNodeImpl that still stored an
+	 * AstLocation object. It holds a list of a text with location "f:3:4", a
+	 * text without location and a section with location "g:5:6".
+	 */
+	@Test
+	public void testReadNodesSerializedWithAstLocationObjects() throws Exception
+	{
+		CtnNodeList list;
+		try (InputStream is = getClass().getResourceAsStream("/ctn-nodes-with-locations.ser"))
+		{
+			list = (CtnNodeList) new ObjectInputStream(is).readObject();
+		}
+
+		assertEquals(3, list.size());
+		checkNodesWithLocations(list);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+		{
+			out.writeObject(list);
+		}
+		Object copy = new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		checkNodesWithLocations((CtnNodeList) copy);
+		assertEquals(list, copy);
+	}
+
+	private static void checkNodesWithLocations(CtnNodeList list)
+	{
+		CtnNode located = list.get(0);
+		assertTrue(located.hasLocation());
+		assertEquals(new AstLocation("f", 3, 4), located.getNativeLocation());
+
+		CtnNode unlocated = list.get(1);
+		assertFalse(unlocated.hasLocation());
+		assertNull(unlocated.getNativeLocation());
+		assertEquals("b", unlocated.getAttribute("a"));
+
+		CtnSection section = (CtnSection) list.get(2);
+		assertEquals("g:5:6", ((AstNodeImpl<?>) section).getLocationString());
+		assertEquals(2, section.getLevel());
+		assertFalse(section.getTitle().get(0).hasLocation());
+	}
 }
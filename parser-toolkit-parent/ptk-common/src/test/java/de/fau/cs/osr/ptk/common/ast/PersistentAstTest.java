@@ -0,0 +1,136 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.ast;
+
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnBody;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnDoc;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnId;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnSection;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnText;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.fau.cs.osr.ptk.common.comparer.AstComparer;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnIdNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnSection;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnText;
+
+public class PersistentAstTest
+{
+	private static CtnNode buildDoc()
+	{
+		return ctnDoc(
+				ctnSection()
+						.withTitle(ctnText("First"))
+						.withBody(ctnText("one"), ctnId(1))
+						.build(),
+				ctnSection()
+						.withTitle(ctnText("Second"))
+						.withBody(ctnId(2), ctnText("two"))
+						.build());
+	}
+
+	@Test
+	public void testSetCopiesOnlyThePath() throws Exception
+	{
+		CtnNode before = buildDoc();
+		CtnNode expected = (CtnNode) before.deepClone();
+
+		CtnNode after = PersistentAst.set(before, new int[] { 0, 1, 1 }, ctnId(42));
+
+		// The snapshot is untouched
+		AstComparer.compareAndThrow(expected, before, true, true);
+
+		assertNotSame(before, after);
+		assertNotSame(before.get(0), after.get(0));
+		assertNotSame(before.get(0).get(1), after.get(0).get(1));
+		assertSame(before.get(0).get(0), after.get(0).get(0));
+		assertSame(before.get(0).get(1).get(0), after.get(0).get(1).get(0));
+		assertSame(before.get(1), after.get(1));
+
+		assertEquals(42, ((CtnIdNode) PersistentAst.get(after, 0, 1, 1)).id);
+		assertEquals(1, ((CtnIdNode) PersistentAst.get(before, 0, 1, 1)).id);
+	}
+
+	@Test
+	public void testAddAndRemove() throws Exception
+	{
+		CtnNode before = buildDoc();
+
+		CtnNode added = PersistentAst.add(before, new int[] { 1, 1, 0 }, ctnId(0));
+		assertEquals(2, before.get(1).get(1).size());
+		assertEquals(3, added.get(1).get(1).size());
+		assertEquals(0, ((CtnIdNode) PersistentAst.get(added, 1, 1, 0)).id);
+		assertSame(before.get(0), added.get(0));
+
+		CtnNode removed = PersistentAst.remove(added, new int[] { 1, 1, 0 });
+		assertEquals(3, added.get(1).get(1).size());
+		AstComparer.compareAndThrow(before, removed, true, true);
+	}
+
+	@Test
+	public void testAddMergesText() throws Exception
+	{
+		CtnNode before = buildDoc();
+		CtnNode after = PersistentAst.add(before, new int[] { 0, 1, 1 }, ctnText("+"));
+
+		assertEquals("one", ((CtnText) PersistentAst.get(before, 0, 1, 0)).getContent());
+		assertEquals("one+", ((CtnText) PersistentAst.get(after, 0, 1, 0)).getContent());
+		assertEquals(2, after.get(0).get(1).size());
+	}
+
+	@Test
+	public void testPropertiesAndAttributes() throws Exception
+	{
+		CtnNode before = buildDoc();
+		before.get(0).setAttribute("keep", "me");
+
+		CtnNode after = PersistentAst.setProperty(before, new int[] { 0 }, "level", 3);
+		after = PersistentAst.setAttribute(after, new int[] { 0 }, "key", "value");
+
+		assertEquals(0, ((CtnSection) before.get(0)).getLevel());
+		assertEquals(3, ((CtnSection) after.get(0)).getLevel());
+		assertNull(before.get(0).getAttribute("key"));
+		assertEquals("value", after.get(0).getAttribute("key"));
+		assertEquals("me", after.get(0).getAttribute("keep"));
+
+		CtnNode removed = PersistentAst.removeAttribute(after, new int[] { 0 }, "keep");
+		assertEquals("me", after.get(0).getAttribute("keep"));
+		assertNull(removed.get(0).getAttribute("keep"));
+	}
+
+	@Test
+	public void testSetRoot() throws Exception
+	{
+		CtnNode before = buildDoc();
+		CtnNode body = ctnBody(ctnText("x"));
+		assertSame(body, PersistentAst.set(before, PersistentAst.root(), body));
+
+		CtnNode after = PersistentAst.setAttribute(before, PersistentAst.root(), "a", 1);
+		assertNotSame(before, after);
+		assertTrue(after.hasAttributes());
+		for (int i = 0; i < before.size(); ++i)
+			assertSame(before.get(i), after.get(i));
+	}
+}
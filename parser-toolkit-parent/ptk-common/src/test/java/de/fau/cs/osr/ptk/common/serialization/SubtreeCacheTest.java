@@ -0,0 +1,117 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.serialization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SubtreeCacheTest
+{
+	private static SubtreeCache.Key key(long hash, int weight)
+	{
+		return new SubtreeCache.Key(hash, ~hash, 1, weight);
+	}
+
+	@Test
+	public void testHitsMissesAndSavedWeightAreCounted() throws Exception
+	{
+		SubtreeCache<String> cache = new SubtreeCache<String>(1000);
+		cache.put(key(1, 10), "one");
+
+		assertEquals("one", cache.get(key(1, 10)));
+		assertEquals("one", cache.get(key(1, 0)));
+		assertNull(cache.get(key(2, 10)));
+		assertNull(cache.get(new SubtreeCache.Key(1, ~1, 2, 10)));
+
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(.5, cache.getHitRatio(), 1e-9);
+		assertEquals(20, cache.getSavedWeight());
+
+		cache.resetStatistics();
+		assertEquals(0, cache.getHits());
+		assertEquals(0, cache.getSavedWeight());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEntriesAreEvictedByWeight() throws Exception
+	{
+		SubtreeCache<String> cache = new SubtreeCache<String>(100);
+		cache.put(key(1, 40), "one");
+		cache.put(key(2, 40), "two");
+		cache.get(key(1, 40));
+
+		cache.put(key(3, 40), "three");
+		assertEquals(2, cache.size());
+		assertEquals(80, cache.getWeight());
+		assertEquals(1, cache.getEvictions());
+		assertEquals("one", cache.get(key(1, 40)));
+		assertNull(cache.get(key(2, 40)));
+
+		// Heavier than the whole cache
+		cache.put(key(4, 101), "four");
+		assertNull(cache.get(key(4, 101)));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testMaxEntriesIsEnforced() throws Exception
+	{
+		SubtreeCache<String> cache = new SubtreeCache<String>(1000);
+		for (int i = 0; i < 10; ++i)
+			cache.put(key(i, 1), String.valueOf(i));
+
+		cache.withMaxEntries(3);
+		assertEquals(3, cache.size());
+		assertEquals(3, cache.getWeight());
+		assertEquals("9", cache.get(key(9, 1)));
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+	}
+
+	@Test
+	public void testAdmissionFilterAdmitsKeysOfferedTwice() throws Exception
+	{
+		SubtreeCache<String> cache = new SubtreeCache<String>(100);
+		assertTrue(cache.admit(key(1, 10)));
+		assertFalse(cache.admit(key(1, 101)));
+
+		cache.withAdmissionFilter(64);
+		assertFalse(cache.admit(key(1, 10)));
+		assertFalse(cache.admit(key(2, 10)));
+		assertTrue(cache.admit(key(1, 10)));
+		assertFalse(cache.admit(key(1, 10).withVariant(1)));
+		assertEquals(3, cache.getRejections());
+
+		cache.withAdmissionFilter(0);
+		assertTrue(cache.admit(key(3, 10)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIllegalNodeRangeIsRejected() throws Exception
+	{
+		new SubtreeCache<String>(1000).withNodeRange(8, 4);
+	}
+}
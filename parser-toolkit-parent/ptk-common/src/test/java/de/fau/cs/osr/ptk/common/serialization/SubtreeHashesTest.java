@@ -0,0 +1,134 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.serialization;
+
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnDoc;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnObjProp;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnSection;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnText;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnUrl;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import de.fau.cs.osr.ptk.common.ast.AstLocation;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnDocument;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnSection;
+
+public class SubtreeHashesTest
+{
+	private static CtnSection section(String text)
+	{
+		return ctnSection()
+				.withTitle(ctnText("Title"))
+				.withBody(ctnText(text), ctnUrl().withPath(text).build())
+				.build();
+	}
+
+	private static SubtreeCache.Key key(CtnNode n)
+	{
+		return SubtreeHashes.compute(n, 1, Integer.MAX_VALUE, 0).getKey(n);
+	}
+
+	@Test
+	public void testEqualTreesHaveEqualKeys() throws Exception
+	{
+		CtnDocument a = ctnDoc(section("one"), section("two"));
+		CtnDocument b = ctnDoc(section("one"), section("two"));
+
+		assertEquals(key(a), key(b));
+		assertEquals(key(a).getWeight(), key(b).getWeight());
+
+		SubtreeHashes hashes = SubtreeHashes.compute(a, 1, Integer.MAX_VALUE, 0);
+		assertEquals(key(b.get(1)), hashes.getKey(a.get(1)));
+		assertNotEquals(hashes.getKey(a.get(0)), hashes.getKey(a.get(1)));
+	}
+
+	@Test
+	public void testEverythingSerializedIsCovered() throws Exception
+	{
+		CtnDocument doc = ctnDoc(section("one"), section("two"));
+		SubtreeCache.Key original = key(doc);
+
+		// Order of children
+		assertNotEquals(original, key(ctnDoc(section("two"), section("one"))));
+
+		// Strings which only differ in their hashCode() ...
+		assertEquals("Aa".hashCode(), "BB".hashCode());
+		assertNotEquals(key(ctnDoc(section("Aa"))), key(ctnDoc(section("BB"))));
+
+		CtnDocument changed = ctnDoc(section("one"), section("two"));
+		changed.get(1).setAttribute("attr", 42);
+		assertNotEquals(original, key(changed));
+		changed.get(1).setAttribute("attr", 42L);
+		assertNotEquals(original, key(changed));
+
+		changed = ctnDoc(section("one"), section("two"));
+		changed.get(1).get(0).setNativeLocation(new AstLocation("file", 1, 2));
+		assertNotEquals(original, key(changed));
+
+		changed = ctnDoc(section("one"), section("two"));
+		((CtnSection) changed.get(1)).setLevel(2);
+		assertNotEquals(original, key(changed));
+
+		// Contexts
+		assertNotEquals(original, SubtreeHashes.compute(doc, 1, Integer.MAX_VALUE, 1).getKey(doc));
+		assertNotEquals(original, original.withVariant(1));
+	}
+
+	@Test
+	public void testNodesAsPropertyValuesAreHashedByContent() throws Exception
+	{
+		CtnDocument a = ctnDoc(ctnObjProp(section("one")));
+		CtnDocument b = ctnDoc(ctnObjProp(section("one")));
+		CtnDocument c = ctnDoc(ctnObjProp(section("two")));
+		assertEquals(key(a), key(b));
+		assertNotEquals(key(a), key(c));
+	}
+
+	@Test
+	public void testSubtreesWithUnknownValuesAreNotHashed() throws Exception
+	{
+		CtnSection section = section("one");
+		CtnDocument doc = ctnDoc(section, ctnObjProp(new Object()));
+
+		SubtreeHashes hashes = SubtreeHashes.compute(doc, 1, Integer.MAX_VALUE, 0);
+		assertNull(hashes.getKey(doc));
+		assertNull(hashes.getKey(doc.get(1)));
+		assertNotNull(hashes.getKey(section));
+	}
+
+	@Test
+	public void testOnlySubtreesWithinTheNodeRangeAreKept() throws Exception
+	{
+		// document -> section -> (title -> text, body -> (text, url))
+		CtnSection section = section("one");
+		CtnDocument doc = ctnDoc(section);
+
+		SubtreeHashes hashes = SubtreeHashes.compute(doc, 2, 6, 0);
+		assertNull(hashes.getKey(doc));
+		assertNotNull(hashes.getKey(section));
+		assertNotNull(hashes.getKey(section.getTitle()));
+		assertNull(hashes.getKey(section.getTitle().get(0)));
+		assertEquals(3, hashes.size());
+	}
+}
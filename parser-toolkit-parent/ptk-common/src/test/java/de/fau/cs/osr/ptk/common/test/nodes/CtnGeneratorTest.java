@@ -0,0 +1,130 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.test.nodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import de.fau.cs.osr.ptk.common.ast.RtData;
+import de.fau.cs.osr.ptk.common.comparer.AstComparer;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnGenerator.Distribution;
+
+public class CtnGeneratorTest
+{
+	private static CtnGenerator generator(long seed)
+	{
+		return new CtnGenerator(seed)
+				.withMaxDepth(3)
+				.withFanOut(1, 6, Distribution.UNIFORM)
+				.withTextLength(0, 64, Distribution.EXPONENTIAL)
+				.withAttributeDensity(0.2)
+				.withPropertyDensity(0.2)
+				.withRtDataDensity(0.2)
+				.withLocations(true)
+				.withDocumentSize(4 * 1024);
+	}
+
+	@Test
+	public void testGenerationIsDeterministic() throws Exception
+	{
+		CtnDocument a = generator(42).generate(7);
+		CtnDocument b = generator(42).generate(7);
+		AstComparer.compareAndThrow(a, b, true, true);
+
+		assertFalse(AstComparer.compareNoThrow(a, generator(43).generate(7), true, true));
+		assertFalse(AstComparer.compareNoThrow(a, generator(42).generate(8), true, true));
+	}
+
+	@Test
+	public void testDocumentsCanBeGeneratedIndependently() throws Exception
+	{
+		CtnGenerator g = generator(1);
+
+		Iterator<CtnDocument> i = g.documents(3).iterator();
+		i.next();
+		i.next();
+		AstComparer.compareAndThrow(g.generate(2), i.next(), true, true);
+		assertFalse(i.hasNext());
+	}
+
+	@Test
+	public void testCorpusReachesTotalSize() throws Exception
+	{
+		CtnGenerator g = generator(1).withDocumentSize(1000);
+
+		int count = 0;
+		for (CtnDocument doc : g.corpus(10500))
+		{
+			assertFalse(doc.isEmpty());
+			++count;
+		}
+		assertEquals(11, count);
+	}
+
+	@Test
+	public void testDocumentSizeAndDepthAreRespected() throws Exception
+	{
+		CtnDocument small = generator(5).withDocumentSize(1000).generate(0);
+		CtnDocument large = generator(5).withDocumentSize(100000).generate(0);
+
+		long largeSize = CtnGenerator.estimateSize(large);
+		assertTrue(CtnGenerator.estimateSize(small) < largeSize);
+		assertTrue(largeSize >= 100000);
+
+		assertTrue(maxLevel(large) <= 3);
+	}
+
+	@Test
+	public void testDecorations() throws Exception
+	{
+		CtnDocument doc = generator(9).withDocumentSize(20000).generate(3);
+
+		assertNotNull(doc.getNativeLocation());
+		assertEquals("doc-3", doc.getNativeLocation().getFile());
+		assertEquals(1, doc.getNativeLocation().getLine());
+
+		boolean[] found = new boolean[2];
+		findDecorations(doc, found);
+		assertTrue("attributes", found[0]);
+		assertTrue("RtData", found[1]);
+	}
+
+	// =========================================================================
+
+	private static int maxLevel(CtnNode node)
+	{
+		int max = (node instanceof CtnSection) ? ((CtnSection) node).getLevel() : 0;
+		for (CtnNode n : node)
+			max = Math.max(max, maxLevel(n));
+		return max;
+	}
+
+	private static void findDecorations(CtnNode node, boolean[] found)
+	{
+		found[0] |= node.hasAttribute("id");
+		found[1] |= node.getAttribute("RTD") instanceof RtData;
+		for (CtnNode n : node)
+			findDecorations(n, found);
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import de.fau.cs.osr.ptk.common.ast.AstNode;
+
+/**
+ * Reads a sequence of ASTs one at a time. Accepts the output of
+ * {@link AstJsonLinesWriter} and, more generally, any sequence of JSON
+ * documents separated by white space. All documents are deserialized with
+ * the same Gson instance.
+ * 
+ * I/O errors are reported as {@link JsonIOException}, malformed documents as
+ * {@link com.google.gson.JsonSyntaxException}.
+ */
+public class AstJsonLinesReader<T extends AstNode<T>>
+		implements
+			Iterator<T>,
+			Closeable
+{
+	private final Gson gson;
+
+	private final Class<? extends T> rootType;
+
+	private final JsonReader reader;
+
+	private long documentCount = 0;
+
+	// =========================================================================
+
+	/**
+	 * @param gson
+	 *            A Gson instance with an {@link AstNodeJsonTypeAdapter}
+	 *            registered for the AST node type.
+	 * @param rootType
+	 *            The type of the root nodes of the documents.
+	 */
+	public AstJsonLinesReader(Gson gson, Class<? extends T> rootType, Reader in)
+	{
+		this.gson = gson;
+		this.rootType = rootType;
+		this.reader = new JsonReader(in);
+		this.reader.setLenient(true);
+	}
+
+	// =========================================================================
+
+	/**
+	 * The number of documents read so far.
+	 */
+	public long getDocumentCount()
+	{
+		return documentCount;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		try
+		{
+			return reader.peek() != JsonToken.END_DOCUMENT;
+		}
+		catch (IOException e)
+		{
+			throw new JsonIOException(e);
+		}
+	}
+
+	@Override
+	public T next()
+	{
+		if (!hasNext())
+			throw new NoSuchElementException();
+
+		T root = gson.fromJson(reader, rootType);
+		++documentCount;
+		return root;
+	}
+
+	@Override
+	public void remove()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		reader.close();
+	}
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.json;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import de.fau.cs.osr.ptk.common.ast.AstNode;
+import de.fau.cs.osr.ptk.common.serialization.AstStreamWriterBase;
+
+/**
+ * Writes a sequence of ASTs in the JSON Lines format: Every document is
+ * written as compact JSON on a line of its own, regardless of whether the
+ * Gson instance is configured for pretty printing. All documents are
+ * serialized with the same Gson instance and thus share its type adapters
+ * and type name mapper. Use {@link AstJsonLinesReader} to read the documents
+ * back.
+ */
+public class AstJsonLinesWriter<T extends AstNode<T>>
+		extends
+			AstStreamWriterBase<T>
+{
+	private final Gson gson;
+
+	// =========================================================================
+
+	/**
+	 * @param gson
+	 *            A Gson instance with an {@link AstNodeJsonTypeAdapter}
+	 *            registered for the AST node type.
+	 */
+	public AstJsonLinesWriter(Gson gson, Writer out)
+	{
+		super(out);
+		this.gson = gson;
+	}
+
+	// =========================================================================
+
+	@Override
+	protected void encode(T root, Writer w) throws IOException
+	{
+		// Gson adopts its null and HTML escaping settings but leaves the
+		// writer's indentation alone
+		JsonWriter writer = new JsonWriter(w);
+		gson.toJson(root, root.getClass(), writer);
+		writer.flush();
+	}
+
+	@Override
+	protected void writeSeparator(Writer w) throws IOException
+	{
+		w.write('\n');
+	}
+}
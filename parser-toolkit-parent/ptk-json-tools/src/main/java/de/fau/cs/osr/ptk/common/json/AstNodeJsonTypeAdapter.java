@@ -33,9 +33,12 @@ import com.google.gson.JsonSerializer;
 
 import de.fau.cs.osr.ptk.common.ast.AstLocation;
 import de.fau.cs.osr.ptk.common.ast.AstNode;
+import de.fau.cs.osr.ptk.common.ast.AstNodeImpl;
 import de.fau.cs.osr.ptk.common.ast.AstNodePropertyIterator;
 import de.fau.cs.osr.ptk.common.ast.AstStringNode;
 import de.fau.cs.osr.ptk.common.serialization.AstNodeConverterBase;
+import de.fau.cs.osr.ptk.common.serialization.SubtreeCache;
+import de.fau.cs.osr.ptk.common.serialization.SubtreeHashes;
 import de.fau.cs.osr.ptk.common.serialization.SyntaxErrorException;
 
 public class AstNodeJsonTypeAdapter<T extends AstNode<T>>
@@ -55,6 +58,10 @@ public class AstNodeJsonTypeAdapter<T extends AstNode<T>>
 
 	// =========================================================================
 
+	private volatile SubtreeCache<JsonElement> subtreeCache;
+
+	// =========================================================================
+
 	public AstNodeJsonTypeAdapter(Class<T> nodeType)
 	{
 		super(nodeType);
@@ -66,6 +73,27 @@ public class AstNodeJsonTypeAdapter<T extends AstNode<T>>
 		return new AstNodeJsonTypeAdapter<S>(nodeType);
 	}
 
+	/**
+	 * Enables caching of serialized sub-trees across documents. On a hit the
+	 * cached JsonElement is added to the output as it is. Elements obtained
+	 * with Gson.toJsonTree() may therefore be shared with the cache and must
+	 * not be modified. The cache relies on attribute and property values not
+	 * being modified in place. Pass <code>null</code> to disable caching.
+	 * 
+	 * Only the marshalling is saved, Gson still writes the cached elements.
+	 * To splice serialized text use
+	 * {@link IncrementalAstJsonSerializer#setSubtreeCache(SubtreeCache)}.
+	 */
+	public void setSubtreeCache(SubtreeCache<JsonElement> subtreeCache)
+	{
+		this.subtreeCache = subtreeCache;
+	}
+
+	public SubtreeCache<JsonElement> getSubtreeCache()
+	{
+		return subtreeCache;
+	}
+
 	// =========================================================================
 
 	@Override
@@ -74,7 +102,17 @@ public class AstNodeJsonTypeAdapter<T extends AstNode<T>>
 			Type typeOfSrc,
 			JsonSerializationContext context)
 	{
-		return marshalNode(src, true, context);
+		SubtreeCache<JsonElement> cache = subtreeCache;
+		if (cache == null)
+			return marshalNode(src, true, context, null, null);
+
+		SubtreeHashes hashes = SubtreeHashes.compute(
+				src,
+				cache.getMinNodes(),
+				cache.getMaxNodes(),
+				getSettingsStamp());
+
+		return marshalNode(src, true, context, cache, hashes);
 	}
 
 	@Override
@@ -89,6 +127,62 @@ public class AstNodeJsonTypeAdapter<T extends AstNode<T>>
 	// =========================================================================
 
 	private JsonElement marshalNode(
+			T n,
+			boolean typeInfoRequired,
+			JsonSerializationContext context,
+			SubtreeCache<JsonElement> cache,
+			SubtreeHashes hashes)
+	{
+		SubtreeCache.Key key = null;
+		if (hashes != null)
+		{
+			key = hashes.getKey(n);
+			if (key != null)
+			{
+				if (!typeInfoRequired)
+					key = key.withVariant(1);
+
+				JsonElement cached = cache.get(key);
+				if (cached != null)
+					return cached;
+			}
+		}
+
+		JsonElement gsonElement = marshalNodeFields(n, typeInfoRequired, context);
+		if (gsonElement.isJsonObject())
+		{
+			JsonObject gsonNode = gsonElement.getAsJsonObject();
+			if (n.isList())
+			{
+				JsonArray array = new JsonArray();
+				for (T c : n)
+				{
+					if (!isSuppressed(c))
+						array.add(marshalNode(c, true, context, cache, hashes));
+				}
+				gsonNode.add(SPECIAL_FIELD_LIST, array);
+			}
+			else
+			{
+				String[] childNum = n.getChildNames();
+				for (int i = 0; i < childNum.length; ++i)
+					storeNamedChild(n, i, gsonNode, context, cache, hashes);
+			}
+		}
+
+		if (key != null && cache.admit(key))
+			cache.put(key, gsonElement);
+
+		return gsonElement;
+	}
+
+	/**
+	 * Marshals everything but the children of the given node. Returns a
+	 * JsonPrimitive if the node is serialized as plain string and a JsonObject
+	 * otherwise. The children have to be added to the JsonObject after all
+	 * other fields.
+	 */
+	JsonElement marshalNodeFields(
 			T n,
 			boolean typeInfoRequired,
 			JsonSerializationContext context)
@@ -116,23 +210,6 @@ public class AstNodeJsonTypeAdapter<T extends AstNode<T>>
 
 			storeProperties(n, isStringNode, gsonNode, context);
 
-			if (n.isList())
-			{
-				JsonArray array = new JsonArray();
-				for (T c : n)
-				{
-					if (!isSuppressed(c))
-						array.add(marshalNode(c, true, context));
-				}
-				gsonNode.add(SPECIAL_FIELD_LIST, array);
-			}
-			else
-			{
-				String[] childNum = n.getChildNames();
-				for (int i = 0; i < childNum.length; ++i)
-					storeNamedChild(n, i, gsonNode, context);
-			}
-
 			return gsonNode;
 		}
 		else
@@ -141,6 +218,16 @@ public class AstNodeJsonTypeAdapter<T extends AstNode<T>>
 		}
 	}
 
+	boolean isChildSuppressed(T child)
+	{
+		return isSuppressed(child);
+	}
+
+	boolean isNamedChildTypeInfoRequired(T n, String name, T child)
+	{
+		return isTypeInfoRequired(n, name, child.getClass());
+	}
+
 	private T unmarshalNode(
 			JsonElement json,
 			Class<?> nodeType,
@@ -246,9 +333,9 @@ public class AstNodeJsonTypeAdapter<T extends AstNode<T>>
 	{
 		if (!isLocationSuppressed())
 		{
-			AstLocation loc = n.getNativeLocation();
+			String loc = AstNodeImpl.locationStringOf(n);
 			if (loc != null)
-				gsonNode.add(SPECIAL_FIELD_LOCATION, new JsonPrimitive(loc.toString()));
+				gsonNode.add(SPECIAL_FIELD_LOCATION, new JsonPrimitive(loc));
 		}
 	}
 
@@ -390,7 +477,7 @@ public class AstNodeJsonTypeAdapter<T extends AstNode<T>>
 				fieldName += ":" + getTypeAlias(valueType);
 
 			gsonValue = getNodeType().isAssignableFrom(valueType) ?
-					marshalNode((T) value, isAlwaysStoreType(), context) :
+					marshalNode((T) value, isAlwaysStoreType(), context, null, null) :
 					context.serialize(value);
 		}
 
@@ -467,7 +554,9 @@ public class AstNodeJsonTypeAdapter<T extends AstNode<T>>
 			T n,
 			int i,
 			JsonObject gsonParent,
-			JsonSerializationContext context)
+			JsonSerializationContext context,
+			SubtreeCache<JsonElement> cache,
+			SubtreeHashes hashes)
 	{
 		T child = n.get(i);
 		if (isSuppressed(child))
@@ -477,7 +566,7 @@ public class AstNodeJsonTypeAdapter<T extends AstNode<T>>
 		String fieldName = name;
 
 		boolean typeInfoRequired = isTypeInfoRequired(n, name, child.getClass());
-		JsonElement gsonNode = marshalNode(child, typeInfoRequired, context);
+		JsonElement gsonNode = marshalNode(child, typeInfoRequired, context, cache, hashes);
 		gsonParent.add(fieldName, gsonNode);
 	}
 
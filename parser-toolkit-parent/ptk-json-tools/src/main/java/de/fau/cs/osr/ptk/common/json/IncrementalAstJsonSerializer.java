@@ -0,0 +1,591 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.json;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializationContext;
+
+import de.fau.cs.osr.ptk.common.ast.AstNode;
+import de.fau.cs.osr.ptk.common.ast.AstNodeImpl;
+import de.fau.cs.osr.ptk.common.ast.AstNodePropertyIterator;
+import de.fau.cs.osr.ptk.common.serialization.SubtreeCache;
+import de.fau.cs.osr.ptk.common.serialization.SubtreeHashes;
+
+/**
+ * Serializes an AST to JSON and keeps the serialized fields of every node.
+ * When the same tree is serialized again after it was edited, only the nodes
+ * that were modified since are marshalled again. The output of all other
+ * nodes is copied from the previous serialization. The output is always
+ * identical to the output of <code>gson.toJson(root)</code>.
+ * 
+ * A node is considered unchanged if it is still the same object, its
+ * modification count (see {@link AstNodeImpl#getModificationCount()}) did not
+ * change and it still has the same property values and children. This covers
+ * in-place edits as well as trees derived with
+ * {@link de.fau.cs.osr.ptk.common.ast.PersistentAst} which share all
+ * unchanged nodes with the previous version. Nodes which are not derived from
+ * AstNodeImpl are only reused if they are frozen.
+ * 
+ * Property values are compared by identity, strings and boxed primitives by
+ * equality. Node classes whose setters assign their fields without
+ * updating the modification count are therefore handled correctly.
+ * Attribute and property values must not be modified in place, they have to
+ * be replaced with setAttribute() or setProperty(). Nodes which store other
+ * nodes in properties are always marshalled again.
+ * 
+ * Nodes removed from the tree are forgotten eventually. If the
+ * configuration of the type adapter changes, {@link #clear()} has to be
+ * called. Instances are not thread-safe.
+ * 
+ * Optionally a {@link SubtreeCache} can be set which maps the structural
+ * hash of a sub-tree to its complete output. It pays off when many different
+ * trees with recurring content are serialized. The cache can be shared by
+ * several serializers.
+ */
+public class IncrementalAstJsonSerializer<T extends AstNode<T>>
+{
+	private static final Object[] NO_CHILDREN = new Object[0];
+
+	private static final Object[] NO_PROPERTIES = NO_CHILDREN;
+
+	// =========================================================================
+
+	private final Gson gson;
+
+	private final AstNodeJsonTypeAdapter<T> adapter;
+
+	private final JsonSerializationContext context;
+
+	private final String newline;
+
+	private final String indent;
+
+	private final String nameSeparator;
+
+	private final String listKey;
+
+	/**
+	 * Distinguishes the output of differently formatting serializers which
+	 * share a sub-tree cache.
+	 */
+	private final int formatting;
+
+	private final ArrayList<String> indentations = new ArrayList<String>();
+
+	private final HashMap<String, String> keys = new HashMap<String, String>();
+
+	private final IdentityHashMap<AstNode<?>, Fragment> fragments =
+			new IdentityHashMap<AstNode<?>, Fragment>();
+
+	/**
+	 * Incremented with every call to toJson(). Fragments which were not used
+	 * in the current generation belong to nodes that were removed from the
+	 * tree.
+	 */
+	private int generation;
+
+	private int lastLength;
+
+	private int reusedNodeCount;
+
+	private int serializedNodeCount;
+
+	private SubtreeCache<String> subtreeCache;
+
+	private SubtreeHashes hashes;
+
+	// =========================================================================
+
+	/**
+	 * @param gson
+	 *            The Gson instance that uses the given adapter for AST nodes.
+	 *            Compact and pretty printing output is supported.
+	 * @param adapter
+	 *            The type adapter registered with the Gson instance.
+	 */
+	public IncrementalAstJsonSerializer(
+			final Gson gson,
+			AstNodeJsonTypeAdapter<T> adapter)
+	{
+		this.gson = gson;
+		this.adapter = adapter;
+		this.context = new JsonSerializationContext()
+		{
+			@Override
+			public JsonElement serialize(Object src)
+			{
+				return gson.toJsonTree(src);
+			}
+
+			@Override
+			public JsonElement serialize(Object src, Type typeOfSrc)
+			{
+				return gson.toJsonTree(src, typeOfSrc);
+			}
+		};
+
+		// Learn how the Gson instance formats its output
+		JsonArray array = new JsonArray();
+		array.add(new JsonPrimitive(1));
+		JsonObject probe = new JsonObject();
+		probe.add("a", array);
+		String json = gson.toJson(probe);
+
+		String memberIndent = json.substring(1, Math.max(1, json.indexOf('"')));
+		String elementIndent = json.substring(json.indexOf('[') + 1, json.indexOf('1'));
+		if (!elementIndent.startsWith(memberIndent))
+			throw new IllegalArgumentException("Unsupported JSON formatting: " + json);
+
+		indent = elementIndent.substring(memberIndent.length());
+		newline = memberIndent.substring(0, memberIndent.length() - indent.length());
+		nameSeparator = json.substring(json.indexOf("\"a\"") + 3, json.indexOf('['));
+
+		String expected = "{" + memberIndent + "\"a\"" + nameSeparator + "[" +
+				elementIndent + "1" + memberIndent + "]" + newline + "}";
+		if (!json.equals(expected) || newline.isEmpty() != indent.isEmpty())
+			throw new IllegalArgumentException("Unsupported JSON formatting: " + json);
+
+		listKey = getKey(AstNodeJsonTypeAdapter.SPECIAL_FIELD_LIST);
+		formatting = (newline + '|' + indent + '|' + nameSeparator).hashCode();
+		indentations.add("");
+	}
+
+	// =========================================================================
+
+	public String toJson(T root)
+	{
+		StringBuilder b = new StringBuilder(lastLength + 1024);
+		++generation;
+		reusedNodeCount = 0;
+		serializedNodeCount = 0;
+
+		if (subtreeCache != null)
+		{
+			hashes = SubtreeHashes.compute(
+					root,
+					subtreeCache.getMinNodes(),
+					subtreeCache.getMaxNodes(),
+					adapter.getSettingsStamp());
+		}
+
+		try
+		{
+			emit(root, true, 0, b);
+		}
+		finally
+		{
+			hashes = null;
+		}
+
+		// Evicting is linear in the number of fragments, do it only when
+		// the removed nodes make up half of the fragments
+		int visited = reusedNodeCount + serializedNodeCount;
+		if (fragments.size() > 2 * visited)
+		{
+			Iterator<Fragment> i = fragments.values().iterator();
+			while (i.hasNext())
+			{
+				if (i.next().generation != generation)
+					i.remove();
+			}
+		}
+
+		lastLength = b.length();
+		return b.toString();
+	}
+
+	public void toJson(T root, Appendable out) throws IOException
+	{
+		out.append(toJson(root));
+	}
+
+	/**
+	 * Forgets all previously serialized nodes.
+	 */
+	public void clear()
+	{
+		fragments.clear();
+	}
+
+	/**
+	 * Enables caching of the output of sub-trees by structural hash. Pass
+	 * <code>null</code> to disable caching. Hashing the tree costs about as
+	 * much as marshalling it, a tree that is only edited and serialized again
+	 * does not benefit from the cache.
+	 */
+	public void setSubtreeCache(SubtreeCache<String> subtreeCache)
+	{
+		this.subtreeCache = subtreeCache;
+	}
+
+	public SubtreeCache<String> getSubtreeCache()
+	{
+		return subtreeCache;
+	}
+
+	/**
+	 * Returns the number of nodes whose output was reused by the last call to
+	 * toJson(). A sub-tree taken from the sub-tree cache counts as one node.
+	 */
+	public int getReusedNodeCount()
+	{
+		return reusedNodeCount;
+	}
+
+	/**
+	 * Returns the number of nodes that were marshalled by the last call to
+	 * toJson().
+	 */
+	public int getSerializedNodeCount()
+	{
+		return serializedNodeCount;
+	}
+
+	// =========================================================================
+
+	private void emit(T n, boolean typeInfoRequired, int depth, StringBuilder b)
+	{
+		SubtreeCache.Key key = (hashes != null) ? hashes.getKey(n) : null;
+		if (key == null)
+		{
+			emitNode(n, typeInfoRequired, depth, b);
+			return;
+		}
+
+		// The output depends on the formatting and the indentation
+		key = key
+				.withVariant(formatting)
+				.withVariant(2 * depth + (typeInfoRequired ? 1 : 0));
+
+		String cached = subtreeCache.get(key);
+		if (cached != null)
+		{
+			b.append(cached);
+			++reusedNodeCount;
+			return;
+		}
+
+		int start = b.length();
+		emitNode(n, typeInfoRequired, depth, b);
+		if (subtreeCache.admit(key))
+			subtreeCache.put(key, b.substring(start));
+	}
+
+	@SuppressWarnings("unchecked")
+	private void emitNode(
+			T n,
+			boolean typeInfoRequired,
+			int depth,
+			StringBuilder b)
+	{
+		Fragment f = fragments.get(n);
+		if (f == null || !f.isValid(n, typeInfoRequired, depth))
+		{
+			f = marshal(n, typeInfoRequired, depth);
+			fragments.put(n, f);
+			++serializedNodeCount;
+		}
+		else
+		{
+			++reusedNodeCount;
+		}
+		f.generation = generation;
+
+		b.append(f.fields);
+		if (f.children == null)
+			return;
+
+		int members = f.hasFields ? 1 : 0;
+		if (f.childKeys == null)
+		{
+			appendSeparator(b, members++, depth);
+			b.append(listKey);
+			b.append('[');
+			int elements = 0;
+			for (Object c : f.children)
+			{
+				T child = (T) c;
+				if (adapter.isChildSuppressed(child))
+					continue;
+				appendSeparator(b, elements++, depth + 1);
+				emit(child, true, depth + 2, b);
+			}
+			if (elements > 0)
+				b.append(newline).append(getIndentation(depth + 1));
+			b.append(']');
+		}
+		else
+		{
+			for (int i = 0; i < f.children.length; ++i)
+			{
+				T child = (T) f.children[i];
+				if (adapter.isChildSuppressed(child))
+					continue;
+				appendSeparator(b, members++, depth);
+				b.append(f.childKeys[i]);
+				emit(child, f.childTypeInfo[i], depth + 1, b);
+			}
+		}
+
+		if (members > 0)
+			b.append(newline).append(getIndentation(depth));
+		b.append('}');
+	}
+
+	private void appendSeparator(StringBuilder b, int count, int depth)
+	{
+		if (count > 0)
+			b.append(',');
+		b.append(newline).append(getIndentation(depth + 1));
+	}
+
+	private Fragment marshal(T n, boolean typeInfoRequired, int depth)
+	{
+		int modificationCount = hasNodeProperties(n) ? -1 : getModificationCount(n);
+
+		int count = n.getPropertyCount();
+		Object[] properties = (count > 0) ? new Object[count] : NO_PROPERTIES;
+		for (int i = 0; i < count; ++i)
+			properties[i] = n.getProperty(i);
+
+		JsonElement fields = adapter.marshalNodeFields(n, typeInfoRequired, context);
+		if (!fields.isJsonObject())
+		{
+			return new Fragment(
+					modificationCount,
+					typeInfoRequired,
+					depth,
+					properties,
+					gson.toJson(fields),
+					false,
+					null,
+					null,
+					null);
+		}
+
+		// Strip the closing brace, the children follow the fields
+		String json = gson.toJson(fields);
+		boolean hasFields = json.length() > 2;
+		if (hasFields)
+		{
+			json = json.substring(0, json.length() - 1 - newline.length());
+			if (depth > 0 && !newline.isEmpty())
+				json = json.replace(newline, newline + getIndentation(depth));
+		}
+		else
+		{
+			json = "{";
+		}
+
+		int size = n.size();
+		Object[] children = (size > 0) ? new Object[size] : NO_CHILDREN;
+		for (int i = 0; i < size; ++i)
+			children[i] = n.get(i);
+
+		String[] childKeys = null;
+		boolean[] childTypeInfo = null;
+		if (!n.isList())
+		{
+			String[] names = n.getChildNames();
+			childKeys = new String[size];
+			childTypeInfo = new boolean[size];
+			for (int i = 0; i < size; ++i)
+			{
+				childKeys[i] = getKey(names[i]);
+				childTypeInfo[i] = adapter.isNamedChildTypeInfoRequired(n, names[i], n.get(i));
+			}
+		}
+
+		return new Fragment(
+				modificationCount,
+				typeInfoRequired,
+				depth,
+				properties,
+				json,
+				hasFields,
+				children,
+				childKeys,
+				childTypeInfo);
+	}
+
+	private String getKey(String name)
+	{
+		String key = keys.get(name);
+		if (key == null)
+		{
+			key = gson.toJson(new JsonPrimitive(name)) + nameSeparator;
+			keys.put(name, key);
+		}
+		return key;
+	}
+
+	private String getIndentation(int depth)
+	{
+		while (indentations.size() <= depth)
+			indentations.add(indentations.get(indentations.size() - 1) + indent);
+		return indentations.get(depth);
+	}
+
+	private static boolean hasNodeProperties(AstNode<?> n)
+	{
+		if (n.getPropertyCount() > 0)
+		{
+			for (AstNodePropertyIterator i = n.propertyIterator(); i.next();)
+			{
+				if (i.getValue() instanceof AstNode)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns -1 if the node's modifications cannot be tracked.
+	 */
+	private static int getModificationCount(AstNode<?> n)
+	{
+		if (n instanceof AstNodeImpl)
+			return ((AstNodeImpl<?>) n).getModificationCount();
+		return n.isFrozen() ? 0 : -1;
+	}
+
+	// =========================================================================
+
+	/**
+	 * The output of one node without the output of its children.
+	 */
+	private static final class Fragment
+	{
+		private final int modificationCount;
+
+		private final boolean typeInfoRequired;
+
+		private final int depth;
+
+		/**
+		 * The property values at the time the node was marshalled.
+		 */
+		private final Object[] properties;
+
+		/**
+		 * The complete output of a node serialized as plain string. For all
+		 * other nodes the opening brace and all fields except the children.
+		 */
+		private final String fields;
+
+		private final boolean hasFields;
+
+		/**
+		 * The children at the time the node was marshalled or
+		 * <code>null</code> if the node was serialized as plain string.
+		 */
+		private final Object[] children;
+
+		/**
+		 * The quoted names of named children or <code>null</code> for lists.
+		 */
+		private final String[] childKeys;
+
+		private final boolean[] childTypeInfo;
+
+		private int generation;
+
+		public Fragment(
+				int modificationCount,
+				boolean typeInfoRequired,
+				int depth,
+				Object[] properties,
+				String fields,
+				boolean hasFields,
+				Object[] children,
+				String[] childKeys,
+				boolean[] childTypeInfo)
+		{
+			this.modificationCount = modificationCount;
+			this.typeInfoRequired = typeInfoRequired;
+			this.depth = depth;
+			this.properties = properties;
+			this.fields = fields;
+			this.hasFields = hasFields;
+			this.children = children;
+			this.childKeys = childKeys;
+			this.childTypeInfo = childTypeInfo;
+		}
+
+		public boolean isValid(AstNode<?> n, boolean typeInfoRequired, int depth)
+		{
+			if (modificationCount == -1
+					|| modificationCount != getModificationCount(n)
+					|| this.typeInfoRequired != typeInfoRequired
+					|| this.depth != depth)
+				return false;
+
+			for (int i = 0; i < properties.length; ++i)
+			{
+				if (!isSameValue(properties[i], n.getProperty(i)))
+					return false;
+			}
+
+			if (children == null)
+				return true;
+
+			int size = n.size();
+			if (size != children.length)
+				return false;
+			for (int i = 0; i < size; ++i)
+			{
+				if (n.get(i) != children[i])
+					return false;
+			}
+			return true;
+		}
+
+		private static boolean isSameValue(Object a, Object b)
+		{
+			if (a == b)
+				return true;
+			if (a == null || b == null || a.getClass() != b.getClass())
+				return false;
+			return isImmutable(a) && a.equals(b);
+		}
+
+		private static boolean isImmutable(Object o)
+		{
+			return o instanceof String
+					|| o instanceof Integer
+					|| o instanceof Long
+					|| o instanceof Boolean
+					|| o instanceof Character
+					|| o instanceof Double
+					|| o instanceof Float
+					|| o instanceof Short
+					|| o instanceof Byte;
+		}
+	}
+}
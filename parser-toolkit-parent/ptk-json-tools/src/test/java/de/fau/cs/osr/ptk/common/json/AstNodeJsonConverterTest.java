@@ -34,6 +34,7 @@ import org.junit.Test;
 import de.fau.cs.osr.ptk.common.ast.AstLocation;
 import de.fau.cs.osr.ptk.common.test.nodes.CtnBody;
 import de.fau.cs.osr.ptk.common.test.nodes.CtnDocument;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnGenerator;
 import de.fau.cs.osr.ptk.common.test.nodes.CtnNodeWithPropAndContent;
 import de.fau.cs.osr.ptk.common.test.nodes.CtnSection;
 import de.fau.cs.osr.ptk.common.test.nodes.CtnText;
@@ -302,4 +303,17 @@ public class AstNodeJsonConverterTest
 				new Double[] { 2.7182, 2 * 2.7182 } });
 		roundtrip(doc);
 	}
+
+	@Test
+	public void testRoundTripOfGeneratedDocuments() throws Exception
+	{
+		CtnGenerator generator = new CtnGenerator(42)
+				.withAttributeDensity(0.2)
+				.withPropertyDensity(0.2)
+				.withLocations(true)
+				.withDocumentSize(16 * 1024);
+
+		for (CtnDocument doc : generator.documents(3))
+			roundtrip(doc);
+	}
 }
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.json;
+
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnDoc;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnSection;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnText;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnUrl;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+
+import de.fau.cs.osr.ptk.common.serialization.SubtreeCache;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnDocument;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnGenerator;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnSection;
+
+public class AstNodeJsonSubtreeCacheTest
+		extends
+			AstNodeJsonConverterTestBase
+{
+	private SubtreeCache<JsonElement> cache;
+
+	@Before
+	public void before()
+	{
+		super.before();
+		setupDefaultNodeFactory();
+		setupDefaultTypeMappings();
+		cache = new SubtreeCache<JsonElement>(1024 * 1024);
+	}
+
+	private static CtnSection boilerplate()
+	{
+		return ctnSection()
+				.withTitle(ctnText("See also"))
+				.withBody(
+						ctnText("Some boilerplate text "),
+						ctnUrl().withProtocol("http").withPath("example.org").build())
+				.build();
+	}
+
+	@Test
+	public void testCachedOutputIsIdenticalToUncachedOutput() throws Exception
+	{
+		CtnGenerator generator = new CtnGenerator(42)
+				.withAttributeDensity(0.2)
+				.withPropertyDensity(0.2)
+				.withLocations(true)
+				.withDocumentSize(16 * 1024);
+
+		List<String> expected = new ArrayList<String>();
+		for (CtnDocument doc : generator.documents(3))
+			expected.add(serialize(doc));
+
+		getConverter().setSubtreeCache(cache);
+		for (int pass = 0; pass < 2; ++pass)
+		{
+			int i = 0;
+			for (CtnDocument doc : generator.documents(3))
+				assertEquals(expected.get(i++), serialize(doc));
+		}
+
+		assertTrue(cache.getHits() > 0);
+		assertTrue(cache.getSavedWeight() > 0);
+	}
+
+	@Test
+	public void testRecurringSubtreesAreSplicedFromTheCache() throws Exception
+	{
+		getConverter().setSubtreeCache(cache);
+
+		serialize(ctnDoc(ctnText("First document"), boilerplate()));
+		assertEquals(0, cache.getHits());
+
+		String second = serialize(ctnDoc(ctnText("Second document"), boilerplate()));
+		assertEquals(1, cache.getHits());
+		assertTrue(cache.getSavedWeight() > 0);
+
+		getConverter().setSubtreeCache(null);
+		assertEquals(second, serialize(ctnDoc(ctnText("Second document"), boilerplate())));
+	}
+
+	@Test
+	public void testChangedSettingsDoNotHitOldEntries() throws Exception
+	{
+		getConverter().setSubtreeCache(cache);
+
+		CtnSection section = boilerplate();
+		section.getTitle().setAttribute("area51", "secret");
+		assertTrue(serialize(ctnDoc(section)).contains("area51"));
+
+		getConverter().suppressAttribute("area51");
+		assertFalse(serialize(ctnDoc(section)).contains("area51"));
+	}
+}
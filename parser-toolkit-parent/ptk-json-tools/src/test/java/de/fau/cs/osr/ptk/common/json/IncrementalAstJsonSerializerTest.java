@@ -0,0 +1,340 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.json;
+
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnDoc;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnId;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnList;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnObjProp;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnSection;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnText;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnTitle;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnUrl;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import de.fau.cs.osr.ptk.common.ast.AstLeafNodeImpl;
+import de.fau.cs.osr.ptk.common.ast.AstLocation;
+import de.fau.cs.osr.ptk.common.ast.AstNode;
+import de.fau.cs.osr.ptk.common.ast.AstNodePropertyIterator;
+import de.fau.cs.osr.ptk.common.ast.FrozenAst;
+import de.fau.cs.osr.ptk.common.ast.PersistentAst;
+import de.fau.cs.osr.ptk.common.serialization.SubtreeCache;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnDocument;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnGenerator;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnSection;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnText;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnUrl;
+
+public class IncrementalAstJsonSerializerTest
+		extends
+			AstNodeJsonConverterTestBase
+{
+	private IncrementalAstJsonSerializer<CtnNode> serializer;
+
+	@Before
+	public void before()
+	{
+		super.before();
+		setupDefaultNodeFactory();
+		setupDefaultTypeMappings();
+		serializer = new IncrementalAstJsonSerializer<CtnNode>(getGson(), getConverter());
+	}
+
+	private void assertSameAsGson(CtnNode root)
+	{
+		assertEquals(serialize(root), serializer.toJson(root));
+	}
+
+	// =========================================================================
+
+	@Test
+	public void testGeneratedDocumentsAreSerializedLikeGson() throws Exception
+	{
+		Gson compact = new GsonBuilder()
+				.registerTypeHierarchyAdapter(AstNode.class, getConverter())
+				.create();
+		IncrementalAstJsonSerializer<CtnNode> compactSerializer =
+				new IncrementalAstJsonSerializer<CtnNode>(compact, getConverter());
+
+		CtnGenerator generator = new CtnGenerator(42)
+				.withAttributeDensity(0.2)
+				.withPropertyDensity(0.2)
+				.withLocations(true)
+				.withDocumentSize(16 * 1024);
+
+		for (CtnDocument doc : generator.documents(3))
+		{
+			assertSameAsGson(doc);
+			assertSameAsGson(doc);
+			assertEquals(0, serializer.getSerializedNodeCount());
+
+			assertEquals(compact.toJson(doc), compactSerializer.toJson(doc));
+		}
+	}
+
+	@Test
+	public void testOnlyModifiedNodesAreSerializedAgain() throws Exception
+	{
+		CtnText text = ctnText("Hello");
+		CtnUrl url = ctnUrl().withProtocol("http").withPath("example.org").build();
+		CtnSection section = ctnSection()
+				.withTitle(ctnTitle(ctnText("Title")))
+				.withBody(text, url)
+				.build();
+		CtnDocument doc = ctnDoc(ctnText("First"), section);
+		assertSameAsGson(doc);
+
+		text.setContent("World");
+		assertSameAsGson(doc);
+		assertEquals(1, serializer.getSerializedNodeCount());
+
+		url.setAttribute("area51", 42);
+		url.setNativeLocation(new AstLocation("some file", 1, 2));
+		assertSameAsGson(doc);
+		assertEquals(1, serializer.getSerializedNodeCount());
+
+		section.setLevel(3);
+		assertSameAsGson(doc);
+		assertEquals(1, serializer.getSerializedNodeCount());
+
+		section.getBody().add(ctnList(ctnText("New"), ctnUrl().build()));
+		assertSameAsGson(doc);
+		assertEquals(3, serializer.getSerializedNodeCount());
+
+		doc.remove(0);
+		assertSameAsGson(doc);
+		assertEquals(1, serializer.getSerializedNodeCount());
+	}
+
+	@Test
+	public void testEditsOfFrozenTreesOnlySerializeTheCopiedPath() throws Exception
+	{
+		CtnDocument doc = ctnDoc();
+		for (int i = 0; i < 10; ++i)
+		{
+			doc.add(ctnSection()
+					.withTitle(ctnTitle(ctnText("Title " + i)))
+					.withBody(ctnText("Text " + i))
+					.build());
+		}
+		FrozenAst<CtnDocument> frozen = FrozenAst.freeze(doc);
+		assertSameAsGson(frozen.getRoot());
+
+		// document -> section -> body -> text
+		CtnNode edited = PersistentAst.set(frozen.getRoot(), new int[] { 5, 1, 0 }, ctnText("Edited"));
+		assertSameAsGson(edited);
+		assertEquals(4, serializer.getSerializedNodeCount());
+		assertEquals(frozen.getNodeCount() - 4, serializer.getReusedNodeCount());
+	}
+
+	@Test
+	public void testSuppressionOfChildrenIsReevaluated() throws Exception
+	{
+		getConverter().setSuppressEmptyStringNodes(true);
+
+		CtnText text = ctnText("");
+		CtnDocument doc = ctnDoc(ctnText("a"), text, ctnText("b"));
+		assertSameAsGson(doc);
+
+		text.setContent("Not empty");
+		assertSameAsGson(doc);
+
+		text.setContent("");
+		assertSameAsGson(doc);
+	}
+
+	@Test
+	public void testNodesWithNodePropertiesAreAlwaysSerializedAgain() throws Exception
+	{
+		CtnUrl url = ctnUrl().build();
+		CtnDocument doc = ctnDoc(ctnObjProp(url));
+		assertSameAsGson(doc);
+
+		url.setPath("changed");
+		assertSameAsGson(doc);
+	}
+
+	@Test
+	public void testRemovalsThroughListViewsAreDetected() throws Exception
+	{
+		CtnDocument doc = ctnDoc(ctnId(1), ctnId(2), ctnId(3), ctnId(4));
+		assertSameAsGson(doc);
+
+		int count = doc.getModificationCount();
+		Iterator<CtnNode> i = doc.iterator();
+		i.next();
+		i.remove();
+		assertEquals(count + 1, doc.getModificationCount());
+		assertSameAsGson(doc);
+		assertEquals(1, serializer.getSerializedNodeCount());
+
+		doc.subList(1, 3).clear();
+		assertEquals(count + 3, doc.getModificationCount());
+		assertSameAsGson(doc);
+		assertEquals(1, serializer.getSerializedNodeCount());
+		assertEquals(1, doc.size());
+	}
+
+	@Test
+	public void testPropertiesSetWithoutModificationCountAreDetected() throws Exception
+	{
+		UntrackedNode n = new UntrackedNode();
+		n.setValue("before");
+		CtnDocument doc = ctnDoc(ctnText("Text"), n);
+		assertSameAsGson(doc);
+
+		n.setValue("after");
+		assertSameAsGson(doc);
+		assertEquals(1, serializer.getSerializedNodeCount());
+
+		n.setValue(new String("after"));
+		assertSameAsGson(doc);
+		assertEquals(0, serializer.getSerializedNodeCount());
+	}
+
+	@Test
+	public void testMovedNodesAreSerializedWithTheirNewIndentation() throws Exception
+	{
+		CtnUrl url = ctnUrl().build();
+		url.setAttribute("area51", "Hello World");
+		CtnSection section = ctnSection().withBody(ctnText("Text")).build();
+		CtnDocument doc = ctnDoc(url, section);
+		assertSameAsGson(doc);
+
+		doc.remove(0);
+		section.getBody().add(url);
+		assertSameAsGson(doc);
+
+		serializer.clear();
+		assertSameAsGson(doc);
+		assertEquals(0, serializer.getReusedNodeCount());
+	}
+
+	@Test
+	public void testSubtreeCacheIsSharedByDocumentsAndFormattings() throws Exception
+	{
+		Gson compact = new GsonBuilder()
+				.registerTypeHierarchyAdapter(AstNode.class, getConverter())
+				.create();
+		IncrementalAstJsonSerializer<CtnNode> compactSerializer =
+				new IncrementalAstJsonSerializer<CtnNode>(compact, getConverter());
+
+		SubtreeCache<String> cache = new SubtreeCache<String>(1024 * 1024);
+		serializer.setSubtreeCache(cache);
+		compactSerializer.setSubtreeCache(cache);
+
+		for (int i = 0; i < 4; ++i)
+		{
+			CtnSection boilerplate = ctnSection()
+					.withTitle(ctnTitle(ctnText("See also")))
+					.withBody(ctnUrl().withProtocol("http").withPath("example.org").build())
+					.build();
+
+			// The boilerplate appears at different depths
+			CtnDocument doc = ctnDoc(ctnText("Document " + i));
+			CtnNode parent = doc;
+			for (int j = 0; j < i % 2; ++j)
+			{
+				CtnSection wrapper = ctnSection().build();
+				parent.add(wrapper);
+				parent = wrapper.getBody();
+			}
+			parent.add(boilerplate);
+
+			assertSameAsGson(doc);
+			assertEquals(compact.toJson(doc), compactSerializer.toJson(doc));
+		}
+
+		assertTrue(cache.getHits() > 0);
+	}
+
+	// =========================================================================
+
+	/**
+	 * A node whose setter doesn't update the modification count.
+	 */
+	public static final class UntrackedNode
+			extends
+				AstLeafNodeImpl<CtnNode>
+			implements
+				CtnNode
+	{
+		private static final long serialVersionUID = 1L;
+
+		private Object value;
+
+		public Object getValue()
+		{
+			return value;
+		}
+
+		public void setValue(Object value)
+		{
+			this.value = value;
+		}
+
+		@Override
+		public int getPropertyCount()
+		{
+			return 1;
+		}
+
+		@Override
+		public AstNodePropertyIterator propertyIterator()
+		{
+			return new AstNodePropertyIterator()
+			{
+				@Override
+				protected int getPropertyCount()
+				{
+					return 1;
+				}
+
+				@Override
+				protected String getName(int index)
+				{
+					return "value";
+				}
+
+				@Override
+				protected Object getValue(int index)
+				{
+					return value;
+				}
+
+				@Override
+				protected Object setValue(int index, Object v)
+				{
+					Object old = value;
+					value = v;
+					return old;
+				}
+			};
+		}
+	}
+}
@@ -20,6 +20,7 @@ package de.fau.cs.osr.ptk.common.xml;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import com.thoughtworks.xstream.converters.ConversionException;
 import com.thoughtworks.xstream.converters.Converter;
 import com.thoughtworks.xstream.converters.MarshallingContext;
 import com.thoughtworks.xstream.converters.UnmarshallingContext;
@@ -28,10 +29,12 @@ import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
 
 import de.fau.cs.osr.ptk.common.ast.AstLocation;
 import de.fau.cs.osr.ptk.common.ast.AstNode;
+import de.fau.cs.osr.ptk.common.ast.AstNodeImpl;
 import de.fau.cs.osr.ptk.common.ast.AstNodePropertyIterator;
 import de.fau.cs.osr.ptk.common.ast.AstStringNode;
 import de.fau.cs.osr.ptk.common.serialization.AstNodeConverterBase;
 import de.fau.cs.osr.ptk.common.serialization.SyntaxErrorException;
+import de.fau.cs.osr.utils.XmlGrammar;
 
 public class AstNodeXmlConverter<T extends AstNode<T>>
 		extends
@@ -49,6 +52,8 @@ public class AstNodeXmlConverter<T extends AstNode<T>>
 
 	protected boolean explicitRoots = false;
 
+	protected boolean checkCharacters = false;
+
 	// =========================================================================
 
 	public AstNodeXmlConverter(Class<T> nodeType)
@@ -67,6 +72,20 @@ public class AstNodeXmlConverter<T extends AstNode<T>>
 	public void setExplicitRoots(boolean explicitRoots)
 	{
 		this.explicitRoots = explicitRoots;
+		settingsChanged();
+	}
+
+	/**
+	 * If enabled, string contents, attribute names and string values of
+	 * attributes and properties are checked for characters which are not
+	 * allowed in XML. A ConversionException is thrown if such a character is
+	 * found. Element names are not checked, they are encoded by the name coder
+	 * of the XStream writer.
+	 */
+	public void setCheckCharacters(boolean checkCharacters)
+	{
+		this.checkCharacters = checkCharacters;
+		settingsChanged();
 	}
 
 	// =========================================================================
@@ -145,7 +164,10 @@ public class AstNodeXmlConverter<T extends AstNode<T>>
 
 		if (isStringNode)
 		{
-			writer.setValue(((AstStringNode<T>) n).getContent());
+			String content = ((AstStringNode<T>) n).getContent();
+			if (checkCharacters)
+				checkCharacters(content, "String content");
+			writer.setValue(content);
 		}
 		else if (n.isList())
 		{
@@ -232,9 +254,9 @@ public class AstNodeXmlConverter<T extends AstNode<T>>
 	{
 		if (!isLocationSuppressed())
 		{
-			AstLocation loc = n.getNativeLocation();
+			String loc = AstNodeImpl.locationStringOf(n);
 			if (loc != null)
-				writer.addAttribute(ATTR_NAME_LOCATION, loc.toString());
+				writer.addAttribute(ATTR_NAME_LOCATION, loc);
 		}
 	}
 
@@ -273,6 +295,13 @@ public class AstNodeXmlConverter<T extends AstNode<T>>
 			HierarchicalStreamWriter writer,
 			MarshallingContext context)
 	{
+		if (checkCharacters)
+		{
+			checkCharacters(name, "Attribute name");
+			if (value instanceof String)
+				checkCharacters((String) value, "Value of attribute '" + name + "'");
+		}
+
 		writer.startNode(NODE_NAME_ATTRIBUTE);
 		writer.addAttribute("name", name);
 
@@ -394,6 +423,9 @@ public class AstNodeXmlConverter<T extends AstNode<T>>
 		if (isSuppressed(value))
 			return;
 
+		if (checkCharacters && value instanceof String)
+			checkCharacters((String) value, "Value of property '" + name + "'");
+
 		writer.startNode(name);
 
 		//if (!serializedTypeIsExpectedType(parentNode, name, value.getClass()))
@@ -610,6 +642,17 @@ public class AstNodeXmlConverter<T extends AstNode<T>>
 		writer.addAttribute(ATTR_NAME_TYPE, getTypeAlias(type));
 	}
 
+	private void checkCharacters(String text, String what)
+	{
+		int i = XmlGrammar.indexOfInvalidChar(text);
+		if (i != -1)
+			throw new ConversionException(String.format(
+					"%s contains invalid XML character U+%04X at index %d",
+					what,
+					(int) text.charAt(i),
+					i));
+	}
+
 	private Class<?> getExplicitType(HierarchicalStreamReader reader)
 	{
 		String typeName = reader.getAttribute(ATTR_NAME_TYPE);
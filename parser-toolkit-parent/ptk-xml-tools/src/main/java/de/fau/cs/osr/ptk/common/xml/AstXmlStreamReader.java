@@ -0,0 +1,157 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.xml;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.ConversionException;
+import com.thoughtworks.xstream.io.StreamException;
+
+import de.fau.cs.osr.ptk.common.ast.AstNode;
+
+/**
+ * Reads the ASTs written by {@link AstXmlStreamWriter} one at a time. All
+ * documents are deserialized with the same XStream instance.
+ * 
+ * I/O errors are reported as {@link StreamException}, documents which are
+ * not of the expected type as {@link ConversionException}.
+ */
+public class AstXmlStreamReader<T extends AstNode<T>>
+		implements
+			Iterator<T>,
+			Closeable
+{
+	private final Class<? extends T> rootType;
+
+	private final ObjectInputStream in;
+
+	private T next;
+
+	private boolean done = false;
+
+	private long documentCount = 0;
+
+	// =========================================================================
+
+	/**
+	 * @param xstream
+	 *            An XStream instance with an {@link AstNodeXmlConverter}
+	 *            registered for the AST node type.
+	 * @param rootType
+	 *            The type of the root nodes of the documents.
+	 */
+	public AstXmlStreamReader(
+			XStream xstream,
+			Class<? extends T> rootType,
+			Reader in)
+	{
+		this.rootType = rootType;
+		try
+		{
+			this.in = xstream.createObjectInputStream(in);
+		}
+		catch (IOException e)
+		{
+			throw new StreamException(e);
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * The number of documents read so far.
+	 */
+	public long getDocumentCount()
+	{
+		return documentCount;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		if (next == null && !done)
+			next = read();
+		return next != null;
+	}
+
+	@Override
+	public T next()
+	{
+		if (!hasNext())
+			throw new NoSuchElementException();
+
+		T root = next;
+		next = null;
+		++documentCount;
+		return root;
+	}
+
+	@Override
+	public void remove()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		done = true;
+		next = null;
+		in.close();
+	}
+
+	// =========================================================================
+
+	private T read()
+	{
+		Object o;
+		try
+		{
+			o = in.readObject();
+		}
+		catch (EOFException e)
+		{
+			done = true;
+			return null;
+		}
+		catch (IOException e)
+		{
+			throw new StreamException(e);
+		}
+		catch (ClassNotFoundException e)
+		{
+			throw new ConversionException(e);
+		}
+
+		if (!rootType.isInstance(o))
+		{
+			throw new ConversionException("Expected document of type " +
+					rootType.getName() + " but got " +
+					(o == null ? "null" : o.getClass().getName()));
+		}
+
+		return rootType.cast(o);
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.xml;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.thoughtworks.xstream.XStream;
+
+import de.fau.cs.osr.ptk.common.ast.AstNode;
+import de.fau.cs.osr.ptk.common.serialization.AstStreamWriterBase;
+
+/**
+ * Writes a sequence of ASTs as children of a single root element. This is
+ * the format of XStream's object streams, the documents can be read back
+ * with {@link AstXmlStreamReader} or XStream.createObjectInputStream(). All
+ * documents are serialized with the same XStream instance and thus share its
+ * converters and type name mapper.
+ */
+public class AstXmlStreamWriter<T extends AstNode<T>>
+		extends
+			AstStreamWriterBase<T>
+{
+	public static final String DEFAULT_ROOT_NAME = "object-stream";
+
+	// =========================================================================
+
+	private final XStream xstream;
+
+	private final String rootName;
+
+	// =========================================================================
+
+	/**
+	 * @param xstream
+	 *            An XStream instance with an {@link AstNodeXmlConverter}
+	 *            registered for the AST node type.
+	 */
+	public AstXmlStreamWriter(XStream xstream, Writer out)
+	{
+		this(xstream, out, DEFAULT_ROOT_NAME);
+	}
+
+	public AstXmlStreamWriter(XStream xstream, Writer out, String rootName)
+	{
+		super(out);
+		this.xstream = xstream;
+		this.rootName = rootName;
+	}
+
+	// =========================================================================
+
+	@Override
+	protected void encode(T root, Writer w) throws IOException
+	{
+		xstream.toXML(root, w);
+	}
+
+	@Override
+	protected void writeHeader(Writer w) throws IOException
+	{
+		w.write('<');
+		w.write(rootName);
+		w.write(">\n");
+	}
+
+	@Override
+	protected void writeSeparator(Writer w) throws IOException
+	{
+		w.write('\n');
+	}
+
+	@Override
+	protected void writeFooter(Writer w) throws IOException
+	{
+		w.write("</");
+		w.write(rootName);
+		w.write(">\n");
+	}
+}
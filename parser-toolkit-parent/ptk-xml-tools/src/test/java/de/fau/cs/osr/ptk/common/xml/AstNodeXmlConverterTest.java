@@ -33,10 +33,13 @@ import org.junit.Before;
 import org.junit.Test;
 import org.w3c.dom.Element;
 
+import com.thoughtworks.xstream.converters.ConversionException;
+
 import de.fau.cs.osr.ptk.common.ast.AstLocation;
 import de.fau.cs.osr.ptk.common.comparer.AstComparer;
 import de.fau.cs.osr.ptk.common.test.nodes.CtnBody;
 import de.fau.cs.osr.ptk.common.test.nodes.CtnDocument;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnGenerator;
 import de.fau.cs.osr.ptk.common.test.nodes.CtnNodeWithPropAndContent;
 import de.fau.cs.osr.ptk.common.test.nodes.CtnSection;
 import de.fau.cs.osr.ptk.common.test.nodes.CtnText;
@@ -413,4 +416,43 @@ public class AstNodeXmlConverterTest
 				new Double[] { 2.7182, 2 * 2.7182 } });
 		roundtrip(doc);
 	}
+
+	@Test(expected = ConversionException.class)
+	public void testCheckCharactersRejectsInvalidStringContent() throws Exception
+	{
+		getConverter().setCheckCharacters(true);
+		serialize(ctnDoc(ctnText("before\u0000after")));
+	}
+
+	@Test(expected = ConversionException.class)
+	public void testCheckCharactersRejectsInvalidAttributeValue() throws Exception
+	{
+		getConverter().setCheckCharacters(true);
+		CtnDocument doc = ctnDoc();
+		doc.setAttribute("str", "isolated \uD800 surrogate");
+		serialize(doc);
+	}
+
+	@Test
+	public void testCheckCharactersAcceptsValidText() throws Exception
+	{
+		getConverter().setCheckCharacters(true);
+		CtnDocument doc = ctnDoc(ctnText("tab\t and \uD83D\uDE00"));
+		doc.setAttribute("str", "Hello World");
+		roundtrip(doc);
+	}
+
+	@Test
+	public void testRoundTripOfGeneratedDocuments() throws Exception
+	{
+		CtnGenerator generator = new CtnGenerator(42)
+				.withAttributeDensity(0.2)
+				.withPropertyDensity(0.2)
+				.withRtDataDensity(0.2)
+				.withLocations(true)
+				.withDocumentSize(16 * 1024);
+
+		for (CtnDocument doc : generator.documents(3))
+			roundtrip(doc);
+	}
 }
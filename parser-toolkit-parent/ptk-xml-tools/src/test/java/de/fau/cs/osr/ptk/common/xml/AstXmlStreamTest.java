@@ -0,0 +1,170 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.xml;
+
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnDoc;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnText;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ObjectInputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.thoughtworks.xstream.converters.ConversionException;
+
+import de.fau.cs.osr.ptk.common.comparer.AstComparer;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnDocument;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnGenerator;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnNode;
+
+public class AstXmlStreamTest
+		extends
+			AstNodeXmlConverterTestBase
+{
+	private List<CtnDocument> documents;
+
+	@Before
+	public void before()
+	{
+		super.before();
+		setupDefaultNodeFactory();
+		setupDefaultTypeMappings();
+
+		CtnGenerator generator = new CtnGenerator(42)
+				.withAttributeDensity(0.2)
+				.withPropertyDensity(0.2)
+				.withLocations(true)
+				.withDocumentSize(4 * 1024);
+
+		documents = new ArrayList<CtnDocument>();
+		for (CtnDocument doc : generator.documents(20))
+			documents.add(doc);
+	}
+
+	private String write(ExecutorService executor, int maxPending) throws Exception
+	{
+		StringWriter out = new StringWriter();
+		AstXmlStreamWriter<CtnNode> writer = new AstXmlStreamWriter<CtnNode>(getXstream(), out);
+		try
+		{
+			writer.setExecutor(executor);
+			writer.setMaxPendingDocuments(maxPending);
+			for (CtnDocument doc : documents)
+				writer.write(doc);
+		}
+		finally
+		{
+			writer.close();
+		}
+		return out.toString();
+	}
+
+	// =========================================================================
+
+	@Test
+	public void testDocumentsAreWrittenAndReadBack() throws Exception
+	{
+		String xml = write(null, 1);
+
+		AstXmlStreamReader<CtnNode> reader =
+				new AstXmlStreamReader<CtnNode>(getXstream(), CtnDocument.class, new StringReader(xml));
+		try
+		{
+			for (CtnDocument doc : documents)
+			{
+				assertTrue(reader.hasNext());
+				AstComparer.compareAndThrow(doc, reader.next(), true, true);
+			}
+			assertFalse(reader.hasNext());
+			assertEquals(documents.size(), reader.getDocumentCount());
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testOutputIsAnXStreamObjectStream() throws Exception
+	{
+		String xml = write(null, 1);
+
+		ObjectInputStream in = getXstream().createObjectInputStream(new StringReader(xml));
+		try
+		{
+			for (CtnDocument doc : documents)
+				AstComparer.compareAndThrow(doc, (CtnNode) in.readObject(), true, true);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	@Test
+	public void testParallelEncodingKeepsTheOrder() throws Exception
+	{
+		String expected = write(null, 1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			assertEquals(expected, write(executor, 1));
+			assertEquals(expected, write(executor, 64));
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testEmptyStream() throws Exception
+	{
+		StringWriter out = new StringWriter();
+		new AstXmlStreamWriter<CtnNode>(getXstream(), out).close();
+
+		AstXmlStreamReader<CtnNode> reader =
+				new AstXmlStreamReader<CtnNode>(getXstream(), CtnDocument.class, new StringReader(out.toString()));
+		assertFalse(reader.hasNext());
+		reader.close();
+	}
+
+	@Test(expected = ConversionException.class)
+	public void testDocumentsOfTheWrongTypeAreRejected() throws Exception
+	{
+		StringWriter out = new StringWriter();
+		AstXmlStreamWriter<CtnNode> writer = new AstXmlStreamWriter<CtnNode>(getXstream(), out);
+		writer.write(ctnText("Not a document"));
+		writer.write(ctnDoc());
+		writer.close();
+
+		AstXmlStreamReader<CtnNode> reader =
+				new AstXmlStreamReader<CtnNode>(getXstream(), CtnDocument.class, new StringReader(out.toString()));
+		reader.next();
+	}
+}
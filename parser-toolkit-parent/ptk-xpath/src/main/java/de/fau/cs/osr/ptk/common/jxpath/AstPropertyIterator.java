@@ -26,12 +26,16 @@ import org.apache.commons.jxpath.ri.model.NodePointer;
 
 import de.fau.cs.osr.ptk.common.ast.AstNode;
 import de.fau.cs.osr.ptk.common.ast.AstNodePropertyIterator;
-import de.fau.cs.osr.ptk.common.ast.NoSuchPropertyException;
+import de.fau.cs.osr.ptk.common.ast.AstPropertyTable;
 
 public class AstPropertyIterator
 		implements
 			NodeIterator
 {
+	private static final Property[] NO_PROPERTIES = new Property[0];
+
+	// =========================================================================
+
 	private NodePointer parent;
 
 	private Property[] properties;
@@ -49,34 +53,43 @@ public class AstPropertyIterator
 		properties = null;
 		if (qname.getPrefix() == null)
 		{
+			AstPropertyTable table = AstPropertyTable.of(node);
+
 			String name = qname.getName();
 			if (name.equals("*"))
 			{
 				Map<String, Object> props = node.getAttributes();
 
-				int size = node.getPropertyCount() + props.size();
-				properties = new Property[size];
+				int size = table.size() + props.size();
+				if (size > 0)
+				{
+					properties = new Property[size];
 
-				int i = 0;
+					int i = 0;
 
-				AstNodePropertyIterator j = node.propertyIterator();
-				while (j.next())
-					properties[i++] = new Property(node, j.getName(), j.getValue());
+					AstNodePropertyIterator j = node.propertyIterator();
+					while (j.next())
+					{
+						properties[i] = new Property(node, table.getName(i), j.getValue());
+						++i;
+					}
 
-				for (Entry<String, Object> prop : props.entrySet())
-					properties[i++] = new Property(node, prop);
+					for (Entry<String, Object> prop : props.entrySet())
+						properties[i++] = new Property(node, prop);
+				}
 			}
 			else
 			{
-				Object value = null;
-				try
-				{
-					value = node.getProperty(name);
-				}
-				catch (NoSuchPropertyException e)
-				{
+				// Resolve the property name against the property table of the
+				// node's class. This spares us the NoSuchPropertyException if
+				// we are actually looking for an attribute.
+				int index = table.indexOf(name);
+
+				Object value;
+				if (index >= 0)
+					value = node.getProperty(index);
+				else
 					value = node.getAttribute(name);
-				}
 
 				if (value != null)
 					properties = new Property[] { new Property(node, name, value) };
@@ -84,11 +97,13 @@ public class AstPropertyIterator
 		}
 
 		if (properties == null)
-			properties = new Property[0];
+			properties = NO_PROPERTIES;
 
 		//debug("AstPropertyIterator", qname, Arrays.toString(properties));
 	}
 
+	// =========================================================================
+
 	@Override
 	public NodePointer getNodePointer()
 	{
@@ -0,0 +1,346 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.jxpath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.jxpath.CompiledExpression;
+import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.jxpath.ri.JXPathContextReferenceImpl;
+
+import de.fau.cs.osr.ptk.common.ast.AstNode;
+
+/**
+ * Thread-safe facade for running XPath queries against ASTs.
+ *
+ * <p>
+ * Compiled expressions are kept in a bounded cache keyed by the expression
+ * string. When the cache grows beyond its upper capacity the least recently
+ * used expressions are swept until the lower capacity is reached again (the
+ * same strategy as the visit method cache in
+ * {@link de.fau.cs.osr.utils.visitor.VisitorLogic}).
+ *
+ * <p>
+ * Each thread keeps the {@link JXPathContext} of the last root node it
+ * queried. Consecutive queries against the same root on the same thread
+ * therefore don't have to set up a new context.
+ */
+public class AstXPath
+{
+	public static final int DEFAULT_LOWER_CAPACITY = 256;
+
+	public static final int DEFAULT_UPPER_CAPACITY = 384;
+
+	// =========================================================================
+
+	static
+	{
+		JXPathContextReferenceImpl.addNodePointerFactory(
+				new AstNodePointerFactory());
+	}
+
+	// =========================================================================
+
+	private final int lowerCapacity;
+
+	private final int upperCapacity;
+
+	private final ConcurrentHashMap<String, CachedExpression> cache;
+
+	private final AtomicLong useCounter = new AtomicLong();
+
+	private final ThreadLocal<ContextHolder> contexts = new ThreadLocal<ContextHolder>()
+	{
+		@Override
+		protected ContextHolder initialValue()
+		{
+			return new ContextHolder();
+		}
+	};
+
+	private final LongAdder cacheHits = new LongAdder();
+
+	private final LongAdder cacheMisses = new LongAdder();
+
+	private final LongAdder cacheEvictions = new LongAdder();
+
+	private final LongAdder contextReuses = new LongAdder();
+
+	private final LongAdder contextCreations = new LongAdder();
+
+	// =========================================================================
+
+	public AstXPath()
+	{
+		this(DEFAULT_LOWER_CAPACITY, DEFAULT_UPPER_CAPACITY);
+	}
+
+	/**
+	 * @param lowerCapacity
+	 *            The number of expressions that survive a sweep of the cache.
+	 * @param upperCapacity
+	 *            The number of expressions the cache may hold before it gets
+	 *            swept.
+	 */
+	public AstXPath(int lowerCapacity, int upperCapacity)
+	{
+		if (lowerCapacity < 0 || upperCapacity < lowerCapacity)
+			throw new IllegalArgumentException(
+					"Expected 0 <= lowerCapacity <= upperCapacity");
+
+		this.lowerCapacity = lowerCapacity;
+		this.upperCapacity = upperCapacity;
+		this.cache = new ConcurrentHashMap<String, CachedExpression>(upperCapacity);
+	}
+
+	// =========================================================================
+
+	/**
+	 * Returns the compiled form of the given expression. The expression is
+	 * only compiled if it's not already in the cache.
+	 */
+	public CompiledExpression compile(String xpath)
+	{
+		CachedExpression cached = cache.get(xpath);
+		if (cached != null)
+		{
+			cacheHits.increment();
+		}
+		else
+		{
+			cacheMisses.increment();
+
+			CachedExpression compiled = new CachedExpression(JXPathContext.compile(xpath));
+			cached = cache.putIfAbsent(xpath, compiled);
+			if (cached == null)
+			{
+				cached = compiled;
+				// Make sure the expression is not swept from the cache ...
+				cached.touch(useCounter);
+				if (cache.size() > upperCapacity)
+					sweepCache();
+			}
+		}
+
+		cached.touch(useCounter);
+		return cached.getExpression();
+	}
+
+	/**
+	 * Returns a context for the given root node. The context is reused if the
+	 * calling thread's last query was run against the same root node.
+	 *
+	 * <p>
+	 * The returned context must not be handed on to other threads.
+	 */
+	public JXPathContext getContext(AstNode<?> root)
+	{
+		ContextHolder holder = contexts.get();
+		if (holder.root == root)
+		{
+			contextReuses.increment();
+		}
+		else
+		{
+			contextCreations.increment();
+			holder.root = root;
+			holder.context = JXPathContext.newContext(root);
+		}
+		return holder.context;
+	}
+
+	/**
+	 * Drops the calling thread's context so that it doesn't keep the last
+	 * queried tree reachable.
+	 */
+	public void releaseContext()
+	{
+		contexts.remove();
+	}
+
+	// =========================================================================
+
+	public Object getValue(AstNode<?> root, String xpath)
+	{
+		return compile(xpath).getValue(getContext(root));
+	}
+
+	public Iterator<?> iterate(AstNode<?> root, String xpath)
+	{
+		return compile(xpath).iterate(getContext(root));
+	}
+
+	public Iterator<?> iteratePointers(AstNode<?> root, String xpath)
+	{
+		return compile(xpath).iteratePointers(getContext(root));
+	}
+
+	public List<Object> selectNodes(AstNode<?> root, String xpath)
+	{
+		List<Object> result = new ArrayList<Object>();
+		for (Iterator<?> i = iterate(root, xpath); i.hasNext();)
+			result.add(i.next());
+		return result;
+	}
+
+	// =========================================================================
+
+	public int getCacheSize()
+	{
+		return cache.size();
+	}
+
+	public long getCacheHits()
+	{
+		return cacheHits.sum();
+	}
+
+	public long getCacheMisses()
+	{
+		return cacheMisses.sum();
+	}
+
+	public long getCacheEvictions()
+	{
+		return cacheEvictions.sum();
+	}
+
+	/**
+	 * Returns the ratio of expression look-ups that could be served from the
+	 * cache or <code>0</code> if no look-ups took place yet.
+	 */
+	public double getCacheHitRatio()
+	{
+		long hits = getCacheHits();
+		long total = hits + getCacheMisses();
+		return (total == 0) ? 0. : (double) hits / total;
+	}
+
+	public long getContextReuses()
+	{
+		return contextReuses.sum();
+	}
+
+	public long getContextCreations()
+	{
+		return contextCreations.sum();
+	}
+
+	public void resetStatistics()
+	{
+		cacheHits.reset();
+		cacheMisses.reset();
+		cacheEvictions.reset();
+		contextReuses.reset();
+		contextCreations.reset();
+	}
+
+	public void clearCache()
+	{
+		cache.clear();
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format(
+				"AstXPath [cached=%d, hits=%d, misses=%d, evictions=%d, contextReuses=%d, contextCreations=%d]",
+				getCacheSize(),
+				getCacheHits(),
+				getCacheMisses(),
+				getCacheEvictions(),
+				getContextReuses(),
+				getContextCreations());
+	}
+
+	// =========================================================================
+
+	private synchronized void sweepCache()
+	{
+		if (cache.size() <= upperCapacity)
+			return;
+
+		// Take a snapshot of the last use of each entry. Other threads keep
+		// touching the entries while we sweep and we must not get confused by
+		// that.
+		List<Entry<String, CachedExpression>> entries =
+				new ArrayList<Entry<String, CachedExpression>>(cache.entrySet());
+
+		int length = entries.size();
+		long[] lastUse = new long[length];
+		for (int i = 0; i < length; ++i)
+			lastUse[i] = entries.get(i).getValue().lastUse;
+
+		int remove = length - lowerCapacity;
+		if (remove <= 0)
+			return;
+
+		long[] sorted = Arrays.copyOf(lastUse, length);
+		Arrays.sort(sorted);
+		long threshold = sorted[remove - 1];
+
+		for (int i = 0; i < length && remove > 0; ++i)
+		{
+			if (lastUse[i] <= threshold)
+			{
+				Entry<String, CachedExpression> e = entries.get(i);
+				if (cache.remove(e.getKey(), e.getValue()))
+					cacheEvictions.increment();
+				--remove;
+			}
+		}
+	}
+
+	// =========================================================================
+
+	private static final class CachedExpression
+	{
+		private final CompiledExpression expression;
+
+		private volatile long lastUse = -1;
+
+		public CachedExpression(CompiledExpression expression)
+		{
+			this.expression = expression;
+		}
+
+		public CompiledExpression getExpression()
+		{
+			return expression;
+		}
+
+		public void touch(AtomicLong useCounter)
+		{
+			lastUse = useCounter.incrementAndGet();
+		}
+	}
+
+	private static final class ContextHolder
+	{
+		private AstNode<?> root;
+
+		private JXPathContext context;
+	}
+}
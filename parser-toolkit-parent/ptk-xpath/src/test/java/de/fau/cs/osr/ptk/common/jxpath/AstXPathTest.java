@@ -0,0 +1,118 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.ptk.common.jxpath;
+
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnId;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnSection;
+import static de.fau.cs.osr.ptk.common.test.nodes.CtnBuilder.ctnText;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.jxpath.CompiledExpression;
+import org.apache.commons.jxpath.JXPathContext;
+import org.junit.Test;
+
+import de.fau.cs.osr.ptk.common.jxpath.AstPropertyIterator.Property;
+import de.fau.cs.osr.ptk.common.test.nodes.CtnSection;
+
+public class AstXPathTest
+{
+	private static final CtnSection AST =
+			ctnSection()
+					.withLevel(0)
+					.withTitle(ctnText("1st"))
+					.withBody(
+							ctnText("2nd"),
+							ctnId(3),
+							ctnSection()
+									.withLevel(1)
+									.withTitle()
+									.withBody()
+									.build())
+					.build();
+
+	// =========================================================================
+
+	@Test
+	public void testRepeatedQueriesHitCache() throws Exception
+	{
+		AstXPath xpath = new AstXPath();
+
+		for (int i = 0; i < 3; ++i)
+		{
+			List<Object> result = xpath.selectNodes(AST, "//*[@level]");
+			assertEquals(1, result.size());
+			assertSame(AST.getBody().get(2), result.get(0));
+		}
+
+		assertEquals(1, xpath.getCacheMisses());
+		assertEquals(2, xpath.getCacheHits());
+		assertEquals(1, xpath.getCacheSize());
+		assertEquals(1, xpath.getContextCreations());
+		assertEquals(2, xpath.getContextReuses());
+
+		assertSame(xpath.compile("//*[@level]"), xpath.compile("//*[@level]"));
+	}
+
+	@Test
+	public void testContextIsReplacedForDifferentRoot() throws Exception
+	{
+		AstXPath xpath = new AstXPath();
+
+		JXPathContext c1 = xpath.getContext(AST);
+		JXPathContext c2 = xpath.getContext(AST.getBody().get(2));
+		assertEquals(2, xpath.getContextCreations());
+		assertSame(AST.getBody().get(2), c2.getContextBean());
+		assertSame(AST, c1.getContextBean());
+	}
+
+	@Test
+	public void testCacheIsBounded() throws Exception
+	{
+		AstXPath xpath = new AstXPath(2, 4);
+
+		CompiledExpression keep = xpath.compile("/body");
+		for (int i = 1; i <= 10; ++i)
+		{
+			xpath.compile("/body/*[" + i + "]");
+			// Keep the first expression alive
+			assertSame(keep, xpath.compile("/body"));
+		}
+
+		assertEquals(true, xpath.getCacheSize() <= 4);
+		assertEquals(true, xpath.getCacheEvictions() > 0);
+		assertSame(keep, xpath.compile("/body"));
+	}
+
+	@Test
+	public void testPropertyAndAttributeLookup() throws Exception
+	{
+		AstXPath xpath = new AstXPath();
+
+		assertEquals(0, xpath.getValue(AST, "/@level"));
+		assertEquals("2nd", xpath.getValue(AST, "/body/text/@content"));
+
+		List<Object> values = new ArrayList<Object>();
+		for (Object o : xpath.selectNodes(AST, "//@level"))
+			values.add(o instanceof Property ? ((Property) o).getValue() : o);
+		assertEquals(2, values.size());
+	}
+}
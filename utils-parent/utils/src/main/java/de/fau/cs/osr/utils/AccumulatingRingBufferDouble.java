@@ -30,7 +30,16 @@ public class AccumulatingRingBufferDouble
 
 	private int start = 0;
 
-	private BigDecimal sum = BigDecimal.ZERO;
+	/**
+	 * Running sum with Neumaier compensation. Updating the sum doesn't
+	 * allocate. To keep rounding errors from accumulating over many removals
+	 * the sum is recomputed from the buffer after every capacity removals.
+	 */
+	private double sum = 0;
+
+	private double compensation = 0;
+
+	private int removalsSinceRecompute = 0;
 
 	// =========================================================================
 
@@ -59,6 +68,7 @@ public class AccumulatingRingBufferDouble
 		}
 		buffer[i] = value;
 		addToSum(value);
+		recomputeSumIfDue();
 	}
 
 	public void removeNewestN(int n)
@@ -68,6 +78,7 @@ public class AccumulatingRingBufferDouble
 		for (int i = 0; i < n; ++i)
 			removeValueFormSumAt(fill - i - 1);
 		fill -= n;
+		recomputeSumIfDue();
 	}
 
 	public void removeOldestN(int n)
@@ -78,12 +89,16 @@ public class AccumulatingRingBufferDouble
 			removeValueFormSumAt(i);
 		advance(n);
 		fill -= n;
+		recomputeSumIfDue();
 	}
 
 	public void clear()
 	{
 		start = 0;
 		fill = 0;
+		sum = 0;
+		compensation = 0;
+		removalsSinceRecompute = 0;
 	}
 
 	/**
@@ -124,9 +139,23 @@ public class AccumulatingRingBufferDouble
 		return getAt(0);
 	}
 
+	/**
+	 * Returns the running sum of the values in the buffer as BigDecimal. The
+	 * value is derived from {@link #getSumAsDouble()} and is subject to the
+	 * same rounding errors.
+	 */
 	public BigDecimal getSum()
 	{
-		return sum;
+		return BigDecimal.valueOf(getSumAsDouble());
+	}
+
+	/**
+	 * Returns the running sum of the values in the buffer. Unlike
+	 * {@link #getSum()} this method doesn't allocate.
+	 */
+	public double getSumAsDouble()
+	{
+		return sum + compensation;
 	}
 
 	public int getN()
@@ -192,11 +221,28 @@ public class AccumulatingRingBufferDouble
 
 	private void addToSum(double value)
 	{
-		sum = sum.add(BigDecimal.valueOf(value));
+		double t = sum + value;
+		if (Math.abs(sum) >= Math.abs(value))
+			compensation += (sum - t) + value;
+		else
+			compensation += (value - t) + sum;
+		sum = t;
 	}
 
 	private void removeValueFormSumAt(int index)
 	{
-		sum = sum.subtract(BigDecimal.valueOf(getAt(index)));
+		addToSum(-getAt(index));
+		++removalsSinceRecompute;
+	}
+
+	private void recomputeSumIfDue()
+	{
+		if (removalsSinceRecompute < getCapacity())
+			return;
+		removalsSinceRecompute = 0;
+		sum = 0;
+		compensation = 0;
+		for (int i = 0; i < getN(); ++i)
+			addToSum(getAt(i));
 	}
 }
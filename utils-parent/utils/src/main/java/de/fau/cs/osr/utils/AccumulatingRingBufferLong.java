@@ -30,7 +30,14 @@ public class AccumulatingRingBufferLong
 
 	private int start = 0;
 
-	private BigInteger sum = BigInteger.ZERO;
+	/**
+	 * The sum is kept as 128 bit two's complement integer split into two
+	 * longs. A sum of up to 2^31 values of 64 bit can't overflow 128 bits and
+	 * updating the sum doesn't allocate.
+	 */
+	private long sumHigh = 0;
+
+	private long sumLow = 0;
 
 	// =========================================================================
 
@@ -84,6 +91,8 @@ public class AccumulatingRingBufferLong
 	{
 		start = 0;
 		fill = 0;
+		sumHigh = 0;
+		sumLow = 0;
 	}
 
 	/**
@@ -126,7 +135,45 @@ public class AccumulatingRingBufferLong
 
 	public BigInteger getSum()
 	{
-		return sum;
+		if (isSumLong())
+			return BigInteger.valueOf(sumLow);
+		return BigInteger.valueOf(sumHigh).shiftLeft(64).add(
+				new BigInteger(1, new byte[] {
+						(byte) (sumLow >>> 56),
+						(byte) (sumLow >>> 48),
+						(byte) (sumLow >>> 40),
+						(byte) (sumLow >>> 32),
+						(byte) (sumLow >>> 24),
+						(byte) (sumLow >>> 16),
+						(byte) (sumLow >>> 8),
+						(byte) sumLow }));
+	}
+
+	/**
+	 * @return {@code true} if the sum fits into a long.
+	 */
+	public boolean isSumLong()
+	{
+		return sumHigh == (sumLow >> 63);
+	}
+
+	/**
+	 * @throws ArithmeticException
+	 *             If the sum does not fit into a long.
+	 */
+	public long getSumAsLong()
+	{
+		if (!isSumLong())
+			throw new ArithmeticException("long overflow");
+		return sumLow;
+	}
+
+	public double getSumAsDouble()
+	{
+		if (isSumLong())
+			return (double) sumLow;
+		double unsignedLow = (double) (sumLow >>> 1) * 2. + (sumLow & 1);
+		return sumHigh * 0x1p64 + unsignedLow;
 	}
 
 	public int getN()
@@ -192,11 +239,20 @@ public class AccumulatingRingBufferLong
 
 	private void addToSum(long value)
 	{
-		sum = sum.add(BigInteger.valueOf(value));
+		long low = sumLow + value;
+		// Carry if the unsigned addition of the low words overflowed
+		long carry = (Long.compareUnsigned(low, sumLow) < 0) ? 1 : 0;
+		sumHigh += (value >> 63) + carry;
+		sumLow = low;
 	}
 
 	private void removeValueFormSumAt(int index)
 	{
-		sum = sum.subtract(BigInteger.valueOf(getAt(index)));
+		long value = getAt(index);
+		long low = sumLow - value;
+		// Borrow if the unsigned subtraction of the low words underflowed
+		long borrow = (Long.compareUnsigned(sumLow, value) < 0) ? 1 : 0;
+		sumHigh -= (value >> 63) + borrow;
+		sumLow = low;
 	}
 }
@@ -48,6 +48,11 @@ public class ArrayStack<T>
 		return size == 0;
 	}
 
+	public int size()
+	{
+		return size;
+	}
+
 	@SuppressWarnings("unchecked")
 	public T peek()
 	{
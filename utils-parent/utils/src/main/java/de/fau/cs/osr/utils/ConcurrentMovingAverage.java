@@ -0,0 +1,274 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fau.cs.osr.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A moving average which can be updated by many threads concurrently.
+ *
+ * Computes the same average as {@link MovingAverage}: The average of the
+ * averages of the buckets in the window. The window ends with the bucket of
+ * the most recent update. Unlike MovingAverage, buckets are aligned to
+ * multiples of the bucket size and not to the time of the first update.
+ *
+ * Updates never block each other. Each thread adds its values to the bucket
+ * cells of one of several stripes. The stripes are only aggregated when the
+ * average is requested. A value is dropped if its bucket was already
+ * recycled for a newer bucket by the time the value is recorded, which can
+ * only happen for values that are late by at least a full window. A cell is
+ * only recycled once no value is being added to it anymore, so a late value
+ * is never counted in the newer bucket.
+ */
+public class ConcurrentMovingAverage
+{
+	private static final int MAX_STRIPES = 64;
+
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	private static final long RESETTING = Long.MIN_VALUE + 1;
+
+	private static final int EPOCH = 0;
+
+	private static final int SUM = 1;
+
+	private static final int COUNT = 2;
+
+	private static final int WRITERS = 3;
+
+	/**
+	 * Four longs per cell, 32 bytes.
+	 */
+	private static final int CELL_SIZE = 4;
+
+	/**
+	 * Eight longs between stripes to keep stripes in different cache lines.
+	 */
+	private static final int STRIPE_PADDING = 8;
+
+	// =========================================================================
+
+	private final long bucketSizeNs;
+
+	private final int slots;
+
+	private final int stripeMask;
+
+	private final int stripeSize;
+
+	/**
+	 * For each stripe and slot: The bucket the cell currently accumulates
+	 * (epoch), the sum of the values, the number of values and the number of
+	 * threads currently adding a value.
+	 */
+	private final AtomicLongArray cells;
+
+	private final AtomicLong latestBucket = new AtomicLong(EMPTY);
+
+	// =========================================================================
+
+	public ConcurrentMovingAverage(int movingAvgWindowMs, int movingAvgBucketSizeMs)
+	{
+		this(
+				movingAvgWindowMs,
+				movingAvgBucketSizeMs,
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	public ConcurrentMovingAverage(
+			int movingAvgWindowMs,
+			int movingAvgBucketSizeMs,
+			int concurrencyLevel)
+	{
+		if (movingAvgBucketSizeMs <= 0)
+			throw new IllegalArgumentException("movingAvgBucketSizeMs must be positive");
+		if (movingAvgWindowMs < movingAvgBucketSizeMs)
+			throw new IllegalArgumentException("movingAvgWindowMs must not be smaller than movingAvgBucketSizeMs");
+
+		this.bucketSizeNs = movingAvgBucketSizeMs * 1000L * 1000L;
+
+		// The completed buckets of the window plus the current bucket
+		this.slots = movingAvgWindowMs / movingAvgBucketSizeMs + 1;
+
+		int stripes = 1;
+		while (stripes < concurrencyLevel && stripes < MAX_STRIPES)
+			stripes <<= 1;
+		this.stripeMask = stripes - 1;
+
+		this.stripeSize = slots * CELL_SIZE + STRIPE_PADDING;
+		this.cells = new AtomicLongArray(stripes * stripeSize);
+		clearCells();
+	}
+
+	// =========================================================================
+	// For time measurement only
+
+	public static long startTimeNs()
+	{
+		return System.nanoTime();
+	}
+
+	public void stopTime(long startTimeNs)
+	{
+		long now = System.nanoTime();
+		update(now, now - startTimeNs);
+	}
+
+	/**
+	 * @return Delta in milliseconds times factor.
+	 */
+	public double stopTime(long startTimeNs, double factor)
+	{
+		long now = System.nanoTime();
+		double delta = (now - startTimeNs) * factor;
+		update(now, (long) delta);
+		return delta / (1000. * 1000.);
+	}
+
+	public double getAverageInSec()
+	{
+		// nano -> micro -> milli -> si
+		return getAverage() / (1000. * 1000. * 1000.);
+	}
+
+	// =========================================================================
+	// For measurement in general
+
+	public double getAverage()
+	{
+		long latest = latestBucket.get();
+		if (latest == EMPTY)
+			return 0;
+
+		double sum = 0;
+		long count = 0;
+		for (long bucket = latest - slots + 1; bucket <= latest; ++bucket)
+		{
+			int slot = slot(bucket);
+
+			long bucketSum = 0;
+			long bucketCount = 0;
+			for (int base = slot * CELL_SIZE; base < cells.length(); base += stripeSize)
+			{
+				if (cells.get(base + EPOCH) == bucket)
+				{
+					bucketSum += cells.get(base + SUM);
+					bucketCount += cells.get(base + COUNT);
+				}
+			}
+
+			if (bucketCount > 0)
+			{
+				sum += bucketSum / (double) bucketCount;
+				count++;
+			}
+		}
+
+		if (count == 0)
+			return 0;
+		return sum / (double) count;
+	}
+
+	public void update(long nowNs, long value)
+	{
+		long bucket = Math.floorDiv(nowNs, bucketSizeNs);
+		int base = stripe() * stripeSize + slot(bucket) * CELL_SIZE;
+
+		while (true)
+		{
+			long epoch = cells.get(base + EPOCH);
+			if (epoch == bucket)
+			{
+				cells.incrementAndGet(base + WRITERS);
+				boolean added = false;
+				// The cell may have been recycled since the epoch was read
+				if (cells.get(base + EPOCH) == bucket)
+				{
+					cells.addAndGet(base + SUM, value);
+					cells.incrementAndGet(base + COUNT);
+					added = true;
+				}
+				cells.decrementAndGet(base + WRITERS);
+				if (added)
+					break;
+			}
+			else if (epoch == RESETTING)
+			{
+				// Another thread of this stripe is recycling the cell
+				Thread.yield();
+			}
+			else if (epoch != EMPTY && epoch > bucket)
+			{
+				// The cell was already recycled for a newer bucket
+				return;
+			}
+			else if (cells.compareAndSet(base + EPOCH, epoch, RESETTING))
+			{
+				// Wait for threads still adding values of the old bucket
+				while (cells.get(base + WRITERS) != 0)
+					Thread.yield();
+				cells.set(base + SUM, value);
+				cells.set(base + COUNT, 1);
+				cells.set(base + EPOCH, bucket);
+				break;
+			}
+		}
+
+		long latest;
+		do
+		{
+			latest = latestBucket.get();
+			if (latest != EMPTY && latest >= bucket)
+				break;
+		} while (!latestBucket.compareAndSet(latest, bucket));
+	}
+
+	/**
+	 * Discards all values. Values recorded concurrently with a reset may or
+	 * may not survive the reset.
+	 */
+	public void reset()
+	{
+		latestBucket.set(EMPTY);
+		clearCells();
+	}
+
+	// =========================================================================
+
+	private void clearCells()
+	{
+		for (int base = 0; base < cells.length(); base += CELL_SIZE)
+		{
+			long epoch = cells.get(base + EPOCH);
+			if (epoch != RESETTING)
+				cells.compareAndSet(base + EPOCH, epoch, EMPTY);
+		}
+	}
+
+	private int slot(long bucket)
+	{
+		return (int) Math.floorMod(bucket, (long) slots);
+	}
+
+	private int stripe()
+	{
+		long id = Thread.currentThread().getId();
+		int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+		return (h >>> 16) & stripeMask;
+	}
+}
@@ -0,0 +1,427 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fau.cs.osr.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative long values (usually latencies in nanoseconds)
+ * with a fixed memory footprint.
+ *
+ * Values below 2^precisionBits are counted exactly. Larger values are
+ * counted in logarithmic buckets which are each divided into
+ * 2^(precisionBits-1) linear sub-buckets. The relative error of a reported
+ * value is therefore below 2^-(precisionBits-1). With the default precision
+ * of 7 bits the error is below 1.6% and the histogram covers the whole range
+ * of long with 3776 counters.
+ *
+ * Recording is thread-safe and doesn't allocate. Percentiles are computed
+ * from a {@link Snapshot}. Snapshots taken while values are recorded
+ * concurrently may miss some of these values.
+ */
+public class LatencyHistogram
+{
+	public static final int DEFAULT_PRECISION_BITS = 7;
+
+	// =========================================================================
+
+	private final int precisionBits;
+
+	private final int halfSubBuckets;
+
+	private final AtomicLongArray counts;
+
+	private final LongAdder totalCount = new LongAdder();
+
+	private final LongAdder sum = new LongAdder();
+
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+	private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+	// =========================================================================
+
+	public LatencyHistogram()
+	{
+		this(DEFAULT_PRECISION_BITS);
+	}
+
+	/**
+	 * @param precisionBits
+	 *            Number of significant bits kept for each value. Must be
+	 *            between 1 and 16.
+	 */
+	public LatencyHistogram(int precisionBits)
+	{
+		if (precisionBits < 1 || precisionBits > 16)
+			throw new IllegalArgumentException("precisionBits must be between 1 and 16");
+		this.precisionBits = precisionBits;
+		this.halfSubBuckets = (1 << precisionBits) >>> 1;
+		this.counts = new AtomicLongArray(bucketCount(precisionBits));
+	}
+
+	// =========================================================================
+
+	public int getPrecisionBits()
+	{
+		return precisionBits;
+	}
+
+	public void record(long value)
+	{
+		recordCount(value, 1);
+	}
+
+	public void recordCount(long value, long count)
+	{
+		if (value < 0)
+			throw new IllegalArgumentException("Cannot record negative value: " + value);
+		if (count <= 0)
+			return;
+
+		counts.addAndGet(indexOf(value), count);
+		totalCount.add(count);
+		sum.add(value * count);
+		updateMin(value);
+		updateMax(value);
+	}
+
+	/**
+	 * Records the nanoseconds elapsed since the given start time as obtained
+	 * from {@link System#nanoTime()}.
+	 *
+	 * @return The recorded value.
+	 */
+	public long recordSince(long startNanos)
+	{
+		long elapsed = Math.max(0, System.nanoTime() - startNanos);
+		record(elapsed);
+		return elapsed;
+	}
+
+	/**
+	 * Adds all values recorded in the given histogram to this histogram. Both
+	 * histograms must have the same precision.
+	 */
+	public void add(LatencyHistogram other)
+	{
+		add(other.snapshot());
+	}
+
+	/**
+	 * Adds all values of the given snapshot to this histogram. The snapshot
+	 * must have been taken from a histogram with the same precision.
+	 */
+	public void add(Snapshot snapshot)
+	{
+		if (snapshot.precisionBits != precisionBits)
+			throw new IllegalArgumentException("Cannot merge histograms of different precision");
+		if (snapshot.totalCount == 0)
+			return;
+
+		long[] c = snapshot.counts;
+		for (int i = 0; i < c.length; ++i)
+		{
+			if (c[i] != 0)
+				counts.addAndGet(i, c[i]);
+		}
+		totalCount.add(snapshot.totalCount);
+		sum.add(snapshot.sum);
+		updateMin(snapshot.min);
+		updateMax(snapshot.max);
+	}
+
+	/**
+	 * Discards all values. Values recorded concurrently with a reset may or
+	 * may not survive the reset.
+	 */
+	public void reset()
+	{
+		for (int i = 0; i < counts.length(); ++i)
+			counts.set(i, 0);
+		totalCount.reset();
+		sum.reset();
+		min.set(Long.MAX_VALUE);
+		max.set(Long.MIN_VALUE);
+	}
+
+	public Snapshot snapshot()
+	{
+		long[] c = new long[counts.length()];
+		long total = 0;
+		for (int i = 0; i < c.length; ++i)
+		{
+			c[i] = counts.get(i);
+			total += c[i];
+		}
+		return new Snapshot(precisionBits, c, total, sum.sum(), min.get(), max.get());
+	}
+
+	/**
+	 * Takes a snapshot and resets the histogram. Useful for periodic
+	 * reporting of the values recorded during the last interval.
+	 */
+	public Snapshot snapshotAndReset()
+	{
+		long[] c = new long[counts.length()];
+		long total = 0;
+		for (int i = 0; i < c.length; ++i)
+		{
+			c[i] = counts.getAndSet(i, 0);
+			total += c[i];
+		}
+		long s = sum.sumThenReset();
+		totalCount.reset();
+		long lo = min.getAndSet(Long.MAX_VALUE);
+		long hi = max.getAndSet(Long.MIN_VALUE);
+		return new Snapshot(precisionBits, c, total, s, lo, hi);
+	}
+
+	public long getTotalCount()
+	{
+		return totalCount.sum();
+	}
+
+	public long getValueAtPercentile(double percentile)
+	{
+		return snapshot().getValueAtPercentile(percentile);
+	}
+
+	@Override
+	public String toString()
+	{
+		return snapshot().toString();
+	}
+
+	// =========================================================================
+
+	private static int bucketCount(int precisionBits)
+	{
+		int subBuckets = 1 << precisionBits;
+		int maxShift = 64 - precisionBits;
+		return maxShift * (subBuckets >>> 1) + subBuckets;
+	}
+
+	private int indexOf(long value)
+	{
+		return indexOf(value, precisionBits, halfSubBuckets);
+	}
+
+	private static int indexOf(long value, int precisionBits, int halfSubBuckets)
+	{
+		if (value < (halfSubBuckets << 1))
+			return (int) value;
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - (precisionBits - 1);
+		return shift * halfSubBuckets + (int) (value >>> shift);
+	}
+
+	private static long lowestValueAt(int index, int halfSubBuckets)
+	{
+		if (index < (halfSubBuckets << 1))
+			return index;
+		int shift = (index - halfSubBuckets) / halfSubBuckets;
+		long top = index - shift * (long) halfSubBuckets;
+		return top << shift;
+	}
+
+	private static long highestValueAt(int index, int halfSubBuckets)
+	{
+		if (index < (halfSubBuckets << 1))
+			return index;
+		int shift = (index - halfSubBuckets) / halfSubBuckets;
+		long top = index - shift * (long) halfSubBuckets;
+		long highest = ((top + 1) << shift) - 1;
+		// The last bucket ends at Long.MAX_VALUE
+		return (highest < 0) ? Long.MAX_VALUE : highest;
+	}
+
+	private void updateMin(long value)
+	{
+		long current;
+		while (value < (current = min.get()))
+		{
+			if (min.compareAndSet(current, value))
+				break;
+		}
+	}
+
+	private void updateMax(long value)
+	{
+		long current;
+		while (value > (current = max.get()))
+		{
+			if (max.compareAndSet(current, value))
+				break;
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * An immutable copy of the counters of a histogram.
+	 */
+	public static final class Snapshot
+	{
+		private final int precisionBits;
+
+		private final long[] counts;
+
+		private final long totalCount;
+
+		private final long sum;
+
+		private final long min;
+
+		private final long max;
+
+		private Snapshot(
+				int precisionBits,
+				long[] counts,
+				long totalCount,
+				long sum,
+				long min,
+				long max)
+		{
+			this.precisionBits = precisionBits;
+			this.counts = counts;
+			this.totalCount = totalCount;
+			this.sum = sum;
+			this.min = min;
+			this.max = max;
+		}
+
+		/**
+		 * Returns a new snapshot with the values of this and the given
+		 * snapshot.
+		 */
+		public Snapshot merge(Snapshot other)
+		{
+			if (other.precisionBits != precisionBits)
+				throw new IllegalArgumentException("Cannot merge histograms of different precision");
+
+			long[] c = counts.clone();
+			for (int i = 0; i < c.length; ++i)
+				c[i] += other.counts[i];
+
+			return new Snapshot(
+					precisionBits,
+					c,
+					totalCount + other.totalCount,
+					sum + other.sum,
+					Math.min(min, other.min),
+					Math.max(max, other.max));
+		}
+
+		public long getTotalCount()
+		{
+			return totalCount;
+		}
+
+		/**
+		 * @return The smallest recorded value or 0 if no values were recorded.
+		 */
+		public long getMin()
+		{
+			return (totalCount == 0) ? 0 : min;
+		}
+
+		/**
+		 * @return The largest recorded value or 0 if no values were recorded.
+		 */
+		public long getMax()
+		{
+			return (totalCount == 0) ? 0 : max;
+		}
+
+		public double getMean()
+		{
+			return (totalCount == 0) ? 0 : sum / (double) totalCount;
+		}
+
+		/**
+		 * Returns a value such that the given percentage of all recorded
+		 * values is smaller or equal (within the precision of the histogram).
+		 *
+		 * @param percentile
+		 *            A percentile between 0 and 100, e.g. 99.9.
+		 * @return The value at the given percentile or 0 if no values were
+		 *         recorded.
+		 */
+		public long getValueAtPercentile(double percentile)
+		{
+			if (percentile < 0 || percentile > 100)
+				throw new IllegalArgumentException("percentile must be between 0 and 100");
+			if (totalCount == 0)
+				return 0;
+
+			long rank = (long) Math.ceil(percentile / 100. * totalCount);
+			rank = Math.max(1, Math.min(rank, totalCount));
+
+			int half = (1 << precisionBits) >>> 1;
+			long seen = 0;
+			for (int i = 0; i < counts.length; ++i)
+			{
+				seen += counts[i];
+				if (seen >= rank)
+				{
+					long value = highestValueAt(i, half);
+					return Math.max(min, Math.min(value, max));
+				}
+			}
+
+			return max;
+		}
+
+		/**
+		 * Returns the number of recorded values that fall into the same
+		 * bucket as the given value.
+		 */
+		public long getCountAtValue(long value)
+		{
+			if (value < 0)
+				return 0;
+			return counts[indexOf(value, precisionBits, (1 << precisionBits) >>> 1)];
+		}
+
+		/**
+		 * Returns the lowest value that falls into the same bucket as the
+		 * given value.
+		 */
+		public long lowestEquivalentValue(long value)
+		{
+			int half = (1 << precisionBits) >>> 1;
+			return lowestValueAt(indexOf(value, precisionBits, half), half);
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format(
+					"count=%d, min=%d, mean=%.1f, p50=%d, p90=%d, p99=%d, p99.9=%d, max=%d",
+					getTotalCount(),
+					getMin(),
+					getMean(),
+					getValueAtPercentile(50),
+					getValueAtPercentile(90),
+					getValueAtPercentile(99),
+					getValueAtPercentile(99.9),
+					getMax());
+		}
+	}
+}
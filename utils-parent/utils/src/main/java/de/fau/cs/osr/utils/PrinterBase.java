@@ -22,7 +22,8 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Stack;
 
 public class PrinterBase
@@ -36,19 +37,38 @@ public class PrinterBase
 
 	private final Stack<State> stateStack = new Stack<State>();
 
-	private static final class State
+	/**
+	 * The layout state of a printer (indentation and pending newlines) and the
+	 * writer it was printing to. States are immutable. Equality only considers
+	 * the layout state.
+	 */
+	public static final class State
 	{
-		public PrintWriter out;
+		private final PrintWriter out;
 
-		public int indent;
+		private final int indent;
 
-		public int hadNewlines;
+		private final int hadNewlines;
 
-		public int needNewlines;
+		private final int needNewlines;
 
-		public int eatNewlines;
+		private final int eatNewlines;
 
+		/**
+		 * Creates a layout state without writer, which can be passed to
+		 * {@link PrinterBase#setStateNotOut(State)} or compared to the state of
+		 * a printer.
+		 */
 		public State(
+				int indent,
+				int hadNewlines,
+				int needNewlines,
+				int eatNewlines)
+		{
+			this(null, indent, hadNewlines, needNewlines, eatNewlines);
+		}
+
+		private State(
 				PrintWriter out,
 				int indent,
 				int hadNewlines,
@@ -115,7 +135,7 @@ public class PrinterBase
 		return state;
 	}
 
-	private State getState()
+	public State getState()
 	{
 		return new State(out, indent, hadNewlines, needNewlines, eatNewlines);
 	}
@@ -123,10 +143,7 @@ public class PrinterBase
 	public void setState(State state)
 	{
 		this.out = state.out;
-		this.indent = state.indent;
-		this.hadNewlines = state.hadNewlines;
-		this.needNewlines = state.needNewlines;
-		this.eatNewlines = state.eatNewlines;
+		setStateNotOut(state);
 	}
 
 	public void setStateNotOut(State state)
@@ -135,6 +152,19 @@ public class PrinterBase
 		this.hadNewlines = state.hadNewlines;
 		this.needNewlines = state.needNewlines;
 		this.eatNewlines = state.eatNewlines;
+		growIndentStrings();
+	}
+
+	/**
+	 * Appends output that was rendered by another printer and adopts the state
+	 * that printer was in after rendering. The other printer must have started
+	 * rendering in the current state of this printer. The result is the same
+	 * as if this printer had rendered the output itself.
+	 */
+	public void replay(String output, State stateOnStop)
+	{
+		setStateNotOut(stateOnStop);
+		out.append(output);
 	}
 
 	// =========================================================================
@@ -143,6 +173,8 @@ public class PrinterBase
 	{
 		private StringWriter w = new StringWriter();
 
+		private String text;
+
 		private State stateOnStart;
 
 		private State stateOnStop;
@@ -159,6 +191,11 @@ public class PrinterBase
 				throw new UnsupportedOperationException("Already stopped!");
 			stateOnStop = getState();
 			restore();
+
+			// Nothing gets written to the buffer any more. Keep the text and
+			// let go of the writer and its slack capacity.
+			text = w.toString();
+			w = null;
 		}
 
 		public boolean isStopped()
@@ -168,15 +205,14 @@ public class PrinterBase
 
 		public String getBuffer()
 		{
-			return w.toString();
+			return (text != null) ? text : w.toString();
 		}
 
 		public void flush()
 		{
 			if (!isStopped())
 				stop();
-			setStateNotOut(stateOnStop);
-			out.append(getBuffer());
+			replay(getBuffer(), stateOnStop);
 		}
 
 		public State getStateOnStart()
@@ -217,6 +253,11 @@ public class PrinterBase
 	public void incIndent()
 	{
 		++indent;
+		growIndentStrings();
+	}
+
+	private void growIndentStrings()
+	{
 		while (indentStrings.size() <= indent)
 			indentStrings.add(indentStrings.get(indentStrings.size() - 1) + indentString);
 	}
@@ -362,7 +403,7 @@ public class PrinterBase
 			if (to > from)
 			{
 				flush();
-				out.print(text.substring(from, to));
+				out.write(text, from, to - from);
 				hadNewlines = 0;
 				eatNewlines = 0;
 			}
@@ -448,12 +489,28 @@ public class PrinterBase
 
 	// =========================================================================
 
-	private final HashMap<Memoize, Memoize> cache = new HashMap<Memoize, Memoize>();
+	private static final Memoize NO_MEMOIZATION = new Memoize((Object) null, (State) null);
 
-	private int reuse = 0;
+	/**
+	 * Cache of rendered nodes in least recently used order.
+	 */
+	private final LinkedHashMap<Memoize, Memoize> cache =
+			new LinkedHashMap<Memoize, Memoize>(16, .75f, true);
 
 	private boolean memoize = true;
 
+	private int maxMemoizeEntries = Integer.MAX_VALUE;
+
+	private long maxMemoizeWeight = Long.MAX_VALUE;
+
+	private long cacheWeight = 0;
+
+	private long hits = 0;
+
+	private long misses = 0;
+
+	private long evictions = 0;
+
 	// =========================================================================
 
 	public void setMemoize(boolean memoize)
@@ -466,24 +523,60 @@ public class PrinterBase
 		return memoize;
 	}
 
+	/**
+	 * Limits the number of rendered nodes that are kept for reuse. When the
+	 * limit is exceeded, the least recently used entries are evicted.
+	 */
+	public void setMaxMemoizeEntries(int maxEntries)
+	{
+		if (maxEntries < 0)
+			throw new IllegalArgumentException("maxEntries must not be negative");
+		this.maxMemoizeEntries = maxEntries;
+		evict();
+	}
+
+	public int getMaxMemoizeEntries()
+	{
+		return maxMemoizeEntries;
+	}
+
+	/**
+	 * Limits the total number of characters of rendered output that is kept for
+	 * reuse. When the limit is exceeded, the least recently used entries are
+	 * evicted. Output that alone exceeds the limit is never kept.
+	 */
+	public void setMaxMemoizeWeight(long maxWeight)
+	{
+		if (maxWeight < 0)
+			throw new IllegalArgumentException("maxWeight must not be negative");
+		this.maxMemoizeWeight = maxWeight;
+		evict();
+	}
+
+	public long getMaxMemoizeWeight()
+	{
+		return maxMemoizeWeight;
+	}
+
 	// =========================================================================
 
 	public Memoize memoizeStart(Object node)
 	{
 		if (!memoize)
 		{
-			return new Memoize((Object) null, (State) null);
+			return NO_MEMOIZATION;
 		}
 		else
 		{
 			Memoize m = cache.get(new Memoize(node, getState()));
 			if (m == null)
 			{
+				++misses;
 				return new Memoize(node, outputBufferStart());
 			}
 			else
 			{
-				++reuse;
+				++hits;
 				m.getOutputBuffer().flush();
 				return null;
 			}
@@ -494,18 +587,79 @@ public class PrinterBase
 	{
 		if (memoize)
 		{
-			m.getOutputBuffer().flush();
-			cache.put(m, m);
+			OutputBuffer b = m.getOutputBuffer();
+			b.flush();
+
+			m.weight = b.getBuffer().length();
+			if (m.weight <= maxMemoizeWeight)
+			{
+				Memoize old = cache.put(m, m);
+				if (old != null)
+					cacheWeight -= old.weight;
+				cacheWeight += m.weight;
+				evict();
+			}
+		}
+	}
+
+	private void evict()
+	{
+		Iterator<Memoize> i = cache.keySet().iterator();
+		while (i.hasNext() && (cache.size() > maxMemoizeEntries || cacheWeight > maxMemoizeWeight))
+		{
+			Memoize eldest = i.next();
+			i.remove();
+			cacheWeight -= eldest.weight;
+			++evictions;
 		}
 	}
 
+	public void clearMemoizationCache()
+	{
+		cache.clear();
+		cacheWeight = 0;
+	}
+
+	// =========================================================================
+
+	public int getMemoizationCacheSize()
+	{
+		return cache.size();
+	}
+
+	/**
+	 * The number of characters of rendered output currently kept for reuse.
+	 */
+	public long getMemoizationCacheWeight()
+	{
+		return cacheWeight;
+	}
+
+	public long getMemoizationHits()
+	{
+		return hits;
+	}
+
+	public long getMemoizationMisses()
+	{
+		return misses;
+	}
+
+	public long getMemoizationEvictions()
+	{
+		return evictions;
+	}
+
 	public void printMemoizationStats()
 	{
 		System.out.format(
-				"% 6d / % 6d / %2.2f\n",
+				"% 6d / % 6d / %2.2f (misses: %d, evictions: %d, weight: %d)\n",
 				cache.size(),
-				reuse,
-				(float) reuse / (float) cache.size());
+				hits,
+				(float) hits / (float) cache.size(),
+				misses,
+				evictions,
+				cacheWeight);
 	}
 
 	// =========================================================================
@@ -518,6 +672,8 @@ public class PrinterBase
 
 		private final OutputBuffer outputBuffer;
 
+		private int weight;
+
 		public Memoize(Object node, State state)
 		{
 			this.o = node;
@@ -542,7 +698,9 @@ public class PrinterBase
 		{
 			final int prime = 31;
 			int result = 1;
-			result = prime * result + ((o == null) ? 0 : o.hashCode());
+			// Nodes are compared by identity. Their own hashCode() may well
+			// recurse into the whole subtree.
+			result = prime * result + System.identityHashCode(o);
 			result = prime * result + ((state == null) ? 0 : state.hashCode());
 			return result;
 		}
@@ -92,7 +92,7 @@ public class SpeedMeter
 
 	public double average()
 	{
-		return measurements.getSum().doubleValue() / measurements.getN();
+		return measurements.getSumAsDouble() / measurements.getN();
 	}
 
 	public boolean hasMeasurements()
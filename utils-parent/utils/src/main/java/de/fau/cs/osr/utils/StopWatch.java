@@ -57,6 +57,17 @@ public class StopWatch
 		return this;
 	}
 
+	/**
+	 * Stops the watch and records the elapsed time in milliseconds into the
+	 * given histogram.
+	 */
+	public StopWatch stop(LatencyHistogram histogram)
+	{
+		stop();
+		histogram.record(getElapsedTime());
+		return this;
+	}
+
 	/**
 	 * Returns elapsed time in milliseconds or 0 if the watch has never been
 	 * started.
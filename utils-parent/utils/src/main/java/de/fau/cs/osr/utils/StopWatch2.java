@@ -60,6 +60,19 @@ public class StopWatch2
 		return stop - start;
 	}
 
+	/**
+	 * Stops the watch and records the elapsed time in nanoseconds into the
+	 * given histogram.
+	 *
+	 * @return The elapsed time in nanoseconds.
+	 */
+	public long stop(LatencyHistogram histogram)
+	{
+		long delta = stop();
+		histogram.record(Math.max(0, delta));
+		return delta;
+	}
+
 	public long stopAndRestart()
 	{
 		long delta = stop();
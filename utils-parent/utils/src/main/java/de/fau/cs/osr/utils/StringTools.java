@@ -17,15 +17,13 @@
 
 package de.fau.cs.osr.utils;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.nio.charset.Charset;
 import java.util.Collection;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -38,6 +36,13 @@ public final class StringTools
 		return escHtml(text, true);
 	}
 
+	/**
+	 * Escapes text for use in HTML/XML. Returns the given string itself if
+	 * nothing needs escaping.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If the text contains isolated surrogates.
+	 */
 	public static String escHtml(String text, boolean forAttribute)
 	{
 		// StringEscapeUtils.escapeHtml(in) does not escape '\'' but a lot of 
@@ -46,86 +51,273 @@ public final class StringTools
 		if (text == null)
 			return "";
 
+		String[] table = forAttribute ? ESC_HTML_ATTR : ESC_HTML_TEXT;
+
+		int i = indexOfHtmlEsc(text, 0, table);
+		if (i == -1)
+			return text;
+
 		int n = text.length();
-		StringBuilder sb = new StringBuilder(n * 4 / 3);
-		for (int i = 0; i < n; i++)
+		StringBuilder sb = new StringBuilder(n + 16);
+		sb.append(text, 0, i);
+		try
 		{
+			escHtml(sb, text, i, table);
+		}
+		catch (IOException e)
+		{
+			// StringBuilder doesn't throw
+			throw new WrappedException(e);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Escapes text for use in HTML/XML and writes the result to the given
+	 * Appendable. Runs of characters that don't need escaping are appended
+	 * in one call. A <code>null</code> text is treated like an empty text.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If the text contains isolated surrogates.
+	 */
+	public static <A extends Appendable> A escHtml(
+			A out,
+			CharSequence text,
+			boolean forAttribute) throws IOException
+	{
+		if (text != null)
+			escHtml(out, text, 0, forAttribute ? ESC_HTML_ATTR : ESC_HTML_TEXT);
+		return out;
+	}
+
+	private static void escHtml(
+			Appendable out,
+			CharSequence text,
+			int from,
+			String[] table) throws IOException
+	{
+		int n = text.length();
+		int i = from;
+		while (i < n)
+		{
+			int next = indexOfHtmlEsc(text, i, table);
+			if (next == -1)
+			{
+				out.append(text, i, n);
+				break;
+			}
+
+			if (next > i)
+				out.append(text, i, next);
+			i = next;
+
 			char ch = text.charAt(i);
-			switch (ch)
+			if (ch < 0x100)
 			{
-				case ' ':
-				case '\n':
-				case '\t':
-					sb.append(ch);
-					break;
-				case '<':
-					sb.append("&lt;");
-					break;
-				case '>':
-					sb.append(forAttribute ? "&gt;" : ">");
-					break;
-				case '&':
-					sb.append("&amp;");
-					break;
-				case '\'':
-					// &apos; cannot safely be used, see wikipedia
-					sb.append("&#39;");
-					break;
-				case '"':
-					sb.append(forAttribute ? "&quot;" : "\"");
-					break;
-				default:
-					if ((ch >= 0 && ch < 0x20) || (ch == 0xFE))
-					{
-						hexCharRef(sb, ch);
-						break;
-					}
-					else if (Character.isHighSurrogate(ch))
-					{
-						++i;
-						if (i < n)
-						{
-							char ch2 = text.charAt(i);
-							if (Character.isLowSurrogate(ch2))
-							{
-								int codePoint = Character.toCodePoint(ch, ch2);
-								switch (Character.getType(codePoint))
-								{
-									case Character.CONTROL:
-									case Character.PRIVATE_USE:
-									case Character.UNASSIGNED:
-										hexCharRef(sb, codePoint);
-										break;
-
-									default:
-										sb.append(ch);
-										sb.append(ch2);
-										break;
-								}
-
-								continue;
-							}
-						}
-					}
-					else if (!Character.isLowSurrogate(ch))
+				out.append(table[ch]);
+				i += 1;
+			}
+			else
+			{
+				// indexOfHtmlEsc() only stops at surrogates that need escaping
+				// or are not part of a valid pair.
+				if (Character.isHighSurrogate(ch) && i + 1 < n)
+				{
+					char ch2 = text.charAt(i + 1);
+					if (Character.isLowSurrogate(ch2))
 					{
-						sb.append(ch);
+						hexCharRef(out, Character.toCodePoint(ch, ch2));
+						i += 2;
 						continue;
 					}
+				}
 
-					// No low surrogate followed or only low surrogate
-					throw new IllegalArgumentException("String contains isolated surrogates!");
+				// No low surrogate followed or only low surrogate
+				throw new IllegalArgumentException("String contains isolated surrogates!");
 			}
 		}
+	}
 
-		return sb.toString();
+	/**
+	 * @return The index of the first character at or after <code>from</code>
+	 *         which has to be escaped or -1 if none has to be escaped.
+	 */
+	private static int indexOfHtmlEsc(CharSequence text, int from, String[] table)
+	{
+		int n = text.length();
+		for (int i = from; i < n; ++i)
+		{
+			char ch = text.charAt(i);
+			if (ch < 0x100)
+			{
+				if (table[ch] != null)
+					return i;
+			}
+			else if (ch >= Character.MIN_SURROGATE && ch <= Character.MAX_SURROGATE)
+			{
+				if (!Character.isHighSurrogate(ch) || i + 1 >= n)
+					return i;
+
+				char ch2 = text.charAt(i + 1);
+				if (!Character.isLowSurrogate(ch2))
+					return i;
+
+				switch (Character.getType(Character.toCodePoint(ch, ch2)))
+				{
+					case Character.CONTROL:
+					case Character.PRIVATE_USE:
+					case Character.UNASSIGNED:
+						return i;
+				}
+
+				++i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Replacements for the characters 0-255 or <code>null</code> if a
+	 * character is copied as is. All other characters of the BMP are copied
+	 * as is, except for surrogates.
+	 */
+	private static final String[] ESC_HTML_ATTR = buildEscHtmlTable(true);
+
+	private static final String[] ESC_HTML_TEXT = buildEscHtmlTable(false);
+
+	private static String[] buildEscHtmlTable(boolean forAttribute)
+	{
+		String[] table = new String[0x100];
+		for (int ch = 0; ch < 0x20; ++ch)
+			table[ch] = "&#x" + Integer.toHexString(ch) + ";";
+		table[0xFE] = "&#x" + Integer.toHexString(0xFE) + ";";
+
+		table['\n'] = null;
+		table['\t'] = null;
+		table['<'] = "&lt;";
+		table['&'] = "&amp;";
+		// &apos; cannot safely be used, see wikipedia
+		table['\''] = "&#39;";
+		if (forAttribute)
+		{
+			table['>'] = "&gt;";
+			table['"'] = "&quot;";
+		}
+		return table;
 	}
 
 	// =========================================================================
 
+	/**
+	 * Escapes text like
+	 * {@link org.apache.commons.lang3.StringEscapeUtils#escapeJava(String)}.
+	 * Returns the given string itself if nothing needs escaping.
+	 */
 	public static String escJava(String text)
 	{
-		return StringEscapeUtils.escapeJava(text);
+		if (text == null)
+			return null;
+
+		int i = indexOfJavaEsc(text, 0);
+		if (i == -1)
+			return text;
+
+		StringBuilder sb = new StringBuilder(text.length() + 16);
+		sb.append(text, 0, i);
+		try
+		{
+			escJava(sb, text, i);
+		}
+		catch (IOException e)
+		{
+			// StringBuilder doesn't throw
+			throw new WrappedException(e);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Escapes text like
+	 * {@link org.apache.commons.lang3.StringEscapeUtils#escapeJava(String)}
+	 * and writes the result to the given Appendable. A <code>null</code> text
+	 * is treated like an empty text.
+	 */
+	public static <A extends Appendable> A escJava(A out, CharSequence text) throws IOException
+	{
+		if (text != null)
+			escJava(out, text, 0);
+		return out;
+	}
+
+	private static void escJava(Appendable out, CharSequence text, int from) throws IOException
+	{
+		int n = text.length();
+		int i = from;
+		while (i < n)
+		{
+			int next = indexOfJavaEsc(text, i);
+			if (next == -1)
+			{
+				out.append(text, i, n);
+				break;
+			}
+
+			if (next > i)
+				out.append(text, i, next);
+			i = next;
+
+			char ch = text.charAt(i++);
+			if (ch < 0x80 && ESC_JAVA[ch] != null)
+			{
+				out.append(ESC_JAVA[ch]);
+			}
+			else
+			{
+				// Unicode escape, surrogates are escaped individually
+				out.append('\\');
+				out.append('u');
+				out.append(HEX_DIGITS[(ch >> 12) & 0xF]);
+				out.append(HEX_DIGITS[(ch >> 8) & 0xF]);
+				out.append(HEX_DIGITS[(ch >> 4) & 0xF]);
+				out.append(HEX_DIGITS[ch & 0xF]);
+			}
+		}
+	}
+
+	private static int indexOfJavaEsc(CharSequence text, int from)
+	{
+		int n = text.length();
+		for (int i = from; i < n; ++i)
+		{
+			char ch = text.charAt(i);
+			if (ch >= 0x80 || ESC_JAVA[ch] != null)
+				return i;
+		}
+		return -1;
+	}
+
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	/**
+	 * Replacements for the characters 0-127 or <code>null</code> if a
+	 * character is copied as is. Control characters without a table entry
+	 * and all characters from 128 upwards are escaped as \\uXXXX.
+	 */
+	private static final String[] ESC_JAVA = buildEscJavaTable();
+
+	private static String[] buildEscJavaTable()
+	{
+		String[] table = new String[0x80];
+		for (int ch = 0; ch < 0x20; ++ch)
+			table[ch] = String.format("\\u%04X", ch);
+		table['\b'] = "\\b";
+		table['\n'] = "\\n";
+		table['\t'] = "\\t";
+		table['\f'] = "\\f";
+		table['\r'] = "\\r";
+		table['"'] = "\\\"";
+		table['\\'] = "\\\\";
+		return table;
 	}
 
 	// =========================================================================
@@ -142,6 +334,13 @@ public final class StringTools
 		sb.append(';');
 	}
 
+	public static void hexCharRef(Appendable out, int codePoint) throws IOException
+	{
+		out.append("&#x");
+		out.append(Integer.toHexString(codePoint));
+		out.append(';');
+	}
+
 	public static String entityRef(String name)
 	{
 		return String.format("&%s;", name);
@@ -200,33 +399,28 @@ public final class StringTools
 		if (text == null)
 			return "";
 
-		int n = text.length();
-		StringBuilder result = new StringBuilder(n * 2);
+		StringBuilder result = new StringBuilder(text.length() + indent.length() * 8);
 		result.append(indent);
-		for (int i = 0; i < n; ++i)
-		{
-			char ch = text.charAt(i);
-			result.append(ch);
-			switch (ch)
-			{
-				case '\n':
-					result.append(indent);
-					break;
-
-				case '\r':
-					if (i + 1 < n && text.charAt(i + 1) == '\n')
-					{
-						result.append('\n');
-						++i;
-					}
-					result.append(indent);
-					break;
-			}
-		}
-
+		appendIndented(result, text, indent);
 		return result.toString();
 	}
 
+	/**
+	 * Indents a text block like {@link #indent(String, String)} and writes the
+	 * result to the given Appendable. A <code>null</code> text is treated like
+	 * an empty text.
+	 */
+	public static <A extends Appendable> A indent(
+			A out,
+			CharSequence text,
+			CharSequence indent) throws IOException
+	{
+		out.append(indent);
+		if (text != null)
+			appendIndented(out, text, indent);
+		return out;
+	}
+
 	/**
 	 * Indents all but the first line using the given indent string.
 	 * 
@@ -234,37 +428,94 @@ public final class StringTools
 	 *            The text to indent, may be null.
 	 * @param indent
 	 *            The string to put before the start of each but the first line.
-	 * @return The indented text.
+	 * @return The indented text. The given text itself if it consists of a
+	 *         single line.
 	 */
 	public static String indent2(String text, String indent)
 	{
 		if (text == null)
 			return "";
 
+		if (indexOfLineBreak(text, 0) == -1)
+			return text;
+
+		StringBuilder result = new StringBuilder(text.length() + indent.length() * 8);
+		appendIndented(result, text, indent);
+		return result.toString();
+	}
+
+	/**
+	 * Indents all but the first line like {@link #indent2(String, String)}
+	 * and writes the result to the given Appendable. A <code>null</code> text
+	 * is treated like an empty text.
+	 */
+	public static <A extends Appendable> A indent2(
+			A out,
+			CharSequence text,
+			CharSequence indent) throws IOException
+	{
+		if (text != null)
+			appendIndented(out, text, indent);
+		return out;
+	}
+
+	private static void appendIndented(
+			StringBuilder out,
+			CharSequence text,
+			CharSequence indent)
+	{
+		try
+		{
+			appendIndented((Appendable) out, text, indent);
+		}
+		catch (IOException e)
+		{
+			// StringBuilder doesn't throw
+			throw new WrappedException(e);
+		}
+	}
+
+	/**
+	 * Copies the text and appends the indent after each line break.
+	 */
+	private static void appendIndented(
+			Appendable out,
+			CharSequence text,
+			CharSequence indent) throws IOException
+	{
 		int n = text.length();
-		StringBuilder result = new StringBuilder(n * 2);
-		for (int i = 0; i < n; ++i)
+		int i = 0;
+		while (i < n)
 		{
-			char ch = text.charAt(i);
-			result.append(ch);
-			switch (ch)
+			int next = indexOfLineBreak(text, i);
+			if (next == -1)
 			{
-				case '\n':
-					result.append(indent);
-					break;
-
-				case '\r':
-					if (i + 1 < n && text.charAt(i + 1) == '\n')
-					{
-						result.append('\n');
-						++i;
-					}
-					result.append(indent);
-					break;
+				out.append(text, i, n);
+				break;
 			}
+
+			// Include the line break and the \n of a \r\n sequence
+			int end = next + 1;
+			if (text.charAt(next) == '\r' && end < n && text.charAt(end) == '\n')
+				++end;
+
+			out.append(text, i, end);
+			out.append(indent);
+			i = end;
 		}
+	}
 
-		return result.toString();
+	private static int indexOfLineBreak(CharSequence text, int from)
+	{
+		int n = text.length();
+		for (int i = from; i < n; ++i)
+		{
+			char ch = text.charAt(i);
+			// Both line break characters are below 0x0E
+			if (ch < 0x0E && (ch == '\n' || ch == '\r'))
+				return i;
+		}
+		return -1;
 	}
 
 	// =========================================================================
@@ -366,18 +617,31 @@ public final class StringTools
 
 	public static String trim(String text)
 	{
-		int from = 0;
-		int length = text.length();
+		int from = skipWhitespace(text, 0);
+		int length = skipWhitespaceBackwards(text, from, text.length());
 
-		while ((from < length) && (Character.isWhitespace(text.charAt(from))))
-			++from;
+		if (from > 0 || length < text.length())
+		{
+			return text.substring(from, length);
+		}
+		else
+		{
+			return text;
+		}
+	}
 
-		while ((from < length) && (Character.isWhitespace(text.charAt(length - 1))))
-			--length;
+	/**
+	 * Removes leading and trailing whitespace. Returns the given sequence
+	 * itself if there is nothing to remove.
+	 */
+	public static CharSequence trim(CharSequence text)
+	{
+		int from = skipWhitespace(text, 0);
+		int length = skipWhitespaceBackwards(text, from, text.length());
 
 		if (from > 0 || length < text.length())
 		{
-			return text.substring(from, length);
+			return text.subSequence(from, length);
 		}
 		else
 		{
@@ -385,6 +649,18 @@ public final class StringTools
 		}
 	}
 
+	/**
+	 * Writes the given text without leading and trailing whitespace to the
+	 * given Appendable.
+	 */
+	public static <A extends Appendable> A trim(A out, CharSequence text) throws IOException
+	{
+		int from = skipWhitespace(text, 0);
+		int length = skipWhitespaceBackwards(text, from, text.length());
+		out.append(text, from, length);
+		return out;
+	}
+
 	public static String trimUnderscores(String text)
 	{
 		int from = 0;
@@ -407,15 +683,29 @@ public final class StringTools
 
 	public static String trimLeft(String text)
 	{
-		int from = 0;
-		int length = text.length();
+		int from = skipWhitespace(text, 0);
 
-		while ((from < length) && (Character.isWhitespace(text.charAt(from))))
-			++from;
+		if (from > 0)
+		{
+			return text.substring(from);
+		}
+		else
+		{
+			return text;
+		}
+	}
+
+	/**
+	 * Removes leading whitespace. Returns the given sequence itself if there
+	 * is nothing to remove.
+	 */
+	public static CharSequence trimLeft(CharSequence text)
+	{
+		int from = skipWhitespace(text, 0);
 
 		if (from > 0)
 		{
-			return text.substring(from, length);
+			return text.subSequence(from, text.length());
 		}
 		else
 		{
@@ -425,10 +715,7 @@ public final class StringTools
 
 	public static String trimRight(String text)
 	{
-		int length = text.length();
-
-		while ((0 < length) && (Character.isWhitespace(text.charAt(length - 1))))
-			--length;
+		int length = skipWhitespaceBackwards(text, 0, text.length());
 
 		if (length < text.length())
 		{
@@ -440,128 +727,450 @@ public final class StringTools
 		}
 	}
 
+	/**
+	 * Removes trailing whitespace. Returns the given sequence itself if there
+	 * is nothing to remove.
+	 */
+	public static CharSequence trimRight(CharSequence text)
+	{
+		int length = skipWhitespaceBackwards(text, 0, text.length());
+
+		if (length < text.length())
+		{
+			return text.subSequence(0, length);
+		}
+		else
+		{
+			return text;
+		}
+	}
+
 	// =========================================================================
 
 	public static boolean isWhitespace(String text)
+	{
+		return isWhitespace((CharSequence) text);
+	}
+
+	/**
+	 * Checks whether the given text only consists of whitespace. The empty
+	 * text counts as whitespace.
+	 */
+	public static boolean isWhitespace(CharSequence text)
 	{
 		if (text == null)
 			throw new NullPointerException();
 
-		return StringUtils.isWhitespace(text);
+		return skipWhitespace(text, 0) == text.length();
 	}
 
 	/**
 	 * Collapses a sequence of multiple whitespace characters into a single
-	 * space. Does NOT trim the string.
+	 * space. Does NOT trim the string. Returns the given string itself if
+	 * there is nothing to collapse.
 	 */
 	public static String collapseWhitespace(String trim)
 	{
-		if (trim.isEmpty())
+		int i = indexOfCollapsibleWhitespace(trim, 0);
+		if (i == -1)
 			return trim;
 
 		StringBuilder b = new StringBuilder(trim.length());
-		for (int i = 0; i < trim.length(); ++i)
+		b.append(trim, 0, i);
+		appendCollapsed(b, trim, i);
+		return b.toString();
+	}
+
+	/**
+	 * Collapses whitespace like {@link #collapseWhitespace(String)}. Returns
+	 * the given sequence itself if there is nothing to collapse.
+	 */
+	public static CharSequence collapseWhitespace(CharSequence text)
+	{
+		int i = indexOfCollapsibleWhitespace(text, 0);
+		if (i == -1)
+			return text;
+
+		StringBuilder b = new StringBuilder(text.length());
+		b.append(text, 0, i);
+		appendCollapsed(b, text, i);
+		return b;
+	}
+
+	/**
+	 * Collapses whitespace like {@link #collapseWhitespace(String)} and writes
+	 * the result to the given Appendable.
+	 */
+	public static <A extends Appendable> A collapseWhitespace(A out, CharSequence text) throws IOException
+	{
+		collapseWhitespace(out, text, 0);
+		return out;
+	}
+
+	private static void appendCollapsed(StringBuilder out, CharSequence text, int from)
+	{
+		try
 		{
-			char ch = trim.charAt(i);
-			if (Character.isWhitespace(ch))
+			collapseWhitespace(out, text, from);
+		}
+		catch (IOException e)
+		{
+			// StringBuilder doesn't throw
+			throw new WrappedException(e);
+		}
+	}
+
+	private static void collapseWhitespace(Appendable out, CharSequence text, int from) throws IOException
+	{
+		int n = text.length();
+		int i = from;
+		while (i < n)
+		{
+			int next = indexOfCollapsibleWhitespace(text, i);
+			if (next == -1)
 			{
-				b.append(' ');
-				int j = i + 1;
-				while (j < trim.length() && Character.isWhitespace(trim.charAt(j)))
-					++j;
-				i = j - 1;
+				out.append(text, i, n);
+				break;
 			}
-			else
-				b.append(ch);
+
+			if (next > i)
+				out.append(text, i, next);
+			out.append(' ');
+			i = skipWhitespace(text, next);
 		}
-		return b.toString();
+	}
+
+	/**
+	 * Returns the index of the first whitespace sequence that is not a single
+	 * space or -1 if the text doesn't need collapsing.
+	 */
+	private static int indexOfCollapsibleWhitespace(CharSequence text, int from)
+	{
+		int n = text.length();
+		for (int i = from; i < n; ++i)
+		{
+			char ch = text.charAt(i);
+			// Fast path for the common case of printable ASCII
+			if (ch > ' ' && ch < 0x80)
+				continue;
+
+			if (!isWhitespace(ch))
+				continue;
+
+			if (ch != ' ' || (i + 1 < n && isWhitespace(text.charAt(i + 1))))
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Bit i is set if the ASCII character i is whitespace according to
+	 * {@link Character#isWhitespace(char)}.
+	 */
+	private static final long ASCII_WHITESPACE =
+			(1L << '\t')
+					| (1L << '\n')
+					| (1L << 0x0B)
+					| (1L << '\f')
+					| (1L << '\r')
+					| (1L << 0x1C)
+					| (1L << 0x1D)
+					| (1L << 0x1E)
+					| (1L << 0x1F)
+					| (1L << ' ');
+
+	/**
+	 * Same as {@link Character#isWhitespace(char)} but avoids the lookup of
+	 * the character's properties for ASCII characters.
+	 */
+	private static boolean isWhitespace(char ch)
+	{
+		if (ch <= ' ')
+			return ((ASCII_WHITESPACE >>> ch) & 1) != 0;
+		return ch >= 0x80 && Character.isWhitespace(ch);
+	}
+
+	private static int skipWhitespace(CharSequence text, int from)
+	{
+		int n = text.length();
+		int i = from;
+		while (i < n && isWhitespace(text.charAt(i)))
+			++i;
+		return i;
+	}
+
+	private static int skipWhitespaceBackwards(CharSequence text, int from, int end)
+	{
+		int i = end;
+		while (i > from && isWhitespace(text.charAt(i - 1)))
+			--i;
+		return i;
 	}
 
 	// =========================================================================
 
+	/**
+	 * Decodes <code>%XX</code> escapes of printable ASCII characters and
+	 * replaces <code>+</code> with a space. Other escapes are left untouched.
+	 * Returns the given string itself if nothing needs decoding.
+	 */
 	public static String urlDecode(String text)
 	{
-		StringBuilder b = new StringBuilder();
-		for (int i = 0; i < text.length(); ++i)
+		int i = indexOfUrlEsc(text, 0);
+		if (i == -1)
+			return text;
+
+		StringBuilder sb = new StringBuilder(text.length());
+		sb.append(text, 0, i);
+		try
 		{
-			char ch = text.charAt(i);
-			if (ch == '%' && i + 2 < text.length())
+			urlDecode(sb, text, i);
+		}
+		catch (IOException e)
+		{
+			// StringBuilder doesn't throw
+			throw new WrappedException(e);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Decodes text like {@link #urlDecode(String)} and writes the result to
+	 * the given Appendable.
+	 */
+	public static <A extends Appendable> A urlDecode(A out, CharSequence text) throws IOException
+	{
+		urlDecode(out, text, 0);
+		return out;
+	}
+
+	private static void urlDecode(Appendable out, CharSequence text, int from) throws IOException
+	{
+		int n = text.length();
+		int i = from;
+		while (i < n)
+		{
+			int next = indexOfUrlEsc(text, i);
+			if (next == -1)
 			{
-				String num = text.substring(i + 1, i + 3);
-				try
-				{
-					int val = Integer.valueOf(num, 16);
-					if (val >= 0x20 && val < 0x7F)
-					{
-						ch = (char) val;
-						i += 2;
-					}
-				}
-				catch (NumberFormatException e)
-				{
-				}
+				out.append(text, i, n);
+				break;
 			}
-			else if (ch == '+')
+
+			if (next > i)
+				out.append(text, i, next);
+			i = next;
+
+			if (text.charAt(i) == '+')
 			{
-				ch = ' ';
+				out.append(' ');
+				++i;
+				continue;
 			}
 
-			b.append(ch);
+			if (i + 2 < n)
+			{
+				int hi = hexDigit(text.charAt(i + 1));
+				int lo = hexDigit(text.charAt(i + 2));
+				int val = (hi << 4) | lo;
+				if (hi != -1 && lo != -1 && val >= 0x20 && val < 0x7F)
+				{
+					out.append((char) val);
+					i += 3;
+					continue;
+				}
+			}
+
+			out.append('%');
+			++i;
 		}
-		return b.toString();
 	}
 
+	private static int indexOfUrlEsc(CharSequence text, int from)
+	{
+		int n = text.length();
+		for (int i = from; i < n; ++i)
+		{
+			char ch = text.charAt(i);
+			if (ch == '%' || ch == '+')
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Resolves XML entity and character references. References that cannot
+	 * be resolved and character references to control characters or to
+	 * invalid code points are left untouched. Returns the given string itself
+	 * if it doesn't contain a reference.
+	 */
 	public static String xmlDecode(String text, XmlEntityResolver resolver)
 	{
-		Pattern rx = XmlGrammar.xmlReference();
+		int i = text.indexOf('&');
+		if (i == -1)
+			return text;
 
-		int start = 0;
-		StringBuilder b = new StringBuilder();
-		while (true)
+		StringBuilder sb = new StringBuilder(text.length());
+		sb.append(text, 0, i);
+		try
+		{
+			xmlDecode(sb, text, i, resolver);
+		}
+		catch (IOException e)
+		{
+			// StringBuilder doesn't throw
+			throw new WrappedException(e);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Decodes text like {@link #xmlDecode(String, XmlEntityResolver)} and
+	 * writes the result to the given Appendable.
+	 */
+	public static <A extends Appendable> A xmlDecode(
+			A out,
+			CharSequence text,
+			XmlEntityResolver resolver) throws IOException
+	{
+		xmlDecode(out, text, 0, resolver);
+		return out;
+	}
+
+	private static void xmlDecode(
+			Appendable out,
+			CharSequence text,
+			int from,
+			XmlEntityResolver resolver) throws IOException
+	{
+		int n = text.length();
+		int i = from;
+		while (i < n)
 		{
-			Matcher m = rx.matcher(text);
-			if (m.find(start))
+			int next = indexOf(text, '&', i);
+			if (next == -1)
 			{
-				b.append(text.substring(start, m.start()));
+				out.append(text, i, n);
+				break;
+			}
 
-				String resolved = null;
-				if (m.group(1) != null)
-				{
-					resolved = resolver.resolveXmlEntity(m.group(1));
-				}
-				else
-				{
-					try
-					{
-						boolean decimal = m.group(2) != null;
+			if (next > i)
+				out.append(text, i, next);
 
-						String num = decimal ? m.group(2) : m.group(3);
+			i = xmlReference(out, text, next, resolver);
+			if (i == -1)
+			{
+				// Not a reference, continue right after the ampersand
+				out.append('&');
+				i = next + 1;
+			}
+		}
+	}
 
-						int val = Integer.valueOf(num, decimal ? 10 : 16);
-						if (val >= 0x20 && val != 0x7F)
-							resolved = String.valueOf((char) val);
-					}
-					catch (NumberFormatException e)
-					{
-					}
-				}
+	/**
+	 * Decodes the reference starting with the ampersand at the given index.
+	 * 
+	 * @return The index after the reference or -1 if the text at the given
+	 *         index is not a reference that can be resolved. Nothing is
+	 *         written in the latter case.
+	 */
+	private static int xmlReference(
+			Appendable out,
+			CharSequence text,
+			int amp,
+			XmlEntityResolver resolver) throws IOException
+	{
+		int n = text.length();
+		int i = amp + 1;
+		if (i >= n)
+			return -1;
 
-				if (resolved != null)
-					b.append(resolved);
-				else
-					b.append(text.substring(m.start(), m.end()));
+		if (text.charAt(i) == '#')
+		{
+			++i;
+			int radix = 10;
+			if (i < n && text.charAt(i) == 'x')
+			{
+				radix = 16;
+				++i;
+			}
 
-				start = m.end();
+			int start = i;
+			int val = 0;
+			for (; i < n; ++i)
+			{
+				int digit = hexDigit(text.charAt(i));
+				if (digit == -1 || digit >= radix)
+					break;
+				val = val * radix + digit;
+				if (val > Character.MAX_CODE_POINT)
+					return -1;
+			}
+
+			if (i == start || i >= n || text.charAt(i) != ';')
+				return -1;
+			if (val < 0x20 || val == 0x7F)
+				return -1;
+
+			if (Character.isBmpCodePoint(val))
+			{
+				out.append((char) val);
 			}
 			else
 			{
-				if (start < text.length())
-					b.append(text.substring(start));
+				out.append(Character.highSurrogate(val));
+				out.append(Character.lowSurrogate(val));
+			}
+			return i + 1;
+		}
+		else
+		{
+			int start = i;
+			int cp = Character.codePointAt(text, i);
+			if (!XmlGrammar.isNameStartChar(cp))
+				return -1;
+			i += Character.charCount(cp);
 
-				break;
+			while (i < n)
+			{
+				cp = Character.codePointAt(text, i);
+				if (!XmlGrammar.isNameChar(cp))
+					break;
+				i += Character.charCount(cp);
 			}
+
+			if (i >= n || text.charAt(i) != ';')
+				return -1;
+
+			String resolved = resolver.resolveXmlEntity(text.subSequence(start, i).toString());
+			if (resolved == null)
+				return -1;
+
+			out.append(resolved);
+			return i + 1;
 		}
-		return b.toString();
+	}
+
+	private static int indexOf(CharSequence text, char ch, int from)
+	{
+		int n = text.length();
+		for (int i = from; i < n; ++i)
+		{
+			if (text.charAt(i) == ch)
+				return i;
+		}
+		return -1;
+	}
+
+	private static int hexDigit(char ch)
+	{
+		if (ch >= '0' && ch <= '9')
+			return ch - '0';
+		if (ch >= 'a' && ch <= 'f')
+			return ch - 'a' + 10;
+		if (ch >= 'A' && ch <= 'F')
+			return ch - 'A' + 10;
+		return -1;
 	}
 
 	public static String safeFilename(String fileTitle)
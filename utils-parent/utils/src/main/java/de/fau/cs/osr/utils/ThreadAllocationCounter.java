@@ -0,0 +1,105 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fau.cs.osr.utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * Reads the number of bytes allocated by the current thread from the
+ * platform's ThreadMXBean.
+ *
+ * The standard ThreadMXBean interface doesn't offer allocation counters. If
+ * the JVM's bean implements the HotSpot extension
+ * (com.sun.management.ThreadMXBean), its methods are called reflectively to
+ * not depend on non-portable APIs at compile time. On other JVMs
+ * {@link #isSupported()} returns false and
+ * {@link #getCurrentThreadAllocatedBytes()} returns -1.
+ */
+public final class ThreadAllocationCounter
+{
+	private static final ThreadMXBean BEAN = ManagementFactory.getThreadMXBean();
+
+	private static final Method GET_THREAD_ALLOCATED_BYTES = lookUp();
+
+	// =========================================================================
+
+	private ThreadAllocationCounter()
+	{
+	}
+
+	// =========================================================================
+
+	public static boolean isSupported()
+	{
+		return GET_THREAD_ALLOCATED_BYTES != null;
+	}
+
+	/**
+	 * @return The number of bytes allocated by the current thread so far or
+	 *         -1 if allocation counting is not supported.
+	 */
+	public static long getCurrentThreadAllocatedBytes()
+	{
+		if (GET_THREAD_ALLOCATED_BYTES == null)
+			return -1;
+
+		try
+		{
+			Object bytes = GET_THREAD_ALLOCATED_BYTES.invoke(BEAN, Thread.currentThread().getId());
+			return (Long) bytes;
+		}
+		catch (Exception e)
+		{
+			return -1;
+		}
+	}
+
+	// =========================================================================
+
+	private static Method lookUp()
+	{
+		try
+		{
+			Class<?> ext = Class.forName("com.sun.management.ThreadMXBean");
+			if (!ext.isInstance(BEAN))
+				return null;
+
+			Method supported = ext.getMethod("isThreadAllocatedMemorySupported");
+			if (!(Boolean) supported.invoke(BEAN))
+				return null;
+
+			Method enabled = ext.getMethod("isThreadAllocatedMemoryEnabled");
+			if (!(Boolean) enabled.invoke(BEAN))
+				return null;
+
+			Method get = ext.getMethod("getThreadAllocatedBytes", long.class);
+			// Make sure the method actually works on this JVM
+			get.invoke(BEAN, Thread.currentThread().getId());
+			return get;
+		}
+		catch (Exception e)
+		{
+			return null;
+		}
+		catch (LinkageError e)
+		{
+			return null;
+		}
+	}
+}
@@ -17,6 +17,7 @@
 
 package de.fau.cs.osr.utils;
 
+import java.util.BitSet;
 import java.util.regex.Pattern;
 
 public class XmlGrammar
@@ -78,24 +79,60 @@ public class XmlGrammar
 
 	// =========================================================================
 
-	private static Pattern xmlName = null;
+	private static final Pattern XML_NAME = Pattern.compile(RE_XML_NAME);
 
-	private static Pattern xmlReference = null;
+	private static final Pattern XML_REFERENCE = Pattern.compile(RE_XML_REFERENCE);
 
-	private static Pattern xmlCommentText = null;
+	private static final Pattern XML_COMMENT_TEXT = Pattern.compile(RE_XML_COMMENT_TEXT);
 
 	// =========================================================================
 
-	public static Pattern xmlName()
+	private static final byte CHAR = 1;
+
+	private static final byte NAME_START_CHAR = 2;
+
+	private static final byte NAME_CHAR = 4;
+
+	/**
+	 * Character classes of the ASCII characters.
+	 */
+	private static final byte[] ASCII = new byte[0x80];
+
+	/**
+	 * Name start characters and name characters of the BMP.
+	 */
+	private static final BitSet BMP_NAME_START_CHARS = new BitSet(0x10000);
+
+	private static final BitSet BMP_NAME_CHARS = new BitSet(0x10000);
+
+	static
 	{
-		if (xmlName == null)
-			synchronized (XmlGrammar.class)
-			{
-				if (xmlName == null)
-					xmlName = Pattern.compile(RE_XML_NAME);
-			}
+		for (int cp = 0; cp < 0x10000; ++cp)
+		{
+			if (isNameStartCharSlow(cp))
+				BMP_NAME_START_CHARS.set(cp);
+			if (isNameCharSlow(cp))
+				BMP_NAME_CHARS.set(cp);
+		}
 
-		return xmlName;
+		for (int cp = 0; cp < 0x80; ++cp)
+		{
+			byte c = 0;
+			if (isCharSlow(cp))
+				c |= CHAR;
+			if (BMP_NAME_START_CHARS.get(cp))
+				c |= NAME_START_CHAR;
+			if (BMP_NAME_CHARS.get(cp))
+				c |= NAME_CHAR;
+			ASCII[cp] = c;
+		}
+	}
+
+	// =========================================================================
+
+	public static Pattern xmlName()
+	{
+		return XML_NAME;
 	}
 
 	/**
@@ -112,14 +149,7 @@ public class XmlGrammar
 	 */
 	public static Pattern xmlReference()
 	{
-		if (xmlReference == null)
-			synchronized (XmlGrammar.class)
-			{
-				if (xmlReference == null)
-					xmlReference = Pattern.compile(RE_XML_REFERENCE);
-			}
-
-		return xmlReference;
+		return XML_REFERENCE;
 	}
 
 	/**
@@ -127,29 +157,140 @@ public class XmlGrammar
 	 */
 	public static Pattern xmlCommentText()
 	{
-		if (xmlCommentText == null)
-			synchronized (XmlGrammar.class)
+		return XML_COMMENT_TEXT;
+	}
+
+	// =========================================================================
+
+	public static boolean isChar(int codePoint)
+	{
+		if (codePoint < 0x80)
+			return codePoint >= 0 && (ASCII[codePoint] & CHAR) != 0;
+		return isCharSlow(codePoint);
+	}
+
+	public static boolean isNameStartChar(int codePoint)
+	{
+		if (codePoint < 0x80)
+			return codePoint >= 0 && (ASCII[codePoint] & NAME_START_CHAR) != 0;
+		if (codePoint < 0x10000)
+			return BMP_NAME_START_CHARS.get(codePoint);
+		return codePoint <= 0xEFFFF;
+	}
+
+	public static boolean isNameChar(int codePoint)
+	{
+		if (codePoint < 0x80)
+			return codePoint >= 0 && (ASCII[codePoint] & NAME_CHAR) != 0;
+		if (codePoint < 0x10000)
+			return BMP_NAME_CHARS.get(codePoint);
+		return codePoint <= 0xEFFFF;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Checks whether the given text is an XML name as required for element
+	 * and attribute names.
+	 */
+	public static boolean isName(CharSequence text)
+	{
+		int n = text.length();
+		if (n == 0)
+			return false;
+
+		int i = 0;
+		char ch = text.charAt(0);
+		if (ch < 0x80)
+		{
+			if ((ASCII[ch] & NAME_START_CHAR) == 0)
+				return false;
+			++i;
+		}
+		else
+		{
+			int cp = Character.codePointAt(text, 0);
+			if (!isNameStartChar(cp))
+				return false;
+			i += Character.charCount(cp);
+		}
+
+		while (i < n)
+		{
+			ch = text.charAt(i);
+			if (ch < 0x80)
+			{
+				if ((ASCII[ch] & NAME_CHAR) == 0)
+					return false;
+				++i;
+			}
+			else
 			{
-				if (xmlCommentText == null)
-					xmlCommentText = Pattern.compile(RE_XML_COMMENT_TEXT);
+				int cp = Character.codePointAt(text, i);
+				if (!isNameChar(cp))
+					return false;
+				i += Character.charCount(cp);
 			}
+		}
+		return true;
+	}
 
-		return xmlCommentText;
+	/**
+	 * Checks whether the given text only consists of characters that are
+	 * allowed in XML character data and attribute values.
+	 */
+	public static boolean isText(CharSequence text)
+	{
+		return indexOfInvalidChar(text) == -1;
+	}
+
+	/**
+	 * Returns the index of the first character in the given text that is not
+	 * allowed in XML character data and attribute values. Isolated surrogates
+	 * are invalid.
+	 * 
+	 * @return The index of the invalid character or -1 if all characters are
+	 *         valid.
+	 */
+	public static int indexOfInvalidChar(CharSequence text)
+	{
+		int n = text.length();
+		for (int i = 0; i < n; ++i)
+		{
+			char ch = text.charAt(i);
+			if (ch < 0x80)
+			{
+				if ((ASCII[ch] & CHAR) == 0)
+					return i;
+			}
+			else if (Character.isHighSurrogate(ch))
+			{
+				// All supplementary code points are valid characters
+				if (i + 1 >= n || !Character.isLowSurrogate(text.charAt(i + 1)))
+					return i;
+				++i;
+			}
+			else if (!isCharSlow(ch))
+			{
+				return i;
+			}
+		}
+		return -1;
 	}
 
 	// =========================================================================
 
-	public static boolean isChar(int codePoint)
+	private static boolean isCharSlow(int codePoint)
 	{
 		return codePoint == 0x9
 				|| codePoint == 0xA
 				|| codePoint == 0xD
 				|| (codePoint >= 0x20 && codePoint <= 0xD7FF)
-				|| (codePoint >= 0xE000 && codePoint >= 0xFFFD)
+				|| (codePoint >= 0xE000 && codePoint <= 0xFFFD)
 				|| (codePoint >= 0x10000 && codePoint <= 0x10FFFF);
 	}
 
-	public static boolean isNameStartChar(int codePoint)
+	private static boolean isNameStartCharSlow(int codePoint)
 	{
 		return codePoint == ':'
 				|| codePoint == '_'
@@ -169,9 +310,9 @@ public class XmlGrammar
 				|| (codePoint >= 0x10000 && codePoint <= 0xEFFFF);
 	}
 
-	public static boolean isNameChar(int codePoint)
+	private static boolean isNameCharSlow(int codePoint)
 	{
-		return isNameStartChar(codePoint)
+		return isNameStartCharSlow(codePoint)
 				|| codePoint == '-'
 				|| codePoint == '.'
 				|| (codePoint >= '0' && codePoint <= '9')
@@ -0,0 +1,390 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fau.cs.osr.utils.visitor;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+/**
+ * Counts invocations of visit() methods and accumulates the time spent in
+ * them per visitor class, node class and resolved visit() method.
+ *
+ * Profiling covers all visitors dispatched by {@link VisitorLogic} and
+ * {@link VisitorStackController} in all threads while a profiler is enabled.
+ * When no profiler is enabled, dispatching only pays for reading one static
+ * field.
+ *
+ * The total time of a visit() method includes the time spent in nested
+ * visits. The self time excludes the time of nested visits that were
+ * profiled themselves.
+ */
+public final class VisitProfiler
+{
+	private static volatile VisitProfiler active;
+
+	// =========================================================================
+
+	private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+
+	private final ThreadLocal<Frame> frames = new ThreadLocal<Frame>()
+	{
+		@Override
+		protected Frame initialValue()
+		{
+			return new Frame();
+		}
+	};
+
+	// =========================================================================
+
+	/**
+	 * Makes the given profiler record all following visits. Replaces a
+	 * previously enabled profiler.
+	 */
+	public static void enable(VisitProfiler profiler)
+	{
+		if (profiler == null)
+			throw new NullPointerException();
+		active = profiler;
+	}
+
+	/**
+	 * Creates a new profiler and enables it.
+	 */
+	public static VisitProfiler start()
+	{
+		VisitProfiler profiler = new VisitProfiler();
+		enable(profiler);
+		return profiler;
+	}
+
+	public static void disable()
+	{
+		active = null;
+	}
+
+	public static VisitProfiler getActive()
+	{
+		return active;
+	}
+
+	// =========================================================================
+
+	public void reset()
+	{
+		entries.clear();
+	}
+
+	/**
+	 * @return The profile entries sorted by total time, longest first.
+	 */
+	public List<Entry> getEntries()
+	{
+		List<Entry> result = new ArrayList<Entry>(entries.values());
+		Collections.sort(result, new Comparator<Entry>()
+		{
+			@Override
+			public int compare(Entry a, Entry b)
+			{
+				return Long.compare(b.getTotalNanos(), a.getTotalNanos());
+			}
+		});
+		return result;
+	}
+
+	public String toTable()
+	{
+		List<Entry> list = getEntries();
+
+		String[] headers = { "Visitor", "Node", "Method", "Count", "Total ms", "Self ms", "Avg ns" };
+		String[][] rows = new String[list.size()][];
+		for (int i = 0; i < rows.length; ++i)
+		{
+			Entry e = list.get(i);
+			long count = e.getCount();
+			rows[i] = new String[] {
+					e.getVisitorClass().getSimpleName(),
+					e.getNodeClass().getSimpleName(),
+					e.getMethodName(),
+					String.valueOf(count),
+					String.format("%.3f", e.getTotalNanos() / (1000. * 1000.)),
+					String.format("%.3f", e.getSelfNanos() / (1000. * 1000.)),
+					String.valueOf((count == 0) ? 0 : e.getTotalNanos() / count) };
+		}
+
+		int[] widths = new int[headers.length];
+		for (int j = 0; j < headers.length; ++j)
+		{
+			widths[j] = headers[j].length();
+			for (String[] row : rows)
+				widths[j] = Math.max(widths[j], row[j].length());
+		}
+
+		StringBuilder b = new StringBuilder();
+		appendRow(b, headers, widths);
+		for (String[] row : rows)
+			appendRow(b, row, widths);
+		return b.toString();
+	}
+
+	public String toJson()
+	{
+		StringBuilder b = new StringBuilder();
+		b.append('[');
+		boolean first = true;
+		for (Entry e : getEntries())
+		{
+			if (!first)
+				b.append(',');
+			first = false;
+
+			b.append("\n  {\"visitor\": \"");
+			b.append(StringEscapeUtils.escapeJson(e.getVisitorClass().getName()));
+			b.append("\", \"node\": \"");
+			b.append(StringEscapeUtils.escapeJson(e.getNodeClass().getName()));
+			b.append("\", \"method\": \"");
+			b.append(StringEscapeUtils.escapeJson(e.getMethodName()));
+			b.append("\", \"count\": ");
+			b.append(e.getCount());
+			b.append(", \"totalNanos\": ");
+			b.append(e.getTotalNanos());
+			b.append(", \"selfNanos\": ");
+			b.append(e.getSelfNanos());
+			b.append('}');
+		}
+		if (!first)
+			b.append('\n');
+		b.append(']');
+		return b.toString();
+	}
+
+	@Override
+	public String toString()
+	{
+		return toTable();
+	}
+
+	// =========================================================================
+
+	/**
+	 * Returns the entry for the given visit() method, creating it if
+	 * necessary. Dispatchers cache the returned entry with their resolved
+	 * method and look it up again only if the active profiler changes.
+	 */
+	Entry getEntry(Class<?> vClass, Class<?> nClass, Method method)
+	{
+		Key key = new Key(vClass, nClass, method);
+		Entry entry = entries.get(key);
+		if (entry == null)
+		{
+			Entry newEntry = new Entry(this, key);
+			entry = entries.putIfAbsent(key, newEntry);
+			if (entry == null)
+				entry = newEntry;
+		}
+		return entry;
+	}
+
+	Object invoke(Entry entry, Method method, Object visitor, Object... args)
+		throws IllegalAccessException,
+			InvocationTargetException
+	{
+		Frame frame = frames.get();
+		long outerChildNanos = frame.childNanos;
+		frame.childNanos = 0;
+
+		long start = System.nanoTime();
+		try
+		{
+			return method.invoke(visitor, args);
+		}
+		finally
+		{
+			long elapsed = System.nanoTime() - start;
+			entry.count.increment();
+			entry.totalNanos.add(elapsed);
+			entry.selfNanos.add(elapsed - frame.childNanos);
+			frame.childNanos = outerChildNanos + elapsed;
+		}
+	}
+
+	// =========================================================================
+
+	private static void appendRow(StringBuilder b, String[] row, int[] widths)
+	{
+		for (int j = 0; j < row.length; ++j)
+		{
+			if (j > 0)
+				b.append("  ");
+			// Left-align text columns, right-align numbers
+			boolean text = j < 3;
+			int pad = widths[j] - row[j].length();
+			if (!text)
+				appendSpaces(b, pad);
+			b.append(row[j]);
+			if (text && j < row.length - 1)
+				appendSpaces(b, pad);
+		}
+		b.append('\n');
+	}
+
+	private static void appendSpaces(StringBuilder b, int n)
+	{
+		for (int i = 0; i < n; ++i)
+			b.append(' ');
+	}
+
+	// =========================================================================
+
+	private static final class Frame
+	{
+		private long childNanos;
+	}
+
+	private static final class Key
+	{
+		private final Class<?> vClass;
+
+		private final Class<?> nClass;
+
+		private final Method method;
+
+		public Key(Class<?> vClass, Class<?> nClass, Method method)
+		{
+			this.vClass = vClass;
+			this.nClass = nClass;
+			this.method = method;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + method.hashCode();
+			result = prime * result + nClass.hashCode();
+			result = prime * result + vClass.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			Key other = (Key) obj;
+			return vClass == other.vClass
+					&& nClass == other.nClass
+					&& method.equals(other.method);
+		}
+	}
+
+	public static final class Entry
+	{
+		private final VisitProfiler profiler;
+
+		private final Key key;
+
+		private final LongAdder count = new LongAdder();
+
+		private final LongAdder totalNanos = new LongAdder();
+
+		private final LongAdder selfNanos = new LongAdder();
+
+		private Entry(VisitProfiler profiler, Key key)
+		{
+			this.profiler = profiler;
+			this.key = key;
+		}
+
+		VisitProfiler getProfiler()
+		{
+			return profiler;
+		}
+
+		public Class<?> getVisitorClass()
+		{
+			return key.vClass;
+		}
+
+		public Class<?> getNodeClass()
+		{
+			return key.nClass;
+		}
+
+		public Method getMethod()
+		{
+			return key.method;
+		}
+
+		/**
+		 * @return The declaring class and the parameter types of the visit()
+		 *         method, e.g. "MyVisitor.visit(Text)".
+		 */
+		public String getMethodName()
+		{
+			StringBuilder b = new StringBuilder();
+			b.append(key.method.getDeclaringClass().getSimpleName());
+			b.append('.');
+			b.append(key.method.getName());
+			b.append('(');
+			Class<?>[] params = key.method.getParameterTypes();
+			for (int i = 0; i < params.length; ++i)
+			{
+				if (i > 0)
+					b.append(", ");
+				b.append(params[i].getSimpleName());
+			}
+			b.append(')');
+			return b.toString();
+		}
+
+		public long getCount()
+		{
+			return count.sum();
+		}
+
+		public long getTotalNanos()
+		{
+			return totalNanos.sum();
+		}
+
+		public long getSelfNanos()
+		{
+			return selfNanos.sum();
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format(
+					"Entry [%s; %s; %s: %d calls, %d ns total, %d ns self]",
+					getVisitorClass().getSimpleName(),
+					getNodeClass().getSimpleName(),
+					getMethodName(),
+					getCount(),
+					getTotalNanos(),
+					getSelfNanos());
+		}
+	}
+}
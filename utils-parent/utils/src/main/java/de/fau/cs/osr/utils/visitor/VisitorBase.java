@@ -16,12 +16,26 @@
  */
 package de.fau.cs.osr.utils.visitor;
 
+import de.fau.cs.osr.utils.ThreadAllocationCounter;
+
 public abstract class VisitorBase<T>
 		extends
 			VisitorInterface<T>
 {
+	private static volatile VisitorMetricsSink defaultMetricsSink = VisitorMetricsSink.NO_OP;
+
+	// =========================================================================
+
 	private final VisitorLogic<T> logic;
 
+	private VisitorMetricsSink metricsSink;
+
+	private boolean instrumented = false;
+
+	private long nodesDispatched;
+
+	private long visitNotFoundCount;
+
 	// =========================================================================
 
 	public VisitorBase()
@@ -103,6 +117,41 @@ public abstract class VisitorBase<T>
 	 *         node doesn't return a value, <code>null</code> is returned.
 	 */
 	public Object go(T node)
+	{
+		VisitorMetricsSink sink = (metricsSink != null) ? metricsSink : defaultMetricsSink;
+		if (sink == VisitorMetricsSink.NO_OP || instrumented)
+			return goUninstrumented(node);
+
+		instrumented = true;
+		nodesDispatched = 0;
+		visitNotFoundCount = 0;
+		boolean completed = false;
+
+		long allocatedBefore = ThreadAllocationCounter.getCurrentThreadAllocatedBytes();
+		long start = System.nanoTime();
+		try
+		{
+			Object result = goUninstrumented(node);
+			completed = true;
+			return result;
+		}
+		finally
+		{
+			long wallTime = System.nanoTime() - start;
+			long allocatedAfter = ThreadAllocationCounter.getCurrentThreadAllocatedBytes();
+			instrumented = false;
+
+			sink.record(new VisitorMetrics(
+					this,
+					wallTime,
+					nodesDispatched,
+					visitNotFoundCount,
+					(allocatedBefore < 0 || allocatedAfter < 0) ? -1 : allocatedAfter - allocatedBefore,
+					completed));
+		}
+	}
+
+	private Object goUninstrumented(T node)
 	{
 		T startNode = before(node);
 		if (startNode == null)
@@ -112,10 +161,59 @@ public abstract class VisitorBase<T>
 		return after(node, result);
 	}
 
+	// =========================================================================
+	// Instrumentation
+
+	/**
+	 * Sets the sink used by visitors which have no sink of their own. The
+	 * default is {@link VisitorMetricsSink#NO_OP} which disables
+	 * instrumentation.
+	 */
+	public static void setDefaultMetricsSink(VisitorMetricsSink sink)
+	{
+		if (sink == null)
+			throw new NullPointerException();
+		defaultMetricsSink = sink;
+	}
+
+	public static VisitorMetricsSink getDefaultMetricsSink()
+	{
+		return defaultMetricsSink;
+	}
+
+	/**
+	 * Sets the sink which receives the metrics of each call to go(). Pass
+	 * <code>null</code> to fall back to the default sink.
+	 */
+	public void setMetricsSink(VisitorMetricsSink sink)
+	{
+		this.metricsSink = sink;
+	}
+
+	/**
+	 * @return The sink set for this visitor or <code>null</code> if the
+	 *         default sink is used.
+	 */
+	public VisitorMetricsSink getMetricsSink()
+	{
+		return metricsSink;
+	}
+
+	/**
+	 * Called by VisitorLogic if no visit() method was found for a node.
+	 */
+	void countVisitNotFound()
+	{
+		if (instrumented)
+			++visitNotFoundCount;
+	}
+
 	// =========================================================================
 
 	protected final Object resolveAndVisit(T node)
 	{
+		if (instrumented)
+			++nodesDispatched;
 		return logic.resolveAndVisit(node);
 	}
 }
@@ -105,7 +105,11 @@ public class VisitorLogic<T>
 				cached = findVisit(key);
 
 			if (cached.getMethod() == null)
+			{
+				if (visitorImpl instanceof VisitorBase)
+					((VisitorBase<?>) visitorImpl).countVisitNotFound();
 				return visitorImpl.visitNotFound(node);
+			}
 
 			return cached.invoke(visitorImpl, node);
 		}
@@ -297,6 +301,8 @@ public class VisitorLogic<T>
 
 		private final Method method;
 
+		private VisitProfiler.Entry profile;
+
 		public Target(Class<?> vClass, Class<?> nClass)
 		{
 			this.vClass = vClass;
@@ -358,7 +364,15 @@ public class VisitorLogic<T>
 				InvocationTargetException
 		{
 			touch();
-			return method.invoke(visitor, node);
+
+			VisitProfiler profiler = VisitProfiler.getActive();
+			if (profiler == null)
+				return method.invoke(visitor, node);
+
+			VisitProfiler.Entry entry = profile;
+			if (entry == null || entry.getProfiler() != profiler)
+				profile = entry = profiler.getEntry(vClass, nClass, method);
+			return profiler.invoke(entry, method, visitor, node);
 		}
 
 		@Override
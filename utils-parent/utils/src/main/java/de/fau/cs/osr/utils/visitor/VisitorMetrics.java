@@ -0,0 +1,118 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fau.cs.osr.utils.visitor;
+
+/**
+ * The cost of one visitation, as recorded by an instrumented
+ * {@link VisitorBase#go(Object)}.
+ */
+public final class VisitorMetrics
+{
+	private final VisitorBase<?> visitor;
+
+	private final long wallTimeNanos;
+
+	private final long nodesDispatched;
+
+	private final long visitNotFoundCount;
+
+	private final long allocatedBytes;
+
+	private final boolean completed;
+
+	// =========================================================================
+
+	public VisitorMetrics(
+			VisitorBase<?> visitor,
+			long wallTimeNanos,
+			long nodesDispatched,
+			long visitNotFoundCount,
+			long allocatedBytes,
+			boolean completed)
+	{
+		this.visitor = visitor;
+		this.wallTimeNanos = wallTimeNanos;
+		this.nodesDispatched = nodesDispatched;
+		this.visitNotFoundCount = visitNotFoundCount;
+		this.allocatedBytes = allocatedBytes;
+		this.completed = completed;
+	}
+
+	// =========================================================================
+
+	public VisitorBase<?> getVisitor()
+	{
+		return visitor;
+	}
+
+	public Class<?> getVisitorClass()
+	{
+		return visitor.getClass();
+	}
+
+	public long getWallTimeNanos()
+	{
+		return wallTimeNanos;
+	}
+
+	/**
+	 * @return The number of nodes dispatched, including those counted by
+	 *         {@link #getVisitNotFoundCount()}.
+	 */
+	public long getNodesDispatched()
+	{
+		return nodesDispatched;
+	}
+
+	/**
+	 * @return The number of nodes for which no visit() method was found.
+	 */
+	public long getVisitNotFoundCount()
+	{
+		return visitNotFoundCount;
+	}
+
+	/**
+	 * @return An estimate of the bytes allocated by the visiting thread or -1
+	 *         if the JVM does not support allocation counting.
+	 */
+	public long getAllocatedBytes()
+	{
+		return allocatedBytes;
+	}
+
+	/**
+	 * @return False if the visitation was terminated by an exception.
+	 */
+	public boolean isCompleted()
+	{
+		return completed;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format(
+				"VisitorMetrics [%s: %.3f ms, %d nodes, %d not found, %d bytes%s]",
+				getVisitorClass().getSimpleName(),
+				wallTimeNanos / (1000. * 1000.),
+				nodesDispatched,
+				visitNotFoundCount,
+				allocatedBytes,
+				completed ? "" : ", failed");
+	}
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fau.cs.osr.utils.visitor;
+
+/**
+ * Receives the metrics of instrumented visitations. Implementations must be
+ * thread-safe if the same sink is used by visitors running in different
+ * threads.
+ */
+public interface VisitorMetricsSink
+{
+	/**
+	 * The default sink. Visitors don't measure anything if this sink is
+	 * configured.
+	 */
+	public static final VisitorMetricsSink NO_OP = new VisitorMetricsSink()
+	{
+		@Override
+		public void record(VisitorMetrics metrics)
+		{
+		}
+	};
+
+	// =========================================================================
+
+	public void record(VisitorMetrics metrics);
+}
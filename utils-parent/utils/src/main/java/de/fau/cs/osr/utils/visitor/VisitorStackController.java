@@ -424,7 +424,7 @@ public abstract class VisitorStackController<T>
 				{
 					if (DEBUG)
 						System.err.println(chain[i].method + ": " + StringTools.crop(visitNext.toString(), 32));
-					result = chain[i].method.invoke(visitor, baton, visitNext);
+					result = chain[i].invoke(visitor, nodeClass, baton, visitNext);
 
 					// We must always query the code to reset it, even if result == null
 					int batonCode = baton.queryAndResetCode();
@@ -584,11 +584,29 @@ public abstract class VisitorStackController<T>
 
 		private final Method method;
 
+		private VisitProfiler.Entry profile;
+
 		public Link(int visitorIndex, Method method)
 		{
 			this.visitorIndex = visitorIndex;
 			this.method = method;
 		}
+
+		public Object invoke(
+				Object visitor,
+				Class<?> nodeClass,
+				Baton baton,
+				Object node) throws IllegalAccessException, InvocationTargetException
+		{
+			VisitProfiler profiler = VisitProfiler.getActive();
+			if (profiler == null)
+				return method.invoke(visitor, baton, node);
+
+			VisitProfiler.Entry entry = profile;
+			if (entry == null || entry.getProfiler() != profiler)
+				profile = entry = profiler.getEntry(visitor.getClass(), nodeClass, method);
+			return profiler.invoke(entry, method, visitor, baton, node);
+		}
 	}
 
 	// =========================================================================
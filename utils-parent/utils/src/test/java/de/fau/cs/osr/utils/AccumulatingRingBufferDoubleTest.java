@@ -0,0 +1,64 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fau.cs.osr.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+public class AccumulatingRingBufferDoubleTest
+{
+	@Test
+	public void testRunningSumStaysAccurate() throws Exception
+	{
+		AccumulatingRingBufferDouble b = new AccumulatingRingBufferDouble(10);
+		for (int i = 0; i < 100000; ++i)
+			b.add((i % 2 == 0) ? 1e10 : 0.1);
+
+		assertEquals(5e10 + 0.5, b.getSumAsDouble(), 1e-6);
+		assertEquals(new BigDecimal("50000000000.5"), b.getSum().stripTrailingZeros());
+
+		b.removeOldestN(3);
+		b.removeNewestN(2);
+		assertEquals(b.getSum().doubleValue(), b.getSumAsDouble(), 1e-6);
+
+		b.clear();
+		assertEquals(0., b.getSumAsDouble(), 0.);
+	}
+
+	@Test
+	public void testAddDoesNotAllocate() throws Exception
+	{
+		assumeTrue(ThreadAllocationCounter.isSupported());
+
+		AccumulatingRingBufferDouble b = new AccumulatingRingBufferDouble(100);
+		for (int i = 0; i < 100000; ++i)
+			b.add(i * 0.1);
+
+		long before = ThreadAllocationCounter.getCurrentThreadAllocatedBytes();
+		for (int i = 0; i < 100000; ++i)
+			b.add(i * 0.1);
+		long allocated = ThreadAllocationCounter.getCurrentThreadAllocatedBytes() - before;
+
+		// Reading the counter allocates a little itself
+		assertTrue("allocated " + allocated + " bytes", allocated < 4096);
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fau.cs.osr.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+public class AccumulatingRingBufferLongTest
+{
+	@Test
+	public void testSumOfWindow() throws Exception
+	{
+		AccumulatingRingBufferLong b = new AccumulatingRingBufferLong(3);
+		b.add(1);
+		b.add(-2);
+		b.add(3);
+		assertEquals(2, b.getSumAsLong());
+		b.add(4);
+		assertEquals(5, b.getSumAsLong());
+		b.removeOldestN(1);
+		assertEquals(7, b.getSumAsLong());
+		b.removeNewestN(1);
+		assertEquals(3, b.getSumAsLong());
+		assertEquals(BigInteger.valueOf(3), b.getSum());
+		b.clear();
+		assertEquals(0, b.getSumAsLong());
+	}
+
+	@Test
+	public void testSumBeyondLongRange() throws Exception
+	{
+		AccumulatingRingBufferLong b = new AccumulatingRingBufferLong(4);
+		BigInteger expected = BigInteger.ZERO;
+		for (int i = 0; i < 3; ++i)
+		{
+			b.add(Long.MAX_VALUE);
+			expected = expected.add(BigInteger.valueOf(Long.MAX_VALUE));
+		}
+		assertFalse(b.isSumLong());
+		assertEquals(expected, b.getSum());
+		assertEquals(expected.doubleValue(), b.getSumAsDouble(), 1e3);
+
+		b.removeOldestN(2);
+		assertTrue(b.isSumLong());
+		assertEquals(Long.MAX_VALUE, b.getSumAsLong());
+	}
+
+	@Test
+	public void testNegativeSumBeyondLongRange() throws Exception
+	{
+		AccumulatingRingBufferLong b = new AccumulatingRingBufferLong(2);
+		BigInteger min = BigInteger.valueOf(Long.MIN_VALUE);
+		b.add(Long.MIN_VALUE);
+		b.add(Long.MIN_VALUE);
+		assertEquals(min.add(min), b.getSum());
+		assertEquals(min.add(min).doubleValue(), b.getSumAsDouble(), 0.);
+
+		b.add(Long.MAX_VALUE);
+		assertEquals(min.add(BigInteger.valueOf(Long.MAX_VALUE)), b.getSum());
+		assertEquals(-1, b.getSumAsLong());
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void testGetSumAsLongThrowsOnOverflow() throws Exception
+	{
+		AccumulatingRingBufferLong b = new AccumulatingRingBufferLong(2);
+		b.add(Long.MAX_VALUE);
+		b.add(1);
+		b.getSumAsLong();
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fau.cs.osr.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ConcurrentMovingAverageTest
+{
+	private static final long MS_2_NS = 1000 * 1000;
+
+	@Test
+	public void testSameAverageAsMovingAverage() throws Exception
+	{
+		ConcurrentMovingAverage ma = new ConcurrentMovingAverage(2 * 1000, 500);
+		assertEquals(0., ma.getAverage(), 0.01);
+		ma.update(0 * MS_2_NS, 10);
+		assertEquals(10., ma.getAverage(), 0.01);
+
+		ma.update(200 * MS_2_NS, 20);
+		assertEquals(15., ma.getAverage(), 0.01);
+
+		ma.update(750 * MS_2_NS, 45);
+		assertEquals(30., ma.getAverage(), 0.01);
+
+		ma.update(2600 * MS_2_NS, 5);
+		assertEquals(25., ma.getAverage(), 0.01);
+
+		// Everything but the last bucket falls out of the window
+		ma.update(10000 * MS_2_NS, 7);
+		assertEquals(7., ma.getAverage(), 0.01);
+
+		ma.reset();
+		assertEquals(0., ma.getAverage(), 0.01);
+	}
+
+	@Test
+	public void testValuesForRecycledBucketsAreDropped() throws Exception
+	{
+		ConcurrentMovingAverage ma = new ConcurrentMovingAverage(1000, 500, 1);
+		ma.update(3000 * MS_2_NS, 10);
+		// Maps to the same cell as the bucket at 3000ms
+		ma.update(1500 * MS_2_NS, 1000);
+		assertEquals(10., ma.getAverage(), 0.01);
+	}
+
+	@Test
+	public void testConcurrentUpdates() throws Exception
+	{
+		final ConcurrentMovingAverage ma = new ConcurrentMovingAverage(60 * 1000, 1000, 8);
+		final int perThread = 100000;
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 8; ++i)
+		{
+			final long value = (i % 2 == 0) ? 10 : 30;
+			Thread t = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					for (int j = 0; j < perThread; ++j)
+						ma.update(j % 2 == 0 ? 0 : 1000 * MS_2_NS, value);
+				}
+			});
+			threads.add(t);
+			t.start();
+		}
+
+		for (Thread t : threads)
+			t.join();
+
+		assertEquals(20., ma.getAverage(), 0.0001);
+	}
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fau.cs.osr.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.fau.cs.osr.utils.LatencyHistogram.Snapshot;
+
+public class LatencyHistogramTest
+{
+	@Test
+	public void testSmallValuesAreExact() throws Exception
+	{
+		LatencyHistogram h = new LatencyHistogram();
+		for (int i = 1; i <= 100; ++i)
+			h.record(i);
+
+		Snapshot s = h.snapshot();
+		assertEquals(100, s.getTotalCount());
+		assertEquals(1, s.getMin());
+		assertEquals(100, s.getMax());
+		assertEquals(50.5, s.getMean(), 1e-9);
+		assertEquals(50, s.getValueAtPercentile(50));
+		assertEquals(99, s.getValueAtPercentile(99));
+		assertEquals(100, s.getValueAtPercentile(100));
+		assertEquals(1, s.getValueAtPercentile(0));
+	}
+
+	@Test
+	public void testRelativeErrorIsBounded() throws Exception
+	{
+		LatencyHistogram h = new LatencyHistogram();
+		double maxError = 1. / (1 << (h.getPrecisionBits() - 1));
+
+		long[] values = { 129, 1000, 123456, 987654321L, 1L << 40, Long.MAX_VALUE / 3, Long.MAX_VALUE };
+		for (long v : values)
+		{
+			h.reset();
+			h.record(1);
+			h.record(v);
+			h.record(Long.MAX_VALUE);
+
+			long p = h.getValueAtPercentile(66);
+			assertTrue(v + " -> " + p, p >= v);
+			assertTrue(v + " -> " + p, (p - v) / (double) v <= maxError);
+
+			long lowest = h.snapshot().lowestEquivalentValue(v);
+			assertTrue(lowest <= v);
+			assertTrue((v - lowest) / (double) v <= maxError);
+		}
+	}
+
+	@Test
+	public void testMergeAndReset() throws Exception
+	{
+		LatencyHistogram a = new LatencyHistogram();
+		LatencyHistogram b = new LatencyHistogram();
+		for (int i = 0; i < 90; ++i)
+			a.record(10);
+		for (int i = 0; i < 10; ++i)
+			b.record(1000000);
+
+		Snapshot merged = a.snapshot().merge(b.snapshot());
+		assertEquals(100, merged.getTotalCount());
+		assertEquals(10, merged.getValueAtPercentile(90));
+		assertTrue(merged.getValueAtPercentile(91) >= 1000000);
+
+		a.add(b);
+		assertEquals(100, a.getTotalCount());
+		assertEquals(merged.getValueAtPercentile(95), a.getValueAtPercentile(95));
+
+		Snapshot s = a.snapshotAndReset();
+		assertEquals(100, s.getTotalCount());
+		assertEquals(0, a.getTotalCount());
+		assertEquals(0, a.snapshot().getMax());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMergeRequiresSamePrecision() throws Exception
+	{
+		new LatencyHistogram(7).add(new LatencyHistogram(8));
+	}
+
+	@Test
+	public void testConcurrentRecording() throws Exception
+	{
+		final LatencyHistogram h = new LatencyHistogram();
+		final int perThread = 100000;
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 8; ++i)
+		{
+			Thread t = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					for (int j = 0; j < perThread; ++j)
+						h.record(j % 1000);
+				}
+			});
+			threads.add(t);
+			t.start();
+		}
+
+		for (Thread t : threads)
+			t.join();
+
+		Snapshot s = h.snapshot();
+		assertEquals(8 * perThread, s.getTotalCount());
+		assertEquals(0, s.getMin());
+		assertEquals(999, s.getMax());
+		assertEquals(8 * perThread / 1000, s.getCountAtValue(0));
+	}
+
+	@Test
+	public void testStopWatchRecordsIntoHistogram() throws Exception
+	{
+		LatencyHistogram h = new LatencyHistogram();
+		new StopWatch().start().stop(h);
+		StopWatch2.buildAndStart().stop(h);
+		assertEquals(2, h.getTotalCount());
+	}
+}
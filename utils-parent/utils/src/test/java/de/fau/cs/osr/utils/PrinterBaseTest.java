@@ -0,0 +1,114 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.fau.cs.osr.utils.PrinterBase.Memoize;
+
+public class PrinterBaseTest
+{
+	private static void render(PrinterBase p, Object node, String text)
+	{
+		Memoize m = p.memoizeStart(node);
+		if (m != null)
+		{
+			p.println(text);
+			p.memoizeStop(m);
+		}
+	}
+
+	@Test
+	public void testMemoizedOutputIsReused() throws Exception
+	{
+		StringWriter w = new StringWriter();
+		PrinterBase p = new PrinterBase(w);
+
+		// Output is memoized per node and printer state. Get the printer into
+		// the state it will be in after each node first.
+		render(p, new Object(), "start");
+
+		Object node = new Object();
+		render(p, node, "first");
+		render(p, node, "second");
+		p.flush();
+
+		assertEquals("start\nfirst\nfirst\n", w.toString().replace("\r", ""));
+		assertEquals(1, p.getMemoizationHits());
+		assertEquals(2, p.getMemoizationMisses());
+		assertEquals(2, p.getMemoizationCacheSize());
+	}
+
+	@Test
+	public void testEqualNodesAreMemoizedByIdentity() throws Exception
+	{
+		StringWriter w = new StringWriter();
+		PrinterBase p = new PrinterBase(w);
+
+		List<String> a = new ArrayList<String>();
+		List<String> b = new ArrayList<String>();
+		render(p, a, "a");
+		render(p, b, "b");
+		p.flush();
+
+		assertEquals("a\nb\n", w.toString().replace("\r", ""));
+		assertEquals(0, p.getMemoizationHits());
+	}
+
+	@Test
+	public void testCacheIsBoundedByEntries() throws Exception
+	{
+		PrinterBase p = new PrinterBase(new StringWriter());
+		p.setMaxMemoizeEntries(2);
+
+		for (int i = 0; i < 10; ++i)
+			render(p, new Object(), "node " + i);
+
+		assertEquals(2, p.getMemoizationCacheSize());
+		assertEquals(8, p.getMemoizationEvictions());
+	}
+
+	@Test
+	public void testCacheIsBoundedByWeight() throws Exception
+	{
+		PrinterBase p = new PrinterBase(new StringWriter());
+		p.setMaxMemoizeWeight(20);
+
+		Object[] nodes = new Object[10];
+		for (int i = 0; i < nodes.length; ++i)
+		{
+			nodes[i] = new Object();
+			render(p, nodes[i], "node " + i);
+		}
+
+		assertTrue(p.getMemoizationCacheWeight() <= 20);
+		assertTrue(p.getMemoizationEvictions() > 0);
+
+		// The most recently rendered node must still be cached
+		long hits = p.getMemoizationHits();
+		render(p, nodes[nodes.length - 1], "again");
+		assertEquals(hits + 1, p.getMemoizationHits());
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fau.cs.osr.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the cost of SpeedMeter.addValue() with a full window. Run with
+ * -prof gc to verify that adding a value does not allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpeedMeterBenchmark
+{
+	private SpeedMeter meter;
+
+	private long time;
+
+	private long value;
+
+	@Setup
+	public void setUp()
+	{
+		meter = new SpeedMeter(1., 1024);
+		for (int i = 0; i < 2048; ++i)
+			addValue();
+	}
+
+	@Benchmark
+	public double addValue()
+	{
+		// One value per millisecond, the window holds the last 1000 values
+		time += 1000 * 1000;
+		meter.addValue(value++, time);
+		return meter.average();
+	}
+
+	public static void main(String[] args) throws RunnerException
+	{
+		Options opt = new OptionsBuilder()
+				.include(SpeedMeterBenchmark.class.getSimpleName())
+				.build();
+
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,217 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.fau.cs.osr.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares StringTools.xmlDecode() and StringTools.urlDecode() with the
+ * regular expression and substring based implementations they replaced. Run
+ * with -prof gc to verify that plain input does not allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringDecodeBenchmark
+{
+	private static final XmlEntityResolver RESOLVER = new XmlEntityResolver()
+	{
+		@Override
+		public String resolveXmlEntity(String name)
+		{
+			if ("amp".equals(name))
+				return "&";
+			else if ("lt".equals(name))
+				return "<";
+			else if ("gt".equals(name))
+				return ">";
+			return null;
+		}
+	};
+
+	@Param({ "plain", "mixed" })
+	private String input;
+
+	private String xmlText;
+
+	private String urlText;
+
+	@Setup
+	public void setUp()
+	{
+		StringBuilder xml = new StringBuilder();
+		StringBuilder url = new StringBuilder();
+		for (int i = 0; i < 32; ++i)
+		{
+			if ("plain".equals(input))
+			{
+				xml.append("Some plain text without references. ");
+				url.append("Some_plain_title_");
+			}
+			else
+			{
+				xml.append("a &lt; b &amp;&amp; c &#x1F600; &#32;&unknown; ");
+				url.append("Some+title%2C_with%20escapes_");
+			}
+		}
+		xmlText = xml.toString();
+		urlText = url.toString();
+	}
+
+	@Benchmark
+	public String xmlDecode()
+	{
+		return StringTools.xmlDecode(xmlText, RESOLVER);
+	}
+
+	@Benchmark
+	public String xmlDecodePrevious()
+	{
+		return xmlDecodePrevious(xmlText, RESOLVER);
+	}
+
+	@Benchmark
+	public String urlDecode()
+	{
+		return StringTools.urlDecode(urlText);
+	}
+
+	@Benchmark
+	public String urlDecodePrevious()
+	{
+		return urlDecodeWithSubstrings(urlText);
+	}
+
+	public static void main(String[] args) throws RunnerException
+	{
+		Options opt = new OptionsBuilder()
+				.include(StringDecodeBenchmark.class.getSimpleName())
+				.build();
+
+		new Runner(opt).run();
+	}
+
+	// =========================================================================
+	// The previous implementations
+
+	private static String urlDecodeWithSubstrings(String text)
+	{
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < text.length(); ++i)
+		{
+			char ch = text.charAt(i);
+			if (ch == '%' && i + 2 < text.length())
+			{
+				String num = text.substring(i + 1, i + 3);
+				try
+				{
+					int val = Integer.valueOf(num, 16);
+					if (val >= 0x20 && val < 0x7F)
+					{
+						ch = (char) val;
+						i += 2;
+					}
+				}
+				catch (NumberFormatException e)
+				{
+				}
+			}
+			else if (ch == '+')
+			{
+				ch = ' ';
+			}
+
+			b.append(ch);
+		}
+		return b.toString();
+	}
+
+	private static String xmlDecodePrevious(String text, XmlEntityResolver resolver)
+	{
+		Pattern rx = XmlGrammar.xmlReference();
+
+		int start = 0;
+		StringBuilder b = new StringBuilder();
+		while (true)
+		{
+			Matcher m = rx.matcher(text);
+			if (m.find(start))
+			{
+				b.append(text.substring(start, m.start()));
+
+				String resolved = null;
+				if (m.group(1) != null)
+				{
+					resolved = resolver.resolveXmlEntity(m.group(1));
+				}
+				else
+				{
+					try
+					{
+						boolean decimal = m.group(2) != null;
+
+						String num = decimal ? m.group(2) : m.group(3);
+
+						int val = Integer.valueOf(num, decimal ? 10 : 16);
+						if (val >= 0x20 && val != 0x7F)
+							resolved = String.valueOf((char) val);
+					}
+					catch (NumberFormatException e)
+					{
+					}
+				}
+
+				if (resolved != null)
+					b.append(resolved);
+				else
+					b.append(text.substring(m.start(), m.end()));
+
+				start = m.end();
+			}
+			else
+			{
+				if (start < text.length())
+					b.append(text.substring(start));
+
+				break;
+			}
+		}
+		return b.toString();
+	}
+}
@@ -18,7 +18,11 @@
 package de.fau.cs.osr.utils;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
+import java.util.Random;
+
+import org.apache.commons.lang3.StringEscapeUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -32,6 +36,81 @@ public class TestStringTools
 				"&lt;&gt;&amp;&#39;&quot;");
 	}
 
+	@Test
+	public void testEscHtmlReturnsInputIfNothingToEscape()
+	{
+		String text = "Nothing\tto escape \u00E4\uD83D\uDE00\n";
+		assertSame(text, StringTools.escHtml(text));
+		assertSame(text, StringTools.escHtml(text, false));
+	}
+
+	@Test
+	public void testEscHtmlSpecialCharacters()
+	{
+		assertEquals("a&lt;b>c\"&#39;", StringTools.escHtml("a<b>c\"'", false));
+		assertEquals("&#x0;&#xd;&#x1f;&#xfe;", StringTools.escHtml("\u0000\r\u001F\u00FE"));
+		// Private use code point from a supplementary plane
+		assertEquals("x&#xf0000;y", StringTools.escHtml("x\uDB80\uDC00y"));
+		assertEquals("", StringTools.escHtml(null));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEscHtmlRejectsIsolatedHighSurrogate()
+	{
+		StringTools.escHtml("a\uD83Db");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEscHtmlRejectsIsolatedLowSurrogate()
+	{
+		StringTools.escHtml("\uDE00");
+	}
+
+	@Test
+	public void testEscHtmlToAppendable() throws Exception
+	{
+		StringBuilder sb = new StringBuilder("pre:");
+		StringTools.escHtml(sb, "<a href=\"x\">", true);
+		assertEquals("pre:&lt;a href=&quot;x&quot;&gt;", sb.toString());
+	}
+
+	@Test
+	public void testEscJavaMatchesCommonsLang() throws Exception
+	{
+		Random random = new Random(42);
+		for (int i = 0; i < 1000; ++i)
+		{
+			char[] chars = new char[random.nextInt(20)];
+			for (int j = 0; j < chars.length; ++j)
+			{
+				switch (random.nextInt(4))
+				{
+					case 0:
+						chars[j] = (char) random.nextInt(0x80);
+						break;
+					case 1:
+						chars[j] = (char) random.nextInt(0x20);
+						break;
+					case 2:
+						chars[j] = (char) random.nextInt(0x10000);
+						break;
+					default:
+						chars[j] = "\"\\/'az".charAt(random.nextInt(6));
+						break;
+				}
+			}
+			String text = new String(chars);
+			String expected = StringEscapeUtils.escapeJava(text);
+			assertEquals(expected, StringTools.escJava(text));
+			assertEquals(expected, StringTools.escJava(new StringBuilder(), text).toString());
+		}
+
+		String plain = "plain 'text' / more";
+		assertSame(plain, StringTools.escJava(plain));
+		assertEquals(null, StringTools.escJava(null));
+		assertEquals("\\uD83D\\uDE00", StringTools.escJava("\uD83D\uDE00"));
+	}
+
 	@Test
 	public void testCamelcaseToUppercase()
 	{
@@ -134,6 +213,56 @@ public class TestStringTools
 		Assert.assertEquals("aA", StringTools.urlDecode("a%41"));
 
 		Assert.assertEquals("aAa", StringTools.urlDecode("a%41a"));
+
+		Assert.assertEquals("a b", StringTools.urlDecode("a+b"));
+
+		Assert.assertEquals("%7F%1f~", StringTools.urlDecode("%7F%1f%7e"));
+	}
+
+	@Test
+	public void testDecodeReturnsSameInstanceIfNothingToDecode() throws Exception
+	{
+		String text = "nothing to decode \uD83D\uDE00";
+		assertSame(text, StringTools.urlDecode(text));
+		assertSame(text, StringTools.xmlDecode(text, resolver));
+	}
+
+	@Test
+	public void testXmlDecodeSupplementaryCodePoints() throws Exception
+	{
+		assertEquals("\uD83D\uDE00", StringTools.xmlDecode("&#x1F600;", resolver));
+		assertEquals("\uD83D\uDE00", StringTools.xmlDecode("&#128512;", resolver));
+		assertEquals("\uDBFF\uDFFF", StringTools.xmlDecode("&#x10FFFF;", resolver));
+		assertEquals("&#x110000;", StringTools.xmlDecode("&#x110000;", resolver));
+		assertEquals(" ", StringTools.xmlDecode("&#x0000000020;", resolver));
+		assertEquals("&#9;&#x7F;", StringTools.xmlDecode("&#9;&#x7F;", resolver));
+		assertEquals("&#X20;&#1a;", StringTools.xmlDecode("&#X20;&#1a;", resolver));
+	}
+
+	@Test
+	public void testXmlDecodeEntityNames() throws Exception
+	{
+		XmlEntityResolver echo = new XmlEntityResolver()
+		{
+			public String resolveXmlEntity(String name)
+			{
+				return "[" + name + "]";
+			}
+		};
+
+		assertEquals("[a.b-c:1\u00B7]", StringTools.xmlDecode("&a.b-c:1\u00B7;", echo));
+		assertEquals("[\uD800\uDC00x]", StringTools.xmlDecode("&\uD800\uDC00x;", echo));
+		assertEquals("&1a;&-a;&;&a b;&a", StringTools.xmlDecode("&1a;&-a;&;&a b;&a", echo));
+		assertEquals("&&[amp]", StringTools.xmlDecode("&&&amp;", echo));
+	}
+
+	@Test
+	public void testDecodeToAppendable() throws Exception
+	{
+		StringBuilder sb = new StringBuilder("> ");
+		assertSame(sb, StringTools.xmlDecode(sb, "a&lt;b&#x1F600;", resolver));
+		assertSame(sb, StringTools.urlDecode(sb, new StringBuilder("%20c+d")));
+		assertEquals("> a<b\uD83D\uDE00 c d", sb.toString());
 	}
 
 	// =========================================================================
@@ -198,4 +327,86 @@ public class TestStringTools
 	{
 		assertEquals("", StringTools.trimUnderscores("_"));
 	}
+
+	@Test
+	public void testWhitespaceFunctionsMatchCharacterIsWhitespace() throws Exception
+	{
+		String alphabet = "ab \t\n\r\u000B\u001F\u00A0\u2003\u3000";
+		Random random = new Random(42);
+		for (int i = 0; i < 2000; ++i)
+		{
+			char[] chars = new char[random.nextInt(12)];
+			for (int j = 0; j < chars.length; ++j)
+				chars[j] = alphabet.charAt(random.nextInt(alphabet.length()));
+			String text = new String(chars);
+
+			String trimmed = trimSlow(text, true, true);
+			assertEquals(trimmed, StringTools.trim(text));
+			assertEquals(trimmed, StringTools.trim((CharSequence) text).toString());
+			assertEquals(trimmed, StringTools.trim(new StringBuilder(), text).toString());
+			assertEquals(trimSlow(text, true, false), StringTools.trimLeft((CharSequence) text).toString());
+			assertEquals(trimSlow(text, false, true), StringTools.trimRight((CharSequence) text).toString());
+			assertEquals(trimmed.isEmpty(), StringTools.isWhitespace((CharSequence) text));
+
+			String collapsed = collapseSlow(text);
+			assertEquals(collapsed, StringTools.collapseWhitespace(text));
+			assertEquals(collapsed, StringTools.collapseWhitespace((CharSequence) text).toString());
+			assertEquals(collapsed, StringTools.collapseWhitespace(new StringBuilder(), text).toString());
+		}
+	}
+
+	@Test
+	public void testWhitespaceFunctionsReturnSameInstanceIfUnchanged() throws Exception
+	{
+		String text = "no change";
+		assertSame(text, StringTools.trim(text));
+		assertSame(text, StringTools.trimLeft(text));
+		assertSame(text, StringTools.trimRight(text));
+		assertSame(text, StringTools.collapseWhitespace(text));
+		assertSame(text, StringTools.indent2(text, "  "));
+
+		StringBuilder sb = new StringBuilder(text);
+		assertSame(sb, StringTools.trim((CharSequence) sb));
+		assertSame(sb, StringTools.collapseWhitespace((CharSequence) sb));
+	}
+
+	@Test
+	public void testIndentToAppendable() throws Exception
+	{
+		String text = "a\nb\r\nc\rd";
+		StringBuilder sb = new StringBuilder();
+		assertEquals(StringTools.indent(text, "> "), StringTools.indent(sb, text, "> ").toString());
+
+		sb.setLength(0);
+		assertEquals(StringTools.indent2(text, "> "), StringTools.indent2(sb, text, "> ").toString());
+		assertEquals("a\n> b\r\n> c\r> d", sb.toString());
+	}
+
+	private static String trimSlow(String text, boolean left, boolean right)
+	{
+		int from = 0;
+		int to = text.length();
+		while (left && from < to && Character.isWhitespace(text.charAt(from)))
+			++from;
+		while (right && from < to && Character.isWhitespace(text.charAt(to - 1)))
+			--to;
+		return text.substring(from, to);
+	}
+
+	private static String collapseSlow(String text)
+	{
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < text.length(); ++i)
+		{
+			char ch = text.charAt(i);
+			if (Character.isWhitespace(ch))
+			{
+				if (i == 0 || !Character.isWhitespace(text.charAt(i - 1)))
+					b.append(' ');
+			}
+			else
+				b.append(ch);
+		}
+		return b.toString();
+	}
 }
@@ -57,4 +57,64 @@ public class TestXmlGrammar
 		Assert.assertTrue(m.find(m.end()));
 		Assert.assertEquals("26", m.group(3));
 	}
+
+	@Test
+	public void testCodePointClassesMatchRegularExpressions()
+	{
+		Pattern nameStart = Pattern.compile(XmlGrammar.RE_XML_NAME_START_CHAR);
+		Pattern name = Pattern.compile(XmlGrammar.RE_XML_NAME_CHAR);
+		Pattern chars = Pattern.compile(XmlGrammar.RE_XML_CHAR);
+
+		int[] supplementary = { 0x10000, 0x1F600, 0xEFFFF, 0xF0000, 0x10FFFF };
+		for (int cp = 0; cp < 0x10000 + supplementary.length; ++cp)
+		{
+			int codePoint = (cp < 0x10000) ? cp : supplementary[cp - 0x10000];
+			if (codePoint >= 0xD800 && codePoint <= 0xDFFF)
+				continue;
+
+			String s = new String(Character.toChars(codePoint));
+			Assert.assertEquals(
+					Integer.toHexString(codePoint),
+					nameStart.matcher(s).matches(),
+					XmlGrammar.isNameStartChar(codePoint));
+			Assert.assertEquals(
+					Integer.toHexString(codePoint),
+					name.matcher(s).matches(),
+					XmlGrammar.isNameChar(codePoint));
+			Assert.assertEquals(
+					Integer.toHexString(codePoint),
+					chars.matcher(s).matches(),
+					XmlGrammar.isChar(codePoint));
+		}
+
+		Assert.assertFalse(XmlGrammar.isChar(-1));
+		Assert.assertFalse(XmlGrammar.isNameChar(-1));
+		Assert.assertFalse(XmlGrammar.isNameStartChar(0x110000));
+	}
+
+	@Test
+	public void testIsName()
+	{
+		Assert.assertTrue(XmlGrammar.isName("ptk:a"));
+		Assert.assertTrue(XmlGrammar.isName("_a-b.c\u00B7"));
+		Assert.assertTrue(XmlGrammar.isName("\uD800\uDC00-\uDB7F\uDFFE"));
+		Assert.assertFalse(XmlGrammar.isName(""));
+		Assert.assertFalse(XmlGrammar.isName("-z"));
+		Assert.assertFalse(XmlGrammar.isName("a z"));
+		Assert.assertFalse(XmlGrammar.isName("a\uD800"));
+		Assert.assertFalse(XmlGrammar.isName("\uDB80\uDC00"));
+	}
+
+	@Test
+	public void testIndexOfInvalidChar()
+	{
+		Assert.assertEquals(-1, XmlGrammar.indexOfInvalidChar(""));
+		Assert.assertEquals(-1, XmlGrammar.indexOfInvalidChar("a\tb\r\n\uD83D\uDE00\uFFFD"));
+		Assert.assertEquals(1, XmlGrammar.indexOfInvalidChar("a\u0000"));
+		Assert.assertEquals(1, XmlGrammar.indexOfInvalidChar("a\uFFFE"));
+		Assert.assertEquals(2, XmlGrammar.indexOfInvalidChar("ab\uD83D"));
+		Assert.assertEquals(1, XmlGrammar.indexOfInvalidChar("a\uDE00\uD83D"));
+		Assert.assertTrue(XmlGrammar.isText(new StringBuilder("text")));
+		Assert.assertFalse(XmlGrammar.isText("\u001B"));
+	}
 }
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fau.cs.osr.utils.visitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.fau.cs.osr.utils.visitor.VisitProfiler.Entry;
+
+public class VisitProfilerTest
+{
+	public static final class ListVisitor
+			extends
+				VisitorBase<Object>
+	{
+		@Override
+		protected Object dispatch(Object node)
+		{
+			return resolveAndVisit(node);
+		}
+
+		public Object visit(List<?> n)
+		{
+			for (Object c : n)
+				dispatch(c);
+			return n;
+		}
+
+		public Object visit(String n)
+		{
+			return n;
+		}
+	}
+
+	public static final class StackedStringVisitor
+			extends
+				StackedVisitorInterface<Object>
+	{
+		public Object visit(Baton baton, String n)
+		{
+			return baton.continueIfSameRef(n);
+		}
+	}
+
+	public static final class StackedIntegerVisitor
+			extends
+				StackedVisitorInterface<Object>
+	{
+		public Object visit(Baton baton, Integer n)
+		{
+			return baton.skip(n);
+		}
+	}
+
+	public static final class Controller
+			extends
+				VisitorStackController<Object>
+	{
+		public Controller(List<? extends StackedVisitorInterface<Object>> stack) throws IncompatibleVisitorStackDefinition
+		{
+			super("VisitProfilerTest", stack);
+		}
+
+		@Override
+		protected Object visitNotFound(Object node)
+		{
+			return node;
+		}
+	}
+
+	// =========================================================================
+
+	@After
+	public void tearDown()
+	{
+		VisitProfiler.disable();
+	}
+
+	private static Entry find(VisitProfiler profiler, Class<?> nodeClass)
+	{
+		for (Entry e : profiler.getEntries())
+		{
+			if (e.getNodeClass() == nodeClass)
+				return e;
+		}
+		throw new AssertionError("No entry for " + nodeClass);
+	}
+
+	@Test
+	public void testProfilesVisitorLogic() throws Exception
+	{
+		ListVisitor v = new ListVisitor();
+		List<Object> tree = Arrays.<Object> asList("a", "b", Arrays.asList("c"));
+
+		// Not recorded
+		v.go(tree);
+
+		VisitProfiler profiler = VisitProfiler.start();
+		v.go(tree);
+		v.go(tree);
+		VisitProfiler.disable();
+
+		// Not recorded
+		v.go(tree);
+
+		assertEquals(2, profiler.getEntries().size());
+		assertEquals(6, find(profiler, String.class).getCount());
+
+		Entry lists = profiler.getEntries().get(0);
+		assertEquals(4, lists.getCount());
+		assertEquals("ListVisitor.visit(List)", lists.getMethodName());
+		assertTrue(lists.getSelfNanos() <= lists.getTotalNanos());
+		assertTrue(lists.getTotalNanos() >= find(profiler, String.class).getTotalNanos());
+
+		String table = profiler.toTable();
+		assertTrue(table.startsWith("Visitor"));
+		assertEquals(3, table.split("\n").length);
+
+		String json = profiler.toJson();
+		assertTrue(json.contains("\"method\": \"ListVisitor.visit(String)\", \"count\": 6"));
+
+		profiler.reset();
+		assertEquals(0, profiler.getEntries().size());
+	}
+
+	@Test
+	public void testProfilesVisitorStackController() throws Exception
+	{
+		Controller c = new Controller(Arrays.asList(
+				new StackedStringVisitor(),
+				new StackedIntegerVisitor()));
+
+		VisitProfiler profiler = VisitProfiler.start();
+		c.go("a");
+		c.go(42);
+		c.go(1.5);
+
+		assertEquals(2, profiler.getEntries().size());
+		assertEquals(1, find(profiler, String.class).getCount());
+		Entry integers = find(profiler, Integer.class);
+		assertEquals(StackedIntegerVisitor.class, integers.getVisitorClass());
+		assertEquals("StackedIntegerVisitor.visit(Baton, Integer)", integers.getMethodName());
+	}
+}